@@ -0,0 +1,95 @@
+package co.insecurity.security.policy.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emits the custom JDK Flight Recorder events of {@code DefaultPolicyMetrics}.
+ * <p>
+ * This class is built from its own source set, which is only compiled by a 
+ * JDK providing the {@code jdk.jfr} API, and is only loaded, reflectively, 
+ * when JFR events are enabled on a JVM providing it, so that the rest of 
+ * the library builds and runs without it. Events are only allocated while 
+ * a recording has enabled them.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+final class JfrEvents implements FlightRecorderEvents {
+	
+	@Name("co.insecurity.policy.AssertionEvaluation")
+	@Label("Policy Assertion Evaluation")
+	@Description("A password verified by a policy assertion")
+	@Category("Password Policy")
+	@StackTrace(false)
+	static class AssertionEvaluation extends Event {
+		
+		private static final EventType TYPE = 
+				EventType.getEventType(AssertionEvaluation.class);
+		
+		@Label("Assertion")
+		String assertion;
+		
+		@Label("Success")
+		boolean success;
+		
+		@Label("Latency")
+		@Timespan(Timespan.NANOSECONDS)
+		long latency;
+	}
+	
+	@Name("co.insecurity.policy.IndexBuild")
+	@Label("Password Index Build")
+	@Description("A password index built from a word list")
+	@Category("Password Policy")
+	static class IndexBuild extends Event {
+		
+		@Label("Index Type")
+		String indexType;
+		
+		@Label("Passwords")
+		long numPasswords;
+		
+		@Label("Size")
+		@DataAmount
+		long sizeInBytes;
+		
+		@Label("Build Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long buildTime;
+	}
+	
+	JfrEvents() { }
+	
+	@Override
+	public void assertionEvaluated(String assertion, long nanos, 
+			boolean success) {
+		if (!AssertionEvaluation.TYPE.isEnabled())
+			return;
+		AssertionEvaluation event = new AssertionEvaluation();
+		event.assertion = assertion;
+		event.success = success;
+		event.latency = nanos;
+		event.commit();
+	}
+	
+	@Override
+	public void indexBuilt(String indexType, long nanos, long numPasswords, 
+			long sizeInBytes) {
+		IndexBuild event = new IndexBuild();
+		if (!event.isEnabled())
+			return;
+		event.indexType = indexType;
+		event.numPasswords = numPasswords;
+		event.sizeInBytes = sizeInBytes;
+		event.buildTime = nanos;
+		event.commit();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package co.insecurity.security.policy.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import co.insecurity.security.policy.assertion.NotLeakedAssertion;
+import co.insecurity.security.policy.index.IndexType;
+
+/**
+ * Measures the time taken by {@code NotLeakedAssertion.Builder.build()} to 
+ * read a word list and build its index, on one thread and in parallel 
+ * where the index type supports it. Each build is timed once, since builds 
+ * of the largest lists run for minutes.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-XX:MaxDirectMemorySize=8g"})
+public class BuildBenchmark {
+	
+	@Param({"10000", "10000000", "100000000"})
+	public int size;
+	
+	@Param({"BLOOM_FILTER", "BLOCKED_BLOOM_FILTER", "BINARY_FUSE_FILTER"})
+	public IndexType indexType;
+	
+	@Param({"1", "4"})
+	public int parallelism;
+	
+	private String wordList;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		wordList = WordLists.get(size).toString();
+	}
+	
+	@Benchmark
+	public NotLeakedAssertion build() throws IOException {
+		return new NotLeakedAssertion.Builder()
+				.withIndexType(indexType)
+				.withParallelism(parallelism)
+				.withPasswordDataFile(wordList)
+				.build();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+package co.insecurity.security.policy.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import co.insecurity.security.policy.EvaluationResults;
+import co.insecurity.security.policy.PasswordPolicy;
+import co.insecurity.security.policy.assertion.LengthAssertion;
+import co.insecurity.security.policy.assertion.NotLeakedAssertion;
+import co.insecurity.security.policy.assertion.PolicyAssertion;
+import co.insecurity.security.policy.assertion.PolicyAssertion.Result;
+import co.insecurity.security.policy.index.IndexType;
+
+/**
+ * Measures the latency of evaluating single passwords against a 
+ * {@code PasswordPolicy} with {@code evaluate()} and {@code evaluateMask()}, 
+ * and the per-password cost of evaluating a large batch with 
+ * {@code evaluateAll()}.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-XX:MaxDirectMemorySize=8g"})
+public class PolicyBenchmark {
+	
+	/**
+	 * A policy requiring passwords of at least 8 characters which are not 
+	 * in the benchmark's word list, ignoring case.
+	 */
+	static class BenchmarkPolicy extends PasswordPolicy {
+		
+		BenchmarkPolicy(NotLeakedAssertion notLeaked) {
+			assertions = new LinkedHashSet<PolicyAssertion>();
+			assertions.add(new LengthAssertion(8, LengthAssertion.DISABLED));
+			assertions.add(notLeaked);
+		}
+	}
+	
+	@Param({"10000", "10000000", "100000000"})
+	public int size;
+	
+	@Param({"BLOOM_FILTER", "BLOCKED_BLOOM_FILTER", "BINARY_FUSE_FILTER"})
+	public IndexType indexType;
+	
+	private BenchmarkPolicy policy;
+	private String[] passwords;
+	private List<String> batch;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		policy = new BenchmarkPolicy(new NotLeakedAssertion.Builder()
+				.withIndexType(indexType)
+				.withIgnoreCase(true)
+				.withPasswordDataFile(WordLists.get(size).toString())
+				.build());
+		String[] leaked = WordLists.sample(VerifyBenchmark.SAMPLE_SIZE / 2, 
+				size, true);
+		String[] unleaked = WordLists.sample(VerifyBenchmark.SAMPLE_SIZE / 2, 
+				size, false);
+		passwords = new String[VerifyBenchmark.SAMPLE_SIZE];
+		for (int i = 0; i < leaked.length; i++) {
+			passwords[2 * i] = leaked[i];
+			passwords[2 * i + 1] = unleaked[i];
+		}
+		batch = new ArrayList<String>(Arrays.asList(passwords));
+	}
+	
+	@Benchmark
+	public Set<Result> evaluate(VerifyBenchmark.Cursor cursor) {
+		return policy.evaluate(
+				passwords[cursor.next++ & VerifyBenchmark.SAMPLE_MASK]);
+	}
+	
+	@Benchmark
+	public long evaluateMask(VerifyBenchmark.Cursor cursor) {
+		return policy.evaluateMask(
+				passwords[cursor.next++ & VerifyBenchmark.SAMPLE_MASK]);
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(VerifyBenchmark.SAMPLE_SIZE)
+	public EvaluationResults evaluateAll() {
+		return policy.evaluateAll(batch);
+	}
+}
\ No newline at end of file
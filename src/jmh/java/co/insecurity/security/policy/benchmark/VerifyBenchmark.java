@@ -0,0 +1,91 @@
+package co.insecurity.security.policy.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import co.insecurity.security.policy.assertion.NotLeakedAssertion;
+import co.insecurity.security.policy.assertion.PolicyAssertion.Result;
+import co.insecurity.security.policy.index.IndexType;
+
+/**
+ * Measures the latency of single calls to {@code NotLeakedAssertion.verify()} 
+ * for leaked and unleaked passwords, and its throughput when called from as 
+ * many threads as there are processors.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-XX:MaxDirectMemorySize=8g"})
+public class VerifyBenchmark {
+	
+	static final int SAMPLE_SIZE = 1 << 16;
+	static final int SAMPLE_MASK = SAMPLE_SIZE - 1;
+	
+	/**
+	 * The index of the next sampled password to verify, which is kept per 
+	 * thread so that threads do not contend on it.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+	
+	@Param({"10000", "10000000", "100000000"})
+	public int size;
+	
+	@Param({"BLOOM_FILTER", "BLOCKED_BLOOM_FILTER", "BINARY_FUSE_FILTER"})
+	public IndexType indexType;
+	
+	private NotLeakedAssertion assertion;
+	private String[] leaked;
+	private String[] unleaked;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		assertion = new NotLeakedAssertion.Builder()
+				.withIndexType(indexType)
+				.withPasswordDataFile(WordLists.get(size).toString())
+				.build();
+		leaked = WordLists.sample(SAMPLE_SIZE, size, true);
+		unleaked = WordLists.sample(SAMPLE_SIZE, size, false);
+	}
+	
+	@Benchmark
+	public Result verifyLeaked(Cursor cursor) {
+		return assertion.verify(leaked[cursor.next++ & SAMPLE_MASK]);
+	}
+	
+	@Benchmark
+	public Result verifyUnleaked(Cursor cursor) {
+		return assertion.verify(unleaked[cursor.next++ & SAMPLE_MASK]);
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@Threads(Threads.MAX)
+	public Result verifyConcurrently(Cursor cursor) {
+		int next = cursor.next++;
+		String[] sample = ((next & 1) == 0) ? leaked : unleaked;
+		return assertion.verify(sample[(next >>> 1) & SAMPLE_MASK]);
+	}
+}
\ No newline at end of file
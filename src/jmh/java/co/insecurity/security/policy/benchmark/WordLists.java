@@ -0,0 +1,107 @@
+package co.insecurity.security.policy.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Generates synthetic word lists for the benchmarks, so that they can run 
+ * offline against lists of any size.
+ * <p>
+ * The password at each index of a list is derived deterministically from 
+ * the index, so a list of a given size always has the same contents, and 
+ * lists are written once to {@code java.io.tmpdir} and reused by later 
+ * runs. A list of 100 million passwords takes about 1.3 GB of disk.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public final class WordLists {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final char[] ALPHABET =
+			("abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ"
+			+ "0123456789!@#$%&*").toCharArray();
+	private static final String DIRECTORY = "passcheck-jmh";
+	
+	private WordLists() { }
+	
+	/**
+	 * Gets the path of the synthetic word list with the given number of 
+	 * passwords, generating it if it does not exist yet.
+	 * 
+	 * @param size the number of passwords in the list
+	 * @return the path of the word list
+	 * @throws IOException if the word list cannot be written
+	 */
+	public static synchronized Path get(int size) throws IOException {
+		Path directory = Paths.get(System.getProperty("java.io.tmpdir"),
+				DIRECTORY);
+		Files.createDirectories(directory);
+		Path file = directory.resolve("words-" + size + ".dat");
+		if (Files.exists(file))
+			return file;
+		Path tmp = Files.createTempFile(directory, "words-", ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(tmp, UTF_8)) {
+			for (int i = 0; i < size; i++) {
+				writer.write(password(i));
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(tmp);
+			throw e;
+		}
+		Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+		return file;
+	}
+	
+	/**
+	 * Returns the password at the given index of every synthetic word list.
+	 * 
+	 * @param index the index of the password
+	 * @return a password of 6 to 13 characters
+	 */
+	public static String password(long index) {
+		long h = mix(index);
+		char[] chars = new char[6 + (int) (h & 7)];
+		for (int i = 0; i < chars.length; i++) {
+			if (i % 8 == 7)
+				h = mix(h);
+			h >>>= 8;
+			chars[i] = ALPHABET[(int) ((h & 0xFF) % ALPHABET.length)];
+		}
+		return new String(chars);
+	}
+	
+	/**
+	 * Returns a sample of passwords, drawn uniformly from the first 
+	 * {@code size} passwords of a synthetic word list if {@code leaked} is 
+	 * true, or otherwise generated so as never to appear in any list.
+	 * 
+	 * @param count the number of passwords in the sample
+	 * @param size the number of passwords in the word list
+	 * @param leaked whether the sampled passwords should be in the list
+	 * @return the sampled passwords
+	 */
+	public static String[] sample(int count, int size, boolean leaked) {
+		String[] sample = new String[count];
+		long h = leaked ? size : ~size;
+		for (int i = 0; i < count; i++) {
+			h = mix(h + i);
+			sample[i] = leaked
+					? password(Long.remainderUnsigned(h, size))
+					: "~" + password(h);
+		}
+		return sample;
+	}
+	
+	private static long mix(long x) {
+		x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+		x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+		return x ^ (x >>> 31);
+	}
+}
\ No newline at end of file
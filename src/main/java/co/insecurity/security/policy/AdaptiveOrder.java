@@ -0,0 +1,131 @@
+package co.insecurity.security.policy;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the observed cost and rejection rate of each assertion of a 
+ * {@code PasswordPolicy}, and derives the order in which fail-fast checks 
+ * should run them to minimize the expected cost of an evaluation.
+ * <p>
+ * For assertions with independent outcomes, the expected cost of running 
+ * them until the first failure is minimized by running them in ascending 
+ * order of cost divided by rejection probability. Statistics are gathered 
+ * on a random sample of one in {@code SAMPLE_INTERVAL} evaluations, which 
+ * run every assertion in iteration order so that each is measured on the 
+ * same, unfiltered traffic. After every {@code REPLAN_SAMPLES} samples the 
+ * order is recomputed from the statistics, which decay by half at each 
+ * re-plan so that the order follows shifts in traffic.
+ * <p>
+ * Unsampled evaluations only read the current order, so the overhead of 
+ * adaptive ordering is bounded by the cost of the sampled evaluations.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+class AdaptiveOrder {
+	
+	/**
+	 * One in this many evaluations is sampled to measure the assertions.
+	 */
+	static final int SAMPLE_INTERVAL = 64;
+	
+	/**
+	 * The order is re-planned after this many sampled evaluations.
+	 */
+	static final int REPLAN_SAMPLES = 64;
+	
+	private static final double DECAY = 0.5;
+	
+	private final LongAdder[] costs;
+	private final LongAdder[] failures;
+	private final LongAdder samples = new LongAdder();
+	private final AtomicBoolean replanning = new AtomicBoolean();
+	private final double[] decayedCosts;
+	private final double[] decayedFailures;
+	private double decayedSamples;
+	private volatile int[] order;
+	
+	AdaptiveOrder(int numAssertions) {
+		this.costs = new LongAdder[numAssertions];
+		this.failures = new LongAdder[numAssertions];
+		for (int i = 0; i < numAssertions; i++) {
+			costs[i] = new LongAdder();
+			failures[i] = new LongAdder();
+		}
+		this.decayedCosts = new double[numAssertions];
+		this.decayedFailures = new double[numAssertions];
+		this.order = new int[numAssertions];
+		for (int i = 0; i < numAssertions; i++)
+			order[i] = i;
+	}
+	
+	/**
+	 * Gets the indexes of the assertions, in iteration order, in the order 
+	 * in which they should be run. The array must not be modified.
+	 */
+	int[] getOrder() {
+		return order;
+	}
+	
+	/**
+	 * Indicates whether the calling evaluation should be sampled.
+	 */
+	boolean shouldSample() {
+		return ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL) == 0;
+	}
+	
+	/**
+	 * Records the outcome of running an assertion in a sampled evaluation.
+	 */
+	void record(int assertion, long nanos, boolean failed) {
+		costs[assertion].add(nanos);
+		if (failed)
+			failures[assertion].increment();
+	}
+	
+	/**
+	 * Completes a sampled evaluation, re-planning the order if enough 
+	 * samples have been taken since the last re-plan. Only one thread 
+	 * re-plans at a time; others carry on with the current order.
+	 */
+	void completeSample() {
+		samples.increment();
+		if (samples.sum() < REPLAN_SAMPLES || !replanning.compareAndSet(false, true))
+			return;
+		try {
+			replan();
+		} finally {
+			replanning.set(false);
+		}
+	}
+	
+	private void replan() {
+		decayedSamples = decayedSamples * DECAY + samples.sumThenReset();
+		final double[] scores = new double[costs.length];
+		for (int i = 0; i < costs.length; i++) {
+			decayedCosts[i] = decayedCosts[i] * DECAY + costs[i].sumThenReset();
+			decayedFailures[i] = decayedFailures[i] * DECAY
+					+ failures[i].sumThenReset();
+			double cost = decayedCosts[i] / decayedSamples;
+			double rejection = (decayedFailures[i] + 1) / (decayedSamples + 2);
+			scores[i] = cost / rejection;
+		}
+		Integer[] sorted = new Integer[costs.length];
+		for (int i = 0; i < sorted.length; i++)
+			sorted[i] = i;
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer left, Integer right) {
+				return Double.compare(scores[left], scores[right]);
+			}
+		});
+		int[] replanned = new int[sorted.length];
+		for (int i = 0; i < sorted.length; i++)
+			replanned[i] = sorted[i];
+		order = replanned;
+	}
+}
\ No newline at end of file
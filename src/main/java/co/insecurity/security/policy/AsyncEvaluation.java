@@ -0,0 +1,262 @@
+package co.insecurity.security.policy;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.insecurity.security.policy.assertion.PolicyAssertion;
+import co.insecurity.security.policy.assertion.PolicyAssertion.Result;
+
+/**
+ * Defines how {@code PasswordPolicy.evaluateAsync()} runs its assertions: 
+ * the executor on which their blocking work runs, how long each assertion 
+ * may take, and the result which stands in for an assertion that times out 
+ * or fails with an exception.
+ * <p>
+ * By default, assertions run on a shared executor which starts a virtual 
+ * thread per assertion when the JVM supports them (Java 21 and later), and 
+ * otherwise uses a cached pool of daemon threads. Assertions have no 
+ * timeout by default, and fail with {@code UNAVAILABLE} on an exception.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class AsyncEvaluation {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncEvaluation.class);
+	
+	/**
+	 * Flag indicating that assertions have no timeout
+	 */
+	public static final long NO_TIMEOUT = -1;
+	/**
+	 * A {@code PolicyAssertion.Result} indicating an assertion timed out or 
+	 * failed with an exception, which is the default fallback result
+	 */
+	public static final Result UNAVAILABLE =
+			new Result(false, "Password could not be verified in time.");
+	
+	private static final Executor DEFAULT_EXECUTOR = newDefaultExecutor();
+	private static final ScheduledExecutorService TIMER =
+			Executors.newSingleThreadScheduledExecutor(
+					new DaemonThreadFactory("passcheck-async-timer"));
+	
+	/**
+	 * The default {@code AsyncEvaluation}
+	 */
+	public static final AsyncEvaluation DEFAULT = new Builder().build();
+	
+	/**
+	 * Builds an {@code AsyncEvaluation}.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder {
+		
+		private Executor executor;
+		private long timeout;
+		private TimeUnit timeUnit;
+		private Result fallbackResult;
+		
+		/**
+		 * Instantiates a new {@code AsyncEvaluation.Builder}, which by 
+		 * default uses the shared virtual thread or daemon thread executor, 
+		 * no timeout, and {@code UNAVAILABLE} as the fallback result.
+		 */
+		public Builder() {
+			this.executor = DEFAULT_EXECUTOR;
+			this.timeout = NO_TIMEOUT;
+			this.timeUnit = TimeUnit.MILLISECONDS;
+			this.fallbackResult = UNAVAILABLE;
+		}
+		
+		/**
+		 * Returns an updated builder that will run the blocking work of 
+		 * assertions on the given executor.
+		 * 
+		 * @param executor the executor on which to run assertions
+		 * @return this {@code Builder}, updated with the specified executor
+		 */
+		public Builder withExecutor(Executor executor) {
+			this.executor = executor;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will complete each assertion which 
+		 * takes longer than the given timeout with the fallback result. The 
+		 * timed-out assertion is not interrupted, but its result is ignored.
+		 * 
+		 * @param timeout the maximum time each assertion may take, or 
+		 * {@code NO_TIMEOUT}
+		 * @param unit the unit of the timeout
+		 * @return this {@code Builder}, updated with the specified timeout
+		 */
+		public Builder withTimeout(long timeout, TimeUnit unit) {
+			this.timeout = timeout;
+			this.timeUnit = unit;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will use the given result for any 
+		 * assertion which times out or fails with an exception. A successful 
+		 * fallback result makes evaluation fail open, e.g. to keep accepting 
+		 * passwords while a breach lookup service is down.
+		 * 
+		 * @param fallbackResult the result to use in place of an 
+		 * unavailable assertion
+		 * @return this {@code Builder}, updated with the specified result
+		 */
+		public Builder withFallbackResult(Result fallbackResult) {
+			this.fallbackResult = fallbackResult;
+			return this;
+		}
+		
+		/**
+		 * Builds an {@code AsyncEvaluation} with the configured settings.
+		 * 
+		 * @return the {@code AsyncEvaluation}
+		 * @throws IllegalStateException if no executor, time unit or 
+		 * fallback result is set, or the timeout is neither positive nor 
+		 * {@code NO_TIMEOUT}
+		 */
+		public AsyncEvaluation build() {
+			if (executor == null || timeUnit == null || fallbackResult == null)
+				throw new IllegalStateException(
+						"Executor, time unit and fallback result must be set!");
+			if (timeout <= 0 && timeout != NO_TIMEOUT)
+				throw new IllegalStateException(String.format(
+						"Invalid timeout: %d", timeout));
+			return new AsyncEvaluation(this);
+		}
+	}
+	
+	private final Executor executor;
+	private final long timeoutNanos;
+	private final Result fallbackResult;
+	
+	private AsyncEvaluation(Builder builder) {
+		this.executor = builder.executor;
+		this.timeoutNanos = (builder.timeout == NO_TIMEOUT) ? NO_TIMEOUT
+				: builder.timeUnit.toNanos(builder.timeout);
+		this.fallbackResult = builder.fallbackResult;
+	}
+	
+	/**
+	 * Gets the executor on which assertions run.
+	 * 
+	 * @return the executor
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * Gets the timeout of each assertion.
+	 * 
+	 * @param unit the unit in which to return the timeout
+	 * @return the timeout, or {@code NO_TIMEOUT}
+	 */
+	public long getTimeout(TimeUnit unit) {
+		return (timeoutNanos == NO_TIMEOUT) ? NO_TIMEOUT
+				: unit.convert(timeoutNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Gets the result used in place of an assertion which times out or 
+	 * fails with an exception.
+	 * 
+	 * @return the fallback result
+	 */
+	public Result getFallbackResult() {
+		return fallbackResult;
+	}
+	
+	/**
+	 * Starts verifying the password with the given assertion, and returns a 
+	 * future which completes with its result, or with the fallback result if 
+	 * the assertion times out or fails. The returned future never completes 
+	 * exceptionally.
+	 */
+	CompletableFuture<Result> verify(final PolicyAssertion assertion,
+			String password) {
+		final CompletableFuture<Result> result = new CompletableFuture<Result>();
+		CompletableFuture<Result> verification;
+		try {
+			verification = assertion.verifyAsync(password, executor);
+		} catch (RuntimeException e) {
+			verification = new CompletableFuture<Result>();
+			verification.completeExceptionally(e);
+		}
+		final ScheduledFuture<?> timer = (timeoutNanos == NO_TIMEOUT) ? null
+				: TIMER.schedule(new Runnable() {
+					@Override
+					public void run() {
+						if (result.complete(fallbackResult))
+							LOG.warn("{} timed out", assertion);
+					}
+				}, timeoutNanos, TimeUnit.NANOSECONDS);
+		verification.whenComplete(new BiConsumer<Result, Throwable>() {
+			@Override
+			public void accept(Result value, Throwable failure) {
+				if (timer != null)
+					timer.cancel(false);
+				if (failure == null && value != null) {
+					result.complete(value);
+					return;
+				}
+				if (result.complete(fallbackResult))
+					LOG.warn("{} failed", assertion, failure);
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Creates an executor which starts a virtual thread per task if the JVM 
+	 * supports them, or otherwise a cached pool of daemon threads. Virtual 
+	 * threads are looked up reflectively so that the library still runs on 
+	 * Java 8.
+	 */
+	private static Executor newDefaultExecutor() {
+		try {
+			Method factory = Executors.class.getMethod(
+					"newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			LOG.debug("Virtual threads unavailable; using platform threads");
+			return Executors.newCachedThreadPool(
+					new DaemonThreadFactory("passcheck-async"));
+		}
+	}
+	
+	private static class DaemonThreadFactory implements ThreadFactory {
+		
+		private final AtomicInteger count = new AtomicInteger();
+		private final String prefix;
+		
+		DaemonThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+		
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
\ No newline at end of file
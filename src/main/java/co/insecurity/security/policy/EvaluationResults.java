@@ -0,0 +1,241 @@
+package co.insecurity.security.policy;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import co.insecurity.security.policy.assertion.PolicyAssertion;
+import co.insecurity.security.policy.assertion.PolicyAssertion.Result;
+
+/**
+ * The results of evaluating a batch of passwords against a 
+ * {@code PasswordPolicy}, as returned by {@code evaluateAll()}.
+ * <p>
+ * Results are stored in columns rather than as one set per password: for 
+ * each {@code PolicyAssertion} and each batch of {@code BATCH_SIZE} 
+ * passwords, a bitset marks the passwords which failed the assertion, and 
+ * the {@code PolicyAssertion.Result} of every success and of every failure 
+ * is stored once. Since assertions typically return shared {@code Result} 
+ * instances, the results for a password cost one bit per assertion; only a 
+ * result differing from the first success or failure of its batch is 
+ * stored separately.
+ * <p>
+ * Passwords are identified by their index in the evaluated batch, and 
+ * assertions by their index in the policy's iteration order.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class EvaluationResults {
+	
+	/**
+	 * The results of one assertion for one batch of passwords.
+	 */
+	static final class Column {
+		
+		private final long[] failures;
+		private final int numFailures;
+		private final Result success;
+		private final Result failure;
+		private final Map<Integer, Result> others;
+		
+		/**
+		 * Stores the given results of a batch, as filled by 
+		 * {@code PolicyAssertion.verifyAll()}, in a single pass.
+		 */
+		Column(Result[] results, int length) {
+			long[] failures = new long[(length + 63) >>> 6];
+			int numFailures = 0;
+			Result success = null;
+			Result failure = null;
+			Map<Integer, Result> others = null;
+			for (int i = 0; i < length; i++) {
+				Result result = results[i];
+				Result first;
+				if (result.isSuccess()) {
+					if (success == null)
+						success = result;
+					first = success;
+				} else {
+					failures[i >>> 6] |= 1L << i;
+					numFailures++;
+					if (failure == null)
+						failure = result;
+					first = failure;
+				}
+				if (result != first) {
+					if (others == null)
+						others = new HashMap<Integer, Result>();
+					others.put(i, result);
+				}
+			}
+			this.failures = failures;
+			this.numFailures = numFailures;
+			this.success = success;
+			this.failure = failure;
+			this.others = others;
+		}
+		
+		/**
+		 * Gets the number of passwords of the batch which failed the 
+		 * assertion.
+		 */
+		int getNumFailures() {
+			return numFailures;
+		}
+		
+		boolean isFailure(int i) {
+			return (failures[i >>> 6] & (1L << i)) != 0;
+		}
+		
+		Result get(int i) {
+			if (others != null) {
+				Result result = others.get(i);
+				if (result != null)
+					return result;
+			}
+			return isFailure(i) ? failure : success;
+		}
+	}
+	
+	private static final int WORDS_PER_BATCH = PasswordPolicy.BATCH_SIZE >>> 6;
+	
+	private final List<PolicyAssertion> assertions;
+	private final List<Column[]> batches;
+	private final int size;
+	
+	EvaluationResults(PolicyAssertion[] assertions, List<Column[]> batches,
+			int size) {
+		this.assertions = Collections.unmodifiableList(
+				Arrays.asList(assertions));
+		this.batches = batches;
+		this.size = size;
+	}
+	
+	private Column getColumn(int password, int assertion) {
+		if (password < 0 || password >= size)
+			throw new IndexOutOfBoundsException(String.format(
+					"Invalid password index: %d", password));
+		return batches.get(password / PasswordPolicy.BATCH_SIZE)[assertion];
+	}
+	
+	/**
+	 * Gets the number of passwords evaluated.
+	 * 
+	 * @return the number of passwords
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets the assertions the passwords were evaluated against, in the 
+	 * order of their columns.
+	 * 
+	 * @return the list of assertions
+	 */
+	public List<PolicyAssertion> getAssertions() {
+		return assertions;
+	}
+	
+	/**
+	 * Gets the result of a single assertion for a password.
+	 * 
+	 * @param password the index of the password
+	 * @param assertion the index of the assertion
+	 * @return the {@code PolicyAssertion.Result} of the assertion
+	 */
+	public Result getResult(int password, int assertion) {
+		return getColumn(password, assertion).get(
+				password % PasswordPolicy.BATCH_SIZE);
+	}
+	
+	/**
+	 * Gets the results of every assertion for a password, as 
+	 * {@code PasswordPolicy.evaluate()} would return them.
+	 * 
+	 * @param password the index of the password
+	 * @return the set of {@code PolicyAssertion.Result}s
+	 */
+	public Set<Result> getResults(int password) {
+		Set<Result> results = new LinkedHashSet<Result>();
+		for (int i = 0; i < assertions.size(); i++)
+			results.add(getResult(password, i));
+		return results;
+	}
+	
+	/**
+	 * Gets the results of the failed assertions for a password.
+	 * 
+	 * @param password the index of the password
+	 * @return the set of {@code PolicyAssertion.Result}s raised by failed 
+	 * assertions
+	 */
+	public Set<Result> getViolations(int password) {
+		Set<Result> violations = new LinkedHashSet<Result>();
+		for (int i = 0; i < assertions.size(); i++) {
+			if (getColumn(password, i).isFailure(
+					password % PasswordPolicy.BATCH_SIZE))
+				violations.add(getResult(password, i));
+		}
+		return violations;
+	}
+	
+	/**
+	 * Indicates whether a password passed every assertion.
+	 * 
+	 * @param password the index of the password
+	 * @return true if the password complies with the policy, otherwise 
+	 * returns false
+	 */
+	public boolean isCompliant(int password) {
+		for (int i = 0; i < assertions.size(); i++) {
+			if (getColumn(password, i).isFailure(
+					password % PasswordPolicy.BATCH_SIZE))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the number of passwords which passed every assertion.
+	 * 
+	 * @return the number of compliant passwords
+	 */
+	public int getNumCompliant() {
+		int nonCompliant = 0;
+		for (Column[] batch : batches) {
+			for (int i = 0; i < WORDS_PER_BATCH; i++) {
+				long failed = 0;
+				for (Column column : batch) {
+					if (i < column.failures.length)
+						failed |= column.failures[i];
+				}
+				nonCompliant += Long.bitCount(failed);
+			}
+		}
+		return size - nonCompliant;
+	}
+	
+	/**
+	 * Gets the indexes of the passwords which failed an assertion.
+	 * 
+	 * @param assertion the index of the assertion
+	 * @return a {@code BitSet} with the bit set for each password which 
+	 * failed the assertion
+	 */
+	public BitSet getFailures(int assertion) {
+		long[] words = new long[(size + 63) >>> 6];
+		for (int i = 0; i < batches.size(); i++) {
+			long[] failures = batches.get(i)[assertion].failures;
+			System.arraycopy(failures, 0, words, i * WORDS_PER_BATCH,
+					failures.length);
+		}
+		return BitSet.valueOf(words);
+	}
+}
\ No newline at end of file
@@ -1,10 +1,28 @@
 package co.insecurity.security.policy;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+import co.insecurity.security.policy.assertion.PasswordContext;
 import co.insecurity.security.policy.assertion.PolicyAssertion;
 import co.insecurity.security.policy.assertion.PolicyAssertion.Result;
+import co.insecurity.security.policy.metrics.AssertionRecorder;
+import co.insecurity.security.policy.metrics.PolicyMetrics;
 
 /**
  * This abstract class provides the base logic required to programmatically 
@@ -24,26 +42,579 @@ public abstract class PasswordPolicy {
 	 * The set of {@code PolicyAssertion}s that must all return a successful 
 	 * {@code PolicyAssertion.Result} for a given password to comply with this 
 	 * {@code PasswordPolicy}
+	 * <p>
+	 * The assertions are copied into an evaluation plan on first use, which 
+	 * is rebuilt when this field is assigned a new set, or the number of 
+	 * assertions in the set changes. A subclass which replaces an assertion 
+	 * in the set in place must call {@code invalidatePlan()} afterwards.
 	 */
 	protected Set<PolicyAssertion> assertions;
 	
+	/**
+	 * The number of passwords evaluated together as one batch by 
+	 * {@code evaluateAll()}.
+	 */
+	public static final int BATCH_SIZE = 4096;
+	
+	/**
+	 * The maximum number of batches read by {@code evaluateAll()} which may 
+	 * wait to be evaluated at once.
+	 */
+	private static final int MAX_PENDING_BATCHES = 
+			2 * ForkJoinPool.getCommonPoolParallelism();
+	
+	/**
+	 * The maximum number of assertions a policy may define to be evaluated 
+	 * by {@code evaluateMask()}.
+	 */
+	public static final int MAX_MASK_ASSERTIONS = 64;
+	
+	/**
+	 * Returned by {@code findFirstViolation()} for a compliant password.
+	 */
+	public static final int NO_VIOLATION = -1;
+	
+	private static final ThreadLocal<PasswordContext> CONTEXTS = 
+			new ThreadLocal<PasswordContext>() {
+		@Override
+		protected PasswordContext initialValue() {
+			return new PasswordContext();
+		}
+	};
+	
+	/**
+	 * The assertions as an array in iteration order, together with their 
+	 * metrics recorders, which are null when metrics are disabled, and the 
+	 * statistics from which their fail-fast execution order is planned.
+	 */
+	private static final class Plan {
+		final Set<PolicyAssertion> source;
+		final PolicyAssertion[] assertions;
+		final AssertionRecorder[] recorders;
+		final PolicyMetrics metrics;
+		final AdaptiveOrder adaptiveOrder;
+		
+		Plan(Set<PolicyAssertion> source, PolicyMetrics metrics) {
+			this.source = source;
+			this.assertions = source.toArray(new PolicyAssertion[source.size()]);
+			this.metrics = metrics;
+			this.adaptiveOrder = new AdaptiveOrder(this.assertions.length);
+			if (metrics.isEnabled()) {
+				recorders = new AssertionRecorder[this.assertions.length];
+				for (int i = 0; i < this.assertions.length; i++)
+					recorders[i] = metrics.getRecorder(this.assertions[i]);
+			} else {
+				recorders = null;
+			}
+		}
+	}
+	
+	private volatile PolicyMetrics metrics = PolicyMetrics.NO_OP;
+	private volatile Plan plan;
+	
 	/**
 	 * Evaluates the given password against each {@code PolicyAssertion} 
 	 * defined by the {@code PasswordPolicy} and returns the results.
 	 * <p>
 	 * This method returns both successful/passed assertions and failed 
-	 * assertions.
+	 * assertions. The password is held in a {@code PasswordContext} which 
+	 * is passed to each assertion's {@code verifyContext()}, so that values 
+	 * derived from the password, such as its hash, are computed only once.
 	 * 
 	 * @param password the password to evaluate against this policy
 	 * @return the set of {@code PolicyAssertion.Result}s
 	 */
 	public Set<Result> evaluate(String password) {
+		return evaluate((CharSequence) password);
+	}
+	
+	/**
+	 * Evaluates a password held in a {@code CharSequence} against each 
+	 * {@code PolicyAssertion} defined by the {@code PasswordPolicy}, so that 
+	 * assertions can read the password in place.
+	 * 
+	 * @param password the password to evaluate against this policy
+	 * @return the set of {@code PolicyAssertion.Result}s
+	 * @see #evaluate(String)
+	 */
+	public Set<Result> evaluate(CharSequence password) {
+		Plan current = getPlan();
+		PasswordContext context = new PasswordContext(password);
+		Set<Result> results = new LinkedHashSet<Result>();
+		for (int i = 0; i < current.assertions.length; i++)
+			results.add(verify(current, i, context));
+		return results;
+	}
+	
+	/**
+	 * Evaluates a password held in a {@code char[]} against each 
+	 * {@code PolicyAssertion} defined by the {@code PasswordPolicy}. The 
+	 * array is not copied, so the caller may clear it afterwards.
+	 * 
+	 * @param password the password to evaluate against this policy
+	 * @return the set of {@code PolicyAssertion.Result}s
+	 * @see #evaluate(String)
+	 */
+	public Set<Result> evaluateChars(char[] password) {
+		return evaluate(password == null ? null : CharBuffer.wrap(password));
+	}
+	
+	/**
+	 * Evaluates a UTF-8 encoded password held in the remaining bytes of a 
+	 * {@code ByteBuffer} against each {@code PolicyAssertion} defined by the 
+	 * {@code PasswordPolicy}, using 
+	 * {@code PolicyAssertion.verifyUtf8(ByteBuffer)}. The buffer's position 
+	 * is not changed.
+	 * 
+	 * @param password the UTF-8 encoded password to evaluate
+	 * @return the set of {@code PolicyAssertion.Result}s
+	 * @see #evaluate(String)
+	 */
+	public Set<Result> evaluateUtf8(ByteBuffer password) {
+		Plan current = getPlan();
 		Set<Result> results = new LinkedHashSet<Result>();
-		for (PolicyAssertion assertion : assertions)
-			results.add(assertion.verify(password));
+		for (int i = 0; i < current.assertions.length; i++) {
+			PolicyAssertion assertion = current.assertions[i];
+			if (current.recorders == null) {
+				results.add(assertion.verifyUtf8(password));
+				continue;
+			}
+			long start = System.nanoTime();
+			Result result = assertion.verifyUtf8(password);
+			current.recorders[i].record(System.nanoTime() - start, 
+					result.isSuccess());
+			results.add(result);
+		}
 		return results;
 	}
 	
+	/**
+	 * Evaluates the given password against each {@code PolicyAssertion} 
+	 * defined by the {@code PasswordPolicy}, and returns a bitmask of the 
+	 * failed assertions, in which bit {@code i} is set if the {@code i}th 
+	 * assertion in iteration order failed.
+	 * <p>
+	 * Unlike {@code evaluate()}, this method allocates no result set, so 
+	 * that it does not allocate at all if the assertions do not allocate in 
+	 * {@code verify()}. The assertions are snapshotted into an array on the 
+	 * first call, and again whenever the number of assertions changes. 
+	 * Passwords are held in a {@code PasswordContext} which is reused for 
+	 * each evaluation on the same thread, so a {@code char[]} can be 
+	 * evaluated by wrapping it in a {@code CharBuffer}.
+	 * 
+	 * @param password the password to evaluate against this policy
+	 * @return the bitmask of failed assertions, which is 0 if the password 
+	 * complies with this policy
+	 * @throws IllegalStateException if the policy defines more than 
+	 * {@code MAX_MASK_ASSERTIONS} assertions
+	 */
+	public long evaluateMask(CharSequence password) {
+		Plan current = getPlan();
+		if (current.assertions.length > MAX_MASK_ASSERTIONS)
+			throw new IllegalStateException(String.format(
+					"Cannot evaluate a bitmask of more than %d assertions.", 
+					MAX_MASK_ASSERTIONS));
+		PasswordContext context = acquireContext(password);
+		try {
+			long violations = 0;
+			for (int i = 0; i < current.assertions.length; i++) {
+				if (!verify(current, i, context).isSuccess())
+					violations |= 1L << i;
+			}
+			return violations;
+		} finally {
+			context.clear();
+		}
+	}
+	
+	/**
+	 * Evaluates the given password against the {@code PolicyAssertion}s 
+	 * defined by the {@code PasswordPolicy} in iteration order, stopping at 
+	 * the first failed assertion. Like {@code evaluateMask()}, this method 
+	 * does not allocate.
+	 * 
+	 * @param password the password to evaluate against this policy
+	 * @return the index of the first failed assertion in iteration order, 
+	 * or {@code NO_VIOLATION} if the password complies with this policy
+	 */
+	public int findFirstViolation(CharSequence password) {
+		Plan current = getPlan();
+		PasswordContext context = acquireContext(password);
+		try {
+			for (int i = 0; i < current.assertions.length; i++) {
+				if (!verify(current, i, context).isSuccess())
+					return i;
+			}
+			return NO_VIOLATION;
+		} finally {
+			context.clear();
+		}
+	}
+	
+	/**
+	 * Evaluates the given password against the {@code PolicyAssertion}s 
+	 * defined by the {@code PasswordPolicy}, stopping at the first failed 
+	 * assertion, and returns the index of that assertion in iteration order.
+	 * <p>
+	 * Unlike {@code findFirstViolation()}, the assertions are not run in 
+	 * iteration order, but in the order which minimizes the expected cost 
+	 * of an evaluation, given the cost and rejection rate of each assertion 
+	 * measured on a small sample of evaluations. For example, a cheap 
+	 * length check which rejects many passwords is run before an expensive 
+	 * lookup in a word list. The order is re-planned periodically as the 
+	 * measured costs and rejection rates change, so for a non-compliant 
+	 * password, which of its violations is found may vary between calls. 
+	 * Like {@code findFirstViolation()}, this method does not allocate.
+	 * 
+	 * @param password the password to evaluate against this policy
+	 * @return the index in iteration order of a failed assertion, or 
+	 * {@code NO_VIOLATION} if the password complies with this policy
+	 * @see #getExecutionOrder()
+	 */
+	public int findAnyViolation(CharSequence password) {
+		Plan current = getPlan();
+		AdaptiveOrder adaptiveOrder = current.adaptiveOrder;
+		int[] order = adaptiveOrder.getOrder();
+		PasswordContext context = acquireContext(password);
+		try {
+			if (adaptiveOrder.shouldSample())
+				return sampleViolation(current, order, context);
+			for (int i : order) {
+				if (!verify(current, i, context).isSuccess())
+					return i;
+			}
+			return NO_VIOLATION;
+		} finally {
+			context.clear();
+		}
+	}
+	
+	/**
+	 * Indicates whether the given password complies with this 
+	 * {@code PasswordPolicy}, running its assertions in the adaptive order 
+	 * of {@code findAnyViolation()} and stopping at the first failure.
+	 * 
+	 * @param password the password to evaluate against this policy
+	 * @return true if every assertion holds for the password, otherwise 
+	 * returns false
+	 * @see #findAnyViolation(CharSequence)
+	 */
+	public boolean isCompliant(CharSequence password) {
+		return findAnyViolation(password) == NO_VIOLATION;
+	}
+	
+	/**
+	 * Gets the assertions in the order in which {@code findAnyViolation()} 
+	 * and {@code isCompliant()} currently run them.
+	 * 
+	 * @return the list of {@code PolicyAssertion}s, in execution order
+	 */
+	public List<PolicyAssertion> getExecutionOrder() {
+		Plan current = getPlan();
+		List<PolicyAssertion> ordered = new ArrayList<PolicyAssertion>();
+		for (int i : current.adaptiveOrder.getOrder())
+			ordered.add(current.assertions[i]);
+		return ordered;
+	}
+	
+	/**
+	 * Runs every assertion on a sampled password to measure its cost and 
+	 * rejection rate, and returns the violation which the planned order 
+	 * would have found.
+	 */
+	private static int sampleViolation(Plan plan, int[] order, 
+			PasswordContext context) {
+		AdaptiveOrder adaptiveOrder = plan.adaptiveOrder;
+		int violation = NO_VIOLATION;
+		int violationRank = order.length;
+		for (int i = 0; i < plan.assertions.length; i++) {
+			long start = System.nanoTime();
+			boolean success = verify(plan, i, context).isSuccess();
+			adaptiveOrder.record(i, System.nanoTime() - start, !success);
+			if (success)
+				continue;
+			for (int rank = 0; rank < violationRank; rank++) {
+				if (order[rank] == i) {
+					violation = i;
+					violationRank = rank;
+					break;
+				}
+			}
+		}
+		adaptiveOrder.completeSample();
+		return violation;
+	}
+	
+	/**
+	 * Gets the assertions identified by a bitmask returned by 
+	 * {@code evaluateMask()}, e.g. to report the failed assertions once a 
+	 * password has been rejected.
+	 * 
+	 * @param mask the bitmask of assertion indexes
+	 * @return the list of {@code PolicyAssertion}s, in iteration order
+	 */
+	public List<PolicyAssertion> getAssertions(long mask) {
+		PolicyAssertion[] policy = getPlan().assertions;
+		List<PolicyAssertion> selected = new ArrayList<PolicyAssertion>();
+		for (int i = 0; i < policy.length && i < MAX_MASK_ASSERTIONS; i++) {
+			if ((mask & (1L << i)) != 0)
+				selected.add(policy[i]);
+		}
+		return selected;
+	}
+	
+	/**
+	 * Sets the {@code PolicyMetrics} which record the latency and outcome 
+	 * of each assertion evaluated by this {@code PasswordPolicy}. Metrics 
+	 * are disabled by default, i.e. set to {@code PolicyMetrics.NO_OP}, in 
+	 * which case assertions are not timed at all.
+	 * 
+	 * @param metrics the metrics to record to
+	 */
+	public void setMetrics(PolicyMetrics metrics) {
+		this.metrics = (metrics == null) ? PolicyMetrics.NO_OP : metrics;
+	}
+	
+	/**
+	 * Gets the {@code PolicyMetrics} which record the evaluation of this 
+	 * {@code PasswordPolicy}.
+	 * 
+	 * @return the metrics, which are {@code PolicyMetrics.NO_OP} if 
+	 * disabled
+	 */
+	public PolicyMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Discards the evaluation plan, so that the next evaluation copies the 
+	 * {@code assertions} again. Subclasses must call this method after 
+	 * replacing an assertion in the set in place, which the plan does not 
+	 * otherwise detect unless the number of assertions changes. The 
+	 * measured costs and rejection rates of the adaptive order are reset.
+	 */
+	protected void invalidatePlan() {
+		plan = null;
+	}
+	
+	/**
+	 * Gets the assertions as an array in iteration order, reusing the 
+	 * previous snapshot unless the set of assertions has been replaced, the 
+	 * number of assertions or the metrics have changed, or the plan has 
+	 * been invalidated.
+	 */
+	private Plan getPlan() {
+		Plan current = plan;
+		PolicyMetrics currentMetrics = metrics;
+		Set<PolicyAssertion> currentAssertions = assertions;
+		if (current == null || current.source != currentAssertions
+				|| current.assertions.length != currentAssertions.size()
+				|| current.metrics != currentMetrics) {
+			current = new Plan(currentAssertions, currentMetrics);
+			plan = current;
+		}
+		return current;
+	}
+	
+	private static Result verify(Plan plan, int i, PasswordContext context) {
+		if (plan.recorders == null)
+			return plan.assertions[i].verifyContext(context);
+		long start = System.nanoTime();
+		Result result = plan.assertions[i].verifyContext(context);
+		plan.recorders[i].record(System.nanoTime() - start, result.isSuccess());
+		return result;
+	}
+	
+	/**
+	 * Gets this thread's reusable {@code PasswordContext}, reset to hold the 
+	 * given password, or a new one if an assertion is evaluating a policy 
+	 * while the thread's context is in use. The context must be cleared 
+	 * once the evaluation is complete.
+	 */
+	private static PasswordContext acquireContext(CharSequence password) {
+		PasswordContext context = CONTEXTS.get();
+		if (context.isInUse())
+			return new PasswordContext(password);
+		return context.reset(password);
+	}
+	
+	/**
+	 * Evaluates the given password against each {@code PolicyAssertion} 
+	 * defined by the {@code PasswordPolicy} asynchronously, using the 
+	 * default {@code AsyncEvaluation}.
+	 * 
+	 * @param password the password to evaluate against this policy
+	 * @return a future completed with the set of 
+	 * {@code PolicyAssertion.Result}s
+	 * @see #evaluateAsync(String, AsyncEvaluation)
+	 */
+	public CompletableFuture<Set<Result>> evaluateAsync(String password) {
+		return evaluateAsync(password, AsyncEvaluation.DEFAULT);
+	}
+	
+	/**
+	 * Evaluates the given password against each {@code PolicyAssertion} 
+	 * defined by the {@code PasswordPolicy} asynchronously.
+	 * <p>
+	 * Every assertion is started at once through 
+	 * {@code PolicyAssertion.verifyAsync()} on the executor of the given 
+	 * {@code AsyncEvaluation}, so the evaluation takes as long as its 
+	 * slowest assertion rather than the sum of all of them, and a slow 
+	 * assertion does not hold up the calling thread. An assertion which 
+	 * exceeds the timeout or fails with an exception contributes the 
+	 * fallback result instead. Results are returned in iteration order, as 
+	 * by {@code evaluate()}, and the future never completes exceptionally. 
+	 * If metrics are enabled, each assertion is recorded with the time from 
+	 * its start until its result, or the fallback result, is available.
+	 * 
+	 * @param password the password to evaluate against this policy
+	 * @param evaluation the executor, timeout and fallback result to use
+	 * @return a future completed with the set of 
+	 * {@code PolicyAssertion.Result}s
+	 */
+	public CompletableFuture<Set<Result>> evaluateAsync(String password, 
+			AsyncEvaluation evaluation) {
+		final Plan current = getPlan();
+		final List<CompletableFuture<Result>> futures = 
+				new ArrayList<CompletableFuture<Result>>(current.assertions.length);
+		for (int i = 0; i < current.assertions.length; i++) {
+			final long start = System.nanoTime();
+			CompletableFuture<Result> future = 
+					evaluation.verify(current.assertions[i], password);
+			if (current.recorders != null) {
+				final AssertionRecorder recorder = current.recorders[i];
+				future = future.thenApply(new Function<Result, Result>() {
+					@Override
+					public Result apply(Result result) {
+						recorder.record(System.nanoTime() - start, result.isSuccess());
+						return result;
+					}
+				});
+			}
+			futures.add(future);
+		}
+		return CompletableFuture.allOf(futures.toArray(
+				new CompletableFuture<?>[futures.size()])).thenApply(
+						new Function<Void, Set<Result>>() {
+			@Override
+			public Set<Result> apply(Void ignored) {
+				Set<Result> results = new LinkedHashSet<Result>();
+				for (CompletableFuture<Result> future : futures)
+					results.add(future.join());
+				return results;
+			}
+		});
+	}
+	
+	/**
+	 * Evaluates every password in the given collection against each 
+	 * {@code PolicyAssertion} defined by the {@code PasswordPolicy}.
+	 * <p>
+	 * The passwords are split into batches of {@code BATCH_SIZE}, which are 
+	 * evaluated in parallel on the common {@code ForkJoinPool}. Each 
+	 * assertion verifies a whole batch at once through 
+	 * {@code PolicyAssertion.verifyAll()}, so that e.g. a 
+	 * {@code NotLeakedAssertion} can order its index probes. Assertions must 
+	 * therefore be safe for concurrent use.
+	 * 
+	 * @param passwords the passwords to evaluate against this policy
+	 * @return the {@code EvaluationResults}, indexed in the iteration order 
+	 * of the collection
+	 */
+	public EvaluationResults evaluateAll(Collection<String> passwords) {
+		return evaluateAll(passwords.iterator(), passwords.size());
+	}
+	
+	/**
+	 * Evaluates every password of the given stream against each 
+	 * {@code PolicyAssertion} defined by the {@code PasswordPolicy}. Each 
+	 * batch is evaluated as soon as it is read from the stream, and only a 
+	 * bounded number of batches wait to be evaluated at any time, so that 
+	 * the stream is never held in memory as a whole.
+	 * 
+	 * @param passwords the passwords to evaluate against this policy
+	 * @return the {@code EvaluationResults}, indexed in the encounter order 
+	 * of the stream
+	 * @see #evaluateAll(Collection)
+	 */
+	public EvaluationResults evaluateAll(Stream<String> passwords) {
+		Spliterator<String> spliterator = passwords.spliterator();
+		return evaluateAll(Spliterators.iterator(spliterator), 
+				spliterator.getExactSizeIfKnown());
+	}
+	
+	/**
+	 * Evaluates every password of the given iterator against each 
+	 * {@code PolicyAssertion} defined by the {@code PasswordPolicy}. Each 
+	 * batch is evaluated as soon as it is read from the iterator, as by 
+	 * {@code evaluateAll(Stream)}.
+	 * 
+	 * @param passwords the passwords to evaluate against this policy
+	 * @return the {@code EvaluationResults}, indexed in iteration order
+	 * @see #evaluateAll(Collection)
+	 */
+	public EvaluationResults evaluateAll(Iterator<String> passwords) {
+		return evaluateAll(passwords, -1);
+	}
+	
+	/**
+	 * Reads batches from the given iterator and submits each to the common 
+	 * {@code ForkJoinPool} as it is read, waiting for the oldest batch once 
+	 * {@code MAX_PENDING_BATCHES} are pending. The last batch is evaluated 
+	 * on the calling thread, so that a single batch is not handed off.
+	 */
+	private EvaluationResults evaluateAll(Iterator<String> passwords, 
+			long remaining) {
+		final Plan current = getPlan();
+		List<EvaluationResults.Column[]> batches = 
+				new ArrayList<EvaluationResults.Column[]>();
+		Deque<ForkJoinTask<?>> pending = new ArrayDeque<ForkJoinTask<?>>();
+		int size = 0;
+		while (passwords.hasNext()) {
+			final String[] batch = new String[(remaining < 0) 
+					? BATCH_SIZE : (int) Math.min(BATCH_SIZE, remaining)];
+			int read = 0;
+			while (read < batch.length && passwords.hasNext())
+				batch[read++] = passwords.next();
+			final int length = read;
+			remaining -= length;
+			size += length;
+			final EvaluationResults.Column[] columns = 
+					new EvaluationResults.Column[current.assertions.length];
+			batches.add(columns);
+			if (!passwords.hasNext()) {
+				evaluateBatch(current, batch, length, columns);
+				break;
+			}
+			if (pending.size() >= MAX_PENDING_BATCHES)
+				pending.removeFirst().join();
+			pending.addLast(ForkJoinPool.commonPool().submit(new Runnable() {
+				@Override
+				public void run() {
+					evaluateBatch(current, batch, length, columns);
+				}
+			}));
+		}
+		for (ForkJoinTask<?> task : pending)
+			task.join();
+		return new EvaluationResults(current.assertions, batches, size);
+	}
+	
+	private static void evaluateBatch(Plan current, String[] batch, 
+			int length, EvaluationResults.Column[] columns) {
+		PolicyAssertion[] policy = current.assertions;
+		Result[] results = new Result[length];
+		for (int i = 0; i < policy.length; i++) {
+			long start = System.nanoTime();
+			policy[i].verifyAll(batch, 0, length, results);
+			long nanos = System.nanoTime() - start;
+			columns[i] = new EvaluationResults.Column(results, length);
+			if (current.recorders != null)
+				current.recorders[i].recordBatch(nanos, length, 
+						columns[i].getNumFailures());
+		}
+	}
+	
 	/**
 	 * A convenience method to get only the {@code PolicyAssertion.Result}s 
 	 * which indicate a policy violation from a set of results.
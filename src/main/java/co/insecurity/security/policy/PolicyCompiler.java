@@ -0,0 +1,270 @@
+package co.insecurity.security.policy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.insecurity.security.policy.assertion.CharacterRulesAssertion;
+import co.insecurity.security.policy.assertion.CharacterRulesAssertion.CharacterClass;
+import co.insecurity.security.policy.assertion.IndexRegistry;
+import co.insecurity.security.policy.assertion.NotLeakedAssertion;
+import co.insecurity.security.policy.assertion.PasswordNormalizer;
+import co.insecurity.security.policy.assertion.PolicyAssertion;
+import co.insecurity.security.policy.index.IndexType;
+
+/**
+ * Compiles a declarative policy definition into a {@code PasswordPolicy}, 
+ * so that a policy need not be written as a subclass filling its 
+ * {@code assertions} by hand.
+ * <p>
+ * A definition is a properties file of the following keys, all optional:
+ * <pre>
+ * length.min                      minimum length 
+ * length.max                      maximum length 
+ * classes.required                e.g. LOWER_CASE, UPPER_CASE, DIGIT, OTHER 
+ * classes.min                     minimum number of character classes 
+ * sequences.maxRepeat             longest run of one character 
+ * sequences.maxConsecutive        longest run such as abcd or 4321 
+ * sequences.forbidden             e.g. qwerty, asdf 
+ * leaked.enabled                  true (default) or false 
+ * leaked.dataFile                 word list, or the default list if unset 
+ * leaked.falsePositiveProbability e.g. 0.001 
+ * leaked.maxNumPasswords          maximum number of passwords to load 
+ * leaked.ignoreCase               true or false 
+ * leaked.normalize                true to also catch leetspeak variants 
+ * leaked.exactMatching            true or false 
+ * leaked.indexType                e.g. BLOCKED_BLOOM_FILTER 
+ * leaked.shared                   true to share the index process-wide
+ * </pre>
+ * Every character-level rule is compiled into a single 
+ * {@code CharacterRulesAssertion}, which checks them all in one pass over 
+ * the code points of a password, and which the compiled policy evaluates 
+ * first. The {@code NotLeakedAssertion}, whose lookup is the most costly 
+ * check, is evaluated last, and only if the password has met every 
+ * character-level rule when evaluated with {@code findFirstViolation()}.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public final class PolicyCompiler {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(PolicyCompiler.class);
+	
+	private static final Set<String> KEYS = new HashSet<String>(Arrays.asList(
+			"length.min", "length.max", "classes.required", "classes.min",
+			"sequences.maxRepeat", "sequences.maxConsecutive",
+			"sequences.forbidden", "leaked.enabled", "leaked.dataFile",
+			"leaked.falsePositiveProbability", "leaked.maxNumPasswords",
+			"leaked.ignoreCase", "leaked.normalize", "leaked.exactMatching",
+			"leaked.indexType", "leaked.shared"));
+	
+	/**
+	 * A {@code PasswordPolicy} of the assertions compiled from a definition.
+	 */
+	private static final class CompiledPolicy extends PasswordPolicy {
+		
+		CompiledPolicy(Set<PolicyAssertion> assertions) {
+			this.assertions = assertions;
+		}
+	}
+	
+	private PolicyCompiler() {}
+	
+	/**
+	 * Compiles the policy defined in the given properties file.
+	 * 
+	 * @param definition the path to the UTF-8 encoded policy definition
+	 * @return the compiled {@code PasswordPolicy}
+	 * @throws IOException if the definition, or the word list it refers to, 
+	 * cannot be read
+	 * @throws IllegalArgumentException if the definition contains an unknown 
+	 * key or an invalid value
+	 */
+	public static PasswordPolicy compile(Path definition) throws IOException {
+		try (InputStream in = Files.newInputStream(definition)) {
+			return compile(in);
+		}
+	}
+	
+	/**
+	 * Compiles the policy defined in the properties read from the given 
+	 * stream, which is not closed.
+	 * 
+	 * @param definition the stream of the UTF-8 encoded policy definition
+	 * @return the compiled {@code PasswordPolicy}
+	 * @throws IOException if the definition, or the word list it refers to, 
+	 * cannot be read
+	 * @throws IllegalArgumentException if the definition contains an unknown 
+	 * key or an invalid value
+	 * @see #compile(Path)
+	 */
+	public static PasswordPolicy compile(InputStream definition)
+			throws IOException {
+		Properties properties = new Properties();
+		properties.load(new InputStreamReader(definition,
+				Charset.forName("UTF-8")));
+		return compile(properties);
+	}
+	
+	/**
+	 * Compiles the policy defined by the given properties.
+	 * 
+	 * @param definition the policy definition
+	 * @return the compiled {@code PasswordPolicy}
+	 * @throws IOException if the word list of the definition cannot be read
+	 * @throws IllegalArgumentException if the definition contains an unknown 
+	 * key or an invalid value
+	 * @see #compile(Path)
+	 */
+	public static PasswordPolicy compile(Properties definition)
+			throws IOException {
+		for (String key : definition.stringPropertyNames())
+			if (!KEYS.contains(key))
+				throw new IllegalArgumentException(String.format(
+						"Unknown policy key: %s", key));
+		Set<PolicyAssertion> assertions = new LinkedHashSet<PolicyAssertion>();
+		CharacterRulesAssertion rules = compileCharacterRules(definition);
+		if (rules != null)
+			assertions.add(rules);
+		if (getBoolean(definition, "leaked.enabled", true))
+			assertions.add(compileNotLeaked(definition));
+		LOG.info("Compiled policy of {} assertions.", assertions.size());
+		return new CompiledPolicy(assertions);
+	}
+	
+	private static CharacterRulesAssertion compileCharacterRules(
+			Properties definition) {
+		CharacterRulesAssertion.Builder builder =
+				new CharacterRulesAssertion.Builder();
+		boolean hasRules = false;
+		for (String key : KEYS) {
+			if (!key.startsWith("leaked.")
+					&& definition.getProperty(key) != null)
+				hasRules = true;
+		}
+		if (!hasRules)
+			return null;
+		builder.withMinLength(getInt(definition, "length.min"))
+				.withMaxLength(getInt(definition, "length.max"))
+				.withMinClasses(getInt(definition, "classes.min"))
+				.withMaxRepeat(getInt(definition, "sequences.maxRepeat"))
+				.withMaxConsecutive(getInt(definition,
+						"sequences.maxConsecutive"))
+				.withForbiddenSequences(getList(definition,
+						"sequences.forbidden"));
+		Set<CharacterClass> classes = EnumSet.noneOf(CharacterClass.class);
+		for (String name : getList(definition, "classes.required")) {
+			try {
+				classes.add(CharacterClass.valueOf(
+						name.toUpperCase(Locale.ROOT)));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(String.format(
+						"Invalid value of classes.required: %s", name), e);
+			}
+		}
+		builder.withRequiredClasses(classes);
+		return builder.build();
+	}
+	
+	private static NotLeakedAssertion compileNotLeaked(Properties definition)
+			throws IOException {
+		NotLeakedAssertion.Builder builder = new NotLeakedAssertion.Builder();
+		String dataFile = definition.getProperty("leaked.dataFile");
+		if (dataFile != null)
+			builder.withPasswordDataFile(dataFile.trim());
+		String probability = definition.getProperty(
+				"leaked.falsePositiveProbability");
+		if (probability != null) {
+			try {
+				builder.withFalsePositiveProbability(
+						Double.parseDouble(probability.trim()));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(String.format(
+						"Invalid value of leaked.falsePositiveProbability: %s",
+						probability), e);
+			}
+		}
+		String maxNumPasswords = definition.getProperty(
+				"leaked.maxNumPasswords");
+		if (maxNumPasswords != null) {
+			try {
+				builder.withMaxNumPasswords(
+						Long.parseLong(maxNumPasswords.trim()));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(String.format(
+						"Invalid value of leaked.maxNumPasswords: %s",
+						maxNumPasswords), e);
+			}
+		}
+		String indexType = definition.getProperty("leaked.indexType");
+		if (indexType != null) {
+			try {
+				builder.withIndexType(IndexType.valueOf(
+						indexType.trim().toUpperCase(Locale.ROOT)));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(String.format(
+						"Invalid value of leaked.indexType: %s", indexType), e);
+			}
+		}
+		builder.withIgnoreCase(getBoolean(definition, "leaked.ignoreCase", false))
+				.withExactMatching(getBoolean(definition,
+						"leaked.exactMatching", false));
+		if (getBoolean(definition, "leaked.normalize", false))
+			builder.withNormalizer(PasswordNormalizer.DEFAULT);
+		if (getBoolean(definition, "leaked.shared", false))
+			builder.withIndexRegistry(IndexRegistry.SHARED);
+		return builder.build();
+	}
+	
+	private static int getInt(Properties definition, String key) {
+		String value = definition.getProperty(key);
+		if (value == null)
+			return CharacterRulesAssertion.DISABLED;
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid value of %s: %s", key, value), e);
+		}
+	}
+	
+	private static boolean getBoolean(Properties definition, String key,
+			boolean defaultValue) {
+		String value = definition.getProperty(key);
+		if (value == null)
+			return defaultValue;
+		if (value.trim().equalsIgnoreCase("true"))
+			return true;
+		if (value.trim().equalsIgnoreCase("false"))
+			return false;
+		throw new IllegalArgumentException(String.format(
+				"Invalid value of %s: %s", key, value));
+	}
+	
+	private static List<String> getList(Properties definition, String key) {
+		String value = definition.getProperty(key);
+		if (value == null || value.trim().isEmpty())
+			return Collections.emptyList();
+		List<String> items = new ArrayList<String>();
+		for (String item : value.split(","))
+			if (!item.trim().isEmpty())
+				items.add(item.trim());
+		return items;
+	}
+}
\ No newline at end of file
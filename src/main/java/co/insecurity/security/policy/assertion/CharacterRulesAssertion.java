@@ -0,0 +1,452 @@
+package co.insecurity.security.policy.assertion;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.insecurity.security.policy.index.DictionaryAutomaton;
+
+/**
+ * A {@code PolicyAssertion} that checks every character-level rule of a 
+ * password policy in a single pass over the code points of the password: 
+ * its length bounds, the character classes it must contain, the longest 
+ * run of a repeated character and of consecutive characters such as 
+ * {@code abcd} or {@code 4321}, and the sequences it must not contain, such 
+ * as {@code qwerty}. Whereas a policy of one assertion per rule reads the 
+ * password once per rule, this assertion reads it once, scanning for the 
+ * forbidden sequences with a {@code DictionaryAutomaton} as it goes.
+ * <p>
+ * If the password breaks several rules, the {@code Result} of the first 
+ * broken rule in the order above is returned. Lengths are counted in UTF-16 
+ * units, as by {@code LengthAssertion}, and character classes as by 
+ * {@code PasswordContext}.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class CharacterRulesAssertion implements PolicyAssertion {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(CharacterRulesAssertion.class);
+	
+	/**
+	 * Flag indicating a disabled rule
+	 */
+	public static final int DISABLED = -1;
+	/**
+	 * A {@code PolicyAssertion.Result} indicating the password lacks a 
+	 * required character class, or too few character classes
+	 */
+	public static final Result MISSING_CHARACTER_CLASS =
+			new Result(false, "Password does not contain the required "
+					+ "character classes.");
+	/**
+	 * A {@code PolicyAssertion.Result} indicating the password repeats a 
+	 * character too many times in a row
+	 */
+	public static final Result REPEATED_CHARACTERS =
+			new Result(false, "Password repeats a character too many times.");
+	/**
+	 * A {@code PolicyAssertion.Result} indicating the password contains too 
+	 * long a run of consecutive characters
+	 */
+	public static final Result CONSECUTIVE_CHARACTERS =
+			new Result(false, "Password contains too many consecutive characters.");
+	/**
+	 * A {@code PolicyAssertion.Result} indicating the password contains a 
+	 * forbidden sequence
+	 */
+	public static final Result FORBIDDEN_SEQUENCE =
+			new Result(false, "Password contains a forbidden sequence.");
+	
+	/**
+	 * The classes of characters a password may be required to contain.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public enum CharacterClass {
+		/**
+		 * Lower case letters
+		 */
+		LOWER_CASE,
+		/**
+		 * Upper case and title case letters
+		 */
+		UPPER_CASE,
+		/**
+		 * Digits
+		 */
+		DIGIT,
+		/**
+		 * Every other character, e.g. symbols, punctuation and spaces
+		 */
+		OTHER;
+		
+		private final int bit = 1 << ordinal();
+		
+		static CharacterClass of(int c) {
+			if (Character.isLowerCase(c))
+				return LOWER_CASE;
+			if (Character.isUpperCase(c) || Character.isTitleCase(c))
+				return UPPER_CASE;
+			if (Character.isDigit(c))
+				return DIGIT;
+			return OTHER;
+		}
+	}
+	
+	/**
+	 * Builds a {@code CharacterRulesAssertion}, in which every rule is 
+	 * disabled unless configured.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder {
+		
+		private int minLength;
+		private int maxLength;
+		private Set<CharacterClass> requiredClasses;
+		private int minClasses;
+		private int maxRepeat;
+		private int maxConsecutive;
+		private List<String> forbiddenSequences;
+		
+		/**
+		 * Instantiates a new {@code CharacterRulesAssertion.Builder} with 
+		 * every rule disabled.
+		 */
+		public Builder() {
+			this.minLength = DISABLED;
+			this.maxLength = DISABLED;
+			this.requiredClasses = EnumSet.noneOf(CharacterClass.class);
+			this.minClasses = DISABLED;
+			this.maxRepeat = DISABLED;
+			this.maxConsecutive = DISABLED;
+			this.forbiddenSequences = new ArrayList<String>();
+		}
+		
+		/**
+		 * Returns an updated builder that will require passwords to have at 
+		 * least the given number of characters.
+		 * 
+		 * @param length the minimum length, or {@code DISABLED}
+		 * @return this {@code Builder}, updated with the specified length
+		 */
+		public Builder withMinLength(int length) {
+			this.minLength = length;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will require passwords to have at 
+		 * most the given number of characters.
+		 * 
+		 * @param length the maximum length, or {@code DISABLED}
+		 * @return this {@code Builder}, updated with the specified length
+		 */
+		public Builder withMaxLength(int length) {
+			this.maxLength = length;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will require passwords to contain 
+		 * a character of each of the given classes.
+		 * 
+		 * @param classes the required character classes
+		 * @return this {@code Builder}, updated with the specified classes
+		 */
+		public Builder withRequiredClasses(Collection<CharacterClass> classes) {
+			this.requiredClasses = classes.isEmpty()
+					? EnumSet.noneOf(CharacterClass.class)
+					: EnumSet.copyOf(classes);
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will require passwords to contain 
+		 * characters of at least the given number of character classes, 
+		 * e.g. 3 of the 4 classes.
+		 * 
+		 * @param numClasses the minimum number of classes, from 1 to 4, or 
+		 * {@code DISABLED}
+		 * @return this {@code Builder}, updated with the specified number
+		 */
+		public Builder withMinClasses(int numClasses) {
+			this.minClasses = numClasses;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will reject passwords repeating a 
+		 * character more than the given number of times in a row, e.g. 
+		 * {@code aaaa} if 3 are allowed.
+		 * 
+		 * @param numRepeats the longest run of one character allowed, or 
+		 * {@code DISABLED}
+		 * @return this {@code Builder}, updated with the specified limit
+		 */
+		public Builder withMaxRepeat(int numRepeats) {
+			this.maxRepeat = numRepeats;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will reject passwords containing 
+		 * a run of more than the given number of consecutive letters or 
+		 * digits, ascending or descending and regardless of case, e.g. 
+		 * {@code abcd} or {@code 4321} if 3 are allowed.
+		 * 
+		 * @param length the longest run of consecutive characters allowed, 
+		 * or {@code DISABLED}
+		 * @return this {@code Builder}, updated with the specified limit
+		 */
+		public Builder withMaxConsecutive(int length) {
+			this.maxConsecutive = length;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will reject passwords containing 
+		 * any of the given sequences, regardless of case.
+		 * 
+		 * @param sequences the forbidden sequences
+		 * @return this {@code Builder}, updated with the specified sequences
+		 */
+		public Builder withForbiddenSequences(Collection<String> sequences) {
+			this.forbiddenSequences = new ArrayList<String>(sequences);
+			return this;
+		}
+		
+		/**
+		 * Checks that valid rules have been set and returns a new 
+		 * {@code CharacterRulesAssertion} instance checking them.
+		 * 
+		 * @return a new {@code CharacterRulesAssertion} instance
+		 * @throws IllegalArgumentException if a rule is set to a value 
+		 * other than {@code DISABLED} or a positive integer, the maximum 
+		 * length is less than the minimum length, more than 4 character 
+		 * classes are required, or a forbidden sequence is empty
+		 */
+		public CharacterRulesAssertion build() {
+			for (int rule : new int[] {
+					minLength, maxLength, minClasses, maxRepeat, maxConsecutive })
+				if (rule != DISABLED && rule < 1)
+					throw new IllegalArgumentException(
+							"Rules must be positive, or DISABLED!");
+			if (minLength != DISABLED && maxLength != DISABLED
+					&& maxLength < minLength)
+				throw new IllegalArgumentException(
+						"Maximum length must not be less than minimum length!");
+			if (minClasses > CharacterClass.values().length)
+				throw new IllegalArgumentException(String.format(
+						"At most %d character classes can be required!",
+						CharacterClass.values().length));
+			DictionaryAutomaton forbidden = null;
+			if (!forbiddenSequences.isEmpty()) {
+				DictionaryAutomaton.Builder automaton =
+						new DictionaryAutomaton.Builder(true);
+				for (String sequence : forbiddenSequences) {
+					if (sequence.isEmpty())
+						throw new IllegalArgumentException(
+								"Forbidden sequences must not be empty!");
+					automaton.add(sequence);
+				}
+				forbidden = automaton.build();
+			}
+			int requiredMask = 0;
+			for (CharacterClass required : requiredClasses)
+				requiredMask |= required.bit;
+			return new CharacterRulesAssertion(minLength, maxLength,
+					requiredMask, minClasses, maxRepeat, maxConsecutive,
+					forbidden);
+		}
+	}
+	
+	private final int minLength;
+	private final int maxLength;
+	private final int requiredClasses;
+	private final int minClasses;
+	private final int maxRepeat;
+	private final int maxConsecutive;
+	private final DictionaryAutomaton forbiddenSequences;
+	
+	private CharacterRulesAssertion(int minLength, int maxLength,
+			int requiredClasses, int minClasses, int maxRepeat,
+			int maxConsecutive, DictionaryAutomaton forbiddenSequences) {
+		this.minLength = minLength;
+		this.maxLength = maxLength;
+		this.requiredClasses = requiredClasses;
+		this.minClasses = minClasses;
+		this.maxRepeat = maxRepeat;
+		this.maxConsecutive = maxConsecutive;
+		this.forbiddenSequences = forbiddenSequences;
+	}
+	
+	/**
+	 * Gets the minimum number of characters required.
+	 * 
+	 * @return the minimum length, or {@code DISABLED}
+	 */
+	public int getMinLength() {
+		return minLength;
+	}
+	
+	/**
+	 * Gets the maximum number of characters allowed.
+	 * 
+	 * @return the maximum length, or {@code DISABLED}
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+	
+	/**
+	 * Gets the character classes of which a password must contain a 
+	 * character.
+	 * 
+	 * @return the required character classes
+	 */
+	public Set<CharacterClass> getRequiredClasses() {
+		Set<CharacterClass> classes = EnumSet.noneOf(CharacterClass.class);
+		for (CharacterClass c : CharacterClass.values())
+			if ((requiredClasses & c.bit) != 0)
+				classes.add(c);
+		return classes;
+	}
+	
+	/**
+	 * Gets the minimum number of character classes required.
+	 * 
+	 * @return the minimum number of classes, or {@code DISABLED}
+	 */
+	public int getMinClasses() {
+		return minClasses;
+	}
+	
+	/**
+	 * Gets the longest run of a repeated character allowed.
+	 * 
+	 * @return the maximum number of repeats, or {@code DISABLED}
+	 */
+	public int getMaxRepeat() {
+		return maxRepeat;
+	}
+	
+	/**
+	 * Gets the longest run of consecutive characters allowed.
+	 * 
+	 * @return the maximum number of consecutive characters, or 
+	 * {@code DISABLED}
+	 */
+	public int getMaxConsecutive() {
+		return maxConsecutive;
+	}
+	
+	/**
+	 * Gets the number of distinct forbidden sequences.
+	 * 
+	 * @return the number of forbidden sequences
+	 */
+	public int getNumForbiddenSequences() {
+		return (forbiddenSequences == null) ? 0 : forbiddenSequences.getNumWords();
+	}
+	
+	/**
+	 * Indicates whether the given password meets every character-level 
+	 * rule of this {@code CharacterRulesAssertion}.
+	 * 
+	 * @return {@code PolicyAssertion.Result.NULL_VALUE} if the password is 
+	 * null, the {@code Result} of the first rule the password breaks, i.e. 
+	 * {@code LengthAssertion.INSUFFICIENT_LENGTH}, 
+	 * {@code LengthAssertion.EXCESSIVE_LENGTH}, 
+	 * {@code MISSING_CHARACTER_CLASS}, {@code REPEATED_CHARACTERS}, 
+	 * {@code CONSECUTIVE_CHARACTERS} or {@code FORBIDDEN_SEQUENCE}, otherwise 
+	 * returns {@code PolicyAssertion.Result.SUCCESS}
+	 */
+	@Override
+	public Result verify(String password) {
+		return verify((CharSequence) password);
+	}
+	
+	/**
+	 * Indicates whether the given password meets every character-level 
+	 * rule, reading it in place in a single pass.
+	 * 
+	 * @see #verify(String)
+	 */
+	@Override
+	public Result verify(CharSequence password) {
+		if (password == null) {
+			LOG.debug("Assertion Failed - password is null");
+			return Result.NULL_VALUE;
+		}
+		int length = password.length();
+		int classes = 0;
+		int repeat = 0;
+		int longestRepeat = 0;
+		int consecutive = 0;
+		int longestConsecutive = 0;
+		int step = 0;
+		int previous = -1;
+		int state = DictionaryAutomaton.START;
+		boolean forbidden = false;
+		for (int i = 0; i < length; ) {
+			int c = Character.codePointAt(password, i);
+			int next = i + Character.charCount(c);
+			classes |= CharacterClass.of(c).bit;
+			repeat = (c == previous) ? repeat + 1 : 1;
+			longestRepeat = Math.max(longestRepeat, repeat);
+			int delta = (previous < 0) ? 0
+					: Character.toLowerCase(c) - Character.toLowerCase(previous);
+			if ((delta == 1 || delta == -1) && Character.isLetterOrDigit(c)
+					&& Character.isLetterOrDigit(previous)) {
+				consecutive = (consecutive > 1 && delta == step)
+						? consecutive + 1 : 2;
+				step = delta;
+			} else {
+				consecutive = 1;
+			}
+			longestConsecutive = Math.max(longestConsecutive, consecutive);
+			if (forbiddenSequences != null && !forbidden) {
+				for (int j = i; j < next; j++)
+					state = forbiddenSequences.next(state, password.charAt(j));
+				forbidden = forbiddenSequences.getMatchLength(state) > 0;
+			}
+			previous = c;
+			i = next;
+		}
+		if (minLength != DISABLED && length < minLength) {
+			LOG.debug("Assertion Failed - did not meet minimum length");
+			return LengthAssertion.INSUFFICIENT_LENGTH;
+		}
+		if (maxLength != DISABLED && length > maxLength) {
+			LOG.debug("Assertion Failed - did not meet maximum length");
+			return LengthAssertion.EXCESSIVE_LENGTH;
+		}
+		if ((classes & requiredClasses) != requiredClasses
+				|| (minClasses != DISABLED && Integer.bitCount(classes) < minClasses)) {
+			LOG.debug("Assertion Failed - missing character classes");
+			return MISSING_CHARACTER_CLASS;
+		}
+		if (maxRepeat != DISABLED && longestRepeat > maxRepeat) {
+			LOG.debug("Assertion Failed - repeated characters");
+			return REPEATED_CHARACTERS;
+		}
+		if (maxConsecutive != DISABLED && longestConsecutive > maxConsecutive) {
+			LOG.debug("Assertion Failed - consecutive characters");
+			return CONSECUTIVE_CHARACTERS;
+		}
+		if (forbidden) {
+			LOG.debug("Assertion Failed - forbidden sequence");
+			return FORBIDDEN_SEQUENCE;
+		}
+		return Result.SUCCESS;
+	}
+}
\ No newline at end of file
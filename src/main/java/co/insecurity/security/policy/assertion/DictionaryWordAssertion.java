@@ -0,0 +1,290 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.insecurity.security.policy.index.DictionaryAutomaton;
+import co.insecurity.security.policy.index.WordListFormat;
+
+/**
+ * A {@code PolicyAssertion} that fails if a given password contains any word 
+ * of the configured word list, such as {@code Summer2024!}, which contains 
+ * the common password {@code summer}. Whereas {@code NotLeakedAssertion} 
+ * only catches passwords which are in the word list, this assertion also 
+ * catches passwords built around one.
+ * <p>
+ * During instantiation, the words of at least the minimum token length are 
+ * compiled into a {@code DictionaryAutomaton}, which then scans each 
+ * password once, in time proportional to its length however many words the 
+ * list holds. Shorter words are left out, since most passwords contain some 
+ * word of two or three letters. Compiling a large word list takes a while, 
+ * so the compiled automaton can be written to a file with 
+ * {@code writeAutomaton()}, and loaded on subsequent starts.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class DictionaryWordAssertion implements PolicyAssertion {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(DictionaryWordAssertion.class);
+	
+	/**
+	 * A {@code PolicyAssertion.Result} indicating the password contains a 
+	 * word of the word list
+	 */
+	public static final Result CONTAINS_DICTIONARY_WORD =
+			new Result(false, "Password contains a common word or password.");
+	/**
+	 * The default minimum length of the words checked
+	 */
+	public static final int DEFAULT_MIN_TOKEN_LENGTH = 4;
+	
+	/**
+	 * Builds a {@code DictionaryWordAssertion}.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder {
+		
+		private static final String DEFAULT_DATA_FILE = "passwords.dat";
+		
+		private String passwordDataFile;
+		private InputStream passwordDataStream;
+		private String automatonFile;
+		private int minTokenLength;
+		private boolean ignoreCase;
+		
+		/**
+		 * Instantiates a new {@code DictionaryWordAssertion.Builder}.
+		 * <p>
+		 * A call to {@code build()} on a default {@code Builder} instance 
+		 * will provide a {@code DictionaryWordAssertion} instance checking 
+		 * case insensitively for the words of at least 4 characters in the 
+		 * default password word list included in the distributed jar.
+		 */
+		public Builder() {
+			this.passwordDataFile = null;
+			this.passwordDataStream = null;
+			this.automatonFile = null;
+			this.minTokenLength = DEFAULT_MIN_TOKEN_LENGTH;
+			this.ignoreCase = true;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code DictionaryWordAssertion} with words from the given file.
+		 * <p>
+		 * The data file must be UTF-8 or US-ASCII encoded, and must contain 
+		 * one word per line. It may be gzip or Zstandard compressed.
+		 * 
+		 * @param dataFile the path to the word list
+		 * @return this {@code Builder}, updated with the specified data file
+		 */
+		public Builder withPasswordDataFile(String dataFile) {
+			this.passwordDataFile = dataFile;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code DictionaryWordAssertion} with words read from the given 
+		 * stream, which is closed by {@code build()}.
+		 * 
+		 * @param dataStream the stream of the word list
+		 * @return this {@code Builder}, updated with the specified stream
+		 */
+		public Builder withPasswordDataStream(InputStream dataStream) {
+			this.passwordDataStream = dataStream;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will load the compiled automaton 
+		 * from the given file, written by {@code writeAutomaton()}, rather 
+		 * than compiling the word list. The automaton must have been 
+		 * compiled with the same case-sensitivity setting as configured on 
+		 * this {@code Builder}; the word list and minimum token length are 
+		 * those it was compiled with.
+		 * 
+		 * @param automatonFile the path of the automaton file
+		 * @return this {@code Builder}, updated with the specified file
+		 */
+		public Builder withAutomatonFile(String automatonFile) {
+			this.automatonFile = automatonFile;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will only check for words of at 
+		 * least the given number of characters.
+		 * 
+		 * @param length the minimum length of the words checked
+		 * @return this {@code Builder}, updated with the specified length
+		 */
+		public Builder withMinTokenLength(int length) {
+			this.minTokenLength = length;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code DictionaryWordAssertion} with the provided setting for 
+		 * case-sensitivity.
+		 * 
+		 * @param shouldIgnoreCase whether words should be found regardless 
+		 * of case
+		 * @return this {@code Builder}, updated with the specified 
+		 * case-sensitivity setting
+		 */
+		public Builder withIgnoreCase(boolean shouldIgnoreCase) {
+			this.ignoreCase = shouldIgnoreCase;
+			return this;
+		}
+		
+		/**
+		 * Checks that valid configuration parameters have been set and 
+		 * returns a new {@code DictionaryWordAssertion} instance with those 
+		 * parameters.
+		 * 
+		 * @return a new {@code DictionaryWordAssertion} instance
+		 * @throws IOException if the word list or automaton file cannot be 
+		 * read, or the automaton does not match the configuration
+		 * @throws IllegalArgumentException if the minimum token length is 
+		 * less than 1
+		 */
+		public DictionaryWordAssertion build() throws IOException {
+			if (minTokenLength < 1)
+				throw new IllegalArgumentException(
+						"Minimum token length must be greater than 0!");
+			if (automatonFile != null) {
+				LOG.info("Loading dictionary automaton: {}", automatonFile);
+				DictionaryAutomaton automaton =
+						DictionaryAutomaton.read(Paths.get(automatonFile));
+				if (automaton.isCaseFolded() != ignoreCase)
+					throw new IOException(String.format("Dictionary "
+							+ "automaton is %scase folded, but case is %s: %s",
+							automaton.isCaseFolded() ? "" : "not ",
+							ignoreCase ? "ignored" : "significant",
+							automatonFile));
+				return new DictionaryWordAssertion(automaton);
+			}
+			LOG.info("Compiling dictionary automaton...");
+			DictionaryAutomaton.Builder automaton =
+					new DictionaryAutomaton.Builder(ignoreCase);
+			try (BufferedReader reader = getPasswordDataReader()) {
+				String word;
+				while ((word = reader.readLine()) != null)
+					if (word.codePointCount(0, word.length()) >= minTokenLength)
+						automaton.add(word);
+			}
+			DictionaryWordAssertion assertion =
+					new DictionaryWordAssertion(automaton.build());
+			LOG.info("Compiled {} words into {} bytes.",
+					assertion.getNumWords(),
+					assertion.automaton.getSizeInBytes());
+			return assertion;
+		}
+		
+		private BufferedReader getPasswordDataReader() throws IOException {
+			InputStream in;
+			if (passwordDataStream != null) {
+				in = passwordDataStream;
+			} else if (passwordDataFile != null) {
+				Path dataFilePath = Paths.get(passwordDataFile);
+				if (!Files.exists(dataFilePath))
+					throw new IOException(String.format(
+							"Password data file does not exist: %s",
+							passwordDataFile));
+				in = Files.newInputStream(dataFilePath);
+			} else {
+				in = DictionaryWordAssertion.class.getClassLoader()
+						.getResourceAsStream(DEFAULT_DATA_FILE);
+			}
+			return new BufferedReader(new InputStreamReader(
+					WordListFormat.decompress(in),
+					Charset.forName("UTF-8").newDecoder()
+							.onMalformedInput(CodingErrorAction.REPORT)
+							.onUnmappableCharacter(CodingErrorAction.REPORT)));
+		}
+	}
+	
+	private final DictionaryAutomaton automaton;
+	
+	private DictionaryWordAssertion(DictionaryAutomaton automaton) {
+		this.automaton = automaton;
+	}
+	
+	/**
+	 * Gets the number of distinct words checked for.
+	 * 
+	 * @return the number of words
+	 */
+	public int getNumWords() {
+		return automaton.getNumWords();
+	}
+	
+	/**
+	 * Indicates whether words are found regardless of case.
+	 * 
+	 * @return true if case is ignored
+	 */
+	public boolean getIgnoreCase() {
+		return automaton.isCaseFolded();
+	}
+	
+	/**
+	 * Writes the compiled automaton to the specified file, so that it can 
+	 * be loaded through {@code Builder.withAutomatonFile()} rather than 
+	 * compiled again.
+	 * 
+	 * @param automatonFile the path of the automaton file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeAutomaton(String automatonFile) throws IOException {
+		automaton.write(Paths.get(automatonFile));
+		LOG.info("Wrote dictionary automaton to {}", automatonFile);
+	}
+	
+	/**
+	 * Indicates whether the given password is free of the words in the 
+	 * word list.
+	 * 
+	 * @return {@code PolicyAssertion.Result.NULL_VALUE} if the password is 
+	 * null, {@code CONTAINS_DICTIONARY_WORD} if it contains a word of the 
+	 * word list, otherwise returns {@code PolicyAssertion.Result.SUCCESS}
+	 */
+	@Override
+	public Result verify(String password) {
+		return verify((CharSequence) password);
+	}
+	
+	/**
+	 * Indicates whether the given password is free of the words in the 
+	 * word list, scanning it without converting it to a {@code String}.
+	 * 
+	 * @see #verify(String)
+	 */
+	@Override
+	public Result verify(CharSequence password) {
+		if (password == null) {
+			LOG.debug("Assertion Failed - password is null");
+			return Result.NULL_VALUE;
+		}
+		if (automaton.matches(password)) {
+			LOG.debug("Assertion Failed - password contains a dictionary word");
+			return CONTAINS_DICTIONARY_WORD;
+		}
+		return Result.SUCCESS;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,295 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads and writes the versioned binary snapshot format used to persist the 
+ * bloom filter of a {@code NotLeakedAssertion}, so that the filter can be 
+ * built from the password data file once and then loaded on subsequent 
+ * starts without re-reading and re-hashing the word list.
+ * <p>
+ * A snapshot consists of a fixed header carrying the build parameters of the 
+ * filter and the identity of the data file it was built from, followed by the 
+ * words of the filter's bit set and a trailing CRC32 checksum over all 
+ * preceding bytes. All values are written in big-endian byte order:
+ * <pre>
+ * int     magic ('PCSN') 
+ * int     format version 
+ * double  false positive probability 
+ * byte    ignore case (0 or 1) 
+ * long    maximum number of passwords 
+ * long    number of passwords in the filter 
+ * long    data file size in bytes, or -1 for the default data file 
+ * long    data file modification time in ms, or -1 for the default data file 
+ * int     length of the UTF-8 encoded data file path, 0 for the default 
+ * byte[]  UTF-8 encoded data file path 
+ * int     filter size in bits 
+ * int     number of hash functions 
+ * int     number of bit set words 
+ * long[]  bit set words 
+ * long    CRC32 of all preceding bytes
+ * </pre>
+ * Snapshots are loaded through a read-only memory-mapped {@code FileChannel}, 
+ * and are rejected if the checksum does not match, if the format version is 
+ * unknown, or if the recorded build parameters do not match those requested.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+class FilterSnapshot {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(FilterSnapshot.class);
+	
+	static final int MAGIC = 0x5043534E;
+	static final int VERSION = 2;
+	static final long DEFAULT_DATA_FILE_MARKER = -1L;
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	final double fpProbability;
+	final boolean ignoreCase;
+	final long maxNumPasswords;
+	final long numPasswords;
+	final String passwordDataFile;
+	final long dataFileSize;
+	final long dataFileModified;
+	final BloomFilter<String> filter;
+	
+	private FilterSnapshot(double fpProbability, boolean ignoreCase,
+			long maxNumPasswords, long numPasswords, String passwordDataFile,
+			long dataFileSize, long dataFileModified,
+			BloomFilter<String> filter) {
+		this.fpProbability = fpProbability;
+		this.ignoreCase = ignoreCase;
+		this.maxNumPasswords = maxNumPasswords;
+		this.numPasswords = numPasswords;
+		this.passwordDataFile = passwordDataFile;
+		this.dataFileSize = dataFileSize;
+		this.dataFileModified = dataFileModified;
+		this.filter = filter;
+	}
+	
+	/**
+	 * Writes a snapshot of the given filter and its build parameters to the 
+	 * specified file. The snapshot is written to a temporary file in the same 
+	 * directory and then moved into place, so that readers never observe a 
+	 * partially written snapshot.
+	 * 
+	 * @param snapshotFile the path of the snapshot file to write
+	 * @param assertion the {@code NotLeakedAssertion} whose parameters are 
+	 * recorded in the snapshot
+	 * @param filter the bloom filter to persist
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	static void write(Path snapshotFile, NotLeakedAssertion assertion,
+			BloomFilter<String> filter) throws IOException {
+		String dataFile = assertion.getPasswordDataFile();
+		long dataFileSize = DEFAULT_DATA_FILE_MARKER;
+		long dataFileModified = DEFAULT_DATA_FILE_MARKER;
+		if (dataFile != null) {
+			Path dataFilePath = Paths.get(dataFile);
+			dataFileSize = Files.size(dataFilePath);
+			dataFileModified = Files.getLastModifiedTime(dataFilePath).toMillis();
+		}
+		byte[] dataFileBytes = (dataFile == null)
+				? new byte[0] : dataFile.getBytes(UTF_8);
+		long[] words = filter.getBitSet().toLongArray();
+		
+		ByteBuffer header = ByteBuffer.allocate(4 + 4 + 8 + 1 + 8 + 8 + 8 + 8
+				+ 4 + dataFileBytes.length + 4 + 4 + 4);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putDouble(assertion.getFalsePositiveProbability());
+		header.put((byte) (assertion.getIgnoreCase() ? 1 : 0));
+		header.putLong(assertion.getMaxNumPasswords());
+		header.putLong(assertion.getNumPasswords());
+		header.putLong(dataFileSize);
+		header.putLong(dataFileModified);
+		header.putInt(dataFileBytes.length);
+		header.put(dataFileBytes);
+		header.putInt(filter.getSize());
+		header.putInt(filter.getHashes());
+		header.putInt(words.length);
+		header.flip();
+		
+		ByteBuffer payload = ByteBuffer.allocate(words.length * 8);
+		payload.asLongBuffer().put(words);
+		
+		CRC32 crc = new CRC32();
+		crc.update(header.duplicate());
+		crc.update(payload.duplicate());
+		ByteBuffer trailer = ByteBuffer.allocate(8);
+		trailer.putLong(crc.getValue());
+		trailer.flip();
+		
+		Path parent = snapshotFile.toAbsolutePath().getParent();
+		Path tmpFile = Files.createTempFile(parent,
+				snapshotFile.getFileName().toString(), ".tmp");
+		try (FileChannel channel = FileChannel.open(tmpFile,
+				StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer[] buffers = new ByteBuffer[] {header, payload, trailer};
+			while (trailer.hasRemaining())
+				channel.write(buffers);
+			channel.force(true);
+		} catch (IOException e) {
+			Files.deleteIfExists(tmpFile);
+			throw e;
+		}
+		Files.move(tmpFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		LOG.info("Wrote filter snapshot with {} passwords to {}",
+				assertion.getNumPasswords(), snapshotFile);
+	}
+	
+	/**
+	 * Reads a snapshot from the specified file through a read-only memory 
+	 * mapping, verifying its magic number, format version and checksum.
+	 * 
+	 * @param snapshotFile the path of the snapshot file to read
+	 * @return the decoded {@code FilterSnapshot}
+	 * @throws IOException if the snapshot cannot be read, or is corrupt, 
+	 * truncated or of an unsupported format version
+	 */
+	static FilterSnapshot read(Path snapshotFile) throws IOException {
+		if (!Files.exists(snapshotFile))
+			throw new IOException(String.format(
+					"Filter snapshot does not exist: %s", snapshotFile));
+		try (FileChannel channel = FileChannel.open(snapshotFile,
+				StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length > Integer.MAX_VALUE)
+				throw new IOException(String.format(
+						"Filter snapshot is too large: %s", snapshotFile));
+			MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, length);
+			try {
+				return decode(buffer, snapshotFile);
+			} catch (java.nio.BufferUnderflowException
+					| IndexOutOfBoundsException
+					| IllegalArgumentException e) {
+				throw new IOException(String.format(
+						"Filter snapshot is truncated or malformed: %s",
+						snapshotFile), e);
+			}
+		}
+	}
+	
+	private static FilterSnapshot decode(ByteBuffer buffer, Path snapshotFile)
+			throws IOException {
+		if (buffer.remaining() < 16 || buffer.getInt(0) != MAGIC)
+			throw new IOException(String.format(
+					"Not a filter snapshot: %s", snapshotFile));
+		int version = buffer.getInt(4);
+		if (version != VERSION)
+			throw new IOException(String.format(
+					"Unsupported filter snapshot version %d (expected %d): %s",
+					version, VERSION, snapshotFile));
+		
+		int checksummed = buffer.limit() - 8;
+		ByteBuffer body = buffer.duplicate();
+		body.limit(checksummed);
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		if (crc.getValue() != buffer.getLong(checksummed))
+			throw new IOException(String.format(
+					"Filter snapshot checksum mismatch: %s", snapshotFile));
+		
+		buffer.position(8);
+		double fpProbability = buffer.getDouble();
+		boolean ignoreCase = buffer.get() != 0;
+		long maxNumPasswords = buffer.getLong();
+		long numPasswords = buffer.getLong();
+		long dataFileSize = buffer.getLong();
+		long dataFileModified = buffer.getLong();
+		byte[] dataFileBytes = new byte[buffer.getInt()];
+		buffer.get(dataFileBytes);
+		String dataFile = (dataFileBytes.length == 0)
+				? null : new String(dataFileBytes, UTF_8);
+		int size = buffer.getInt();
+		int hashes = buffer.getInt();
+		int numWords = buffer.getInt();
+		if (buffer.position() + (long) numWords * 8 != checksummed)
+			throw new IOException(String.format(
+					"Filter snapshot length does not match its header: %s",
+					snapshotFile));
+		LongBuffer words = buffer.slice().asLongBuffer();
+		words.limit(numWords);
+		
+		BloomFilter<String> filter = new FilterBuilder(size, hashes)
+				.buildBloomFilter();
+		filter.getBitSet().or(BitSet.valueOf(words));
+		return new FilterSnapshot(fpProbability, ignoreCase, maxNumPasswords,
+				numPasswords, dataFile, dataFileSize, dataFileModified, filter);
+	}
+	
+	/**
+	 * Verifies that this snapshot was built with the given parameters, and 
+	 * that the data file it was built from has not changed since.
+	 * 
+	 * @param fpProbability the requested false positive probability
+	 * @param ignoreCase the requested case-sensitivity setting
+	 * @param maxNumPasswords the requested maximum number of passwords
+	 * @param passwordDataFile the requested data file, or {@code null} for 
+	 * the default data file
+	 * @param snapshotFile the path the snapshot was read from, for messages
+	 * @throws IOException if the snapshot does not match the parameters, or 
+	 * if the data file has been modified since the snapshot was written
+	 */
+	void verifyMatches(double fpProbability, boolean ignoreCase,
+			long maxNumPasswords, String passwordDataFile, Path snapshotFile)
+					throws IOException {
+		if (Double.compare(this.fpProbability, fpProbability) != 0
+				|| this.ignoreCase != ignoreCase
+				|| this.maxNumPasswords != maxNumPasswords
+				|| !equal(this.passwordDataFile, passwordDataFile)) {
+			String msg = String.format("Filter snapshot %s was built with "
+					+ "fpProbability=%s, ignoreCase=%s, maxNumPasswords=%d, "
+					+ "dataFile=%s but fpProbability=%s, ignoreCase=%s, "
+					+ "maxNumPasswords=%d, dataFile=%s was requested.",
+					snapshotFile,
+					this.fpProbability, this.ignoreCase, this.maxNumPasswords,
+					this.passwordDataFile,
+					fpProbability, ignoreCase, maxNumPasswords,
+					passwordDataFile);
+			LOG.error(msg);
+			throw new IOException(msg);
+		}
+		if (passwordDataFile != null) {
+			Path dataFilePath = Paths.get(passwordDataFile);
+			if (Files.exists(dataFilePath)
+					&& (Files.size(dataFilePath) != dataFileSize
+					|| Files.getLastModifiedTime(dataFilePath).toMillis()
+					!= dataFileModified)) {
+				String msg = String.format("Filter snapshot %s is stale: "
+						+ "password data file %s has changed since the "
+						+ "snapshot was written.",
+						snapshotFile, passwordDataFile);
+				LOG.error(msg);
+				throw new IOException(msg);
+			}
+		}
+	}
+	
+	private static boolean equal(String a, String b) {
+		return (a == null) ? (b == null) : a.equals(b);
+	}
+}
\ No newline at end of file
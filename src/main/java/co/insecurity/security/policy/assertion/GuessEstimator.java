@@ -0,0 +1,726 @@
+package co.insecurity.security.policy.assertion;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Estimates the number of guesses an attacker would need to find a 
+ * password, in the manner of zxcvbn: the password is matched against 
+ * ranked dictionary words (including their leet and upper case variants), 
+ * keyboard patterns on a QWERTY layout, sequences such as {@code abcd} or 
+ * {@code 9753}, repeats, dates and years, and the sequence of matches and 
+ * brute-forced gaps covering the password which needs the fewest guesses 
+ * is found by dynamic programming.
+ * <p>
+ * Every table is precomputed: the dictionary ranks are held in an open 
+ * addressing table of 64-bit fingerprints, and the keyboard adjacency in a 
+ * byte per pair of characters. The matches and the dynamic programming 
+ * state are held in primitive arrays taken from a small lock-free pool and 
+ * returned after each estimate, so estimating does not allocate, whether 
+ * on long-lived threads or on a virtual thread per request, unless more 
+ * threads estimate at once than the pool holds. Only the first 
+ * {@code MAX_LENGTH} characters are matched; each further character 
+ * multiplies the estimate by the brute force cardinality.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+final class GuessEstimator {
+	
+	/**
+	 * The number of leading characters of a password which are matched
+	 */
+	static final int MAX_LENGTH = 64;
+	/**
+	 * The length of the longest dictionary word ranked
+	 */
+	static final int MAX_WORD_LENGTH = 32;
+	
+	private static final double BRUTEFORCE_CARDINALITY = 10;
+	private static final double MIN_GUESSES_BEFORE_GROWING_SEQUENCE = 10000;
+	private static final double MIN_SUBMATCH_GUESSES_SINGLE_CHAR = 10;
+	private static final double MIN_SUBMATCH_GUESSES_MULTI_CHAR = 50;
+	private static final int MAX_SEQUENCE_DELTA = 5;
+	private static final int MIN_YEAR = 1000;
+	private static final int MAX_YEAR = 2050;
+	private static final int MIN_YEAR_SPACE = 20;
+	private static final int REFERENCE_YEAR =
+			Calendar.getInstance().get(Calendar.YEAR);
+	private static final String DATE_SEPARATORS = " /\\_.-";
+	/**
+	 * The positions at which dates without separators, of 4 to 8 digits, 
+	 * are split into three numbers
+	 */
+	private static final int[][] DATE_SPLITS = {
+		{}, {}, {}, {},
+		{1, 2, 2, 3},
+		{1, 3, 2, 3},
+		{1, 2, 2, 4, 4, 5},
+		{1, 3, 2, 3, 4, 5, 4, 6},
+		{2, 4, 4, 6}
+	};
+	/**
+	 * The rows of a QWERTY keyboard, unshifted and shifted; each row but 
+	 * the first is offset by one key, so that the keys adjacent to the key 
+	 * at (x, y) are those at (x - 1, y), (x, y - 1), (x + 1, y - 1), 
+	 * (x + 1, y), (x, y + 1) and (x - 1, y + 1)
+	 */
+	private static final String[][] KEYBOARD_ROWS = {
+		{"`1234567890-=", "~!@#$%^&*()_+"},
+		{"qwertyuiop[]\\", "QWERTYUIOP{}|"},
+		{"asdfghjkl;'", "ASDFGHJKL:\""},
+		{"zxcvbnm,./", "ZXCVBNM<>?"}
+	};
+	private static final int[][] KEYBOARD_DIRECTIONS = {
+		{-1, 0}, {0, -1}, {1, -1}, {1, 0}, {0, 1}, {-1, 1}
+	};
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	/**
+	 * The direction from one key to an adjacent key, plus one, indexed by 
+	 * the pair of characters, or 0 if the keys are not adjacent
+	 */
+	private static final byte[] KEYBOARD = new byte[128 * 128];
+	private static final boolean[] SHIFTED = new boolean[128];
+	private static final double KEYBOARD_STARTING_POSITIONS;
+	private static final double[] KEYBOARD_DEGREE_POWERS =
+			new double[MAX_LENGTH + 1];
+	private static final boolean[] LEET_TARGET = new boolean[128];
+	private static final double[][] BINOMIALS =
+			new double[MAX_LENGTH + 1][MAX_LENGTH + 1];
+	private static final double[] FACTORIALS = new double[MAX_LENGTH + 1];
+	private static final double[] POWERS_OF_TEN = new double[MAX_LENGTH + 1];
+	private static final double[] SEQUENCE_PENALTIES =
+			new double[MAX_LENGTH + 1];
+	
+	static {
+		int[] keyX = new int[128];
+		int[] keyY = new int[128];
+		int numKeys = 0;
+		for (int y = 0; y < KEYBOARD_ROWS.length; y++) {
+			int offset = (y == 0) ? 0 : 1;
+			for (int shift = 0; shift < 2; shift++) {
+				String row = KEYBOARD_ROWS[y][shift];
+				for (int i = 0; i < row.length(); i++) {
+					char c = row.charAt(i);
+					keyX[c] = offset + i;
+					keyY[c] = y + 1;
+					SHIFTED[c] = (shift == 1);
+					numKeys++;
+				}
+			}
+		}
+		long numNeighbors = 0;
+		for (char a = 0; a < 128; a++) {
+			if (keyY[a] == 0)
+				continue;
+			for (char b = 0; b < 128; b++) {
+				if (keyY[b] == 0)
+					continue;
+				for (int d = 0; d < KEYBOARD_DIRECTIONS.length; d++) {
+					if (keyX[b] - keyX[a] == KEYBOARD_DIRECTIONS[d][0]
+							&& keyY[b] - keyY[a] == KEYBOARD_DIRECTIONS[d][1]) {
+						KEYBOARD[a * 128 + b] = (byte) (d + 1);
+						if (!SHIFTED[b])
+							numNeighbors++;
+					}
+				}
+			}
+		}
+		KEYBOARD_STARTING_POSITIONS = numKeys;
+		double averageDegree = (double) numNeighbors / numKeys;
+		for (int t = 0; t <= MAX_LENGTH; t++)
+			KEYBOARD_DEGREE_POWERS[t] = Math.pow(averageDegree, t);
+		for (int c = 0; c < 128; c++) {
+			int letter = PasswordNormalizer.substitute(c);
+			if (letter != c && !Character.isLetter(c))
+				LEET_TARGET[letter] = true;
+		}
+		FACTORIALS[0] = 1;
+		POWERS_OF_TEN[0] = 1;
+		SEQUENCE_PENALTIES[0] = 1;
+		for (int n = 0; n <= MAX_LENGTH; n++) {
+			if (n > 0) {
+				FACTORIALS[n] = FACTORIALS[n - 1] * n;
+				POWERS_OF_TEN[n] = POWERS_OF_TEN[n - 1] * BRUTEFORCE_CARDINALITY;
+				SEQUENCE_PENALTIES[n] = SEQUENCE_PENALTIES[n - 1]
+						* MIN_GUESSES_BEFORE_GROWING_SEQUENCE;
+			}
+			BINOMIALS[n][0] = 1;
+			for (int k = 1; k <= n; k++)
+				BINOMIALS[n][k] = BINOMIALS[n - 1][k - 1]
+						+ ((k < n) ? BINOMIALS[n - 1][k] : 0);
+		}
+	}
+	
+	/**
+	 * The arrays in which one estimate matches a password
+	 */
+	private static final class Scratch {
+		
+		final char[] chars = new char[MAX_LENGTH];
+		final char[] lower = new char[MAX_LENGTH];
+		final char[] folded = new char[MAX_LENGTH];
+		final int[] digitRuns = new int[MAX_LENGTH + 1];
+		final double[] matches = new double[MAX_LENGTH * MAX_LENGTH];
+		final double[] products = new double[(MAX_LENGTH + 1) * (MAX_LENGTH + 1)];
+	}
+	
+	/**
+	 * The pooled scratch arrays, of which each thread first tries the slot 
+	 * its id hashes to, so that concurrent threads seldom contend
+	 */
+	private static final AtomicReferenceArray<Scratch> SCRATCH_POOL =
+			new AtomicReferenceArray<Scratch>(Integer.highestOneBit(
+					Runtime.getRuntime().availableProcessors() * 4 - 1));
+	private static final int MAX_SCRATCH_PROBES = 4;
+	
+	private static Scratch takeScratch() {
+		int mask = SCRATCH_POOL.length() - 1;
+		int slot = (int) Thread.currentThread().getId();
+		for (int i = 0; i < MAX_SCRATCH_PROBES; i++) {
+			Scratch scratch = SCRATCH_POOL.getAndSet((slot + i) & mask, null);
+			if (scratch != null)
+				return scratch;
+		}
+		return new Scratch();
+	}
+	
+	private static void returnScratch(Scratch scratch) {
+		int mask = SCRATCH_POOL.length() - 1;
+		int slot = (int) Thread.currentThread().getId();
+		for (int i = 0; i < MAX_SCRATCH_PROBES; i++) {
+			if (SCRATCH_POOL.compareAndSet((slot + i) & mask, null, scratch))
+				return;
+		}
+	}
+	
+	/**
+	 * Builds a {@code GuessEstimator}, ranking words by the order in which 
+	 * they are added.
+	 */
+	static final class Builder {
+		
+		private long[] keys = new long[1 << 10];
+		private int[] ranks = new int[1 << 10];
+		private int size;
+		private int numWords;
+		private int maxWordLength;
+		
+		/**
+		 * Adds the given word, ranked after every word added before it, 
+		 * unless it has been added already or is longer than 
+		 * {@code MAX_WORD_LENGTH}.
+		 * 
+		 * @return this {@code Builder}
+		 */
+		Builder add(String word) {
+			int length = word.length();
+			if (length == 0 || length > MAX_WORD_LENGTH)
+				return this;
+			long lower = FNV_OFFSET;
+			long folded = FNV_OFFSET;
+			for (int i = 0; i < length; i++) {
+				char c = Character.toLowerCase(word.charAt(i));
+				lower = (lower ^ c) * FNV_PRIME;
+				folded = (folded ^ fold(c)) * FNV_PRIME;
+			}
+			int rank = numWords + 1;
+			boolean added = insert(fingerprint(lower), rank);
+			if (folded != lower)
+				added |= insert(fingerprint(folded), rank);
+			if (added) {
+				numWords++;
+				maxWordLength = Math.max(maxWordLength, length);
+			}
+			return this;
+		}
+		
+		private boolean insert(long key, int rank) {
+			if (2 * (size + 1) > keys.length)
+				grow();
+			int mask = keys.length - 1;
+			int slot = (int) key & mask;
+			while (keys[slot] != 0) {
+				if (keys[slot] == key)
+					return false;
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			ranks[slot] = rank;
+			size++;
+			return true;
+		}
+		
+		private void grow() {
+			long[] oldKeys = keys;
+			int[] oldRanks = ranks;
+			keys = new long[2 * oldKeys.length];
+			ranks = new int[2 * oldRanks.length];
+			int mask = keys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] == 0)
+					continue;
+				int slot = (int) oldKeys[i] & mask;
+				while (keys[slot] != 0)
+					slot = (slot + 1) & mask;
+				keys[slot] = oldKeys[i];
+				ranks[slot] = oldRanks[i];
+			}
+		}
+		
+		GuessEstimator build() {
+			return new GuessEstimator(keys, ranks, numWords, maxWordLength);
+		}
+	}
+	
+	private final long[] keys;
+	private final int[] ranks;
+	private final int mask;
+	private final int numWords;
+	private final int maxWordLength;
+	
+	private GuessEstimator(long[] keys, int[] ranks, int numWords,
+			int maxWordLength) {
+		this.keys = keys;
+		this.ranks = ranks;
+		this.mask = keys.length - 1;
+		this.numWords = numWords;
+		this.maxWordLength = maxWordLength;
+	}
+	
+	/**
+	 * Gets the number of distinct words ranked.
+	 */
+	int getNumWords() {
+		return numWords;
+	}
+	
+	/**
+	 * Gets the approximate number of bytes used by the rank table.
+	 */
+	long getSizeInBytes() {
+		return 12L * keys.length;
+	}
+	
+	/**
+	 * Estimates the number of guesses needed to find the given password.
+	 * 
+	 * @param password the password, which must not be null
+	 * @return the estimated number of guesses, at least 1
+	 */
+	double estimate(CharSequence password) {
+		int length = password.length();
+		if (length == 0)
+			return 1;
+		int n = Math.min(length, MAX_LENGTH);
+		Scratch scratch = takeScratch();
+		try {
+			return estimate(password, length, n, scratch);
+		} finally {
+			returnScratch(scratch);
+		}
+	}
+	
+	private double estimate(CharSequence password, int length, int n,
+			Scratch scratch) {
+		char[] chars = scratch.chars;
+		for (int i = 0; i < n; i++) {
+			char c = password.charAt(i);
+			chars[i] = c;
+			scratch.lower[i] = Character.toLowerCase(c);
+			scratch.folded[i] = fold(scratch.lower[i]);
+		}
+		scratch.digitRuns[n] = 0;
+		for (int i = n - 1; i >= 0; i--)
+			scratch.digitRuns[i] = isDigit(chars[i])
+					? scratch.digitRuns[i + 1] + 1 : 0;
+		double[] matches = scratch.matches;
+		for (int i = 0; i < n; i++)
+			Arrays.fill(matches, i * MAX_LENGTH + i, i * MAX_LENGTH + n,
+					Double.POSITIVE_INFINITY);
+		matchDictionary(scratch, n);
+		matchSequences(chars, n, matches);
+		matchKeyboard(chars, n, matches);
+		matchDates(chars, scratch.digitRuns, n, matches);
+		// repeats last, so that the repeated unit may be any other match
+		matchRepeats(chars, n, matches);
+		double guesses = minimumGuesses(matches, scratch.products, n);
+		for (int i = n; i < length; i++)
+			guesses *= BRUTEFORCE_CARDINALITY;
+		return guesses;
+	}
+	
+	/**
+	 * Finds the sequence of matches covering the password which needs the 
+	 * fewest guesses, where a sequence of {@code l} matches needs 
+	 * {@code l!} times the product of their guesses, plus a penalty 
+	 * growing with {@code l}, and any gap is brute forced.
+	 */
+	private static double minimumGuesses(double[] matches, double[] products,
+			int n) {
+		int stride = MAX_LENGTH + 1;
+		// products[p * stride + l]: the fewest guesses of the product of l
+		// matches covering the first p characters
+		for (int p = 0; p <= n; p++)
+			Arrays.fill(products, p * stride, p * stride + n + 1,
+					Double.POSITIVE_INFINITY);
+		products[0] = 1;
+		for (int p = 1; p <= n; p++) {
+			for (int i = 0; i < p; i++) {
+				int span = p - i;
+				double guesses = Math.min(
+						matches[i * MAX_LENGTH + p - 1], bruteforce(span));
+				if (span < n)
+					guesses = Math.max(guesses, (span == 1)
+							? MIN_SUBMATCH_GUESSES_SINGLE_CHAR
+							: MIN_SUBMATCH_GUESSES_MULTI_CHAR);
+				for (int l = 1; l <= i + 1; l++) {
+					double product = products[i * stride + l - 1] * guesses;
+					if (product < products[p * stride + l])
+						products[p * stride + l] = product;
+				}
+			}
+		}
+		double minimum = Double.POSITIVE_INFINITY;
+		for (int l = 1; l <= n; l++) {
+			double guesses = FACTORIALS[l] * products[n * stride + l]
+					+ SEQUENCE_PENALTIES[l - 1];
+			if (guesses < minimum)
+				minimum = guesses;
+		}
+		return minimum;
+	}
+	
+	private static double bruteforce(int length) {
+		return Math.max(POWERS_OF_TEN[length], (length == 1)
+				? MIN_SUBMATCH_GUESSES_SINGLE_CHAR + 1
+				: MIN_SUBMATCH_GUESSES_MULTI_CHAR + 1);
+	}
+	
+	private static void record(double[] matches, int start, int end,
+			double guesses) {
+		int index = start * MAX_LENGTH + end;
+		if (guesses < matches[index])
+			matches[index] = guesses;
+	}
+	
+	/**
+	 * Matches every substring which is a ranked word, as it is or with its 
+	 * leet substitutions undone, hashing the substrings from each start 
+	 * incrementally.
+	 */
+	private void matchDictionary(Scratch scratch, int n) {
+		char[] lower = scratch.lower;
+		char[] folded = scratch.folded;
+		for (int i = 0; i < n; i++) {
+			long lowerHash = FNV_OFFSET;
+			long foldedHash = FNV_OFFSET;
+			boolean substituted = false;
+			int end = Math.min(n, i + maxWordLength);
+			for (int j = i; j < end; j++) {
+				lowerHash = (lowerHash ^ lower[j]) * FNV_PRIME;
+				foldedHash = (foldedHash ^ folded[j]) * FNV_PRIME;
+				substituted |= (folded[j] != lower[j]);
+				int rank = rank(fingerprint(lowerHash));
+				double leetVariations = 1;
+				if (rank == 0 && substituted) {
+					rank = rank(fingerprint(foldedHash));
+					leetVariations = leetVariations(scratch.chars, i, j);
+				}
+				if (rank != 0)
+					record(scratch.matches, i, j, rank * leetVariations
+							* uppercaseVariations(scratch.chars, i, j));
+			}
+		}
+	}
+	
+	private int rank(long key) {
+		int slot = (int) key & mask;
+		while (keys[slot] != 0) {
+			if (keys[slot] == key)
+				return ranks[slot];
+			slot = (slot + 1) & mask;
+		}
+		return 0;
+	}
+	
+	private static double uppercaseVariations(char[] chars, int start,
+			int end) {
+		int upper = 0;
+		int lower = 0;
+		for (int i = start; i <= end; i++) {
+			if (Character.isUpperCase(chars[i]))
+				upper++;
+			else if (Character.isLowerCase(chars[i]))
+				lower++;
+		}
+		if (upper == 0)
+			return 1;
+		if (lower == 0 || (upper == 1 && (Character.isUpperCase(chars[start])
+				|| Character.isUpperCase(chars[end]))))
+			return 2;
+		return variations(upper, lower);
+	}
+	
+	private static double leetVariations(char[] chars, int start, int end) {
+		int substituted = 0;
+		int unsubstituted = 0;
+		for (int i = start; i <= end; i++) {
+			char c = chars[i];
+			if (!Character.isLetter(c)) {
+				if (PasswordNormalizer.substitute(c) != c)
+					substituted++;
+			} else {
+				char lower = Character.toLowerCase(c);
+				if (lower < 128 && LEET_TARGET[lower])
+					unsubstituted++;
+			}
+		}
+		if (substituted == 0)
+			return 1;
+		if (unsubstituted == 0)
+			return 2;
+		return variations(substituted, unsubstituted);
+	}
+	
+	/**
+	 * Counts the ways in which at most {@code min(a, b)} of {@code a + b} 
+	 * characters can be varied.
+	 */
+	private static double variations(int a, int b) {
+		double variations = 0;
+		for (int k = 1; k <= Math.min(a, b); k++)
+			variations += BINOMIALS[a + b][k];
+		return variations;
+	}
+	
+	/**
+	 * Matches runs of at least three characters whose codes differ by the 
+	 * same small step, e.g. {@code abcd}, {@code 2468} or {@code zyx}.
+	 */
+	private static void matchSequences(char[] chars, int n, double[] matches) {
+		int i = 0;
+		while (i < n - 2) {
+			int delta = chars[i + 1] - chars[i];
+			int j = i + 1;
+			if (delta != 0 && Math.abs(delta) <= MAX_SEQUENCE_DELTA) {
+				while (j + 1 < n && chars[j + 1] - chars[j] == delta)
+					j++;
+			}
+			for (int start = i; start <= j - 2; start++) {
+				double base = sequenceBase(chars[start]);
+				if (delta < 0)
+					base *= 2;
+				for (int end = start + 2; end <= j; end++)
+					record(matches, start, end, base * (end - start + 1));
+			}
+			i = j;
+		}
+	}
+	
+	private static double sequenceBase(char first) {
+		if ("aAzZ019".indexOf(first) >= 0)
+			return 4;
+		return isDigit(first) ? 10 : 26;
+	}
+	
+	/**
+	 * Matches runs of at least three characters typed on adjacent keys, 
+	 * e.g. {@code qwerty} or {@code zaq1}, counting the keyboard patterns 
+	 * of the same length with at most as many turns.
+	 */
+	private static void matchKeyboard(char[] chars, int n, double[] matches) {
+		for (int i = 0; i < n - 2; i++) {
+			int turns = 0;
+			int lastDirection = 0;
+			int shifted = isShifted(chars[i]) ? 1 : 0;
+			for (int j = i + 1; j < n; j++) {
+				char a = chars[j - 1];
+				char b = chars[j];
+				int direction = (a < 128 && b < 128) ? KEYBOARD[a * 128 + b] : 0;
+				if (direction == 0)
+					break;
+				if (direction != lastDirection) {
+					turns++;
+					lastDirection = direction;
+				}
+				if (isShifted(b))
+					shifted++;
+				if (j - i >= 2)
+					record(matches, i, j,
+							keyboardGuesses(j - i + 1, turns, shifted));
+			}
+		}
+	}
+	
+	private static double keyboardGuesses(int length, int turns, int shifted) {
+		double guesses = 0;
+		for (int l = 2; l <= length; l++) {
+			for (int t = 1; t <= Math.min(turns, l - 1); t++)
+				guesses += BINOMIALS[l - 1][t - 1] * KEYBOARD_STARTING_POSITIONS
+						* KEYBOARD_DEGREE_POWERS[t];
+		}
+		if (shifted > 0) {
+			int unshifted = length - shifted;
+			guesses *= (unshifted == 0) ? 2 : variations(shifted, unshifted);
+		}
+		return guesses;
+	}
+	
+	private static boolean isShifted(char c) {
+		return c < 128 && SHIFTED[c];
+	}
+	
+	/**
+	 * Matches years, and dates of a day, month and year in either order, 
+	 * written with or without separators, e.g. {@code 1987}, 
+	 * {@code 13.4.87} or {@code 19870413}.
+	 */
+	private static void matchDates(char[] chars, int[] digitRuns, int n,
+			double[] matches) {
+		for (int i = 0; i < n; i++) {
+			int run = digitRuns[i];
+			if (run >= 4) {
+				int year = parse(chars, i, i + 4);
+				if (isYear(year, 4))
+					record(matches, i, i + 3, yearSpace(year));
+			}
+			for (int length = 4; length <= Math.min(run, 8); length++) {
+				int[] splits = DATE_SPLITS[length];
+				for (int k = 0; k < splits.length; k += 2) {
+					int first = i + splits[k];
+					int second = i + splits[k + 1];
+					double guesses = dateGuesses(
+							parse(chars, i, first), first - i,
+							parse(chars, first, second),
+							parse(chars, second, i + length),
+							i + length - second);
+					record(matches, i, i + length - 1, guesses);
+				}
+			}
+			// a date with separators: 1-4 digits, 1-2 digits, 1-4 digits
+			if (run < 1 || run > 4 || i + run + 4 > n)
+				continue;
+			int separator = i + run;
+			if (DATE_SEPARATORS.indexOf(chars[separator]) < 0)
+				continue;
+			int middle = digitRuns[separator + 1];
+			int second = separator + 1 + middle;
+			if (middle < 1 || middle > 2 || second + 1 >= n
+					|| chars[second] != chars[separator])
+				continue;
+			for (int last = 1; last <= Math.min(4, digitRuns[second + 1]);
+					last++) {
+				double guesses = 4 * dateGuesses(
+						parse(chars, i, separator), run,
+						parse(chars, separator + 1, second),
+						parse(chars, second + 1, second + 1 + last), last);
+				record(matches, i, second + last, guesses);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the guesses needed for the date written as the given three 
+	 * numbers, with the year first or last, or infinity if they are not a 
+	 * valid date.
+	 */
+	private static double dateGuesses(int first, int firstDigits, int middle,
+			int last, int lastDigits) {
+		double guesses = Double.POSITIVE_INFINITY;
+		if (isYear(last, lastDigits) && (isDayMonth(first, middle)
+				|| isDayMonth(middle, first)))
+			guesses = Math.min(guesses,
+					365.0 * yearSpace(toYear(last, lastDigits)));
+		if (isYear(first, firstDigits) && (isDayMonth(middle, last)
+				|| isDayMonth(last, middle)))
+			guesses = Math.min(guesses,
+					365.0 * yearSpace(toYear(first, firstDigits)));
+		return guesses;
+	}
+	
+	private static boolean isYear(int value, int digits) {
+		return (digits == 4 && value >= MIN_YEAR && value <= MAX_YEAR)
+				|| digits == 2;
+	}
+	
+	private static int toYear(int value, int digits) {
+		if (digits != 2)
+			return value;
+		return (value > 50) ? 1900 + value : 2000 + value;
+	}
+	
+	private static boolean isDayMonth(int day, int month) {
+		return day >= 1 && day <= 31 && month >= 1 && month <= 12;
+	}
+	
+	private static double yearSpace(int year) {
+		return Math.max(Math.abs(year - REFERENCE_YEAR), MIN_YEAR_SPACE);
+	}
+	
+	/**
+	 * Matches a substring repeated at least twice, e.g. {@code aaa} or 
+	 * {@code abcabc}, as the guesses of the repeated unit times the number 
+	 * of repeats.
+	 */
+	private static void matchRepeats(char[] chars, int n, double[] matches) {
+		for (int i = 0; i < n - 1; i++) {
+			for (int unit = 1; 2 * unit <= n - i; unit++) {
+				int repeats = 1;
+				while (i + (repeats + 1) * unit <= n
+						&& regionMatches(chars, i, i + repeats * unit, unit))
+					repeats++;
+				if (repeats < 2)
+					continue;
+				double unitGuesses = Math.min(
+						matches[i * MAX_LENGTH + i + unit - 1], bruteforce(unit));
+				for (int r = 2; r <= repeats; r++)
+					record(matches, i, i + r * unit - 1, unitGuesses * r);
+			}
+		}
+	}
+	
+	private static boolean regionMatches(char[] chars, int a, int b,
+			int length) {
+		for (int k = 0; k < length; k++) {
+			if (chars[a + k] != chars[b + k])
+				return false;
+		}
+		return true;
+	}
+	
+	private static int parse(char[] chars, int start, int end) {
+		int value = 0;
+		for (int i = start; i < end; i++)
+			value = 10 * value + (chars[i] - '0');
+		return value;
+	}
+	
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	/**
+	 * Folds the given lower case character to the letter it stands for in 
+	 * leetspeak, if any.
+	 */
+	private static char fold(char c) {
+		return (char) PasswordNormalizer.substitute(c);
+	}
+	
+	/**
+	 * Mixes the given incremental hash into a fingerprint, which is never 
+	 * 0, the marker of an empty slot.
+	 */
+	private static long fingerprint(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return (hash == 0) ? 1 : hash;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,247 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.insecurity.security.policy.index.WordListFormat;
+
+/**
+ * A {@code PolicyAssertion} that fails if a given password can be found in 
+ * fewer than the configured minimum number of guesses. Whereas 
+ * {@code LengthAssertion} only counts characters, this assertion estimates 
+ * how an attacker would guess the password, in the manner of zxcvbn: from 
+ * the rank of the words of the word list it contains, with their leet and 
+ * upper case variants, and from the keyboard patterns, sequences, repeats, 
+ * dates and years it is made of. {@code Tr0ub4dor&3} is thus estimated to 
+ * need far more guesses than {@code Password1}, or than {@code qwertyuiop}, 
+ * though it is shorter.
+ * <p>
+ * Words are ranked by their order in the word list, which should therefore 
+ * start with the most common passwords. The rank table and keyboard 
+ * adjacency table are computed during instantiation, and each estimate is 
+ * computed in arrays reused by each thread, so that {@code verify()} does 
+ * not allocate and takes microseconds for passwords of ordinary length.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class GuessabilityAssertion implements PolicyAssertion {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(GuessabilityAssertion.class);
+	
+	/**
+	 * A {@code PolicyAssertion.Result} indicating the password can be 
+	 * guessed in fewer than the minimum number of guesses
+	 */
+	public static final Result TOO_GUESSABLE =
+			new Result(false, "Password is too easy to guess.");
+	/**
+	 * The default minimum number of guesses, 10<sup>8</sup>, which zxcvbn 
+	 * considers safely unguessable by an online attack
+	 */
+	public static final double DEFAULT_MIN_GUESSES = 1e8;
+	
+	/**
+	 * Builds a {@code GuessabilityAssertion}.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder {
+		
+		private static final String DEFAULT_DATA_FILE = "passwords.dat";
+		
+		private String passwordDataFile;
+		private InputStream passwordDataStream;
+		private double minGuesses;
+		
+		/**
+		 * Instantiates a new {@code GuessabilityAssertion.Builder}.
+		 * <p>
+		 * A call to {@code build()} on a default {@code Builder} instance 
+		 * will provide a {@code GuessabilityAssertion} instance requiring 
+		 * {@code DEFAULT_MIN_GUESSES} guesses, and ranking the words of the 
+		 * default password word list included in the distributed jar.
+		 */
+		public Builder() {
+			this.passwordDataFile = null;
+			this.passwordDataStream = null;
+			this.minGuesses = DEFAULT_MIN_GUESSES;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code GuessabilityAssertion} ranking the words of the given file.
+		 * <p>
+		 * The data file must be UTF-8 or US-ASCII encoded, and must contain 
+		 * one word per line, most common first. It may be gzip or Zstandard 
+		 * compressed.
+		 * 
+		 * @param dataFile the path to the word list
+		 * @return this {@code Builder}, updated with the specified data file
+		 */
+		public Builder withPasswordDataFile(String dataFile) {
+			this.passwordDataFile = dataFile;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code GuessabilityAssertion} ranking the words read from the 
+		 * given stream, which is closed by {@code build()}.
+		 * 
+		 * @param dataStream the stream of the word list
+		 * @return this {@code Builder}, updated with the specified stream
+		 */
+		public Builder withPasswordDataStream(InputStream dataStream) {
+			this.passwordDataStream = dataStream;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code GuessabilityAssertion} requiring passwords to need at least 
+		 * the given number of guesses, e.g. 10<sup>6</sup> to only reject 
+		 * passwords guessable by a throttled online attack, or 
+		 * 10<sup>10</sup> to also resist an offline attack on a slow hash.
+		 * 
+		 * @param guesses the minimum number of guesses
+		 * @return this {@code Builder}, updated with the specified minimum
+		 */
+		public Builder withMinGuesses(double guesses) {
+			this.minGuesses = guesses;
+			return this;
+		}
+		
+		/**
+		 * Checks that valid configuration parameters have been set and 
+		 * returns a new {@code GuessabilityAssertion} instance with those 
+		 * parameters.
+		 * 
+		 * @return a new {@code GuessabilityAssertion} instance
+		 * @throws IOException if the word list cannot be read
+		 * @throws IllegalArgumentException if the minimum number of guesses 
+		 * is less than 1
+		 */
+		public GuessabilityAssertion build() throws IOException {
+			if (!(minGuesses >= 1))
+				throw new IllegalArgumentException(
+						"Minimum number of guesses must be at least 1!");
+			LOG.info("Ranking password data...");
+			GuessEstimator.Builder estimator = new GuessEstimator.Builder();
+			try (BufferedReader reader = getPasswordDataReader()) {
+				String word;
+				while ((word = reader.readLine()) != null)
+					estimator.add(word);
+			}
+			GuessEstimator built = estimator.build();
+			LOG.info("Ranked {} words in {} bytes.", built.getNumWords(),
+					built.getSizeInBytes());
+			return new GuessabilityAssertion(built, minGuesses);
+		}
+		
+		private BufferedReader getPasswordDataReader() throws IOException {
+			InputStream in;
+			if (passwordDataStream != null) {
+				in = passwordDataStream;
+			} else if (passwordDataFile != null) {
+				Path dataFilePath = Paths.get(passwordDataFile);
+				if (!Files.exists(dataFilePath))
+					throw new IOException(String.format(
+							"Password data file does not exist: %s",
+							passwordDataFile));
+				in = Files.newInputStream(dataFilePath);
+			} else {
+				in = GuessabilityAssertion.class.getClassLoader()
+						.getResourceAsStream(DEFAULT_DATA_FILE);
+			}
+			return new BufferedReader(new InputStreamReader(
+					WordListFormat.decompress(in),
+					Charset.forName("UTF-8").newDecoder()
+							.onMalformedInput(CodingErrorAction.REPORT)
+							.onUnmappableCharacter(CodingErrorAction.REPORT)));
+		}
+	}
+	
+	private final GuessEstimator estimator;
+	private final double minGuesses;
+	
+	private GuessabilityAssertion(GuessEstimator estimator, double minGuesses) {
+		this.estimator = estimator;
+		this.minGuesses = minGuesses;
+	}
+	
+	/**
+	 * Gets the minimum number of guesses a password must need.
+	 * 
+	 * @return the minimum number of guesses
+	 */
+	public double getMinGuesses() {
+		return minGuesses;
+	}
+	
+	/**
+	 * Gets the number of distinct words ranked.
+	 * 
+	 * @return the number of words
+	 */
+	public int getNumWords() {
+		return estimator.getNumWords();
+	}
+	
+	/**
+	 * Estimates the number of guesses an attacker would need to find the 
+	 * given password, without allocating.
+	 * 
+	 * @param password the password to estimate
+	 * @return the estimated number of guesses, at least 1, which may be 
+	 * infinite for very long passwords
+	 */
+	public double estimateGuesses(CharSequence password) {
+		return estimator.estimate(password);
+	}
+	
+	/**
+	 * Indicates whether the given password needs at least the minimum 
+	 * number of guesses.
+	 * 
+	 * @return {@code PolicyAssertion.Result.NULL_VALUE} if the password is 
+	 * null, {@code TOO_GUESSABLE} if it can be guessed in fewer than the 
+	 * minimum number of guesses, otherwise returns 
+	 * {@code PolicyAssertion.Result.SUCCESS}
+	 */
+	@Override
+	public Result verify(String password) {
+		return verify((CharSequence) password);
+	}
+	
+	/**
+	 * Indicates whether the given password needs at least the minimum 
+	 * number of guesses, estimating them without converting it to a 
+	 * {@code String}.
+	 * 
+	 * @see #verify(String)
+	 */
+	@Override
+	public Result verify(CharSequence password) {
+		if (password == null) {
+			LOG.debug("Assertion Failed - password is null");
+			return Result.NULL_VALUE;
+		}
+		if (estimator.estimate(password) < minGuesses) {
+			LOG.debug("Assertion Failed - password is too easy to guess");
+			return TOO_GUESSABLE;
+		}
+		return Result.SUCCESS;
+	}
+}
\ No newline at end of file
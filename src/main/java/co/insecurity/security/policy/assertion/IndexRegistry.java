@@ -0,0 +1,193 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.insecurity.security.policy.index.MembershipIndex;
+
+/**
+ * Caches the indices built by {@code NotLeakedAssertion.Builder}, so that 
+ * builders configured identically share one index rather than each building 
+ * their own, e.g. the policies of many tenants checking the same word list.
+ * <p>
+ * Indices are keyed by the identity of the password data file (its path, 
+ * size and modification time, or the default data file), and by every 
+ * setting which affects the index built: the false positive probability, 
+ * case-sensitivity, maximum number of passwords, index type, exact matching, 
+ * frequency counts, single-pass ingestion and normalization. Concurrent 
+ * builds of the same key are coalesced, so that one thread builds the index 
+ * while the others wait for it. The registry holds indices only through weak 
+ * references, so an index is released once no {@code NotLeakedAssertion} 
+ * uses it, and is rebuilt if it is needed again.
+ * <p>
+ * A registry is enabled per builder with 
+ * {@code NotLeakedAssertion.Builder.withIndexRegistry()}, usually with the 
+ * process-wide {@code SHARED} registry.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public final class IndexRegistry {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(IndexRegistry.class);
+	
+	/**
+	 * The process-wide {@code IndexRegistry}
+	 */
+	public static final IndexRegistry SHARED = new IndexRegistry();
+	
+	/**
+	 * Builds an index to be registered, on a cache miss.
+	 */
+	interface Loader {
+		
+		Entry load() throws IOException;
+	}
+	
+	/**
+	 * An index together with the number of passwords added to it, which 
+	 * may differ from its own count for approximate indices.
+	 */
+	static final class Entry {
+		
+		final MembershipIndex index;
+		final long numPasswords;
+		
+		Entry(MembershipIndex index, long numPasswords) {
+			this.index = index;
+			this.numPasswords = numPasswords;
+		}
+	}
+	
+	/**
+	 * The registration of one key, which is pending until its index has 
+	 * been built, and then refers weakly to the index.
+	 */
+	private static final class Slot {
+		
+		final Object key;
+		final CountDownLatch built = new CountDownLatch(1);
+		volatile IndexReference reference;
+		
+		Slot(Object key) {
+			this.key = key;
+		}
+	}
+	
+	private static final class IndexReference
+			extends WeakReference<MembershipIndex> {
+		
+		final Slot slot;
+		final long numPasswords;
+		
+		IndexReference(Slot slot, Entry entry,
+				ReferenceQueue<MembershipIndex> queue) {
+			super(entry.index, queue);
+			this.slot = slot;
+			this.numPasswords = entry.numPasswords;
+		}
+	}
+	
+	private final ConcurrentMap<Object, Slot> slots =
+			new ConcurrentHashMap<Object, Slot>();
+	private final ReferenceQueue<MembershipIndex> released =
+			new ReferenceQueue<MembershipIndex>();
+	
+	/**
+	 * Constructs an empty {@code IndexRegistry}, e.g. to share indices 
+	 * within a group of builders rather than process-wide.
+	 */
+	public IndexRegistry() { }
+	
+	/**
+	 * Returns the index registered under the given key, waiting for it if 
+	 * another thread is building it, or otherwise builds and registers it 
+	 * with the given loader. If the build fails, the failure is thrown to 
+	 * the building thread, and each waiting thread attempts its own build.
+	 * 
+	 * @param key the key, whose {@code equals()} defines identical builds
+	 * @param loader builds the index on a cache miss
+	 * @return the registered index
+	 * @throws IOException if the index cannot be built
+	 */
+	Entry getOrLoad(Object key, Loader loader) throws IOException {
+		expungeReleased();
+		while (true) {
+			Slot slot = slots.get(key);
+			if (slot == null) {
+				Slot created = new Slot(key);
+				slot = slots.putIfAbsent(key, created);
+				if (slot == null)
+					return load(created, loader);
+			}
+			try {
+				slot.built.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(
+						"Interrupted waiting for index to be built.");
+			}
+			IndexReference reference = slot.reference;
+			MembershipIndex index = (reference == null) ? null : reference.get();
+			if (index != null) {
+				LOG.debug("Sharing registered index for {}", key);
+				return new Entry(index, reference.numPasswords);
+			}
+			// the build failed or the index was released; try again
+			slots.remove(key, slot);
+		}
+	}
+	
+	private Entry load(Slot slot, Loader loader) throws IOException {
+		boolean loaded = false;
+		try {
+			Entry entry = loader.load();
+			slot.reference = new IndexReference(slot, entry, released);
+			loaded = true;
+			return entry;
+		} finally {
+			if (!loaded)
+				slots.remove(slot.key, slot);
+			slot.built.countDown();
+		}
+	}
+	
+	/**
+	 * Removes the slots of indices which have been garbage collected.
+	 */
+	private void expungeReleased() {
+		for (Reference<? extends MembershipIndex> reference;
+				(reference = released.poll()) != null; ) {
+			Slot slot = ((IndexReference) reference).slot;
+			slots.remove(slot.key, slot);
+		}
+	}
+	
+	/**
+	 * Gets the number of keys registered, including those whose index is 
+	 * being built or has been released but not yet removed.
+	 * 
+	 * @return the number of registered keys
+	 */
+	public int size() {
+		expungeReleased();
+		return slots.size();
+	}
+	
+	/**
+	 * Removes every registered index, so that subsequent builds build new 
+	 * indices. Indices already in use are unaffected.
+	 */
+	public void clear() {
+		slots.clear();
+	}
+}
\ No newline at end of file
@@ -1,5 +1,9 @@
 package co.insecurity.security.policy.assertion;
 
+import java.nio.ByteBuffer;
+
+import co.insecurity.security.policy.index.PasswordHash;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -125,16 +129,71 @@ public class LengthAssertion implements PolicyAssertion {
 			LOG.debug("Assertion Failed - password is null");
 			return Result.NULL_VALUE;
 		}
+		return verifyLength(password.length());
+	}
+	
+	/**
+	 * Indicates whether the given password meets the length requirements 
+	 * defined by this {@code LengthAssertion}.
+	 * 
+	 * @see #verify(String)
+	 */
+	@Override
+	public Result verify(CharSequence password) {
+		if (password == null) {
+			LOG.debug("Assertion Failed - password is null");
+			return Result.NULL_VALUE;
+		}
+		return verifyLength(password.length());
+	}
+	
+	/**
+	 * Indicates whether the password held in the given context meets the 
+	 * length requirements defined by this {@code LengthAssertion}.
+	 * 
+	 * @see #verify(String)
+	 */
+	@Override
+	public Result verifyContext(PasswordContext context) {
+		if (context.getPassword() == null) {
+			LOG.debug("Assertion Failed - password is null");
+			return Result.NULL_VALUE;
+		}
+		return verifyLength(context.getLength());
+	}
+	
+	/**
+	 * Indicates whether the given UTF-8 encoded password meets the length 
+	 * requirements defined by this {@code LengthAssertion}, counting its 
+	 * characters without decoding it. Lengths are counted in UTF-16 units, 
+	 * as for {@code verify(String)}.
+	 * 
+	 * @see #verify(String)
+	 */
+	@Override
+	public Result verifyUtf8(ByteBuffer password) {
+		if (password == null || !PasswordHash.isWellFormedUtf8(password))
+			return PolicyAssertion.super.verifyUtf8(password);
+		int length = 0;
+		for (int i = password.position(); i < password.limit(); i++) {
+			int b = password.get(i) & 0xFF;
+			if (b >= 0xF0)
+				length += 2;
+			else if ((b & 0xC0) != 0x80)
+				length++;
+		}
+		return verifyLength(length);
+	}
+	
+	private Result verifyLength(int length) {
 		if ((this.minLength != LengthAssertion.DISABLED) 
-				&& password.length() < this.minLength) {
-			LOG.debug("Assertion Failed - did not meet minimum length: {}", 
-					password);
+				&& length < this.minLength) {
+			LOG.debug("Assertion Failed - did not meet minimum length");
 			return INSUFFICIENT_LENGTH;
 		}
 		if ((this.maxLength != LengthAssertion.DISABLED) 
-				&& password.length() > this.maxLength) {
-			LOG.debug("Assertion Failed - did not meet maximum length: {}", 
-					password);
+				&& length > this.maxLength) {
+			LOG.debug("Assertion Failed - did not meet maximum length");
 			return EXCESSIVE_LENGTH;
 		}
 		return Result.SUCCESS;
@@ -2,15 +2,39 @@ package co.insecurity.security.policy.assertion;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
 import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import orestes.bloomfilter.BloomFilter;
-import orestes.bloomfilter.FilterBuilder;
+import co.insecurity.security.policy.index.BloomFilterIndex;
+import co.insecurity.security.policy.index.FingerprintSetIndex;
+import co.insecurity.security.policy.index.HashedMembershipIndex;
+import co.insecurity.security.policy.index.HyperLogLog;
+import co.insecurity.security.policy.index.IndexType;
+import co.insecurity.security.policy.index.MembershipIndex;
+import co.insecurity.security.policy.index.PasswordHash;
+import co.insecurity.security.policy.index.PasswordHashFile;
+import co.insecurity.security.policy.index.PrefilteredIndex;
+import co.insecurity.security.policy.index.ScalableBloomFilterIndex;
+import co.insecurity.security.policy.index.SharedBloomFilterIndex;
+import co.insecurity.security.policy.index.TieredIndex;
+import co.insecurity.security.policy.index.WordListFormat;
+import co.insecurity.security.policy.metrics.PolicyMetrics;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +57,12 @@ import org.slf4j.LoggerFactory;
  * implementation can only confirm that a password is <i>definitely not</i> in 
  * the word list, or that it <i>probably is</i> in the word list (to some 
  * probability set at instantiation).
+ * <p>
+ * Where false positives are too costly, the {@code Builder} can enable exact 
+ * matching, in which passwords found in the filter are confirmed against a 
+ * compact set of password fingerprints. This lowers the false positive 
+ * probability to about 2<sup>-29</sup>, for roughly 4.5 additional bytes of 
+ * memory per password.
  * 
  * @author Milo Minderbinder
  *
@@ -64,12 +94,29 @@ public class NotLeakedAssertion implements PolicyAssertion {
 	public static class Builder {
 		
 		private static final String DEFAULT_DATA_FILE = "passwords.dat";
+		private static final ConcurrentMap<Path, Object> PUBLISH_LOCKS = 
+				new ConcurrentHashMap<Path, Object>();
+		private static final int SAMPLE_SIZE = 1 << 16;
+		private static final int UNKNOWN_SIZE_GROWTH = 16;
 		
-		private int numPasswords = 0;
+		private long numPasswords = 0;
 		private double fpProbability;
-		private int maxNumPasswords;
+		private long maxNumPasswords;
 		private boolean ignoreCase;
 		private String passwordDataFile;
+		private String snapshotFile;
+		private String sharedFilterFile;
+		private InputStream passwordDataStream;
+		private boolean singlePass;
+		private int parallelism;
+		private MembershipIndex.Factory indexFactory;
+		private boolean exactMatching;
+		private int hotTierSize;
+		private boolean frequencyCounts;
+		private MembershipIndex passwordIndex;
+		private IndexRegistry indexRegistry;
+		private PasswordNormalizer normalizer;
+		private PolicyMetrics metrics;
 		
 		/**
 		 * Instantiates a new {@code NotLeakedAssertion.Builder} with 
@@ -87,6 +134,19 @@ public class NotLeakedAssertion implements PolicyAssertion {
 			this.maxNumPasswords = MAX_NUM_PASSWORDS_DISABLED;
 			this.ignoreCase = false;
 			this.passwordDataFile = null;
+			this.snapshotFile = null;
+			this.sharedFilterFile = null;
+			this.passwordDataStream = null;
+			this.singlePass = false;
+			this.parallelism = 1;
+			this.indexFactory = IndexType.BLOOM_FILTER;
+			this.exactMatching = false;
+			this.hotTierSize = 0;
+			this.frequencyCounts = false;
+			this.passwordIndex = null;
+			this.indexRegistry = null;
+			this.normalizer = null;
+			this.metrics = PolicyMetrics.NO_OP;
 		}
 		
 		/**
@@ -112,7 +172,7 @@ public class NotLeakedAssertion implements PolicyAssertion {
 		 * @return this {@code Builder}, updated with the specified maximum 
 		 * number of passwords permitted in the filter
 		 */
-		public Builder withMaxNumPasswords(int numPasswords) {
+		public Builder withMaxNumPasswords(long numPasswords) {
 			this.maxNumPasswords = numPasswords;
 			return this;
 		}
@@ -139,7 +199,17 @@ public class NotLeakedAssertion implements PolicyAssertion {
 		 * the underlying word list.
 		 * <p>
 		 * The data file must be UTF-8 or US-ASCII encoded, and must contain one 
-		 * password per line.
+		 * password per line. It may be gzip or Zstandard compressed, which is 
+		 * detected from its contents; Zstandard requires {@code zstd-jni} on 
+		 * the class path.
+		 * <p>
+		 * The data file may instead be a {@code PasswordHashFile} of 
+		 * precomputed password hashes, converted once from a word list, 
+		 * which loads much faster since no text is decoded or hashed. Hash 
+		 * files require an index type other than {@code BLOOM_FILTER}, and 
+		 * must have been converted with the same case-sensitivity setting as 
+		 * configured on this {@code Builder}. Frequency counts recorded in a 
+		 * hash file rank its passwords for the hot tier.
 		 * 
 		 * @param dataFile the path to the custom password data file
 		 * @return this {@code Builder}, updated with the specified data file
@@ -148,6 +218,320 @@ public class NotLeakedAssertion implements PolicyAssertion {
 			this.passwordDataFile = dataFile;
 			return this;
 		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} with the word list read from the given 
+		 * stream, such as standard input or a pipe, instead of from a data 
+		 * file.
+		 * <p>
+		 * The stream must be UTF-8 or US-ASCII encoded, and must contain one 
+		 * password per line, but may be gzip or Zstandard compressed. Since 
+		 * streams cannot be rewound, setting a 
+		 * stream implies single-pass ingestion. The stream is consumed and 
+		 * closed by {@code build()}.
+		 * 
+		 * @param dataStream the stream from which to read the word list
+		 * @return this {@code Builder}, updated with the specified stream
+		 * @see #withSinglePassIngestion(boolean)
+		 */
+		public Builder withPasswordDataStream(InputStream dataStream) {
+			this.passwordDataStream = dataStream;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} by reading the word list only once.
+		 * <p>
+		 * By default, the word list is read twice: once to count the 
+		 * passwords in order to size the filter, and once to populate it. In 
+		 * single-pass mode, the number of distinct passwords is instead 
+		 * estimated with a HyperLogLog sketch over a sample at the start of 
+		 * the word list, extrapolated to the size of the data file, and the 
+		 * passwords are added to a scalable filter which grows if the 
+		 * estimate proves too low. The false positive probability of the 
+		 * filter remains bounded by the configured probability either way.
+		 * 
+		 * @param shouldUseSinglePass whether the word list should be read in 
+		 * a single pass
+		 * @return this {@code Builder}, updated with the specified ingestion 
+		 * mode
+		 */
+		public Builder withSinglePassIngestion(boolean shouldUseSinglePass) {
+			this.singlePass = shouldUseSinglePass;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} by building its filter on the given 
+		 * number of threads.
+		 * <p>
+		 * A parallel build splits the custom password data file into 
+		 * newline-aligned ranges, which are decoded and hashed concurrently 
+		 * into per-thread filters that are then merged. The resulting filter 
+		 * is bit-identical to the one built on a single thread, although the 
+		 * reported number of passwords is the number of lines of the data 
+		 * file, duplicates included. Parallel builds require a custom data 
+		 * file and no limit on the number of passwords, and fall back to a 
+		 * sequential build otherwise.
+		 * <p>
+		 * Since each thread fills a filter of the full size, a parallel 
+		 * build needs up to {@code numThreads} times the memory of the 
+		 * filter, e.g. 16 GiB for a 1 GiB filter on 16 threads. Fewer 
+		 * threads are used if half of the free heap cannot hold a filter 
+		 * per thread.
+		 * 
+		 * @param numThreads the number of threads on which to build the 
+		 * filter, or 1 to build it sequentially
+		 * @return this {@code Builder}, updated with the specified 
+		 * parallelism
+		 */
+		public Builder withParallelism(int numThreads) {
+			this.parallelism = numThreads;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} backed by the specified type of 
+		 * {@code MembershipIndex}.
+		 * <p>
+		 * The default, {@code IndexType.BLOOM_FILTER}, is an on-heap bloom 
+		 * filter limited to fewer than 2<sup>31</sup> passwords. For larger 
+		 * word lists, or to keep the filter off the garbage-collected heap, 
+		 * use {@code IndexType.OFF_HEAP_BLOOM_FILTER}. For the fastest 
+		 * lookups, use {@code IndexType.BLOCKED_BLOOM_FILTER}, and for the 
+		 * smallest index of a static word list, use 
+		 * {@code IndexType.BINARY_FUSE_FILTER}. Single-pass ingestion, 
+		 * parallel builds and snapshots are only supported by the default 
+		 * index type.
+		 * 
+		 * @param type the type of index to build
+		 * @return this {@code Builder}, updated with the specified index type
+		 */
+		public Builder withIndexType(IndexType type) {
+			this.indexFactory = type;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} backed by a custom 
+		 * {@code MembershipIndex} implementation, created through the given 
+		 * factory.
+		 * 
+		 * @param factory the factory for the custom index
+		 * @return this {@code Builder}, updated with the specified index 
+		 * factory
+		 * @see #withIndexType(IndexType)
+		 */
+		public Builder withIndexFactory(MembershipIndex.Factory factory) {
+			this.indexFactory = factory;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} with the provided setting for exact 
+		 * matching.
+		 * <p>
+		 * With exact matching enabled, the filter remains a fast check that a 
+		 * password is definitely not in the word list, but passwords found in 
+		 * the filter are then confirmed against a {@code FingerprintSetIndex} 
+		 * before being reported as leaked. This lowers the false positive 
+		 * probability from the configured probability to about 
+		 * 2<sup>-29</sup>, and adds about 4.5 bytes per password to the 
+		 * memory required. Exact matching is not supported together with 
+		 * snapshots, and disables parallel builds.
+		 * 
+		 * @param shouldMatchExactly whether positives should be confirmed
+		 * @return this {@code Builder}, updated with the specified exact 
+		 * matching setting
+		 */
+		public Builder withExactMatching(boolean shouldMatchExactly) {
+			this.exactMatching = shouldMatchExactly;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} backed by a {@code TieredIndex}, which 
+		 * holds the given number of most common passwords in a small hot 
+		 * tier, and looks up only the passwords it does not contain in the 
+		 * configured index.
+		 * <p>
+		 * Passwords are ranked by their order in the word list, so the first 
+		 * {@code numPasswords} distinct passwords form the hot tier, unless 
+		 * the word list holds frequency counts. The hot tier needs about 4.5 
+		 * bytes per password, so a hot tier of 10,000 passwords fits in the 
+		 * L2 cache of most processors. Tiers are not supported together with 
+		 * snapshots or a prebuilt index, and disable parallel builds.
+		 * 
+		 * @param numPasswords the number of passwords in the hot tier, or 0 
+		 * to disable the hot tier
+		 * @return this {@code Builder}, updated with the specified hot tier 
+		 * size
+		 * @see #withFrequencyCounts(boolean)
+		 */
+		public Builder withHotTier(int numPasswords) {
+			this.hotTierSize = numPasswords;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} from a word list in which each password 
+		 * is preceded by its frequency count, as written by 
+		 * {@code sort | uniq -c}: optional leading whitespace, the count, a 
+		 * single space, and the password. The hot tier is then formed of the 
+		 * passwords with the highest counts.
+		 * 
+		 * @param hasFrequencyCounts whether the word list holds frequency 
+		 * counts
+		 * @return this {@code Builder}, updated with the specified word list 
+		 * format
+		 * @see #withHotTier(int)
+		 */
+		public Builder withFrequencyCounts(boolean hasFrequencyCounts) {
+			this.frequencyCounts = hasFrequencyCounts;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} backed by the given, already built 
+		 * {@code MembershipIndex}, rather than by processing the password 
+		 * data file.
+		 * <p>
+		 * This allows an index which is expensive to build, such as a 
+		 * {@code DiskHashIndex} built once from the Have I Been Pwned hash 
+		 * lists, to be opened and used directly. The index must have been 
+		 * built with the same case-sensitivity setting as configured on this 
+		 * {@code Builder}; the password data file, maximum number of 
+		 * passwords and index type settings are ignored.
+		 * 
+		 * @param index the index to check passwords against
+		 * @return this {@code Builder}, updated with the specified index
+		 */
+		public Builder withMembershipIndex(MembershipIndex index) {
+			this.passwordIndex = index;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} by loading its filter from the specified 
+		 * snapshot file, rather than by processing the password data file.
+		 * <p>
+		 * Snapshots are written by {@code NotLeakedAssertion.writeSnapshot()}. 
+		 * The snapshot must have been built with the same false positive 
+		 * probability, maximum number of passwords, case-sensitivity setting 
+		 * and password data file as configured on this {@code Builder}, and 
+		 * the data file must not have changed since the snapshot was written; 
+		 * otherwise {@code build()} rejects the snapshot.
+		 * 
+		 * @param snapshotFile the path to the filter snapshot file
+		 * @return this {@code Builder}, updated with the specified snapshot 
+		 * file
+		 */
+		public Builder withSnapshotFile(String snapshotFile) {
+			this.snapshotFile = snapshotFile;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} backed by a 
+		 * {@code SharedBloomFilterIndex} mapped read-only from the specified 
+		 * file, so that JVMs on the same host share one copy of the filter 
+		 * through the operating system's page cache.
+		 * <p>
+		 * If the file does not exist, or is older than the configured 
+		 * password data file, {@code build()} builds the filter from the 
+		 * password data and publishes it to the file first. A lock file next 
+		 * to it ensures only one process publishes at a time, while the 
+		 * others wait and then map the published filter. The filter must 
+		 * have been built with the same false positive probability and 
+		 * case-sensitivity setting as configured on this {@code Builder}, 
+		 * otherwise {@code build()} rejects it. The index type is ignored, 
+		 * and shared filters are not supported together with password data 
+		 * streams, single-pass ingestion, snapshots, exact matching, tiers 
+		 * or a prebuilt index.
+		 * 
+		 * @param sharedFilterFile the path of the shared filter file, e.g. 
+		 * on {@code /dev/shm}
+		 * @return this {@code Builder}, updated with the specified shared 
+		 * filter file
+		 */
+		public Builder withSharedFilterFile(String sharedFilterFile) {
+			this.sharedFilterFile = sharedFilterFile;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will share its index, through the 
+		 * given {@code IndexRegistry}, with every other builder configured 
+		 * identically, rather than building an index of its own. Usually, 
+		 * {@code IndexRegistry.SHARED} is given, to share indices 
+		 * process-wide.
+		 * <p>
+		 * Indices are only shared when built from a password data file or 
+		 * the default data file, by one of the immutable index types. 
+		 * Builders using a password data stream, the 
+		 * {@code COUNTING_BLOOM_FILTER} or a custom index type, tiers, 
+		 * snapshots, shared filters or a prebuilt index build their own 
+		 * index as usual.
+		 * 
+		 * @param registry the registry through which to share the index, or 
+		 * {@code null} to always build a new index
+		 * @return this {@code Builder}, updated with the specified registry
+		 */
+		public Builder withIndexRegistry(IndexRegistry registry) {
+			this.indexRegistry = registry;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code NotLeakedAssertion} which also catches the trivial variants 
+		 * of the passwords in the word list, such as {@code p@ssw0rd} or 
+		 * {@code Password1!} for {@code password}.
+		 * <p>
+		 * Each password of the word list is reduced to its canonical form by 
+		 * the given {@code PasswordNormalizer} while the index is built, and 
+		 * each password verified is reduced the same way before it is looked 
+		 * up, so that variants are caught with a single lookup rather than 
+		 * one per variant. The canonical forms of distinct passwords may 
+		 * coincide, so the index may hold fewer passwords than the word 
+		 * list. Normalization is not supported together with password hash 
+		 * files, snapshots, shared filters or a prebuilt index, and disables 
+		 * parallel builds.
+		 * 
+		 * @param normalizer the normalizer reducing passwords to their 
+		 * canonical form, e.g. {@code PasswordNormalizer.DEFAULT}, or 
+		 * {@code null} to only match passwords as they are
+		 * @return this {@code Builder}, updated with the specified normalizer
+		 */
+		public Builder withNormalizer(PasswordNormalizer normalizer) {
+			this.normalizer = normalizer;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will record the time taken by 
+		 * {@code build()} to build the index, and the size of the index 
+		 * built, to the given {@code PolicyMetrics}. Nothing is recorded for 
+		 * a prebuilt index.
+		 * 
+		 * @param metrics the metrics to record to
+		 * @return this {@code Builder}, updated with the specified metrics
+		 */
+		public Builder withMetrics(PolicyMetrics metrics) {
+			this.metrics = (metrics == null) ? PolicyMetrics.NO_OP : metrics;
+			return this;
+		}
 
 		/**
 		 * Checks that valid configuration parameters have been set and returns 
@@ -156,11 +540,14 @@ public class NotLeakedAssertion implements PolicyAssertion {
 		 * @return a new {@code NotLeakedAssertion} instance based on the 
 		 * settings configured through this {@code NotLeakedAssertion.Builder}
 		 * @throws IOException if the configured password data file cannot be 
-		 * processed, or is modified during processing
+		 * processed, or is modified during processing, or if the configured 
+		 * snapshot or shared filter file is corrupt, stale or does not match 
+		 * the configuration
 		 * @throws IllegalArgumentException if invalid parameters have been set 
 		 * (e.g. a false positive probability less than or equal to 0)
 		 */
 		public NotLeakedAssertion build() throws IOException {
+			numPasswords = 0;
 			if (fpProbability <= 0)
 				throw new IllegalArgumentException(
 						"False positive probability must be greater than 0!");
@@ -169,9 +556,263 @@ public class NotLeakedAssertion implements PolicyAssertion {
 						"Maximum number of passwords must be greater than 0, "
 						+ "or set to MAX_NUM_PASSWORDS_DISABLED to disable "
 						+ "the maximum limit.");
-			return new NotLeakedAssertion(loadPasswordData(), 
+			if (parallelism < 1)
+				throw new IllegalArgumentException(
+						"Parallelism must be greater than 0!");
+			if (indexFactory == null)
+				throw new IllegalArgumentException(
+						"Index type must not be null!");
+			if (indexFactory != IndexType.BLOOM_FILTER 
+					&& (snapshotFile != null || singlePass 
+					|| passwordDataStream != null))
+				throw new IllegalArgumentException(String.format(
+						"Snapshots and single-pass ingestion are not "
+						+ "supported by %s.", indexFactory));
+			if (exactMatching && snapshotFile != null)
+				throw new IllegalArgumentException(
+						"Exact matching is not supported with snapshots.");
+			if (passwordIndex != null && (snapshotFile != null || exactMatching))
+				throw new IllegalArgumentException(
+						"Snapshots and exact matching are not supported with "
+						+ "a prebuilt index.");
+			if (hotTierSize < 0)
+				throw new IllegalArgumentException(
+						"Hot tier size must not be negative!");
+			if (hotTierSize > 0 && (snapshotFile != null || passwordIndex != null))
+				throw new IllegalArgumentException(
+						"Tiers are not supported with snapshots or a prebuilt "
+						+ "index.");
+			if (sharedFilterFile != null && (passwordDataStream != null 
+					|| singlePass || snapshotFile != null || exactMatching 
+					|| hotTierSize > 0 || passwordIndex != null))
+				throw new IllegalArgumentException(
+						"Shared filters are not supported with password data "
+						+ "streams, single-pass ingestion, snapshots, exact "
+						+ "matching, tiers or a prebuilt index.");
+			if (normalizer != null && (snapshotFile != null 
+					|| sharedFilterFile != null || passwordIndex != null))
+				throw new IllegalArgumentException(
+						"Normalization is not supported with snapshots, "
+						+ "shared filters or a prebuilt index.");
+			if (passwordIndex != null) {
+				numPasswords = passwordIndex.getNumPasswords();
+				return new NotLeakedAssertion(passwordIndex, 
+						numPasswords, fpProbability, maxNumPasswords, 
+						ignoreCase, passwordDataFile, null, exactMatching, 
+						normalizer);
+			}
+			long start = System.nanoTime();
+			NotLeakedAssertion assertion;
+			if (snapshotFile != null)
+				assertion = loadSnapshot();
+			else if (sharedFilterFile != null)
+				assertion = loadSharedFilter();
+			else if (isRegistrable())
+				assertion = loadRegistered();
+			else
+				assertion = new NotLeakedAssertion(
+						loadPasswordData(indexFactory), 
+						numPasswords, fpProbability, maxNumPasswords, 
+						ignoreCase, passwordDataFile, getIndexType(), 
+						exactMatching, normalizer);
+			if (metrics.isEnabled())
+				metrics.recordBuild(getIndexTypeName(), 
+						System.nanoTime() - start, numPasswords, 
+						assertion.getPasswordIndex().getSizeInBytes());
+			return assertion;
+		}
+		
+		/**
+		 * Indicates whether {@code build()} can be called repeatedly to 
+		 * rebuild the index, which is not the case when the password data is 
+		 * read from a stream.
+		 */
+		boolean isRebuildable() {
+			return passwordDataStream == null;
+		}
+		
+		/**
+		 * Loads the filter from the configured snapshot file and returns a 
+		 * new {@code NotLeakedAssertion} instance backed by it.
+		 * 
+		 * @return a new {@code NotLeakedAssertion} backed by the snapshot
+		 * @throws IOException if the snapshot cannot be read, or is corrupt, 
+		 * stale or does not match the configuration of this {@code Builder}
+		 */
+		private NotLeakedAssertion loadSnapshot() throws IOException {
+			LOG.info("Loading filter snapshot: {}", snapshotFile);
+			Path snapshotPath = Paths.get(snapshotFile);
+			FilterSnapshot snapshot = FilterSnapshot.read(snapshotPath);
+			snapshot.verifyMatches(fpProbability, ignoreCase, 
+					maxNumPasswords, passwordDataFile, snapshotPath);
+			numPasswords = snapshot.numPasswords;
+			return new NotLeakedAssertion(
+					new BloomFilterIndex(snapshot.filter), 
 					numPasswords, fpProbability, maxNumPasswords, 
-					ignoreCase, passwordDataFile);
+					ignoreCase, passwordDataFile, getIndexType(), 
+					exactMatching, normalizer);
+		}
+		
+		/**
+		 * Gets the index from the configured {@code IndexRegistry}, building 
+		 * it if no identically configured index is registered, and returns 
+		 * a new {@code NotLeakedAssertion} instance backed by it.
+		 * 
+		 * @return a new {@code NotLeakedAssertion} backed by the shared index
+		 * @throws IOException if the password data file cannot be processed
+		 */
+		private NotLeakedAssertion loadRegistered() throws IOException {
+			IndexRegistry.Entry entry = indexRegistry.getOrLoad(
+					getRegistryKey(), new IndexRegistry.Loader() {
+						@Override
+						public IndexRegistry.Entry load() throws IOException {
+							return new IndexRegistry.Entry(
+									loadPasswordData(indexFactory), 
+									numPasswords);
+						}
+					});
+			numPasswords = entry.numPasswords;
+			return new NotLeakedAssertion(entry.index, numPasswords, 
+					fpProbability, maxNumPasswords, ignoreCase, 
+					passwordDataFile, getIndexType(), exactMatching, 
+					normalizer);
+		}
+		
+		/**
+		 * Indicates whether the index can be shared through the configured 
+		 * {@code IndexRegistry}.
+		 */
+		private boolean isRegistrable() {
+			return indexRegistry != null && passwordDataStream == null 
+					&& getIndexType() != null 
+					&& indexFactory != IndexType.COUNTING_BLOOM_FILTER 
+					&& hotTierSize == 0;
+		}
+		
+		/**
+		 * Gets the key identifying the index this builder would build, from 
+		 * the identity of the password data file and every setting which 
+		 * affects the index.
+		 */
+		private Object getRegistryKey() throws IOException {
+			Object dataFile = DEFAULT_DATA_FILE;
+			long dataFileSize = -1;
+			long dataFileModified = -1;
+			if (passwordDataFile != null) {
+				Path dataFilePath = Paths.get(passwordDataFile);
+				if (!Files.exists(dataFilePath))
+					throw new IOException(String.format(
+							"Password data file does not exist: %s", 
+							passwordDataFile));
+				dataFile = dataFilePath.toRealPath();
+				dataFileSize = Files.size(dataFilePath);
+				dataFileModified = Files.getLastModifiedTime(dataFilePath)
+						.toMillis();
+			}
+			return Arrays.<Object>asList(dataFile, dataFileSize, 
+					dataFileModified, fpProbability, ignoreCase, 
+					maxNumPasswords, indexFactory, exactMatching, 
+					frequencyCounts, singlePass, normalizer);
+		}
+		
+		/**
+		 * Maps the configured shared filter file and returns a new 
+		 * {@code NotLeakedAssertion} instance backed by it, first building 
+		 * and publishing the filter if the file is missing or stale.
+		 * 
+		 * @return a new {@code NotLeakedAssertion} backed by the shared filter
+		 * @throws IOException if the filter cannot be built, published or 
+		 * mapped, or does not match the configuration of this {@code Builder}
+		 */
+		private NotLeakedAssertion loadSharedFilter() throws IOException {
+			Path filterPath = Paths.get(sharedFilterFile);
+			if (!isSharedFilterCurrent(filterPath)) {
+				Path lockPath = Paths.get(sharedFilterFile + ".lock");
+				// file locks are held by the whole JVM, so builders in this 
+				// JVM are serialized first, as a second lock() of the same 
+				// file would throw OverlappingFileLockException
+				synchronized (getPublishLock(lockPath)) {
+					try (FileChannel lockChannel = FileChannel.open(lockPath, 
+							StandardOpenOption.CREATE, 
+							StandardOpenOption.WRITE)) {
+						FileLock lock = lockChannel.lock();
+						try {
+							// another builder may have published while we 
+							// waited
+							if (!isSharedFilterCurrent(filterPath)) {
+								LOG.info("Publishing shared filter: {}", 
+										sharedFilterFile);
+								loadPasswordData(SharedBloomFilterIndex
+										.factory(filterPath, ignoreCase));
+							}
+						} finally {
+							lock.release();
+						}
+					} catch (UncheckedIOException e) {
+						throw e.getCause();
+					}
+				}
+			}
+			LOG.info("Mapping shared filter: {}", sharedFilterFile);
+			SharedBloomFilterIndex index = SharedBloomFilterIndex.open(filterPath);
+			if (index.isCaseFolded() != ignoreCase 
+					|| Double.compare(index.getFalsePositiveProbability(), 
+							fpProbability) != 0)
+				throw new IOException(String.format("Shared filter was "
+						+ "built with false positive probability %s and "
+						+ "ignore case %s, but %s and %s are configured: %s", 
+						index.getFalsePositiveProbability(), 
+						index.isCaseFolded(), fpProbability, ignoreCase, 
+						sharedFilterFile));
+			numPasswords = index.getNumPasswords();
+			return new NotLeakedAssertion(index, numPasswords, fpProbability, 
+					maxNumPasswords, ignoreCase, passwordDataFile, null, false, 
+					normalizer);
+		}
+		
+		/**
+		 * Gets the monitor which serializes the publishing of the shared 
+		 * filter guarded by the given lock file within this JVM.
+		 */
+		private static Object getPublishLock(Path lockPath) {
+			Path key = lockPath.toAbsolutePath().normalize();
+			Object lock = new Object();
+			Object existing = PUBLISH_LOCKS.putIfAbsent(key, lock);
+			return (existing == null) ? lock : existing;
+		}
+		
+		/**
+		 * Indicates whether the shared filter file exists and is no older 
+		 * than the configured password data file.
+		 */
+		private boolean isSharedFilterCurrent(Path filterPath) 
+				throws IOException {
+			if (!Files.exists(filterPath))
+				return false;
+			if (passwordDataFile == null)
+				return true;
+			return Files.getLastModifiedTime(filterPath).compareTo(
+					Files.getLastModifiedTime(Paths.get(passwordDataFile))) >= 0;
+		}
+		
+		/**
+		 * Gets the configured {@code IndexType}, or {@code null} if a custom 
+		 * index factory has been configured.
+		 */
+		private IndexType getIndexType() {
+			return (indexFactory instanceof IndexType) 
+					? (IndexType) indexFactory : null;
+		}
+		
+		private String getIndexTypeName() {
+			if (sharedFilterFile != null)
+				return SharedBloomFilterIndex.class.getSimpleName();
+			IndexType type = getIndexType();
+			String name = (type == null) 
+					? indexFactory.getClass().getName() : type.name();
+			if (exactMatching)
+				name += " (exact)";
+			return (hotTierSize > 0) ? name + " (tiered)" : name;
 		}
 		
 		/**
@@ -186,13 +827,24 @@ public class NotLeakedAssertion implements PolicyAssertion {
 		 * @throws IOException if the password data file cannot be opened
 		 */
 		private BufferedReader getPasswordDataReader() throws IOException {
-			if (passwordDataFile != null) {
+			if (passwordDataStream != null) {
+				LOG.debug("Reading password data from stream.");
+				return new BufferedReader(new InputStreamReader(
+						WordListFormat.decompress(passwordDataStream), 
+						Charset.forName("UTF-8")));
+			} else if (passwordDataFile != null) {
 				LOG.debug("Opening custom password data file: {}",
 						passwordDataFile);
 				Path dataFilePath = Paths.get(passwordDataFile);
 				if (Files.exists(dataFilePath)) {
 					try {
-						return Files.newBufferedReader(dataFilePath, Charset.forName("UTF-8"));
+						return new BufferedReader(new InputStreamReader(
+								WordListFormat.decompress(
+										Files.newInputStream(dataFilePath)), 
+								Charset.forName("UTF-8").newDecoder()
+										.onMalformedInput(CodingErrorAction.REPORT)
+										.onUnmappableCharacter(
+												CodingErrorAction.REPORT)));
 					} catch (IOException e) {
 						LOG.warn("IOException when opening custom data file: {}",
 								dataFilePath);
@@ -212,37 +864,52 @@ public class NotLeakedAssertion implements PolicyAssertion {
 		}
 		
 		/**
-		 * Builds and returns a new {@code BloomFilter} containing the 
+		 * Builds and returns a new {@code MembershipIndex} containing the 
 		 * passwords enumerated in the configured password data file.
 		 * 
-		 * @return a {@code BloomFilter} containing the password word list
+		 * @param factory the factory of the index to build
+		 * @return a {@code MembershipIndex} containing the password word list
 		 * @throws IOException if the configured password data file cannot 
 		 * be processed, or if it is modified during processing
 		 */
-		private BloomFilter<String> loadPasswordData() throws IOException {
+		private MembershipIndex loadPasswordData(
+				MembershipIndex.Factory factory) throws IOException {
+			if (isPasswordHashFile())
+				return loadPasswordHashes(factory);
+			if (singlePass || passwordDataStream != null)
+				return loadPasswordDataSinglePass();
+			if (parallelism > 1) {
+				if (passwordDataFile != null 
+						&& !isCompressedDataFile()
+						&& maxNumPasswords == MAX_NUM_PASSWORDS_DISABLED
+						&& factory == IndexType.BLOOM_FILTER
+						&& !exactMatching && hotTierSize == 0 
+						&& !frequencyCounts && normalizer == null)
+					return loadPasswordDataParallel();
+				LOG.info("Parallel processing requires an uncompressed custom "
+						+ "password data file, no maximum number of passwords, "
+						+ "a bloom filter index, no exact matching, no tiers, "
+						+ "no frequency counts and no normalization; "
+						+ "processing sequentially.");
+			}
 			LOG.info("Processing password data...");
-			BloomFilter<String> filter;
-			int numExpected = 0;
+			long numExpected = 0;
 			try (BufferedReader reader = getPasswordDataReader()) {
 				while (reader.readLine() != null)
 					numExpected++;
 			}
 			// Create filter and add elements
-			LOG.info("Creating filter with {} false positive probability "
+			LOG.info("Creating {} with {} false positive probability "
 					+ "and {} expected elements.", 
-					fpProbability, numExpected);
-			filter = new FilterBuilder(numExpected, fpProbability
-					).buildBloomFilter();
+					factory, fpProbability, numExpected);
+			MembershipIndex.Builder index = withTiers(withExactIndex(
+					factory.newBuilder(numExpected, fpProbability),
+					numExpected));
 			try (BufferedReader reader = getPasswordDataReader()) {
 				String password = null;
 				while ((password = reader.readLine()) != null) {
-					if ((maxNumPasswords != MAX_NUM_PASSWORDS_DISABLED) && 
-							(numPasswords >= maxNumPasswords))
-						return filter;
-					if (ignoreCase)
-						password = password.toLowerCase();
-					if (filter.add(password))
-						numPasswords++;
+					if (!addPassword(index, password))
+						break;
 					if (numPasswords > numExpected) {
 						String msg = String.format(
 								"Added %d passwords but expected %d."
@@ -254,35 +921,321 @@ public class NotLeakedAssertion implements PolicyAssertion {
 					}
 				}
 			}
-			return filter;
+			return index.build();
+		}
+		
+		/**
+		 * Builds and returns a new {@code MembershipIndex} containing the 
+		 * passwords enumerated in the configured password data file or 
+		 * stream, reading the word list only once.
+		 * <p>
+		 * The first {@code SAMPLE_SIZE} passwords are buffered and fed to a 
+		 * {@code HyperLogLog} sketch. If the word list ends within the 
+		 * sample, the sketch estimates its cardinality directly; otherwise the 
+		 * distinct ratio of the sample is extrapolated to the size of the data 
+		 * file, or to {@code UNKNOWN_SIZE_GROWTH} times the sample for 
+		 * streams of unknown size, and the scalable filter absorbs any 
+		 * underestimate.
+		 * 
+		 * @return a {@code MembershipIndex} containing the password word list
+		 * @throws IOException if the configured password data cannot be 
+		 * processed
+		 */
+		private MembershipIndex loadPasswordDataSinglePass() throws IOException {
+			LOG.info("Processing password data in a single pass...");
+			try (BufferedReader reader = getPasswordDataReader()) {
+				List<String> sample = new ArrayList<String>();
+				HyperLogLog sketch = new HyperLogLog();
+				long sampleBytes = 0;
+				boolean exhausted = false;
+				while (sample.size() < SAMPLE_SIZE) {
+					String password = reader.readLine();
+					if (password == null) {
+						exhausted = true;
+						break;
+					}
+					sample.add(password);
+					sketch.add(toKey(password));
+					sampleBytes += utf8Length(password) + 1;
+				}
+				int capacity = estimateCapacity(sample.size(), 
+						sketch.cardinality(), sampleBytes, exhausted);
+				LOG.info("Creating scalable filter with {} false positive "
+						+ "probability and {} estimated elements.", 
+						fpProbability, capacity);
+				MembershipIndex.Builder index = withTiers(withExactIndex(
+						new ScalableBloomFilterIndex.Builder(
+								capacity, fpProbability), 
+						capacity));
+				for (String password : sample) {
+					if (!addPassword(index, password))
+						return index.build();
+				}
+				sample = null;
+				String password = null;
+				while ((password = reader.readLine()) != null) {
+					if (!addPassword(index, password))
+						break;
+				}
+				return index.build();
+			}
+		}
+		
+		/**
+		 * Builds and returns a new {@code MembershipIndex} containing the 
+		 * password hashes held in the configured {@code PasswordHashFile}, 
+		 * which are added to the index without decoding or hashing.
+		 * 
+		 * @param factory the factory of the index to build
+		 * @return a {@code MembershipIndex} containing the password hashes
+		 * @throws IOException if the hash file cannot be read, is corrupt, 
+		 * or does not match the case-sensitivity setting
+		 * @throws IllegalArgumentException if the configured index cannot be 
+		 * built from hashes
+		 */
+		private MembershipIndex loadPasswordHashes(
+				MembershipIndex.Factory factory) throws IOException {
+			if (normalizer != null)
+				throw new IllegalArgumentException(
+						"Normalization is not supported with password hash "
+						+ "files.");
+			LOG.info("Loading password hash file: {}", passwordDataFile);
+			try (PasswordHashFile.Reader reader = 
+					new PasswordHashFile.Reader(Paths.get(passwordDataFile))) {
+				if (reader.isCaseFolded() != ignoreCase)
+					throw new IOException(String.format("Password hash file "
+							+ "is %scase folded, but case is %s.", 
+							reader.isCaseFolded() ? "" : "not ", 
+							ignoreCase ? "ignored" : "significant"));
+				long numExpected = reader.getNumEntries();
+				if (maxNumPasswords != MAX_NUM_PASSWORDS_DISABLED)
+					numExpected = Math.min(numExpected, maxNumPasswords);
+				MembershipIndex.Builder filter = 
+						factory.newBuilder(numExpected, fpProbability);
+				if (!(filter instanceof HashedMembershipIndex.Builder))
+					throw new IllegalArgumentException(String.format(
+							"Password hash files are not supported by %s.", 
+							factory));
+				MembershipIndex.Builder index = 
+						withTiers(withExactIndex(filter, numExpected));
+				HashedMembershipIndex.Builder hashed = 
+						(HashedMembershipIndex.Builder) index;
+				boolean ranked = reader.hasFrequencyCounts() 
+						&& index instanceof TieredIndex.Builder;
+				while (reader.next()) {
+					if ((maxNumPasswords != MAX_NUM_PASSWORDS_DISABLED) && 
+							(numPasswords >= maxNumPasswords))
+						break;
+					boolean added = ranked 
+							? ((TieredIndex.Builder) index).addHash(
+									reader.getHash(), reader.getCount()) 
+							: hashed.addHash(reader.getHash());
+					if (added)
+						numPasswords++;
+				}
+				return index.build();
+			}
+		}
+		
+		private boolean isPasswordHashFile() throws IOException {
+			if (passwordDataStream != null || passwordDataFile == null)
+				return false;
+			Path dataFilePath = Paths.get(passwordDataFile);
+			return Files.exists(dataFilePath) 
+					&& PasswordHashFile.isHashFile(dataFilePath);
+		}
+		
+		private boolean isCompressedDataFile() throws IOException {
+			Path dataFilePath = Paths.get(passwordDataFile);
+			return Files.exists(dataFilePath) 
+					&& WordListFormat.isCompressed(dataFilePath);
+		}
+		
+		/**
+		 * Builds and returns a new {@code MembershipIndex} containing the 
+		 * passwords enumerated in the configured password data file, using 
+		 * a {@code ParallelFilterLoader} with the configured parallelism.
+		 * 
+		 * @return a {@code MembershipIndex} containing the password word list
+		 * @throws IOException if the configured password data file cannot 
+		 * be processed
+		 */
+		private MembershipIndex loadPasswordDataParallel() throws IOException {
+			Path dataFilePath = Paths.get(passwordDataFile);
+			if (!Files.exists(dataFilePath))
+				throw new IOException(String.format(
+						"Password data file does not exist: %s", 
+						passwordDataFile));
+			ParallelFilterLoader loader = new ParallelFilterLoader(
+					dataFilePath, fpProbability, ignoreCase, parallelism);
+			MembershipIndex index = loader.load();
+			numPasswords = loader.getNumPasswords();
+			return index;
+		}
+		
+		/**
+		 * Wraps the given filter builder so that the filter's positives are 
+		 * confirmed against a {@code FingerprintSetIndex}, if exact matching 
+		 * is enabled.
+		 * 
+		 * @return the wrapped builder, or the given builder if exact matching 
+		 * is disabled
+		 */
+		private MembershipIndex.Builder withExactIndex(
+				MembershipIndex.Builder filter, long numExpected) {
+			if (!exactMatching)
+				return filter;
+			return new PrefilteredIndex.Builder(filter, 
+					new FingerprintSetIndex.Builder(numExpected));
+		}
+		
+		/**
+		 * Wraps the given index builder in a {@code TieredIndex.Builder}, if 
+		 * a hot tier is configured.
+		 * 
+		 * @return the wrapped builder, or the given builder if the hot tier 
+		 * is disabled
+		 */
+		private MembershipIndex.Builder withTiers(MembershipIndex.Builder index) {
+			if (hotTierSize == 0)
+				return index;
+			return new TieredIndex.Builder(index, hotTierSize);
+		}
+		
+		/**
+		 * Adds the given password, or the password and frequency count held 
+		 * by the given line if the word list holds frequency counts, to the 
+		 * index being built, unless the maximum number of passwords has been 
+		 * reached.
+		 * 
+		 * @return false if the maximum number of passwords had already been 
+		 * reached, otherwise returns true
+		 * @throws IOException if the line does not hold a frequency count 
+		 * and a password
+		 */
+		private boolean addPassword(MembershipIndex.Builder index, 
+				String password) throws IOException {
+			if ((maxNumPasswords != MAX_NUM_PASSWORDS_DISABLED) && 
+					(numPasswords >= maxNumPasswords))
+				return false;
+			if (!frequencyCounts) {
+				if (index.add(toKey(password)))
+					numPasswords++;
+				return true;
+			}
+			long count = WordListFormat.parseCount(password);
+			password = toKey(WordListFormat.stripCount(password));
+			boolean added = (index instanceof TieredIndex.Builder) 
+					? ((TieredIndex.Builder) index).add(password, count) 
+					: index.add(password);
+			if (added)
+				numPasswords++;
+			return true;
+		}
+		
+		/**
+		 * Gets the form in which the given password is added to the index, 
+		 * i.e. in lower case if case is ignored, and in canonical form if a 
+		 * normalizer is configured.
+		 */
+		private String toKey(String password) {
+			if (ignoreCase)
+				password = password.toLowerCase();
+			return (normalizer == null) 
+					? password : normalizer.normalize(password);
+		}
+		
+		/**
+		 * Estimates the number of distinct passwords in the word list from a 
+		 * sample at its start.
+		 */
+		private int estimateCapacity(int sampleLines, long sampleDistinct, 
+				long sampleBytes, boolean exhausted) throws IOException {
+			long estimate;
+			if (exhausted || sampleLines == 0) {
+				estimate = sampleDistinct;
+			} else {
+				double distinctRatio = Math.min(1.0, 
+						(double) sampleDistinct / sampleLines);
+				long dataSize = getPasswordDataSize();
+				double lines = (dataSize > 0)
+						? (double) sampleLines * dataSize / sampleBytes
+						: (double) sampleLines * UNKNOWN_SIZE_GROWTH;
+				estimate = (long) Math.ceil(lines * distinctRatio);
+			}
+			if (maxNumPasswords != MAX_NUM_PASSWORDS_DISABLED)
+				estimate = Math.min(estimate, maxNumPasswords);
+			return (int) Math.max(1, Math.min(estimate, Integer.MAX_VALUE));
+		}
+		
+		/**
+		 * Gets the size in bytes of the configured password data file, or -1 
+		 * if the word list is read from a stream, the default data file or a 
+		 * compressed data file.
+		 */
+		private long getPasswordDataSize() throws IOException {
+			if (passwordDataStream != null || passwordDataFile == null 
+					|| isCompressedDataFile())
+				return -1;
+			return Files.size(Paths.get(passwordDataFile));
+		}
+		
+		private static int utf8Length(String s) {
+			int length = 0;
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c < 0x80)
+					length += 1;
+				else if (c < 0x800)
+					length += 2;
+				else if (Character.isHighSurrogate(c)) {
+					length += 4;
+					i++;
+				} else
+					length += 3;
+			}
+			return length;
 		}
 	}
 	
-	private final BloomFilter<String> passwordFilter;
-	private final int numPasswords;
+	private final MembershipIndex passwordIndex;
+	private final long numPasswords;
 	private final double fpProbability;
-	private final int maxNumPasswords;
+	private final long maxNumPasswords;
 	private final boolean ignoreCase;
 	private final String passwordDataFile;
+	private final IndexType indexType;
+	private final boolean exactMatching;
+	private final HashedMembershipIndex hashedIndex;
+	private final PasswordNormalizer normalizer;
 	
-	private NotLeakedAssertion(final BloomFilter<String> passwordFilter, 
-			int numPasswords, double fpProbability, 
-			int maxItems, boolean ignoreCase, String passwordDataFile) {
-		this.passwordFilter = passwordFilter;
+	private NotLeakedAssertion(final MembershipIndex passwordIndex, 
+			long numPasswords, double fpProbability, 
+			long maxItems, boolean ignoreCase, String passwordDataFile, 
+			IndexType indexType, boolean exactMatching, 
+			PasswordNormalizer normalizer) {
+		this.passwordIndex = passwordIndex;
 		this.numPasswords = numPasswords;
 		this.fpProbability = fpProbability;
 		this.maxNumPasswords = maxItems;
 		this.ignoreCase = ignoreCase;
 		this.passwordDataFile = passwordDataFile;
+		this.indexType = indexType;
+		this.exactMatching = exactMatching;
+		this.hashedIndex = (passwordIndex instanceof HashedMembershipIndex) 
+				? (HashedMembershipIndex) passwordIndex : null;
+		this.normalizer = normalizer;
 	}
 	
 	/**
 	 * Gets the actual number of passwords stored in the filter, which will be 
 	 * checked against by calls to {@code verify()}.
 	 * 
-	 * @return the actual number of passwords in filter
+	 * @return the actual number of passwords in filter, or 
+	 * {@code MembershipIndex.UNKNOWN_NUM_PASSWORDS} if backed by a prebuilt 
+	 * index which does not track its size
 	 */
-	public int getNumPasswords() {
+	public long getNumPasswords() {
 		return numPasswords;
 	}
 	
@@ -304,7 +1257,7 @@ public class NotLeakedAssertion implements PolicyAssertion {
 	 * 
 	 * @return the maximum number of passwords allowed in the filter
 	 */
-	public int getMaxNumPasswords() {
+	public long getMaxNumPasswords() {
 		return maxNumPasswords;
 	}
 	
@@ -328,6 +1281,99 @@ public class NotLeakedAssertion implements PolicyAssertion {
 		return passwordDataFile;
 	}
 	
+	/**
+	 * Gets the type of {@code MembershipIndex} backing this assertion.
+	 * 
+	 * @return the index type, or {@code null} if the assertion is backed by a 
+	 * custom index
+	 */
+	public IndexType getIndexType() {
+		return indexType;
+	}
+	
+	/**
+	 * Gets the configured setting for exact matching.
+	 * 
+	 * @return true if positives of the filter are confirmed against a set 
+	 * of password fingerprints, otherwise returns false
+	 */
+	public boolean getExactMatching() {
+		return exactMatching;
+	}
+	
+	/**
+	 * Gets the {@code PasswordNormalizer} which reduces passwords to their 
+	 * canonical form before they are looked up.
+	 * 
+	 * @return the normalizer, or {@code null} if passwords are looked up 
+	 * as they are
+	 * @see Builder#withNormalizer(PasswordNormalizer)
+	 */
+	public PasswordNormalizer getNormalizer() {
+		return normalizer;
+	}
+	
+	/**
+	 * Gets the {@code TieredIndex} backing this assertion, whose hit rate 
+	 * statistics show how many lookups its hot tier answers.
+	 * 
+	 * @return the tiered index, or {@code null} if the assertion was built 
+	 * without a hot tier
+	 * @see Builder#withHotTier(int)
+	 */
+	public TieredIndex getTieredIndex() {
+		return (passwordIndex instanceof TieredIndex) 
+				? (TieredIndex) passwordIndex : null;
+	}
+	
+	/**
+	 * Gets the {@code MembershipIndex} which passwords are checked against.
+	 * 
+	 * @return the password index
+	 */
+	MembershipIndex getPasswordIndex() {
+		return passwordIndex;
+	}
+	
+	/**
+	 * Gets the form in which the given password is looked up in the 
+	 * password index, i.e. in lower case if case is ignored, and in 
+	 * canonical form if a normalizer is configured.
+	 * 
+	 * @param password the password, which must not be null
+	 * @return the password's key in the password index
+	 */
+	String toKey(String password) {
+		if (ignoreCase)
+			password = password.toLowerCase();
+		return (normalizer == null) ? password : normalizer.normalize(password);
+	}
+	
+	/**
+	 * Writes a snapshot of the filter and the parameters it was built with to 
+	 * the specified file, which can later be loaded through 
+	 * {@code Builder.withSnapshotFile()} to avoid reprocessing the password 
+	 * data file.
+	 * 
+	 * @param snapshotFile the path of the snapshot file to write
+	 * @throws IOException if the snapshot cannot be written
+	 * @throws UnsupportedOperationException if the password index is not a 
+	 * fixed-size bloom filter, e.g. when built with single-pass ingestion, 
+	 * or holds passwords normalized by a {@code PasswordNormalizer}, which 
+	 * a snapshot does not record
+	 */
+	public void writeSnapshot(String snapshotFile) throws IOException {
+		if (normalizer != null)
+			throw new UnsupportedOperationException(
+					"Snapshots are not supported with normalization.");
+		if (!(passwordIndex instanceof BloomFilterIndex))
+			throw new UnsupportedOperationException(
+					"Snapshots are only supported for fixed-size bloom "
+					+ "filters.");
+		FilterSnapshot.write(Paths.get(snapshotFile), this, 
+				((BloomFilterIndex) passwordIndex).getFilter());
+	}
+	
 	/**
 	 * Indicates whether the given password is not contained in the configured 
 	 * list of leaked and/or common passwords as required by this 
@@ -338,6 +1384,12 @@ public class NotLeakedAssertion implements PolicyAssertion {
 	 * {@code NotLeakedAssertion.LEAKED_PASSWORD Result} if the password was 
 	 * found in the filter, or {@code Result.SUCCESS} if the password passes 
 	 * this assertion.
+	 * <p>
+	 * When the password index is a {@code HashedMembershipIndex}, i.e. for 
+	 * every {@code IndexType} except {@code BLOOM_FILTER}, this method does 
+	 * not allocate: the password is hashed in place, and passwords are 
+	 * folded to lower case while hashing if case is ignored. Passwords are 
+	 * only copied when they are normalized to a different canonical form.
 	 * 
 	 * @return a failing {@code PolicyAssertion.Result} if the password is 
 	 * null or if the password is found in the list of leaked/common passwords, 
@@ -349,17 +1401,132 @@ public class NotLeakedAssertion implements PolicyAssertion {
 			LOG.debug("Assertion Failed - password is null");
 			return Result.NULL_VALUE;
 		}
-		if (ignoreCase) {
-			LOG.debug("Ignoring case for password: {}", password);
+		if (normalizer != null)
+			password = toKey(password);
+		else if (hashedIndex != null)
+			return verifyHash(ignoreCase 
+					? PasswordHash.hash64IgnoreCase(password) 
+					: PasswordHash.hash64(password));
+		else if (ignoreCase)
 			password = password.toLowerCase();
+		if (hashedIndex != null)
+			return verifyHash(PasswordHash.hash64(password));
+		if (passwordIndex.contains(password)) {
+			LOG.debug("Assertion Failed - found password in filter");
+			return LEAKED_PASSWORD;
 		}
-		if (passwordFilter.contains(password)) {
-			LOG.debug("Assertion Failed - found password in filter: {}",
-					password);
+		LOG.debug("Assertion Passed - did not find password in filter");
+		return Result.SUCCESS;
+	}
+	
+	/**
+	 * Indicates whether the given password is not contained in the 
+	 * configured list of leaked and/or common passwords. When the password 
+	 * index is a {@code HashedMembershipIndex}, the password is hashed in 
+	 * place and folded to lower case while hashing if case is ignored, so 
+	 * that no copy of it is made.
+	 * 
+	 * @see #verify(String)
+	 */
+	@Override
+	public Result verify(CharSequence password) {
+		if (password == null || hashedIndex == null || normalizer != null)
+			return verify(password == null ? null : password.toString());
+		return verifyHash(ignoreCase 
+				? PasswordHash.hash64IgnoreCase(password) 
+				: PasswordHash.hash64(password));
+	}
+	
+	/**
+	 * Indicates whether the password held in the given context is not 
+	 * contained in the configured list of leaked and/or common passwords. 
+	 * When the password index is a {@code HashedMembershipIndex}, the 
+	 * password's hash is read from the context, so that it is computed only 
+	 * once per evaluation; otherwise its lower case form is, if case is 
+	 * ignored.
+	 * 
+	 * @see #verify(String)
+	 */
+	@Override
+	public Result verifyContext(PasswordContext context) {
+		if (context.getPassword() == null)
+			return verify((String) null);
+		if (normalizer != null)
+			return verify(context.getString());
+		if (hashedIndex != null)
+			return verifyHash(ignoreCase 
+					? context.getHash64IgnoreCase() 
+					: context.getHash64());
+		if (passwordIndex.contains(ignoreCase 
+				? context.getLowerCase() : context.getString())) {
+			LOG.debug("Assertion Failed - found password in filter");
 			return LEAKED_PASSWORD;
 		}
-		LOG.debug("Assertion Passed - did not find password in filter: {}", 
-				password);
+		LOG.debug("Assertion Passed - did not find password in filter");
 		return Result.SUCCESS;
 	}
+	
+	/**
+	 * Indicates whether the given UTF-8 encoded password is not contained in 
+	 * the configured list of leaked and/or common passwords. When the 
+	 * password index is a {@code HashedMembershipIndex}, the bytes are 
+	 * hashed in place, as by {@code verify(CharSequence)}; only malformed 
+	 * input is decoded first.
+	 * 
+	 * @see #verify(String)
+	 */
+	@Override
+	public Result verifyUtf8(ByteBuffer password) {
+		if (password == null || hashedIndex == null || normalizer != null)
+			return PolicyAssertion.super.verifyUtf8(password);
+		if (ignoreCase)
+			return verifyHash(PasswordHash.hash64IgnoreCase(password));
+		if (!PasswordHash.isWellFormedUtf8(password))
+			return PolicyAssertion.super.verifyUtf8(password);
+		return verifyHash(PasswordHash.hash64(password));
+	}
+	
+	private Result verifyHash(long hash) {
+		if (hashedIndex.containsHash(hash)) {
+			LOG.debug("Assertion Failed - found password in filter");
+			return LEAKED_PASSWORD;
+		}
+		LOG.debug("Assertion Passed - did not find password in filter");
+		return Result.SUCCESS;
+	}
+	
+	/**
+	 * Verifies a batch of passwords, looking them all up in the password 
+	 * index at once so that the index can order its probes. Unlike 
+	 * {@code verify()}, individual results are not logged.
+	 * 
+	 * @see #verify(String)
+	 */
+	@Override
+	public void verifyAll(String[] passwords, int offset, int length, 
+			Result[] results) {
+		// keys and found hold only this batch, so that a large input split 
+		// into batches does not allocate arrays of its whole size per batch
+		String[] keys = new String[length];
+		boolean transform = ignoreCase || normalizer != null;
+		for (int i = 0; i < length; i++) {
+			String password = passwords[offset + i];
+			keys[i] = (password == null) ? "" 
+					: transform ? toKey(password) : password;
+		}
+		boolean[] found = new boolean[length];
+		passwordIndex.containsAll(keys, 0, length, found);
+		int leaked = 0;
+		for (int i = offset; i < offset + length; i++) {
+			if (passwords[i] == null) {
+				results[i] = Result.NULL_VALUE;
+			} else if (found[i - offset]) {
+				results[i] = LEAKED_PASSWORD;
+				leaked++;
+			} else {
+				results[i] = Result.SUCCESS;
+			}
+		}
+		LOG.debug("Found {} of {} passwords in filter.", leaked, length);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,343 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.insecurity.security.policy.index.BloomFilterIndex;
+
+/**
+ * Builds the bloom filter for a {@code NotLeakedAssertion} from a password 
+ * data file using multiple cores.
+ * <p>
+ * The data file is split into byte ranges which always begin immediately 
+ * after a {@code '\n'}, so that every line falls entirely within one range. 
+ * Ranges are memory-mapped and dealt round-robin to one shard per thread of a 
+ * {@code ForkJoinPool}. Each shard first counts the lines of its ranges, so 
+ * the filter can be sized exactly as the sequential build sizes it, and then 
+ * decodes and adds them to its own identically configured filter. The shard 
+ * filters are OR-merged into the first one by one, each released once 
+ * merged. Since adding to a bloom filter only ever sets bits, the merged 
+ * filter is bit-identical to one built sequentially.
+ * <p>
+ * Every shard holds a filter of the full size while loading, so a build on 
+ * {@code n} threads needs up to {@code n} times the memory of the filter. 
+ * The number of shards is therefore reduced to as many filters as fit in 
+ * half of the free heap, down to a single shard.
+ * <p>
+ * Lines are split on {@code '\n'}, {@code '\r'} and {@code "\r\n"}, exactly 
+ * as {@code BufferedReader.readLine()} splits them.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+class ParallelFilterLoader {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(ParallelFilterLoader.class);
+	
+	static final int DEFAULT_RANGE_SIZE = 64 * 1024 * 1024;
+	private static final int SCAN_BUFFER_SIZE = 8192;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final Path dataFile;
+	private final double fpProbability;
+	private final boolean ignoreCase;
+	private final int parallelism;
+	private final int rangeSize;
+	
+	private int numExpected;
+	private long numPasswords;
+	
+	ParallelFilterLoader(Path dataFile, double fpProbability,
+			boolean ignoreCase, int parallelism) {
+		this(dataFile, fpProbability, ignoreCase, parallelism,
+				DEFAULT_RANGE_SIZE);
+	}
+	
+	ParallelFilterLoader(Path dataFile, double fpProbability,
+			boolean ignoreCase, int parallelism, int rangeSize) {
+		this.dataFile = dataFile;
+		this.fpProbability = fpProbability;
+		this.ignoreCase = ignoreCase;
+		this.parallelism = parallelism;
+		this.rangeSize = rangeSize;
+	}
+	
+	/**
+	 * Gets the number of lines in the data file, counted by the last call to 
+	 * {@code load()}.
+	 * 
+	 * @return the number of lines in the data file
+	 */
+	int getNumExpected() {
+		return numExpected;
+	}
+	
+	/**
+	 * Gets the number of passwords added to the filter built by the last 
+	 * call to {@code load()}, i.e. the number of lines in the data file.
+	 * 
+	 * @return the number of passwords added to the filter
+	 */
+	long getNumPasswords() {
+		return numPasswords;
+	}
+	
+	/**
+	 * Builds a {@code BloomFilterIndex} containing every line of the data 
+	 * file.
+	 * 
+	 * @return the populated {@code BloomFilterIndex}
+	 * @throws IOException if the data file cannot be read, or is not valid 
+	 * UTF-8
+	 */
+	BloomFilterIndex load() throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try (FileChannel channel = FileChannel.open(dataFile,
+				StandardOpenOption.READ)) {
+			long[] bounds = splitRanges(channel);
+			LOG.info("Processing password data in {} ranges on {} threads...",
+					bounds.length - 1, parallelism);
+			
+			List<ForkJoinTask<Long>> counts = new ArrayList<ForkJoinTask<Long>>();
+			for (int shard = 0; shard < parallelism; shard++)
+				counts.add(pool.submit(new CountTask(channel, bounds, shard,
+						parallelism)));
+			long lines = 0;
+			for (ForkJoinTask<Long> count : counts)
+				lines += join(count);
+			if (lines > Integer.MAX_VALUE)
+				throw new IOException(String.format(
+						"Password data file has too many lines: %d", lines));
+			numExpected = (int) lines;
+			
+			LOG.info("Creating filter with {} false positive probability "
+					+ "and {} expected elements.",
+					fpProbability, numExpected);
+			BloomFilter<String> first = newFilter();
+			Runtime runtime = Runtime.getRuntime();
+			int numShards = getNumShards(parallelism,
+					(first.getSize() + 7L) / 8, runtime.maxMemory()
+					- (runtime.totalMemory() - runtime.freeMemory()));
+			if (numShards < parallelism)
+				LOG.warn("Loading on {} of {} threads, as the heap cannot hold "
+						+ "a filter per thread.", numShards, parallelism);
+			List<ForkJoinTask<BloomFilter<String>>> shards =
+					new ArrayList<ForkJoinTask<BloomFilter<String>>>();
+			shards.add(pool.submit(new LoadTask(channel, bounds, 0, numShards,
+					first)));
+			for (int shard = 1; shard < numShards; shard++)
+				shards.add(pool.submit(new LoadTask(channel, bounds, shard,
+						numShards, newFilter())));
+			BloomFilter<String> filter = join(shards.get(0));
+			BitSet bits = filter.getBitSet();
+			for (int shard = 1; shard < numShards; shard++) {
+				bits.or(join(shards.get(shard)).getBitSet());
+				// release the merged shard's filter
+				shards.set(shard, null);
+			}
+			numPasswords = lines;
+			return new BloomFilterIndex(filter);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Splits the data file into ranges of roughly {@code rangeSize} bytes, 
+	 * each beginning at the start of the file or immediately after a 
+	 * {@code '\n'}.
+	 * 
+	 * @return the range boundaries, starting with 0 and ending with the size 
+	 * of the file
+	 */
+	private long[] splitRanges(FileChannel channel) throws IOException {
+		long size = channel.size();
+		List<Long> bounds = new ArrayList<Long>();
+		bounds.add(0L);
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+		long next = rangeSize;
+		while (next < size) {
+			long boundary = findLineStart(channel, next, buffer);
+			if (boundary >= size)
+				break;
+			bounds.add(boundary);
+			next = boundary + rangeSize;
+		}
+		bounds.add(size);
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = bounds.get(i);
+		return result;
+	}
+	
+	private static long findLineStart(FileChannel channel, long position,
+			ByteBuffer buffer) throws IOException {
+		while (true) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read <= 0)
+				return Long.MAX_VALUE;
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n')
+					return position + i + 1;
+			}
+			position += read;
+		}
+	}
+	
+	private BloomFilter<String> newFilter() {
+		return new FilterBuilder(numExpected, fpProbability).buildBloomFilter();
+	}
+	
+	/**
+	 * Gets the number of shards to load concurrently, i.e. the parallelism, 
+	 * reduced to the number of filters of the given size which fit in half 
+	 * of the given free heap, besides the filter already allocated.
+	 */
+	static int getNumShards(int parallelism, long filterBytes,
+			long freeBytes) {
+		long extraShards = (freeBytes / 2) / Math.max(filterBytes, 1);
+		return (int) Math.max(1, Math.min(parallelism, 1 + extraShards));
+	}
+	
+	private static <T> T join(ForkJoinTask<T> task) throws IOException {
+		try {
+			return task.join();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Base class for tasks which visit every line in the ranges of a shard.
+	 */
+	private abstract class ShardTask<T> extends RecursiveTask<T> {
+		private static final long serialVersionUID = 1L;
+		
+		private final FileChannel channel;
+		private final long[] bounds;
+		private final int shard;
+		private final int numShards;
+		
+		ShardTask(FileChannel channel, long[] bounds, int shard,
+				int numShards) {
+			this.channel = channel;
+			this.bounds = bounds;
+			this.shard = shard;
+			this.numShards = numShards;
+		}
+		
+		@Override
+		protected T compute() {
+			try {
+				for (int range = shard; range < bounds.length - 1;
+						range += numShards) {
+					long start = bounds[range];
+					MappedByteBuffer buffer = channel.map(
+							FileChannel.MapMode.READ_ONLY,
+							start, bounds[range + 1] - start);
+					scan(buffer);
+				}
+				return result();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		private void scan(ByteBuffer buffer) throws IOException {
+			int limit = buffer.limit();
+			int lineStart = 0;
+			for (int i = 0; i < limit; i++) {
+				byte b = buffer.get(i);
+				if (b == '\n' || b == '\r') {
+					line(buffer, lineStart, i);
+					if (b == '\r' && i + 1 < limit && buffer.get(i + 1) == '\n')
+						i++;
+					lineStart = i + 1;
+				}
+			}
+			if (lineStart < limit)
+				line(buffer, lineStart, limit);
+		}
+		
+		abstract void line(ByteBuffer buffer, int start, int end)
+				throws IOException;
+		
+		abstract T result();
+	}
+	
+	private class CountTask extends ShardTask<Long> {
+		private static final long serialVersionUID = 1L;
+		
+		private long lines = 0;
+		
+		CountTask(FileChannel channel, long[] bounds, int shard,
+				int numShards) {
+			super(channel, bounds, shard, numShards);
+		}
+		
+		@Override
+		void line(ByteBuffer buffer, int start, int end) {
+			lines++;
+		}
+		
+		@Override
+		Long result() {
+			return lines;
+		}
+	}
+	
+	private class LoadTask extends ShardTask<BloomFilter<String>> {
+		private static final long serialVersionUID = 1L;
+		
+		private final BloomFilter<String> filter;
+		private final CharsetDecoder decoder = UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		
+		LoadTask(FileChannel channel, long[] bounds, int shard,
+				int numShards, BloomFilter<String> filter) {
+			super(channel, bounds, shard, numShards);
+			this.filter = filter;
+		}
+		
+		@Override
+		void line(ByteBuffer buffer, int start, int end)
+				throws CharacterCodingException {
+			ByteBuffer bytes = buffer.duplicate();
+			bytes.limit(end).position(start);
+			CharBuffer chars = decoder.decode(bytes);
+			String password = chars.toString();
+			if (ignoreCase)
+				password = password.toLowerCase();
+			filter.add(password);
+		}
+		
+		@Override
+		BloomFilter<String> result() {
+			return filter;
+		}
+	}
+}
\ No newline at end of file
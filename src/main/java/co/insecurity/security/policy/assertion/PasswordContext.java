@@ -0,0 +1,266 @@
+package co.insecurity.security.policy.assertion;
+
+import co.insecurity.security.policy.index.PasswordHash;
+
+/**
+ * Holds a password being evaluated together with values derived from it, 
+ * such as its length, lower case form, character class counts and hashes, 
+ * so that the assertions of a {@code PasswordPolicy} share them rather than 
+ * each deriving them again.
+ * <p>
+ * Each derived value is computed on first use, so a value no assertion 
+ * reads is never computed, and one every assertion reads is computed once. 
+ * Apart from {@code getString()} and {@code getLowerCase()}, which create a 
+ * {@code String} if the password is not already one, deriving values does 
+ * not allocate. A {@code PasswordContext} is not thread safe, and may be 
+ * {@code reset()} to evaluate another password on the same thread.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public final class PasswordContext {
+	
+	private CharSequence password;
+	private String string;
+	private String lowerCase;
+	private boolean counted;
+	private int codePointCount;
+	private int lowerCaseCount;
+	private int upperCaseCount;
+	private int digitCount;
+	private int otherCount;
+	private boolean hashed;
+	private long hash;
+	private boolean hashedIgnoreCase;
+	private long hashIgnoreCase;
+	private boolean inUse;
+	
+	/**
+	 * Constructs an empty {@code PasswordContext}, which holds no password 
+	 * until it is {@code reset()}.
+	 */
+	public PasswordContext() { }
+	
+	/**
+	 * Constructs a {@code PasswordContext} holding the given password.
+	 * 
+	 * @param password the password to evaluate, which may be null
+	 */
+	public PasswordContext(CharSequence password) {
+		reset(password);
+	}
+	
+	/**
+	 * Discards the values derived from the previous password, and holds the 
+	 * given password instead.
+	 * 
+	 * @param password the password to evaluate, which may be null
+	 * @return this {@code PasswordContext}
+	 */
+	public PasswordContext reset(CharSequence password) {
+		this.password = password;
+		this.string = (password instanceof String) ? (String) password : null;
+		this.lowerCase = null;
+		this.counted = false;
+		this.hashed = false;
+		this.hashedIgnoreCase = false;
+		this.inUse = true;
+		return this;
+	}
+	
+	/**
+	 * Discards the password and the values derived from it, so that the 
+	 * context holds no reference to them.
+	 */
+	public void clear() {
+		reset(null);
+		this.inUse = false;
+	}
+	
+	/**
+	 * Indicates whether this context holds a password, i.e. whether it has 
+	 * been {@code reset()} and not cleared since. A context in use must not 
+	 * be reset by a nested evaluation.
+	 * 
+	 * @return true if this context holds a password, otherwise returns false
+	 */
+	public boolean isInUse() {
+		return inUse;
+	}
+	
+	/**
+	 * Gets the password.
+	 * 
+	 * @return the password, which may be null
+	 */
+	public CharSequence getPassword() {
+		return password;
+	}
+	
+	/**
+	 * Gets the password as a {@code String}.
+	 * 
+	 * @return the password, which may be null
+	 */
+	public String getString() {
+		if (string == null && password != null)
+			string = password.toString();
+		return string;
+	}
+	
+	/**
+	 * Gets the password converted to lower case, as by 
+	 * {@code String.toLowerCase()}.
+	 * 
+	 * @return the lower case password
+	 * @throws NullPointerException if the password is null
+	 */
+	public String getLowerCase() {
+		if (lowerCase == null)
+			lowerCase = getString().toLowerCase();
+		return lowerCase;
+	}
+	
+	/**
+	 * Gets the length of the password in UTF-16 units, i.e. as by 
+	 * {@code String.length()}.
+	 * 
+	 * @return the length of the password
+	 * @throws NullPointerException if the password is null
+	 */
+	public int getLength() {
+		return password.length();
+	}
+	
+	/**
+	 * Gets the number of code points in the password, counting each 
+	 * unpaired surrogate as one code point.
+	 * 
+	 * @return the number of code points in the password
+	 * @throws NullPointerException if the password is null
+	 */
+	public int getCodePointCount() {
+		count();
+		return codePointCount;
+	}
+	
+	/**
+	 * Gets the number of lower case letters in the password.
+	 * 
+	 * @return the number of lower case code points
+	 * @throws NullPointerException if the password is null
+	 */
+	public int getLowerCaseCount() {
+		count();
+		return lowerCaseCount;
+	}
+	
+	/**
+	 * Gets the number of upper case letters in the password, including 
+	 * title case letters.
+	 * 
+	 * @return the number of upper case code points
+	 * @throws NullPointerException if the password is null
+	 */
+	public int getUpperCaseCount() {
+		count();
+		return upperCaseCount;
+	}
+	
+	/**
+	 * Gets the number of digits in the password.
+	 * 
+	 * @return the number of digit code points
+	 * @throws NullPointerException if the password is null
+	 */
+	public int getDigitCount() {
+		count();
+		return digitCount;
+	}
+	
+	/**
+	 * Gets the number of code points in the password which are neither 
+	 * lower case letters, upper case letters nor digits, e.g. symbols, 
+	 * punctuation, spaces and uncased letters.
+	 * 
+	 * @return the number of other code points
+	 * @throws NullPointerException if the password is null
+	 */
+	public int getOtherCount() {
+		count();
+		return otherCount;
+	}
+	
+	/**
+	 * Gets the number of character classes, out of lower case letters, 
+	 * upper case letters, digits and other characters, which occur in the 
+	 * password.
+	 * 
+	 * @return the number of character classes, from 0 to 4
+	 * @throws NullPointerException if the password is null
+	 */
+	public int getCharacterClassCount() {
+		count();
+		return ((lowerCaseCount > 0) ? 1 : 0) + ((upperCaseCount > 0) ? 1 : 0)
+				+ ((digitCount > 0) ? 1 : 0) + ((otherCount > 0) ? 1 : 0);
+	}
+	
+	/**
+	 * Gets the hash of the password, as by {@code PasswordHash.hash64()}.
+	 * 
+	 * @return the 64-bit hash of the password
+	 * @throws NullPointerException if the password is null
+	 */
+	public long getHash64() {
+		if (!hashed) {
+			hash = PasswordHash.hash64(password);
+			hashed = true;
+		}
+		return hash;
+	}
+	
+	/**
+	 * Gets the hash of the lower case password, as by 
+	 * {@code PasswordHash.hash64IgnoreCase()}.
+	 * 
+	 * @return the 64-bit hash of the lower case password
+	 * @throws NullPointerException if the password is null
+	 */
+	public long getHash64IgnoreCase() {
+		if (!hashedIgnoreCase) {
+			hashIgnoreCase = (lowerCase != null)
+					? PasswordHash.hash64(lowerCase)
+					: PasswordHash.hash64IgnoreCase(password);
+			hashedIgnoreCase = true;
+		}
+		return hashIgnoreCase;
+	}
+	
+	private void count() {
+		if (counted)
+			return;
+		if (password == null)
+			throw new NullPointerException("Password is null");
+		int codePoints = 0;
+		int lower = 0;
+		int upper = 0;
+		int digits = 0;
+		for (int i = 0; i < password.length(); ) {
+			int c = Character.codePointAt(password, i);
+			i += Character.charCount(c);
+			codePoints++;
+			if (Character.isLowerCase(c))
+				lower++;
+			else if (Character.isUpperCase(c) || Character.isTitleCase(c))
+				upper++;
+			else if (Character.isDigit(c))
+				digits++;
+		}
+		this.codePointCount = codePoints;
+		this.lowerCaseCount = lower;
+		this.upperCaseCount = upper;
+		this.digitCount = digits;
+		this.otherCount = codePoints - lower - upper - digits;
+		this.counted = true;
+	}
+}
\ No newline at end of file
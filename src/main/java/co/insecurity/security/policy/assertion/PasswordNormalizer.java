@@ -0,0 +1,261 @@
+package co.insecurity.security.policy.assertion;
+
+/**
+ * Reduces a password to a canonical form shared by its trivial variants, 
+ * so that e.g. {@code p@ssw0rd}, {@code PASSWORD1} and {@code password!} are 
+ * all found in a word list holding only {@code password}.
+ * <p>
+ * The normalizer applies up to three stages:
+ * <ol>
+ * <li>case folding, which converts each character to lower case with 
+ * {@code Character.toLowerCase()};</li>
+ * <li>leet substitution, which replaces the common look-alike digits and 
+ * symbols with the letters they stand for: {@code 4 @} with {@code a}, 
+ * {@code 8} with {@code b}, {@code 3} with {@code e}, {@code 9} with 
+ * {@code g}, {@code 1 ! |} with {@code i}, {@code 0} with {@code o}, 
+ * {@code 5 $} with {@code s}, and {@code 7 +} with {@code t}. Since 
+ * {@code 1} stands for {@code l} as often as for {@code i}, the letter 
+ * {@code l} is replaced with {@code i} as well;</li>
+ * <li>suffix stripping, which removes the digits and symbols appended to a 
+ * word, i.e. the trailing run of code points which are not letters, such 
+ * as the {@code 2024!} of {@code password2024!}. A trailing run made only 
+ * of look-alikes of letters other than {@code i}, as in {@code hell0} or 
+ * {@code l0v3}, is taken to be part of the word, and is substituted 
+ * rather than stripped if leet substitution is applied, whereas the 
+ * look-alikes of {@code i} are far more often appended as padding.</li>
+ * </ol>
+ * A password without any letter, such as {@code 123456}, is left as is by 
+ * every stage, since it is not a variant of a word. 
+ * Normalizing a canonical form leaves it unchanged, so a word list and the 
+ * passwords checked against it can be normalized independently. Each 
+ * password is normalized in a single pass, and is not copied if it is 
+ * already in canonical form.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public final class PasswordNormalizer {
+	
+	/**
+	 * A {@code PasswordNormalizer} applying every stage
+	 */
+	public static final PasswordNormalizer DEFAULT = new Builder().build();
+	
+	private static final char[] LEET = new char[128];
+	
+	static {
+		LEET['4'] = 'a';
+		LEET['@'] = 'a';
+		LEET['8'] = 'b';
+		LEET['3'] = 'e';
+		LEET['9'] = 'g';
+		LEET['1'] = 'i';
+		LEET['!'] = 'i';
+		LEET['|'] = 'i';
+		LEET['l'] = 'i';
+		LEET['0'] = 'o';
+		LEET['5'] = 's';
+		LEET['$'] = 's';
+		LEET['7'] = 't';
+		LEET['+'] = 't';
+	}
+	
+	/**
+	 * Builds a {@code PasswordNormalizer}.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder {
+		
+		private boolean suffixStripping;
+		private boolean caseFolding;
+		private boolean leetSubstitution;
+		
+		/**
+		 * Instantiates a new {@code PasswordNormalizer.Builder}, which 
+		 * enables every stage by default.
+		 */
+		public Builder() {
+			this.suffixStripping = true;
+			this.caseFolding = true;
+			this.leetSubstitution = true;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code PasswordNormalizer} with the provided setting for stripping 
+		 * trailing digits and symbols.
+		 * 
+		 * @param shouldStripSuffix whether trailing digits and symbols 
+		 * should be removed
+		 * @return this {@code Builder}, updated with the specified setting
+		 */
+		public Builder withSuffixStripping(boolean shouldStripSuffix) {
+			this.suffixStripping = shouldStripSuffix;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code PasswordNormalizer} with the provided setting for case 
+		 * folding.
+		 * 
+		 * @param shouldFoldCase whether passwords should be converted to 
+		 * lower case
+		 * @return this {@code Builder}, updated with the specified setting
+		 */
+		public Builder withCaseFolding(boolean shouldFoldCase) {
+			this.caseFolding = shouldFoldCase;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a 
+		 * {@code PasswordNormalizer} with the provided setting for leet 
+		 * substitution.
+		 * 
+		 * @param shouldSubstitute whether look-alike digits and symbols 
+		 * should be replaced with the letters they stand for
+		 * @return this {@code Builder}, updated with the specified setting
+		 */
+		public Builder withLeetSubstitution(boolean shouldSubstitute) {
+			this.leetSubstitution = shouldSubstitute;
+			return this;
+		}
+		
+		/**
+		 * Returns a new {@code PasswordNormalizer} applying the configured 
+		 * stages.
+		 * 
+		 * @return a new {@code PasswordNormalizer} instance
+		 */
+		public PasswordNormalizer build() {
+			return new PasswordNormalizer(
+					suffixStripping, caseFolding, leetSubstitution);
+		}
+	}
+	
+	private final boolean suffixStripping;
+	private final boolean caseFolding;
+	private final boolean leetSubstitution;
+	
+	private PasswordNormalizer(boolean suffixStripping, boolean caseFolding,
+			boolean leetSubstitution) {
+		this.suffixStripping = suffixStripping;
+		this.caseFolding = caseFolding;
+		this.leetSubstitution = leetSubstitution;
+	}
+	
+	/**
+	 * Indicates whether trailing digits and symbols are removed.
+	 * 
+	 * @return true if suffixes are stripped
+	 */
+	public boolean getSuffixStripping() {
+		return suffixStripping;
+	}
+	
+	/**
+	 * Indicates whether passwords are converted to lower case.
+	 * 
+	 * @return true if case is folded
+	 */
+	public boolean getCaseFolding() {
+		return caseFolding;
+	}
+	
+	/**
+	 * Indicates whether look-alike digits and symbols are replaced with the 
+	 * letters they stand for.
+	 * 
+	 * @return true if leet substitution is applied
+	 */
+	public boolean getLeetSubstitution() {
+		return leetSubstitution;
+	}
+	
+	/**
+	 * Returns the canonical form of the given password.
+	 * 
+	 * @param password the password to normalize
+	 * @return the canonical form of the password, which is the password 
+	 * itself if it is already in canonical form
+	 */
+	public String normalize(CharSequence password) {
+		int length = password.length();
+		int end = length;
+		int i = 0;
+		while (i < length && !Character.isLetter(
+				Character.codePointAt(password, i)))
+			i += Character.charCount(Character.codePointAt(password, i));
+		if (i == length)
+			return password.toString();
+		if (suffixStripping) {
+			boolean isWord = leetSubstitution;
+			while (true) {
+				int c = Character.codePointBefore(password, end);
+				if (Character.isLetter(c))
+					break;
+				isWord &= (substitute(c) != c && substitute(c) != 'i');
+				end -= Character.charCount(c);
+			}
+			if (isWord)
+				end = length;
+		}
+		// find the first code point changed, so that canonical forms are
+		// returned without copying
+		i = 0;
+		while (i < end) {
+			int c = Character.codePointAt(password, i);
+			if (map(c) != c)
+				break;
+			i += Character.charCount(c);
+		}
+		if (i == end)
+			return (end == length)
+					? password.toString()
+					: password.subSequence(0, end).toString();
+		StringBuilder canonical = new StringBuilder(end);
+		canonical.append(password, 0, i);
+		while (i < end) {
+			int c = Character.codePointAt(password, i);
+			canonical.appendCodePoint(map(c));
+			i += Character.charCount(c);
+		}
+		return canonical.toString();
+	}
+	
+	private int map(int c) {
+		if (caseFolding)
+			c = Character.toLowerCase(c);
+		return leetSubstitution ? substitute(c) : c;
+	}
+	
+	/**
+	 * Gets the letter the given code point stands for in leetspeak.
+	 * 
+	 * @param c the code point, folded to lower case
+	 * @return the letter substituted for the code point, or the code point 
+	 * itself if it is not substituted
+	 */
+	static int substitute(int c) {
+		return (c < LEET.length && LEET[c] != 0) ? LEET[c] : c;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof PasswordNormalizer))
+			return false;
+		PasswordNormalizer other = (PasswordNormalizer) obj;
+		return suffixStripping == other.suffixStripping
+				&& caseFolding == other.caseFolding
+				&& leetSubstitution == other.leetSubstitution;
+	}
+	
+	@Override
+	public int hashCode() {
+		return (suffixStripping ? 4 : 0) | (caseFolding ? 2 : 0)
+				| (leetSubstitution ? 1 : 0);
+	}
+}
\ No newline at end of file
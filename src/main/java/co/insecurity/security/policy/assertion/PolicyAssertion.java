@@ -1,5 +1,12 @@
 package co.insecurity.security.policy.assertion;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
 /**
  * The {@code PolicyAssertion} interface defines a single method, 
  * {@code verify}, which takes a password string and returns a 
@@ -81,4 +88,137 @@ public interface PolicyAssertion {
 	 * assertion is met
 	 */
 	public Result verify(String password);
+	
+	/**
+	 * Verifies a password held in a {@code CharSequence}, such as a 
+	 * {@code StringBuilder} or a {@code CharBuffer} wrapping a {@code char[]}, 
+	 * so that callers need not create an immutable {@code String} copy of it.
+	 * <p>
+	 * The default implementation converts the password to a {@code String} 
+	 * and calls {@code verify(String)}. Implementations should override it 
+	 * to read the password in place, and must return the same result 
+	 * {@code verify(String)} would.
+	 * 
+	 * @param password the password to verify against the assertion definition
+	 * @return a {@code PolicyAssertion.Result} indicating whether the 
+	 * assertion is met
+	 */
+	public default Result verify(CharSequence password) {
+		return verify(password == null ? null : password.toString());
+	}
+	
+	/**
+	 * Verifies the password held in a {@code PasswordContext}, reading any 
+	 * values derived from it, such as its length or hash, from the context 
+	 * so that they are computed only once for all the assertions of a 
+	 * {@code PasswordPolicy}.
+	 * <p>
+	 * The default implementation calls {@code verify(CharSequence)} with 
+	 * the password. Implementations should override it to use the values 
+	 * held by the context, and must return the same result 
+	 * {@code verify(String)} would.
+	 * 
+	 * @param context the context holding the password to verify
+	 * @return a {@code PolicyAssertion.Result} indicating whether the 
+	 * assertion is met
+	 */
+	public default Result verifyContext(PasswordContext context) {
+		return verify(context.getPassword());
+	}
+	
+	/**
+	 * Verifies a password held in a {@code char[]}, which the caller may 
+	 * clear once the password has been verified. The array is wrapped, not 
+	 * copied, and passed to {@code verify(CharSequence)}.
+	 * 
+	 * @param password the password to verify against the assertion definition
+	 * @return a {@code PolicyAssertion.Result} indicating whether the 
+	 * assertion is met
+	 */
+	public default Result verifyChars(char[] password) {
+		return verify(password == null ? null : CharBuffer.wrap(password));
+	}
+	
+	/**
+	 * Verifies a UTF-8 encoded password held in the remaining bytes of a 
+	 * {@code ByteBuffer}, e.g. as read from a request body, without changing 
+	 * the buffer's position. Malformed input is decoded with replacement 
+	 * characters, as by {@code new String(bytes, "UTF-8")}.
+	 * <p>
+	 * The default implementation decodes the password and calls 
+	 * {@code verify(CharSequence)}. Implementations may override it to read 
+	 * the bytes in place, but must return the same result.
+	 * 
+	 * @param password the UTF-8 encoded password to verify
+	 * @return a {@code PolicyAssertion.Result} indicating whether the 
+	 * assertion is met
+	 */
+	public default Result verifyUtf8(ByteBuffer password) {
+		if (password == null)
+			return verify((CharSequence) null);
+		return verify(Charset.forName("UTF-8").decode(password.duplicate()));
+	}
+	
+	/**
+	 * Verifies a UTF-8 encoded password held in a range of a {@code byte[]}. 
+	 * The array is wrapped, not copied, and passed to 
+	 * {@code verifyUtf8(ByteBuffer)}.
+	 * 
+	 * @param password the array holding the UTF-8 encoded password
+	 * @param offset the index of the first byte of the password
+	 * @param length the number of bytes in the password
+	 * @return a {@code PolicyAssertion.Result} indicating whether the 
+	 * assertion is met
+	 */
+	public default Result verifyUtf8(byte[] password, int offset, int length) {
+		return verifyUtf8(password == null 
+				? null : ByteBuffer.wrap(password, offset, length));
+	}
+	
+	/**
+	 * Verifies a batch of passwords against the assertion, storing the 
+	 * {@code PolicyAssertion.Result} for each in the corresponding element 
+	 * of {@code results}.
+	 * <p>
+	 * The default implementation calls {@code verify()} for each password in 
+	 * turn. Implementations may override it to process the whole batch at 
+	 * once, but must store the same results {@code verify()} would return. 
+	 * Batches may be verified concurrently from multiple threads.
+	 * 
+	 * @param passwords the passwords to verify
+	 * @param offset the index of the first password to verify
+	 * @param length the number of passwords to verify
+	 * @param results the array in which to store the result for the 
+	 * password at each index
+	 */
+	public default void verifyAll(String[] passwords, int offset, int length, 
+			Result[] results) {
+		for (int i = offset; i < offset + length; i++)
+			results[i] = verify(passwords[i]);
+	}
+	
+	/**
+	 * Verifies a password asynchronously, so that an assertion which waits 
+	 * on I/O, e.g. a disk index or a breach lookup service, need not hold 
+	 * up the calling thread or the other assertions of a policy.
+	 * <p>
+	 * The default implementation runs {@code verify()} on the given 
+	 * executor. Implementations which are natively asynchronous should 
+	 * override it to return their own future, but must complete it with the 
+	 * same result {@code verify()} would return.
+	 * 
+	 * @param password the password to verify against the assertion definition
+	 * @param executor the executor on which to run blocking work
+	 * @return a future completed with a {@code PolicyAssertion.Result} 
+	 * indicating whether the assertion is met
+	 */
+	public default CompletableFuture<Result> verifyAsync(final String password, 
+			Executor executor) {
+		return CompletableFuture.supplyAsync(new Supplier<Result>() {
+			@Override
+			public Result get() {
+				return verify(password);
+			}
+		}, executor);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,459 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.insecurity.security.policy.index.MutableMembershipIndex;
+
+/**
+ * A {@code PolicyAssertion} which delegates to a {@code NotLeakedAssertion} 
+ * that can be rebuilt, or updated with delta files, while the application 
+ * is running, so that a new password list can be picked up without a 
+ * restart or rebuilding the {@code PasswordPolicy}.
+ * <p>
+ * Calls to {@code reload()} rebuild the assertion from the 
+ * {@code NotLeakedAssertion.Builder} given at construction, and then swap 
+ * the new assertion in with a single volatile write. Calls to 
+ * {@code verify()} never block: they complete against whichever assertion 
+ * was current when they started, and a failed rebuild leaves the current 
+ * assertion in place. Optionally, the password data file can be watched, so 
+ * that the assertion is reloaded whenever the file changes.
+ * <p>
+ * Delta files add passwords to, or remove them from, the live assertion 
+ * without a rebuild. Each line of a delta file is a password prefixed with 
+ * {@code '+'} to add it, or {@code '-'} to remove it. If the assertion is 
+ * backed by a {@code MutableMembershipIndex}, such as 
+ * {@code IndexType.COUNTING_BLOOM_FILTER}, additions are applied to the 
+ * index itself, and so are the removals of passwords which deltas added. 
+ * Removing any other password from a counting filter could decrement 
+ * counters shared with passwords which remain, e.g. when the password is 
+ * only a false positive, so such removals are kept in a small concurrent 
+ * overlay set instead. Otherwise all deltas are kept in overlay sets, which 
+ * are consulted before the index. Deltas are discarded by the next reload, which 
+ * is expected to pick up a password data file they have been merged into. 
+ * If the rebuilt assertion reuses the mutable index, e.g. one set with 
+ * {@code Builder.withMembershipIndex()}, the additions applied to it are 
+ * removed again before the swap.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class ReloadableNotLeakedAssertion implements PolicyAssertion, Closeable {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(ReloadableNotLeakedAssertion.class);
+	
+	/**
+	 * The default time to wait for changes to the password data file to 
+	 * settle before reloading it.
+	 */
+	public static final long DEFAULT_QUIET_PERIOD_MILLIS = 1000;
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/**
+	 * An assertion together with the deltas applied to it since it was built.
+	 */
+	private static class State {
+		final NotLeakedAssertion assertion;
+		final MutableMembershipIndex mutableIndex;
+		final Set<String> added = Collections.newSetFromMap(
+				new ConcurrentHashMap<String, Boolean>());
+		final Set<String> removed = Collections.newSetFromMap(
+				new ConcurrentHashMap<String, Boolean>());
+		// passwords which deltas added to the mutable index, which alone
+		// may be removed from it again
+		final Set<String> indexed = new HashSet<String>();
+		
+		State(NotLeakedAssertion assertion) {
+			this.assertion = assertion;
+			this.mutableIndex = (assertion.getPasswordIndex()
+					instanceof MutableMembershipIndex)
+					? (MutableMembershipIndex) assertion.getPasswordIndex()
+					: null;
+		}
+	}
+	
+	private final NotLeakedAssertion.Builder builder;
+	private final Object updateLock = new Object();
+	private volatile State state;
+	private WatchService watchService;
+	private Thread watchThread;
+	
+	/**
+	 * Instantiates a new {@code ReloadableNotLeakedAssertion}, building its 
+	 * initial {@code NotLeakedAssertion} with the given builder. The same 
+	 * builder is used for every reload, so changes to its configuration, 
+	 * such as a new password data file, take effect on the next reload.
+	 * 
+	 * @param builder the builder to build the assertion with
+	 * @throws IOException if the initial assertion cannot be built
+	 * @throws IllegalArgumentException if the builder reads its password 
+	 * data from a stream, which cannot be reread
+	 */
+	public ReloadableNotLeakedAssertion(NotLeakedAssertion.Builder builder)
+			throws IOException {
+		if (!builder.isRebuildable())
+			throw new IllegalArgumentException(
+					"Password data read from a stream cannot be reloaded.");
+		this.builder = builder;
+		this.state = new State(builder.build());
+	}
+	
+	/**
+	 * Gets the {@code NotLeakedAssertion} currently in use, which does not 
+	 * reflect any deltas applied to an overlay.
+	 * 
+	 * @return the current {@code NotLeakedAssertion}
+	 */
+	public NotLeakedAssertion getAssertion() {
+		return state.assertion;
+	}
+	
+	/**
+	 * Rebuilds the assertion and atomically swaps it in, discarding any 
+	 * applied deltas. Concurrent calls to {@code verify()} are not blocked, 
+	 * and use the previous assertion until the swap.
+	 * 
+	 * @throws IOException if the assertion cannot be rebuilt, in which case 
+	 * the current assertion remains in use
+	 */
+	public void reload() throws IOException {
+		synchronized (updateLock) {
+			LOG.info("Reloading leaked password list...");
+			NotLeakedAssertion assertion = builder.build();
+			State previous = state;
+			if (previous.mutableIndex != null
+					&& assertion.getPasswordIndex() == previous.mutableIndex) {
+				for (String password : previous.indexed)
+					previous.mutableIndex.remove(password);
+				LOG.debug("Removed {} delta additions from the reused index.",
+						previous.indexed.size());
+			}
+			state = new State(assertion);
+			LOG.info("Reloaded leaked password list with {} passwords.",
+					assertion.getNumPasswords());
+		}
+	}
+	
+	/**
+	 * Applies the additions and removals listed in the given delta file to 
+	 * the live assertion.
+	 * 
+	 * @param deltaFile the path to the delta file, encoded with UTF-8
+	 * @throws IOException if the delta file cannot be read, or contains a 
+	 * line which does not start with {@code '+'} or {@code '-'}; deltas on 
+	 * lines before the invalid line will have been applied
+	 */
+	public void applyDelta(String deltaFile) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(
+				Paths.get(deltaFile), UTF_8)) {
+			applyDelta(reader);
+		}
+	}
+	
+	/**
+	 * Applies the additions and removals listed by the given reader, in the 
+	 * delta file format, to the live assertion.
+	 * 
+	 * @param reader the reader to read the delta from
+	 * @throws IOException if the delta cannot be read, or contains a line 
+	 * which does not start with {@code '+'} or {@code '-'}; deltas on lines 
+	 * before the invalid line will have been applied
+	 */
+	public void applyDelta(BufferedReader reader) throws IOException {
+		synchronized (updateLock) {
+			State current = state;
+			long additions = 0;
+			long removals = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty())
+					continue;
+				String password = current.assertion.toKey(line.substring(1));
+				if (line.charAt(0) == '+') {
+					add(current, password);
+					additions++;
+				} else if (line.charAt(0) == '-') {
+					remove(current, password);
+					removals++;
+				} else {
+					throw new IOException(String.format("Invalid delta line: "
+							+ "expected a leading '+' or '-' but found '%s'",
+							line.charAt(0)));
+				}
+			}
+			LOG.info("Applied delta with {} additions and {} removals.",
+					additions, removals);
+		}
+	}
+	
+	/**
+	 * Adds a password to the mutable index, unless it (probably) already 
+	 * contains it, so that reapplying a delta does not inflate its counters.
+	 */
+	private static void add(State current, String password) {
+		if (current.mutableIndex != null) {
+			current.removed.remove(password);
+			if (!current.mutableIndex.contains(password)) {
+				current.mutableIndex.add(password);
+				current.indexed.add(password);
+			}
+		} else {
+			current.removed.remove(password);
+			current.added.add(password);
+		}
+	}
+	
+	/**
+	 * Removes a password from the mutable index only if a delta added it, 
+	 * and otherwise overlays its removal, since removing a password which 
+	 * was never added may cause false negatives for the passwords it 
+	 * collides with.
+	 */
+	private static void remove(State current, String password) {
+		if (current.mutableIndex != null && current.indexed.remove(password)) {
+			current.mutableIndex.remove(password);
+		} else if (current.mutableIndex != null) {
+			LOG.debug("Overlaying removal of a password not added by a delta");
+			current.removed.add(password);
+		} else {
+			current.added.remove(password);
+			current.removed.add(password);
+		}
+	}
+	
+	/**
+	 * Starts watching the password data file, and reloads the assertion 
+	 * once the file has been created or modified and no further changes 
+	 * have been seen for {@code DEFAULT_QUIET_PERIOD_MILLIS}.
+	 * 
+	 * @throws IOException if the data file's directory cannot be watched
+	 * @throws IllegalStateException if the assertion is built from the 
+	 * default data file, or is already being watched
+	 */
+	public void startWatching() throws IOException {
+		startWatching(DEFAULT_QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Starts watching the password data file, and reloads the assertion 
+	 * once the file has been created or modified and no further changes 
+	 * have been seen for the given quiet period. The watch runs on a daemon 
+	 * thread until {@code close()} is called. Failed reloads are logged, and 
+	 * leave the current assertion in place.
+	 * 
+	 * @param quietPeriod the time to wait for changes to settle
+	 * @param unit the unit of the quiet period
+	 * @throws IOException if the data file's directory cannot be watched
+	 * @throws IllegalStateException if the assertion is built from the 
+	 * default data file, or is already being watched
+	 */
+	public void startWatching(long quietPeriod, TimeUnit unit)
+			throws IOException {
+		String dataFile = state.assertion.getPasswordDataFile();
+		if (dataFile == null)
+			throw new IllegalStateException(
+					"The default password data file cannot be watched.");
+		final Path path = Paths.get(dataFile).toAbsolutePath();
+		final long quietMillis = unit.toMillis(quietPeriod);
+		synchronized (updateLock) {
+			if (watchService != null)
+				throw new IllegalStateException(
+						"The password data file is already being watched.");
+			final WatchService service = path.getFileSystem().newWatchService();
+			path.getParent().register(service,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+			watchService = service;
+			watchThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					watch(service, path.getFileName(), quietMillis);
+				}
+			}, "passcheck-reload-" + path.getFileName());
+			watchThread.setDaemon(true);
+			watchThread.start();
+			LOG.info("Watching password data file for changes: {}", path);
+		}
+	}
+	
+	private void watch(WatchService service, Path fileName, long quietMillis) {
+		try {
+			while (true) {
+				boolean changed = isChanged(service.take(), fileName);
+				while (changed) {
+					WatchKey key = service.poll(quietMillis,
+							TimeUnit.MILLISECONDS);
+					if (key == null)
+						break;
+					isChanged(key, fileName);
+				}
+				if (changed) {
+					try {
+						reload();
+					} catch (IOException | RuntimeException e) {
+						LOG.error("Failed to reload password data file; "
+								+ "keeping the current password list.", e);
+					}
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			LOG.debug("Stopped watching password data file.");
+		}
+	}
+	
+	private static boolean isChanged(WatchKey key, Path fileName) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW
+					|| fileName.equals(event.context()))
+				changed = true;
+		}
+		key.reset();
+		return changed;
+	}
+	
+	/**
+	 * Stops watching the password data file, if it is being watched. The 
+	 * assertion remains usable.
+	 * 
+	 * @throws IOException if the watch service cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (updateLock) {
+			if (watchService == null)
+				return;
+			watchService.close();
+			watchThread.interrupt();
+			watchService = null;
+			watchThread = null;
+		}
+	}
+	
+	/**
+	 * Indicates whether the given password is not contained in the current 
+	 * list of leaked and/or common passwords, including any deltas applied 
+	 * to it.
+	 * 
+	 * @return a failing {@code PolicyAssertion.Result} if the password is 
+	 * null or if the password is found in the list of leaked/common passwords, 
+	 * otherwise returns {@code Result.SUCCESS}
+	 * @see NotLeakedAssertion#verify(String)
+	 */
+	@Override
+	public Result verify(String password) {
+		State current = state;
+		if (password != null
+				&& !(current.added.isEmpty() && current.removed.isEmpty())) {
+			String key = current.assertion.toKey(password);
+			if (current.removed.contains(key))
+				return Result.SUCCESS;
+			if (current.added.contains(key))
+				return NotLeakedAssertion.LEAKED_PASSWORD;
+		}
+		return current.assertion.verify(password);
+	}
+	
+	/**
+	 * Indicates whether the given password is not contained in the current 
+	 * list of leaked and/or common passwords, including any deltas applied 
+	 * to it. The password is only copied into a {@code String} while deltas 
+	 * are held in the overlay.
+	 * 
+	 * @see NotLeakedAssertion#verify(CharSequence)
+	 */
+	@Override
+	public Result verify(CharSequence password) {
+		State current = state;
+		if (password == null || !hasOverlay(current))
+			return current.assertion.verify(password);
+		return verify(password.toString());
+	}
+	
+	/**
+	 * Indicates whether the password held in the given context is not 
+	 * contained in the current list of leaked and/or common passwords, 
+	 * including any deltas applied to it.
+	 * 
+	 * @see NotLeakedAssertion#verifyContext(PasswordContext)
+	 */
+	@Override
+	public Result verifyContext(PasswordContext context) {
+		State current = state;
+		if (context.getPassword() != null && hasOverlay(current)) {
+			String key = (current.assertion.getNormalizer() == null 
+					&& current.assertion.getIgnoreCase())
+					? context.getLowerCase() 
+					: current.assertion.toKey(context.getString());
+			if (current.removed.contains(key))
+				return Result.SUCCESS;
+			if (current.added.contains(key))
+				return NotLeakedAssertion.LEAKED_PASSWORD;
+		}
+		return current.assertion.verifyContext(context);
+	}
+	
+	/**
+	 * Indicates whether the given UTF-8 encoded password is not contained in 
+	 * the current list of leaked and/or common passwords, including any 
+	 * deltas applied to it. The password is only decoded while deltas are 
+	 * held in the overlay.
+	 * 
+	 * @see NotLeakedAssertion#verifyUtf8(ByteBuffer)
+	 */
+	@Override
+	public Result verifyUtf8(ByteBuffer password) {
+		State current = state;
+		if (password == null || !hasOverlay(current))
+			return current.assertion.verifyUtf8(password);
+		return PolicyAssertion.super.verifyUtf8(password);
+	}
+	
+	private static boolean hasOverlay(State current) {
+		return !(current.added.isEmpty() && current.removed.isEmpty());
+	}
+	
+	/**
+	 * Verifies a batch of passwords against the current list of leaked 
+	 * and/or common passwords, including any deltas applied to it.
+	 * 
+	 * @see NotLeakedAssertion#verifyAll(String[], int, int, Result[])
+	 */
+	@Override
+	public void verifyAll(String[] passwords, int offset, int length,
+			Result[] results) {
+		State current = state;
+		current.assertion.verifyAll(passwords, offset, length, results);
+		if (current.added.isEmpty() && current.removed.isEmpty())
+			return;
+		for (int i = offset; i < offset + length; i++) {
+			if (passwords[i] == null)
+				continue;
+			String key = current.assertion.toKey(passwords[i]);
+			if (current.removed.contains(key))
+				results[i] = Result.SUCCESS;
+			else if (current.added.contains(key))
+				results[i] = NotLeakedAssertion.LEAKED_PASSWORD;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,345 @@
+package co.insecurity.security.policy.index;
+
+import java.util.Arrays;
+
+/**
+ * A {@code MembershipIndex} backed by a 3-wise binary fuse filter (Graf and 
+ * Lemire, 2022), a static filter which needs roughly 1.125 times the 
+ * fingerprint width in bits per password and exactly three memory probes per 
+ * lookup.
+ * <p>
+ * The fingerprint width is the smallest number of bits {@code w} for which 
+ * 2<sup>-w</sup> does not exceed the requested false positive probability, 
+ * and fingerprints are bit-packed, so that e.g. a probability of 0.001 needs 
+ * about 11.3 bits per password, against 14.4 for a bloom filter.
+ * <p>
+ * Binary fuse filters cannot be updated once built: the builder buffers the 
+ * 64-bit {@code PasswordHash} of every password added, and constructs the 
+ * filter when {@code build()} is called, temporarily needing about 19 bytes 
+ * per password.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class BinaryFuseFilterIndex implements HashedMembershipIndex {
+	
+	private static final int ARITY = 3;
+	private static final int MAX_SEGMENT_LENGTH = 1 << 18;
+	private static final int MAX_ATTEMPTS = 100;
+	
+	/**
+	 * Buffers password hashes and builds a {@code BinaryFuseFilterIndex} 
+	 * from them.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder implements HashedMembershipIndex.Builder {
+		
+		private final int fingerprintBits;
+		private long[] hashes;
+		private int size = 0;
+		
+		/**
+		 * Instantiates a new {@code BinaryFuseFilterIndex.Builder}.
+		 * 
+		 * @param expectedPasswords the number of passwords expected to be 
+		 * added, used to presize the hash buffer
+		 * @param fpProbability the desired false positive probability
+		 * @throws IllegalArgumentException if fpProbability is not between 0 
+		 * and 1, or if more than 2<sup>31</sup> passwords are expected
+		 */
+		public Builder(long expectedPasswords, double fpProbability) {
+			if (fpProbability <= 0 || fpProbability >= 1)
+				throw new IllegalArgumentException(
+						"False positive probability must be between 0 and 1!");
+			if (expectedPasswords > Integer.MAX_VALUE - 8)
+				throw new IllegalArgumentException(String.format(
+						"Binary fuse filters support at most %d passwords.",
+						Integer.MAX_VALUE - 8));
+			this.fingerprintBits = (int) Math.min(32, Math.max(1,
+					Math.ceil(-Math.log(fpProbability) / Math.log(2))));
+			this.hashes = new long[(int) Math.max(16, expectedPasswords)];
+		}
+		
+		/**
+		 * Buffers the given password for inclusion in the filter. Since 
+		 * duplicates are only removed when the filter is built, this method 
+		 * always returns true.
+		 * 
+		 * @param password the password to add
+		 * @return true
+		 */
+		@Override
+		public boolean add(String password) {
+			addHash(PasswordHash.hash64(password));
+			return true;
+		}
+		
+		/**
+		 * Buffers a password, identified by its 64-bit {@code PasswordHash}, 
+		 * for inclusion in the filter. Since duplicates are only removed when 
+		 * the filter is built, this method always returns true.
+		 * 
+		 * @param hash the 64-bit hash of the password
+		 * @return true
+		 */
+		@Override
+		public boolean addHash(long hash) {
+			if (size == hashes.length) {
+				if (size == Integer.MAX_VALUE - 8)
+					throw new IllegalStateException(
+							"Binary fuse filter builder is full.");
+				hashes = Arrays.copyOf(hashes, (int) Math.min(
+						Integer.MAX_VALUE - 8, (long) size * 3 / 2 + 1));
+			}
+			hashes[size++] = hash;
+			return true;
+		}
+		
+		@Override
+		public BinaryFuseFilterIndex build() {
+			long[] keys = hashes;
+			hashes = null;
+			Arrays.sort(keys, 0, size);
+			int distinct = 0;
+			for (int i = 0; i < size; i++) {
+				if (distinct == 0 || keys[i] != keys[distinct - 1])
+					keys[distinct++] = keys[i];
+			}
+			return new BinaryFuseFilterIndex(keys, distinct, fingerprintBits);
+		}
+	}
+	
+	private final int size;
+	private final int segmentLength;
+	private final int segmentLengthMask;
+	private final long segmentCountLength;
+	private final int arrayLength;
+	private final int fingerprintBits;
+	private final long fingerprintMask;
+	private final long[] fingerprints;
+	private final long seed;
+	
+	private BinaryFuseFilterIndex(long[] keys, int size, int fingerprintBits) {
+		this.size = size;
+		int segmentLength = (size == 0) ? 4 : Math.min(MAX_SEGMENT_LENGTH,
+				1 << (int) Math.floor(Math.log(size) / Math.log(3.33) + 2.25));
+		double sizeFactor = (size <= 1) ? 0 : Math.max(1.125,
+				0.875 + 0.25 * Math.log(1000000) / Math.log(size));
+		long capacity = (size <= 1) ? 0 : Math.round(size * sizeFactor);
+		long initSegmentCount = (capacity + segmentLength - 1) / segmentLength
+				- (ARITY - 1);
+		long arrayLength = (initSegmentCount + ARITY - 1) * segmentLength;
+		long segmentCount = (arrayLength + segmentLength - 1) / segmentLength;
+		segmentCount = (segmentCount <= ARITY - 1)
+				? 1 : segmentCount - (ARITY - 1);
+		arrayLength = (segmentCount + ARITY - 1) * segmentLength;
+		this.segmentLength = segmentLength;
+		this.segmentLengthMask = segmentLength - 1;
+		this.segmentCountLength = segmentCount * segmentLength;
+		this.arrayLength = (int) arrayLength;
+		this.fingerprintBits = fingerprintBits;
+		this.fingerprintMask = (1L << fingerprintBits) - 1;
+		this.fingerprints = new long[(int) ((arrayLength * fingerprintBits
+				+ 63) >>> 6) + 1];
+		this.seed = populate(keys);
+	}
+	
+	/**
+	 * Maps every key to a fingerprint slot by peeling, retrying with a new 
+	 * seed until peeling succeeds, then assigns the fingerprints.
+	 * 
+	 * @return the seed with which the keys were successfully peeled
+	 */
+	private long populate(long[] keys) {
+		long[] reverseOrder = new long[size];
+		byte[] reverseH = new byte[size];
+		byte[] t2count = new byte[arrayLength];
+		long[] t2hash = new long[arrayLength];
+		int[] alone = new int[arrayLength];
+		long seedSource = 0x726b2b9d438b9d4dL;
+		long seed;
+		for (int attempt = 0; ; attempt++) {
+			if (attempt == MAX_ATTEMPTS)
+				throw new IllegalStateException(
+						"Failed to construct binary fuse filter.");
+			seedSource += 0x9e3779b97f4a7c15L;
+			seed = mix(seedSource);
+			Arrays.fill(t2count, (byte) 0);
+			Arrays.fill(t2hash, 0);
+			
+			boolean overflow = false;
+			for (int i = 0; i < size && !overflow; i++) {
+				long hash = mix(keys[i] + seed);
+				for (int j = 0; j < ARITY; j++) {
+					int h = position(j, hash);
+					int count = (t2count[h] & 0xFF) + 4;
+					if (count > 0xFF) {
+						overflow = true;
+						break;
+					}
+					t2count[h] = (byte) (count ^ j);
+					t2hash[h] ^= hash;
+				}
+			}
+			if (overflow)
+				continue;
+			
+			int aloneCount = 0;
+			for (int i = 0; i < arrayLength; i++) {
+				if ((t2count[i] & 0xFF) >>> 2 == 1)
+					alone[aloneCount++] = i;
+			}
+			int stackSize = 0;
+			while (aloneCount > 0) {
+				int index = alone[--aloneCount];
+				if ((t2count[index] & 0xFF) >>> 2 != 1)
+					continue;
+				long hash = t2hash[index];
+				int found = t2count[index] & 3;
+				reverseH[stackSize] = (byte) found;
+				reverseOrder[stackSize] = hash;
+				stackSize++;
+				for (int j = 0; j < ARITY; j++) {
+					if (j == found)
+						continue;
+					int other = position(j, hash);
+					int count = ((t2count[other] & 0xFF) - 4) ^ j;
+					t2count[other] = (byte) count;
+					t2hash[other] ^= hash;
+					if (count >>> 2 == 1)
+						alone[aloneCount++] = other;
+				}
+				t2count[index] = 0;
+			}
+			if (stackSize == size)
+				break;
+		}
+		
+		for (int i = size - 1; i >= 0; i--) {
+			long hash = reverseOrder[i];
+			int found = reverseH[i];
+			long fingerprint = fingerprint(hash);
+			int target = position(found, hash);
+			for (int j = 0; j < ARITY; j++) {
+				if (j != found)
+					fingerprint ^= getFingerprint(position(j, hash));
+			}
+			setFingerprint(target, fingerprint);
+		}
+		return seed;
+	}
+	
+	/**
+	 * Gets the number of distinct passwords in the filter.
+	 * 
+	 * @return the number of passwords
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	@Override
+	public long getNumPasswords() {
+		return size;
+	}
+	
+	@Override
+	public long getSizeInBytes() {
+		return fingerprints.length * 8L;
+	}
+	
+	/**
+	 * Gets the width of the fingerprints stored in the filter, which 
+	 * determines its false positive probability of 2<sup>-bits</sup>.
+	 * 
+	 * @return the fingerprint width in bits
+	 */
+	public int getFingerprintBits() {
+		return fingerprintBits;
+	}
+	
+	@Override
+	public boolean contains(String password) {
+		return containsHash(PasswordHash.hash64(password));
+	}
+	
+	/**
+	 * Indicates whether the password with the given 64-bit 
+	 * {@code PasswordHash} is contained in this index.
+	 * 
+	 * @param hash the 64-bit hash of the password
+	 * @return true if the password is (probably) contained in the index, 
+	 * otherwise returns false
+	 */
+	@Override
+	public boolean containsHash(long hash) {
+		if (size == 0)
+			return false;
+		long mixed = mix(hash + seed);
+		long h0 = mulhi(mixed, segmentCountLength);
+		long h1 = h0 + segmentLength;
+		long h2 = h1 + segmentLength;
+		h1 ^= (mixed >>> 18) & segmentLengthMask;
+		h2 ^= mixed & segmentLengthMask;
+		long fingerprint = fingerprint(mixed)
+				^ getFingerprint((int) h0)
+				^ getFingerprint((int) h1)
+				^ getFingerprint((int) h2);
+		return fingerprint == 0;
+	}
+	
+	private int position(int index, long hash) {
+		long h = mulhi(hash, segmentCountLength) + (long) index * segmentLength;
+		long hh = hash & ((1L << 36) - 1);
+		h ^= (hh >>> (36 - 18 * index)) & segmentLengthMask;
+		return (int) h;
+	}
+	
+	private long fingerprint(long hash) {
+		return (hash ^ (hash >>> 32)) & fingerprintMask;
+	}
+	
+	private long getFingerprint(int index) {
+		long bit = (long) index * fingerprintBits;
+		int word = (int) (bit >>> 6);
+		int offset = (int) (bit & 63);
+		long value = fingerprints[word] >>> offset;
+		if (offset + fingerprintBits > 64)
+			value |= fingerprints[word + 1] << (64 - offset);
+		return value & fingerprintMask;
+	}
+	
+	private void setFingerprint(int index, long value) {
+		long bit = (long) index * fingerprintBits;
+		int word = (int) (bit >>> 6);
+		int offset = (int) (bit & 63);
+		fingerprints[word] = (fingerprints[word] & ~(fingerprintMask << offset))
+				| (value << offset);
+		if (offset + fingerprintBits > 64) {
+			int spill = 64 - offset;
+			fingerprints[word + 1] = (fingerprints[word + 1]
+					& ~(fingerprintMask >>> spill)) | (value >>> spill);
+		}
+	}
+	
+	/**
+	 * Returns the high 64 bits of the unsigned 128-bit product of a hash and 
+	 * a non-negative value below 2<sup>32</sup>.
+	 */
+	private static long mulhi(long hash, long value) {
+		long high = (hash >>> 32) * value;
+		long low = ((hash & 0xFFFFFFFFL) * value) >>> 32;
+		return (high + low) >>> 32;
+	}
+	
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
\ No newline at end of file
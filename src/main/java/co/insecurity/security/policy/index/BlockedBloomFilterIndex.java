@@ -0,0 +1,249 @@
+package co.insecurity.security.policy.index;
+
+import java.util.Arrays;
+
+/**
+ * A {@code MembershipIndex} backed by a cache-line-blocked bloom filter, in 
+ * which all of the bits for a password fall within a single 512-bit block, 
+ * so that each lookup costs a single cache miss rather than one per hash 
+ * function.
+ * <p>
+ * Confining each password to one block makes the load of individual blocks 
+ * uneven, which raises the false positive probability above that of a 
+ * standard bloom filter with the same number of bits. The builder therefore 
+ * sizes the filter by numerically evaluating the false positive probability 
+ * of a blocked filter, typically needing 10-20% more bits per password than 
+ * a standard bloom filter.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class BlockedBloomFilterIndex implements HashedMembershipIndex {
+	
+	private static final int BLOCK_BITS = 512;
+	private static final int WORDS_PER_BLOCK = BLOCK_BITS / 64;
+	private static final int MAX_HASHES = 16;
+	
+	/**
+	 * Builds a {@code BlockedBloomFilterIndex} sized for a known number of 
+	 * passwords.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder implements HashedMembershipIndex.Builder {
+		
+		private final BlockedBloomFilterIndex index;
+		
+		/**
+		 * Instantiates a new {@code BlockedBloomFilterIndex.Builder} whose 
+		 * filter is sized for the given number of passwords and false 
+		 * positive probability.
+		 * 
+		 * @param expectedPasswords the number of passwords expected to be 
+		 * added
+		 * @param fpProbability the desired false positive probability
+		 * @throws IllegalArgumentException if fpProbability is not between 0 
+		 * and 1, or the filter would need more than 2<sup>31</sup> words
+		 */
+		public Builder(long expectedPasswords, double fpProbability) {
+			if (fpProbability <= 0 || fpProbability >= 1)
+				throw new IllegalArgumentException(
+						"False positive probability must be between 0 and 1!");
+			double bitsPerPassword = bitsPerPassword(fpProbability);
+			int numHashes = bestNumHashes(bitsPerPassword);
+			long numBlocks = numBlocks(expectedPasswords, bitsPerPassword);
+			if (numBlocks * WORDS_PER_BLOCK > Integer.MAX_VALUE)
+				throw new IllegalArgumentException(String.format(
+						"Cannot hold %d passwords at %s false positive "
+						+ "probability in a blocked bloom filter.", 
+						expectedPasswords, fpProbability));
+			this.index = new BlockedBloomFilterIndex((int) numBlocks, numHashes);
+		}
+		
+		@Override
+		public boolean add(String password) {
+			return index.addHash(PasswordHash.hash64(password));
+		}
+		
+		@Override
+		public boolean addHash(long hash) {
+			return index.addHash(hash);
+		}
+		
+		@Override
+		public BlockedBloomFilterIndex build() {
+			return index;
+		}
+	}
+	
+	private final long[] words;
+	private final int numBlocks;
+	private final int numHashes;
+	
+	private BlockedBloomFilterIndex(int numBlocks, int numHashes) {
+		this.words = new long[numBlocks * WORDS_PER_BLOCK];
+		this.numBlocks = numBlocks;
+		this.numHashes = numHashes;
+	}
+	
+	/**
+	 * Returns the number of bits per password a blocked bloom filter needs 
+	 * to reach the given false positive probability, in steps of a quarter 
+	 * bit above the bits needed by a standard bloom filter.
+	 */
+	static double bitsPerPassword(double fpProbability) {
+		double bitsPerPassword = -Math.log(fpProbability) 
+				/ (Math.log(2) * Math.log(2));
+		while (falsePositiveProbability(bitsPerPassword, 
+				bestNumHashes(bitsPerPassword)) > fpProbability)
+			bitsPerPassword += 0.25;
+		return bitsPerPassword;
+	}
+	
+	/**
+	 * Returns the number of 512-bit blocks needed to hold the given number 
+	 * of passwords at the given number of bits per password.
+	 */
+	static long numBlocks(long expectedPasswords, double bitsPerPassword) {
+		return Math.max(1, (long) Math.ceil(
+				Math.max(1, expectedPasswords) * bitsPerPassword / BLOCK_BITS));
+	}
+	
+	/**
+	 * Returns the number of hash functions with the lowest false positive 
+	 * probability for a blocked bloom filter with the given number of bits 
+	 * per password.
+	 */
+	static int bestNumHashes(double bitsPerPassword) {
+		int best = 1;
+		double bestFpp = 1;
+		for (int k = 1; k <= MAX_HASHES; k++) {
+			double fpp = falsePositiveProbability(bitsPerPassword, k);
+			if (fpp < bestFpp) {
+				best = k;
+				bestFpp = fpp;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Computes the false positive probability of a blocked bloom filter, 
+	 * treating the number of passwords in each block as Poisson distributed 
+	 * with a mean of {@code BLOCK_BITS / bitsPerPassword}.
+	 */
+	static double falsePositiveProbability(double bitsPerPassword, 
+			int numHashes) {
+		double mean = BLOCK_BITS / bitsPerPassword;
+		int max = (int) Math.ceil(mean + 10 * Math.sqrt(mean) + 10);
+		double logProbability = -mean;
+		double fpp = 0;
+		for (int i = 0; i <= max; i++) {
+			if (i > 0)
+				logProbability += Math.log(mean / i);
+			double blockFpp = Math.pow(1 - Math.pow(1 - 1.0 / BLOCK_BITS, 
+					(double) numHashes * i), numHashes);
+			fpp += Math.exp(logProbability) * blockFpp;
+		}
+		return fpp;
+	}
+	
+	/**
+	 * Gets the number of 512-bit blocks in the filter.
+	 * 
+	 * @return the number of blocks
+	 */
+	public int getNumBlocks() {
+		return numBlocks;
+	}
+	
+	/**
+	 * Gets the number of bits set for each password.
+	 * 
+	 * @return the number of hash functions
+	 */
+	public int getNumHashes() {
+		return numHashes;
+	}
+	
+	@Override
+	public long getSizeInBytes() {
+		return words.length * 8L;
+	}
+	
+	@Override
+	public boolean contains(String password) {
+		return containsHash(PasswordHash.hash64(password));
+	}
+	
+	/**
+	 * Indicates whether the password with the given 64-bit 
+	 * {@code PasswordHash} is contained in this index.
+	 * 
+	 * @param hash the 64-bit hash of the password
+	 * @return true if the password is (probably) contained in the index, 
+	 * otherwise returns false
+	 */
+	@Override
+	public boolean containsHash(long hash) {
+		int base = blockOffset(hash);
+		int h1 = (int) hash;
+		int h2 = secondHash(hash);
+		for (int i = 0; i < numHashes; i++, h1 += h2) {
+			int bit = h1 >>> 23;
+			if ((words[base + (bit >>> 6)] & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Hashes the whole batch, then probes the passwords in order of their 
+	 * blocks, so that the filter is swept once in memory order rather than 
+	 * visited at random.
+	 */
+	@Override
+	public void containsAll(String[] passwords, int offset, int length, 
+			boolean[] results) {
+		long[] hashes = new long[length];
+		long[] order = new long[length];
+		for (int i = 0; i < length; i++) {
+			long hash = PasswordHash.hash64(passwords[offset + i]);
+			hashes[i] = hash;
+			// blocks are chosen by the high 32 bits, so sort on them
+			order[i] = ((hash >>> 32) ^ 0x80000000L) << 32 | i;
+		}
+		Arrays.sort(order);
+		for (long key : order) {
+			int i = (int) key;
+			results[offset + i] = containsHash(hashes[i]);
+		}
+	}
+	
+	private boolean addHash(long hash) {
+		int base = blockOffset(hash);
+		int h1 = (int) hash;
+		int h2 = secondHash(hash);
+		boolean added = false;
+		for (int i = 0; i < numHashes; i++, h1 += h2) {
+			int bit = h1 >>> 23;
+			int word = base + (bit >>> 6);
+			long mask = 1L << bit;
+			if ((words[word] & mask) == 0) {
+				words[word] |= mask;
+				added = true;
+			}
+		}
+		return added;
+	}
+	
+	private int blockOffset(long hash) {
+		return (int) (((hash >>> 32) * numBlocks) >>> 32) * WORDS_PER_BLOCK;
+	}
+	
+	static int secondHash(long hash) {
+		long h = (hash ^ (hash >>> 31)) * 0x7fb5d329728ea185L;
+		return (int) (h >>> 32) | 1;
+	}
+}
\ No newline at end of file
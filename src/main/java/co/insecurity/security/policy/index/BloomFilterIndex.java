@@ -0,0 +1,82 @@
+package co.insecurity.security.policy.index;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+
+/**
+ * A {@code MembershipIndex} backed by a single, fixed-size Orestes 
+ * {@code BloomFilter}, sized up front for the expected number of passwords 
+ * and the desired false positive probability.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class BloomFilterIndex implements MembershipIndex {
+	
+	/**
+	 * Builds a {@code BloomFilterIndex} sized for a known number of 
+	 * passwords.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder implements MembershipIndex.Builder {
+		
+		private final BloomFilter<String> filter;
+		
+		/**
+		 * Instantiates a new {@code BloomFilterIndex.Builder} whose filter is 
+		 * sized for the given number of passwords and false positive 
+		 * probability.
+		 * 
+		 * @param expectedPasswords the number of passwords expected to be 
+		 * added
+		 * @param fpProbability the desired false positive probability
+		 */
+		public Builder(int expectedPasswords, double fpProbability) {
+			this.filter = new FilterBuilder(expectedPasswords, fpProbability)
+					.buildBloomFilter();
+		}
+		
+		@Override
+		public boolean add(String password) {
+			return filter.add(password);
+		}
+		
+		@Override
+		public BloomFilterIndex build() {
+			return new BloomFilterIndex(filter);
+		}
+	}
+	
+	private final BloomFilter<String> filter;
+	
+	/**
+	 * Instantiates a new {@code BloomFilterIndex} backed by an already 
+	 * populated bloom filter.
+	 * 
+	 * @param filter the populated bloom filter
+	 */
+	public BloomFilterIndex(BloomFilter<String> filter) {
+		this.filter = filter;
+	}
+	
+	/**
+	 * Gets the underlying bloom filter.
+	 * 
+	 * @return the bloom filter backing this index
+	 */
+	public BloomFilter<String> getFilter() {
+		return filter;
+	}
+	
+	@Override
+	public boolean contains(String password) {
+		return filter.contains(password);
+	}
+	
+	@Override
+	public long getSizeInBytes() {
+		return (filter.getSize() + 7L) / 8;
+	}
+}
\ No newline at end of file
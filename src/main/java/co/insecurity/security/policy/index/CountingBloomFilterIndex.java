@@ -0,0 +1,207 @@
+package co.insecurity.security.policy.index;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@code MutableMembershipIndex} backed by a counting bloom filter, which 
+ * supports removing passwords as well as adding them, at four times the 
+ * memory of a plain bloom filter with the same false positive probability.
+ * <p>
+ * Each bit of a bloom filter is replaced by a 4-bit counter, and sixteen 
+ * counters are packed into each word of an {@code AtomicLongArray}. Counters 
+ * are updated by compare-and-set, so that passwords can be added and removed 
+ * concurrently with lookups, which never block. A counter which reaches 15 
+ * is never decremented again, so an overflow can at worst keep a removed 
+ * password in the filter.
+ * <p>
+ * Counters count occurrences: a password which was added several times must 
+ * be removed as many times before it leaves the filter. Only passwords known 
+ * to have been added may be removed. A password which was never added, but 
+ * is found as a false positive, shares all of its counters with passwords 
+ * which were, and removing it would decrement them and may cause false 
+ * negatives for those passwords.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class CountingBloomFilterIndex implements MutableMembershipIndex,
+		HashedMembershipIndex {
+	
+	private static final int COUNTER_BITS = 4;
+	private static final int COUNTERS_PER_WORD = 64 / COUNTER_BITS;
+	private static final long MAX_COUNT = (1L << COUNTER_BITS) - 1;
+	
+	/**
+	 * Builds a {@code CountingBloomFilterIndex} sized for a known number of 
+	 * passwords.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder implements HashedMembershipIndex.Builder {
+		
+		private final CountingBloomFilterIndex index;
+		
+		/**
+		 * Instantiates a new {@code CountingBloomFilterIndex.Builder} whose 
+		 * filter is sized for the given number of passwords and false 
+		 * positive probability.
+		 * 
+		 * @param expectedPasswords the number of passwords expected to be 
+		 * added
+		 * @param fpProbability the desired false positive probability
+		 * @throws IllegalArgumentException if fpProbability is not between 0 
+		 * and 1, or if the filter would need more than 2<sup>31</sup> words
+		 */
+		public Builder(long expectedPasswords, double fpProbability) {
+			if (fpProbability <= 0 || fpProbability >= 1)
+				throw new IllegalArgumentException(
+						"False positive probability must be between 0 and 1!");
+			long numCounters = OffHeapBloomFilterIndex.optimalNumBits(
+					expectedPasswords, fpProbability);
+			if (numCounters / COUNTERS_PER_WORD >= Integer.MAX_VALUE - 8)
+				throw new IllegalArgumentException(String.format(
+						"Counting bloom filters support at most %d counters.",
+						(long) (Integer.MAX_VALUE - 8) * COUNTERS_PER_WORD));
+			this.index = new CountingBloomFilterIndex(numCounters,
+					OffHeapBloomFilterIndex.optimalNumHashes(
+							expectedPasswords, numCounters));
+		}
+		
+		@Override
+		public boolean add(String password) {
+			return index.add(password);
+		}
+		
+		@Override
+		public boolean addHash(long hash) {
+			return index.addHash(hash);
+		}
+		
+		@Override
+		public CountingBloomFilterIndex build() {
+			return index;
+		}
+	}
+	
+	private final AtomicLongArray counters;
+	private final long numCounters;
+	private final int numHashes;
+	
+	private CountingBloomFilterIndex(long numCounters, int numHashes) {
+		this.counters = new AtomicLongArray((int) ((numCounters
+				+ COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD));
+		this.numCounters = numCounters;
+		this.numHashes = numHashes;
+	}
+	
+	/**
+	 * Gets the number of counters in the filter.
+	 * 
+	 * @return the number of counters
+	 */
+	public long getNumCounters() {
+		return numCounters;
+	}
+	
+	/**
+	 * Gets the number of hash functions used to probe the filter.
+	 * 
+	 * @return the number of hash functions
+	 */
+	public int getNumHashes() {
+		return numHashes;
+	}
+	
+	@Override
+	public long getSizeInBytes() {
+		return counters.length() * 8L;
+	}
+	
+	@Override
+	public boolean contains(String password) {
+		return containsHash(PasswordHash.hash64(password));
+	}
+	
+	/**
+	 * Indicates whether the password with the given 64-bit 
+	 * {@code PasswordHash} is contained in this index.
+	 * 
+	 * @param hash the 64-bit hash of the password
+	 * @return true if the password is (probably) contained in the index, 
+	 * otherwise returns false
+	 */
+	@Override
+	public boolean containsHash(long hash) {
+		long h2 = secondHash(hash);
+		long combined = hash;
+		for (int i = 0; i < numHashes; i++, combined += h2) {
+			if (count(Long.remainderUnsigned(combined, numCounters)) == 0)
+				return false;
+		}
+		return true;
+	}
+	
+	@Override
+	public boolean add(String password) {
+		return addHash(PasswordHash.hash64(password));
+	}
+	
+	private boolean addHash(long hash) {
+		long h2 = secondHash(hash);
+		long combined = hash;
+		boolean added = false;
+		for (int i = 0; i < numHashes; i++, combined += h2) {
+			if (update(Long.remainderUnsigned(combined, numCounters), 1) == 0)
+				added = true;
+		}
+		return added;
+	}
+	
+	@Override
+	public boolean remove(String password) {
+		long hash = PasswordHash.hash64(password);
+		if (!containsHash(hash))
+			return false;
+		long h2 = secondHash(hash);
+		long combined = hash;
+		for (int i = 0; i < numHashes; i++, combined += h2)
+			update(Long.remainderUnsigned(combined, numCounters), -1);
+		return true;
+	}
+	
+	private long count(long counter) {
+		long word = counters.get((int) (counter / COUNTERS_PER_WORD));
+		return (word >>> shift(counter)) & MAX_COUNT;
+	}
+	
+	/**
+	 * Adds the given delta to a counter, unless it is saturated or would 
+	 * drop below zero.
+	 * 
+	 * @return the value of the counter before the update
+	 */
+	private long update(long counter, int delta) {
+		int index = (int) (counter / COUNTERS_PER_WORD);
+		int shift = shift(counter);
+		while (true) {
+			long word = counters.get(index);
+			long count = (word >>> shift) & MAX_COUNT;
+			if (count == MAX_COUNT || count + delta < 0)
+				return count;
+			long updated = word + ((long) delta << shift);
+			if (counters.compareAndSet(index, word, updated))
+				return count;
+		}
+	}
+	
+	private static int shift(long counter) {
+		return (int) (counter % COUNTERS_PER_WORD) * COUNTER_BITS;
+	}
+	
+	private static long secondHash(long hash) {
+		long h = (hash ^ (hash >>> 29)) * 0xbf58476d1ce4e5b9L;
+		h = (h ^ (h >>> 32)) * 0x94d049bb133111ebL;
+		return (h ^ (h >>> 29)) | 1;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,651 @@
+package co.insecurity.security.policy.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An Aho-Corasick automaton over a dictionary of words, which finds whether 
+ * a password contains any of the words in a single scan of the password, 
+ * taking time proportional to the length of the password however many words 
+ * the dictionary holds.
+ * <p>
+ * The trie of the dictionary is stored as a double array: the transition 
+ * from state {@code s} on character code {@code c} leads to state 
+ * {@code t = base[s] + c} if {@code check[t] == s}, so that each transition 
+ * is two array reads, and the automaton needs four {@code int}s per state 
+ * rather than an object per trie node. Characters are mapped to dense codes 
+ * over the alphabet of the dictionary, and characters outside it reset the 
+ * scan. Each state also records its failure link, and the length of the 
+ * longest word ending at it or at any state on its failure chain, so that a 
+ * match is detected as soon as its last character is read.
+ * <p>
+ * An automaton may fold words and passwords to lower case, character by 
+ * character, and can be written to and read from a file, so that the 
+ * dictionary need only be compiled once. The file format, in big-endian 
+ * byte order, is:
+ * <pre>
+ * int     magic ('PCAC') 
+ * int     format version 
+ * int     flags (1 = case folded) 
+ * int     number of words 
+ * int     alphabet size, a 
+ * int     number of states, n 
+ * char[]  a sorted alphabet characters 
+ * int[]   n bases 
+ * int[]   n checks 
+ * int[]   n failure links 
+ * int[]   n match lengths 
+ * long    CRC32 of all preceding bytes
+ * </pre>
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public final class DictionaryAutomaton {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(DictionaryAutomaton.class);
+	
+	static final int MAGIC = 0x50434143;
+	static final int VERSION = 1;
+	static final int FLAG_CASE_FOLDED = 1;
+	private static final int ROOT = 0;
+	/**
+	 * The state in which a scan starts, before any character has been read
+	 */
+	public static final int START = ROOT;
+	private static final int FREE = -1;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_SEARCH_FAILURES = 64;
+	
+	/**
+	 * Compiles a {@code DictionaryAutomaton} from the words added to it.
+	 * <p>
+	 * Words are collected in memory until {@code build()} is called, which 
+	 * sorts them, lays out their trie in the double array breadth first, 
+	 * and then computes the failure links in the same order.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder {
+		
+		private final boolean caseFolded;
+		private final List<String> words = new ArrayList<String>();
+		private int[] base;
+		private int[] check;
+		private int[] depth;
+		private boolean[] terminal;
+		// doubly linked list of the free slots, in index order
+		private int[] nextFree;
+		private int[] previousFree;
+		private int firstFree;
+		private int lastFree;
+		private int searchStart;
+		private int numStates;
+		
+		/**
+		 * Instantiates a new {@code DictionaryAutomaton.Builder}.
+		 * 
+		 * @param caseFolded whether words and passwords should be folded to 
+		 * lower case
+		 */
+		public Builder(boolean caseFolded) {
+			this.caseFolded = caseFolded;
+		}
+		
+		/**
+		 * Adds the given word to the dictionary. Empty words are ignored.
+		 * 
+		 * @param word the word to add
+		 * @return this {@code Builder}
+		 */
+		public Builder add(String word) {
+			if (!word.isEmpty())
+				words.add(caseFolded ? fold(word) : word);
+			return this;
+		}
+		
+		/**
+		 * Compiles the automaton of the words added.
+		 * 
+		 * @return the {@code DictionaryAutomaton}
+		 */
+		public DictionaryAutomaton build() {
+			Collections.sort(words);
+			String[] sorted = dedup(words);
+			words.clear();
+			char[] alphabet = alphabet(sorted);
+			char[] codes = codes(alphabet);
+			int capacity = Math.max(alphabet.length + 2, 16);
+			base = new int[0];
+			check = new int[0];
+			depth = new int[0];
+			terminal = new boolean[0];
+			nextFree = new int[0];
+			previousFree = new int[0];
+			firstFree = FREE;
+			lastFree = FREE;
+			ensureCapacity(capacity);
+			occupy(ROOT, ROOT);
+			searchStart = firstFree;
+			numStates = 1;
+			int[] edges = new int[64];
+			int numEdges = 0;
+			// queue of (state, first word, end word) in breadth first order
+			int[] queue = new int[3 * 64];
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = ROOT;
+			queue[tail++] = 0;
+			queue[tail++] = sorted.length;
+			int[] labels = new int[alphabet.length];
+			int[] bounds = new int[alphabet.length + 1];
+			while (head < tail) {
+				int state = queue[head++];
+				int lo = queue[head++];
+				int hi = queue[head++];
+				int d = depth[state];
+				if (lo < hi && sorted[lo].length() == d) {
+					terminal[state] = true;
+					lo++;
+				}
+				int numLabels = 0;
+				for (int i = lo; i < hi; i++) {
+					int code = codes[sorted[i].charAt(d)];
+					if (numLabels == 0 || labels[numLabels - 1] != code) {
+						labels[numLabels] = code;
+						bounds[numLabels++] = i;
+					}
+				}
+				bounds[numLabels] = hi;
+				if (numLabels == 0)
+					continue;
+				int b = findBase(labels, numLabels);
+				base[state] = b;
+				for (int j = 0; j < numLabels; j++) {
+					int child = b + labels[j];
+					occupy(child, state);
+					depth[child] = d + 1;
+					numStates++;
+					if (numEdges + 3 > edges.length)
+						edges = Arrays.copyOf(edges, edges.length * 2);
+					edges[numEdges++] = state;
+					edges[numEdges++] = labels[j];
+					edges[numEdges++] = child;
+					if (tail + 3 > queue.length) {
+						int[] grown = new int[Math.max(queue.length,
+								(tail - head + 3) * 2)];
+						System.arraycopy(queue, head, grown, 0, tail - head);
+						tail -= head;
+						head = 0;
+						queue = grown;
+					}
+					queue[tail++] = child;
+					queue[tail++] = bounds[j];
+					queue[tail++] = bounds[j + 1];
+				}
+			}
+			int size = 1;
+			for (int i = check.length - 1; i > 0; i--) {
+				if (check[i] != FREE) {
+					size = i + 1;
+					break;
+				}
+			}
+			int[] fail = new int[size];
+			int[] match = new int[size];
+			for (int e = 0; e < numEdges; e += 3) {
+				int parent = edges[e];
+				int code = edges[e + 1];
+				int child = edges[e + 2];
+				int f = ROOT;
+				if (parent != ROOT) {
+					f = fail[parent];
+					int next;
+					while ((next = transition(base, check, f, code)) < 0
+							&& f != ROOT)
+						f = fail[f];
+					f = (next < 0) ? ROOT : next;
+				}
+				fail[child] = f;
+				match[child] = terminal[child] ? depth[child] : match[f];
+			}
+			DictionaryAutomaton automaton = new DictionaryAutomaton(
+					caseFolded, sorted.length, alphabet,
+					Arrays.copyOf(base, size), Arrays.copyOf(check, size),
+					fail, match);
+			base = null;
+			check = null;
+			depth = null;
+			terminal = null;
+			nextFree = null;
+			previousFree = null;
+			LOG.debug("Compiled {} words into {} states in {} slots",
+					sorted.length, numStates, size);
+			return automaton;
+		}
+		
+		/**
+		 * Finds a base at which every labelled child of a state falls on a 
+		 * free slot, trying the free slots in order for the first child, and 
+		 * growing the arrays as needed. Once the slots at the start of the 
+		 * search are mostly taken, later searches start further on, leaving 
+		 * a few slots unused rather than retrying them for every state.
+		 */
+		private int findBase(int[] labels, int numLabels) {
+			int first = labels[0];
+			int last = labels[numLabels - 1];
+			if (searchStart == FREE || check[searchStart] != FREE)
+				searchStart = firstFree;
+			int slot = searchStart;
+			int failures = 0;
+			while (true) {
+				if (slot == FREE) {
+					int previous = lastFree;
+					ensureCapacity(check.length + last + 1);
+					slot = (previous == FREE) ? firstFree : nextFree[previous];
+				}
+				int b = slot - first;
+				if (b >= 1) {
+					ensureCapacity(b + last + 1);
+					boolean fits = true;
+					for (int j = 1; fits && j < numLabels; j++)
+						fits = check[b + labels[j]] == FREE;
+					if (fits) {
+						if (failures > MAX_SEARCH_FAILURES)
+							searchStart = slot;
+						return b;
+					}
+				}
+				failures++;
+				slot = nextFree[slot];
+			}
+		}
+		
+		/**
+		 * Marks the given slot as a child of the given state, removing it 
+		 * from the free list.
+		 */
+		private void occupy(int slot, int state) {
+			check[slot] = state;
+			int previous = previousFree[slot];
+			int next = nextFree[slot];
+			if (previous == FREE)
+				firstFree = next;
+			else
+				nextFree[previous] = next;
+			if (next == FREE)
+				lastFree = previous;
+			else
+				previousFree[next] = previous;
+			if (searchStart == slot)
+				searchStart = next;
+		}
+		
+		private void ensureCapacity(int capacity) {
+			if (capacity <= check.length)
+				return;
+			int grown = Math.max(capacity, check.length + (check.length >> 1));
+			int oldLength = check.length;
+			base = Arrays.copyOf(base, grown);
+			check = Arrays.copyOf(check, grown);
+			depth = Arrays.copyOf(depth, grown);
+			terminal = Arrays.copyOf(terminal, grown);
+			nextFree = Arrays.copyOf(nextFree, grown);
+			previousFree = Arrays.copyOf(previousFree, grown);
+			Arrays.fill(check, oldLength, grown, FREE);
+			for (int i = oldLength; i < grown; i++) {
+				previousFree[i] = (i == oldLength) ? lastFree : i - 1;
+				nextFree[i] = (i == grown - 1) ? FREE : i + 1;
+			}
+			if (lastFree == FREE)
+				firstFree = oldLength;
+			else
+				nextFree[lastFree] = oldLength;
+			lastFree = grown - 1;
+		}
+		
+		private static String[] dedup(List<String> sorted) {
+			List<String> distinct = new ArrayList<String>(sorted.size());
+			String previous = null;
+			for (String word : sorted) {
+				if (!word.equals(previous))
+					distinct.add(word);
+				previous = word;
+			}
+			return distinct.toArray(new String[distinct.size()]);
+		}
+		
+		private static char[] alphabet(String[] words) {
+			boolean[] seen = new boolean[Character.MAX_VALUE + 1];
+			int size = 0;
+			for (String word : words) {
+				for (int i = 0; i < word.length(); i++) {
+					char c = word.charAt(i);
+					if (!seen[c]) {
+						seen[c] = true;
+						size++;
+					}
+				}
+			}
+			char[] alphabet = new char[size];
+			for (int c = 0, i = 0; i < size; c++)
+				if (seen[c])
+					alphabet[i++] = (char) c;
+			return alphabet;
+		}
+		
+		private static String fold(String word) {
+			char[] chars = word.toCharArray();
+			for (int i = 0; i < chars.length; i++)
+				chars[i] = Character.toLowerCase(chars[i]);
+			return new String(chars);
+		}
+	}
+	
+	private final boolean caseFolded;
+	private final int numWords;
+	private final char[] alphabet;
+	private final char[] codes;
+	private final int[] base;
+	private final int[] check;
+	private final int[] fail;
+	private final int[] match;
+	
+	private DictionaryAutomaton(boolean caseFolded, int numWords,
+			char[] alphabet, int[] base, int[] check, int[] fail, int[] match) {
+		this.caseFolded = caseFolded;
+		this.numWords = numWords;
+		this.alphabet = alphabet;
+		this.codes = codes(alphabet);
+		this.base = base;
+		this.check = check;
+		this.fail = fail;
+		this.match = match;
+	}
+	
+	/**
+	 * Maps each character of the alphabet to its code, from 1, and every 
+	 * other character to 0.
+	 */
+	private static char[] codes(char[] alphabet) {
+		char[] codes = new char[Character.MAX_VALUE + 1];
+		for (int i = 0; i < alphabet.length; i++)
+			codes[alphabet[i]] = (char) (i + 1);
+		return codes;
+	}
+	
+	private static int transition(int[] base, int[] check, int state,
+			int code) {
+		int next = base[state] + code;
+		return (next < check.length && check[next] == state) ? next : -1;
+	}
+	
+	/**
+	 * Indicates whether words and passwords are folded to lower case.
+	 * 
+	 * @return true if the automaton is case folded
+	 */
+	public boolean isCaseFolded() {
+		return caseFolded;
+	}
+	
+	/**
+	 * Gets the number of distinct words in the dictionary.
+	 * 
+	 * @return the number of words
+	 */
+	public int getNumWords() {
+		return numWords;
+	}
+	
+	/**
+	 * Gets the number of slots in the double array, each of which takes 16 
+	 * bytes.
+	 * 
+	 * @return the number of slots
+	 */
+	public int getNumSlots() {
+		return check.length;
+	}
+	
+	/**
+	 * Gets the approximate memory footprint of the automaton.
+	 * 
+	 * @return the size of the automaton in bytes
+	 */
+	public long getSizeInBytes() {
+		return 16L * check.length + 2L * (alphabet.length + codes.length);
+	}
+	
+	/**
+	 * Indicates whether the given text contains any word of the dictionary.
+	 * 
+	 * @param text the text to scan
+	 * @return true if a dictionary word occurs in the text
+	 */
+	public boolean matches(CharSequence text) {
+		return findFirst(text) >= 0;
+	}
+	
+	/**
+	 * Finds the first dictionary word to end in the given text, i.e. the 
+	 * match whose last character comes first, preferring the longest word 
+	 * ending there.
+	 * 
+	 * @param text the text to scan
+	 * @return the index just past the end of the first match, with the 
+	 * length of the match in the upper 32 bits, or -1 if no dictionary word 
+	 * occurs in the text
+	 * @see #matchEnd(long)
+	 * @see #matchLength(long)
+	 */
+	public long findFirst(CharSequence text) {
+		int state = START;
+		for (int i = 0; i < text.length(); i++) {
+			state = next(state, text.charAt(i));
+			if (match[state] > 0)
+				return ((long) match[state] << 32) | (i + 1);
+		}
+		return -1;
+	}
+	
+	/**
+	 * Advances a scan by one character, so that the scan can be fused with 
+	 * other checks reading the same characters. A scan starts in the 
+	 * {@code START} state.
+	 * 
+	 * @param state the state reached by the characters read so far
+	 * @param c the next character
+	 * @return the state reached by reading the character
+	 * @see #getMatchLength(int)
+	 */
+	public int next(int state, char c) {
+		int code = codes[caseFolded ? Character.toLowerCase(c) : c];
+		if (code == 0)
+			return ROOT;
+		int next;
+		while ((next = transition(base, check, state, code)) < 0
+				&& state != ROOT)
+			state = fail[state];
+		return (next < 0) ? ROOT : next;
+	}
+	
+	/**
+	 * Gets the length of the longest dictionary word ending at the last 
+	 * character read by a scan.
+	 * 
+	 * @param state the state reached by the scan
+	 * @return the number of characters in the word, or 0 if no word ends 
+	 * at the last character read
+	 */
+	public int getMatchLength(int state) {
+		return match[state];
+	}
+	
+	/**
+	 * Gets the end index of a match found by {@code findFirst()}.
+	 * 
+	 * @param match the result of {@code findFirst()}, which is not -1
+	 * @return the index just past the last character of the match
+	 */
+	public static int matchEnd(long match) {
+		return (int) match;
+	}
+	
+	/**
+	 * Gets the length of a match found by {@code findFirst()}.
+	 * 
+	 * @param match the result of {@code findFirst()}, which is not -1
+	 * @return the number of characters in the matched word
+	 */
+	public static int matchLength(long match) {
+		return (int) (match >>> 32);
+	}
+	
+	/**
+	 * Writes the automaton to the given file, through a temporary file 
+	 * which is moved into place once complete.
+	 * 
+	 * @param file the path of the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(Path file) throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		Path tmpFile = Files.createTempFile(parent,
+				file.getFileName().toString(), ".tmp");
+		try (OutputStream out = Files.newOutputStream(tmpFile)) {
+			write(out);
+		} catch (IOException e) {
+			Files.deleteIfExists(tmpFile);
+			throw e;
+		}
+		Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Writes the automaton to the given stream, which is not closed.
+	 * 
+	 * @param stream the stream to write to
+	 * @throws IOException if the stream cannot be written
+	 */
+	public void write(OutputStream stream) throws IOException {
+		CheckedOutputStream checked = new CheckedOutputStream(
+				new BufferedOutputStream(stream, BUFFER_SIZE), new CRC32());
+		DataOutputStream out = new DataOutputStream(checked);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(caseFolded ? FLAG_CASE_FOLDED : 0);
+		out.writeInt(numWords);
+		out.writeInt(alphabet.length);
+		out.writeInt(check.length);
+		for (char c : alphabet)
+			out.writeChar(c);
+		for (int[] array : new int[][] {base, check, fail, match})
+			for (int value : array)
+				out.writeInt(value);
+		out.flush();
+		out.writeLong(checked.getChecksum().getValue());
+		out.flush();
+	}
+	
+	/**
+	 * Reads an automaton from the given file.
+	 * 
+	 * @param file the path of the file to read
+	 * @return the {@code DictionaryAutomaton}
+	 * @throws IOException if the file cannot be read, is not an automaton 
+	 * file, or is corrupt
+	 */
+	public static DictionaryAutomaton read(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return read(in);
+		}
+	}
+	
+	/**
+	 * Reads an automaton from the given stream, which is not closed.
+	 * 
+	 * @param stream the stream to read
+	 * @return the {@code DictionaryAutomaton}
+	 * @throws IOException if the stream cannot be read, or does not hold a 
+	 * valid automaton
+	 */
+	public static DictionaryAutomaton read(InputStream stream)
+			throws IOException {
+		CheckedInputStream checked = new CheckedInputStream(
+				new BufferedInputStream(stream, BUFFER_SIZE), new CRC32());
+		DataInputStream in = new DataInputStream(checked);
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a dictionary automaton.");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException(String.format(
+						"Unsupported dictionary automaton version %d "
+						+ "(expected %d).", version, VERSION));
+			int flags = in.readInt();
+			int numWords = in.readInt();
+			int alphabetSize = in.readInt();
+			int size = in.readInt();
+			if (alphabetSize < 0 || alphabetSize > Character.MAX_VALUE
+					|| size < 1)
+				throw new IOException("Dictionary automaton header is "
+						+ "malformed.");
+			char[] alphabet = new char[alphabetSize];
+			for (int i = 0; i < alphabetSize; i++)
+				alphabet[i] = in.readChar();
+			int[][] arrays = new int[4][size];
+			for (int[] array : arrays)
+				for (int i = 0; i < size; i++)
+					array[i] = in.readInt();
+			long expected = checked.getChecksum().getValue();
+			if (in.readLong() != expected)
+				throw new IOException("Dictionary automaton checksum "
+						+ "mismatch.");
+			validate(alphabet, arrays[0], arrays[1], arrays[2]);
+			return new DictionaryAutomaton(
+					(flags & FLAG_CASE_FOLDED) != 0, numWords, alphabet,
+					arrays[0], arrays[1], arrays[2], arrays[3]);
+		} catch (EOFException e) {
+			throw new IOException("Dictionary automaton is truncated.", e);
+		}
+	}
+	
+	/**
+	 * Checks that the alphabet is sorted and every link stays within the 
+	 * arrays, so that a corrupt file cannot cause out of bounds reads.
+	 */
+	private static void validate(char[] alphabet, int[] base, int[] check,
+			int[] fail) throws IOException {
+		boolean valid = true;
+		for (int i = 1; valid && i < alphabet.length; i++)
+			valid = alphabet[i - 1] < alphabet[i];
+		for (int i = 0; valid && i < check.length; i++)
+			valid = base[i] >= 0 && base[i] <= check.length
+					&& check[i] >= FREE && check[i] < check.length
+					&& fail[i] >= 0 && fail[i] < check.length;
+		if (!valid)
+			throw new IOException("Dictionary automaton is malformed.");
+	}
+}
\ No newline at end of file
@@ -0,0 +1,640 @@
+package co.insecurity.security.policy.index;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@code MembershipIndex} which keeps the SHA-1 digests of the passwords 
+ * in a word list on disk, so that exact lookups need almost no heap.
+ * <p>
+ * The index file holds the sorted, distinct 20-byte digests, followed by a 
+ * directory which partitions them by their leading bits. The number of 
+ * partition bits is chosen so that partitions average about 256 digests 
+ * (5 KiB). The directory is read into memory when the index is opened, at 
+ * about 0.03 bytes per password. The digests are memory-mapped read-only. A 
+ * lookup uses the directory to find the partition, then interpolation-searches 
+ * the uniformly distributed digests within it, so it typically touches a 
+ * single page.
+ * <p>
+ * Since digests are stored in full, lookups are exact. Indexes can be built 
+ * from plaintext word lists, or from the SHA-1 hash lists published by Have I 
+ * Been Pwned, given either as full {@code HASH:count} lines or as range files 
+ * of {@code SUFFIX:count} lines for a 5-character hash prefix. Passwords are 
+ * hashed over their UTF-8 encoding, as HIBP hashes them. Any case folding 
+ * must match between building and lookups, and is not possible for HIBP 
+ * lists.
+ * <p>
+ * The file format, in big-endian byte order, is:
+ * <pre>
+ * int     magic ('PCDH') 
+ * int     format version 
+ * int     number of partition bits, p 
+ * int     reserved (0) 
+ * long    number of digests, n 
+ * long    file offset of the directory 
+ * byte[]  n sorted 20-byte digests 
+ * long[]  2^p + 1 directory entries, the index of the first digest in 
+ *         each partition, followed by n 
+ * long    CRC32 of the header and directory
+ * </pre>
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class DiskHashIndex implements MembershipIndex, Closeable {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(DiskHashIndex.class);
+	
+	static final int MAGIC = 0x50434448;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	static final int DIGEST_SIZE = 20;
+	private static final int PARTITION_SIZE_SHIFT = 8;
+	private static final int MAX_PARTITION_BITS = 30;
+	private static final int NUM_BUCKETS = 256;
+	private static final int ENTRIES_PER_CHUNK = (1 << 30) / DIGEST_SIZE;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static final ThreadLocal<MessageDigest> SHA1 =
+			new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException("SHA-1 is not available.", e);
+			}
+		}
+	};
+	
+	/**
+	 * Builds a {@code DiskHashIndex} file from passwords or SHA-1 digests.
+	 * <p>
+	 * Digests are spilled to 256 temporary bucket files by their first byte, 
+	 * next to the index file. When {@code build()} is called, each bucket is 
+	 * sorted in memory and appended to the index file, so that building 
+	 * needs memory for only one bucket, about 1/256 of the digests, at a 
+	 * time.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder implements MembershipIndex.Builder, Closeable {
+		
+		private final Path indexFile;
+		private final Path tmpDir;
+		private final DataOutputStream[] buckets;
+		private long numDigests = 0;
+		
+		/**
+		 * Instantiates a new {@code DiskHashIndex.Builder} which will write 
+		 * the index to the given file.
+		 * 
+		 * @param indexFile the path of the index file to write
+		 * @throws IOException if the temporary bucket files cannot be created
+		 */
+		public Builder(Path indexFile) throws IOException {
+			this.indexFile = indexFile;
+			Path parent = indexFile.toAbsolutePath().getParent();
+			this.tmpDir = Files.createTempDirectory(parent,
+					indexFile.getFileName().toString());
+			this.buckets = new DataOutputStream[NUM_BUCKETS];
+			try {
+				for (int i = 0; i < NUM_BUCKETS; i++) {
+					OutputStream out = Files.newOutputStream(bucketFile(i));
+					buckets[i] = new DataOutputStream(
+							new BufferedOutputStream(out, 1 << 16));
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+		
+		private Path bucketFile(int bucket) {
+			return tmpDir.resolve(String.format("%02x.tmp", bucket));
+		}
+		
+		/**
+		 * Adds the SHA-1 digest of the given password to the index. Since 
+		 * duplicates are only removed when the index is built, this method 
+		 * always returns true.
+		 * 
+		 * @param password the password to add
+		 * @return true
+		 * @throws UncheckedIOException if the digest cannot be spilled to its 
+		 * bucket file
+		 */
+		@Override
+		public boolean add(String password) {
+			addDigest(sha1(password));
+			return true;
+		}
+		
+		/**
+		 * Adds a 20-byte SHA-1 digest to the index.
+		 * 
+		 * @param digest the SHA-1 digest of a password
+		 * @throws UncheckedIOException if the digest cannot be spilled to its 
+		 * bucket file
+		 */
+		public void addDigest(byte[] digest) {
+			if (digest.length != DIGEST_SIZE)
+				throw new IllegalArgumentException(
+						"SHA-1 digests must be 20 bytes.");
+			try {
+				buckets[digest[0] & 0xFF].write(digest);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			numDigests++;
+		}
+		
+		/**
+		 * Adds the SHA-1 hashes listed by the given reader, one per line, in 
+		 * the hexadecimal {@code HASH} or {@code HASH:count} format of Have I 
+		 * Been Pwned. The count, if any, is ignored.
+		 * <p>
+		 * For HIBP range files, which list only the hash suffixes for a 
+		 * 5-character prefix, the prefix must be given so that the full 
+		 * hashes can be reconstructed. For full hash lists it must be empty.
+		 * 
+		 * @param reader the reader to read hashes from
+		 * @param prefix the hexadecimal prefix shared by every hash in the 
+		 * reader, or an empty string
+		 * @return this {@code Builder}
+		 * @throws IOException if the reader cannot be read, or a line is not a 
+		 * valid hexadecimal SHA-1 hash
+		 */
+		public Builder addHibpHashes(BufferedReader reader, String prefix)
+				throws IOException {
+			String line;
+			long lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				if (line.isEmpty())
+					continue;
+				int end = line.indexOf(':');
+				if (end < 0)
+					end = line.length();
+				String hex = prefix + line.substring(0, end).trim();
+				byte[] digest = parseHex(hex);
+				if (digest == null)
+					throw new IOException(String.format(
+							"Invalid SHA-1 hash on line %d: %s",
+							lineNumber, hex));
+				addDigest(digest);
+			}
+			return this;
+		}
+		
+		/**
+		 * Sorts the spilled digests and writes the index file, returning the 
+		 * index opened from it. The temporary bucket files are deleted.
+		 * 
+		 * @return the built {@code DiskHashIndex}
+		 * @throws UncheckedIOException if the index file cannot be written
+		 */
+		@Override
+		public DiskHashIndex build() {
+			try {
+				return writeIndex();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				close();
+			}
+		}
+		
+		private DiskHashIndex writeIndex() throws IOException {
+			for (DataOutputStream bucket : buckets)
+				bucket.close();
+			int partitionBits = partitionBits(numDigests);
+			long[] directory = new long[(1 << partitionBits) + 1];
+			Path tmpFile = tmpDir.resolve("index.tmp");
+			long numEntries = 0;
+			try (FileChannel channel = FileChannel.open(tmpFile,
+					StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+				channel.position(HEADER_SIZE);
+				int partition = 0;
+				for (int i = 0; i < NUM_BUCKETS; i++) {
+					byte[] digests = Files.readAllBytes(bucketFile(i));
+					Files.delete(bucketFile(i));
+					int count = digests.length / DIGEST_SIZE;
+					sort(digests, 0, count - 1);
+					int distinct = 0;
+					for (int j = 0; j < count; j++) {
+						if (distinct > 0 && compare(digests, j, digests,
+								distinct - 1) == 0)
+							continue;
+						if (distinct != j)
+							System.arraycopy(digests, j * DIGEST_SIZE, digests,
+									distinct * DIGEST_SIZE, DIGEST_SIZE);
+						int digestPartition = partitionOf(
+								readLong(digests, distinct * DIGEST_SIZE),
+								partitionBits);
+						while (partition < digestPartition)
+							directory[++partition] = numEntries + distinct;
+						distinct++;
+					}
+					writeFully(channel, ByteBuffer.wrap(digests, 0,
+							distinct * DIGEST_SIZE));
+					numEntries += distinct;
+				}
+				while (partition < directory.length - 1)
+					directory[++partition] = numEntries;
+				
+				long directoryOffset = channel.position();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).putInt(partitionBits)
+						.putInt(0).putLong(numEntries).putLong(directoryOffset);
+				header.flip();
+				ByteBuffer footer = ByteBuffer.allocate(
+						directory.length * 8 + 8);
+				footer.asLongBuffer().put(directory);
+				CRC32 crc = new CRC32();
+				crc.update(header.array());
+				crc.update(footer.array(), 0, directory.length * 8);
+				footer.putLong(directory.length * 8, crc.getValue());
+				writeFully(channel, footer);
+				channel.position(0);
+				writeFully(channel, header);
+				channel.force(true);
+			}
+			Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			LOG.info("Wrote disk hash index with {} digests in {} partitions "
+					+ "to {}", numEntries, directory.length - 1, indexFile);
+			return open(indexFile);
+		}
+		
+		/**
+		 * Deletes the temporary bucket files, discarding any digests which 
+		 * have not yet been built into an index.
+		 */
+		@Override
+		public void close() {
+			for (int i = 0; i < NUM_BUCKETS; i++) {
+				try {
+					if (buckets[i] != null)
+						buckets[i].close();
+					Files.deleteIfExists(bucketFile(i));
+				} catch (IOException e) {
+					LOG.warn("Failed to delete temporary bucket file: {}",
+							bucketFile(i));
+				}
+			}
+			try {
+				Files.deleteIfExists(tmpDir.resolve("index.tmp"));
+				Files.deleteIfExists(tmpDir);
+			} catch (IOException e) {
+				LOG.warn("Failed to delete temporary directory: {}", tmpDir);
+			}
+		}
+	}
+	
+	/**
+	 * Returns a {@code MembershipIndex.Factory} which builds a 
+	 * {@code DiskHashIndex} at the given path, so that a 
+	 * {@code NotLeakedAssertion} can build a disk index from its password 
+	 * data file. The expected number of passwords and false positive 
+	 * probability are ignored, since the index is exact.
+	 * 
+	 * @param indexFile the path of the index file to write
+	 * @return a factory for {@code DiskHashIndex} builders
+	 */
+	public static MembershipIndex.Factory factory(final Path indexFile) {
+		return new MembershipIndex.Factory() {
+			@Override
+			public MembershipIndex.Builder newBuilder(long expectedPasswords,
+					double fpProbability) {
+				try {
+					return new Builder(indexFile);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Opens an existing index file, reading its directory into memory and 
+	 * memory-mapping its digests.
+	 * 
+	 * @param indexFile the path of the index file
+	 * @return the opened {@code DiskHashIndex}
+	 * @throws IOException if the file cannot be read, is not an index file, 
+	 * or is corrupt
+	 */
+	public static DiskHashIndex open(Path indexFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(indexFile,
+				StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header, 0);
+			header.flip();
+			if (header.getInt() != MAGIC)
+				throw new IOException(String.format(
+						"Not a disk hash index: %s", indexFile));
+			int version = header.getInt();
+			if (version != VERSION)
+				throw new IOException(String.format(
+						"Unsupported disk hash index version %d (expected "
+						+ "%d): %s", version, VERSION, indexFile));
+			int partitionBits = header.getInt();
+			header.getInt();
+			long numEntries = header.getLong();
+			long directoryOffset = header.getLong();
+			if (partitionBits < 0 || partitionBits > MAX_PARTITION_BITS
+					|| directoryOffset != HEADER_SIZE + numEntries * DIGEST_SIZE)
+				throw new IOException(String.format(
+						"Disk hash index header is malformed: %s", indexFile));
+			
+			int directoryLength = (1 << partitionBits) + 1;
+			ByteBuffer footer = ByteBuffer.allocate(directoryLength * 8 + 8);
+			readFully(channel, footer, directoryOffset);
+			footer.flip();
+			CRC32 crc = new CRC32();
+			crc.update(header.array());
+			crc.update(footer.array(), 0, directoryLength * 8);
+			if (crc.getValue() != footer.getLong(directoryLength * 8))
+				throw new IOException(String.format(
+						"Disk hash index checksum mismatch: %s", indexFile));
+			long[] directory = new long[directoryLength];
+			footer.asLongBuffer().get(directory);
+			
+			int numChunks = (int) ((numEntries + ENTRIES_PER_CHUNK - 1)
+					/ ENTRIES_PER_CHUNK);
+			MappedByteBuffer[] chunks = new MappedByteBuffer[numChunks];
+			for (int i = 0; i < numChunks; i++) {
+				long first = (long) i * ENTRIES_PER_CHUNK;
+				long count = Math.min(ENTRIES_PER_CHUNK, numEntries - first);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE + first * DIGEST_SIZE, count * DIGEST_SIZE);
+			}
+			return new DiskHashIndex(indexFile, partitionBits, numEntries,
+					directory, chunks);
+		}
+	}
+	
+	private final Path indexFile;
+	private final int partitionBits;
+	private final long numEntries;
+	private final long[] directory;
+	private final MappedByteBuffer[] chunks;
+	
+	private DiskHashIndex(Path indexFile, int partitionBits, long numEntries,
+			long[] directory, MappedByteBuffer[] chunks) {
+		this.indexFile = indexFile;
+		this.partitionBits = partitionBits;
+		this.numEntries = numEntries;
+		this.directory = directory;
+		this.chunks = chunks;
+	}
+	
+	/**
+	 * Gets the path of the index file.
+	 * 
+	 * @return the index file path
+	 */
+	public Path getIndexFile() {
+		return indexFile;
+	}
+	
+	/**
+	 * Gets the number of distinct digests in the index.
+	 * 
+	 * @return the number of passwords in the index
+	 */
+	@Override
+	public long getNumPasswords() {
+		return numEntries;
+	}
+	
+	/**
+	 * Gets the size of the digests and partition directory, which are 
+	 * mapped into memory rather than held on the heap.
+	 */
+	@Override
+	public long getSizeInBytes() {
+		return numEntries * DIGEST_SIZE + directory.length * 8L;
+	}
+	
+	@Override
+	public boolean contains(String password) {
+		return containsDigest(sha1(password));
+	}
+	
+	/**
+	 * Digests the whole batch, then probes the digests in sorted order, so 
+	 * that the index file is read sequentially rather than at random.
+	 */
+	@Override
+	public void containsAll(String[] passwords, int offset, int length,
+			boolean[] results) {
+		byte[][] digests = new byte[length][];
+		long[] order = new long[length];
+		for (int i = 0; i < length; i++) {
+			digests[i] = sha1(passwords[offset + i]);
+			order[i] = ((readInt(digests[i], 0) & 0xFFFFFFFFL) ^ 0x80000000L)
+					<< 32 | i;
+		}
+		Arrays.sort(order);
+		for (long key : order) {
+			int i = (int) key;
+			results[offset + i] = containsDigest(digests[i]);
+		}
+	}
+	
+	/**
+	 * Indicates whether the given 20-byte SHA-1 digest is contained in this 
+	 * index.
+	 * 
+	 * @param digest the SHA-1 digest of a password
+	 * @return true if the digest is contained in the index, otherwise 
+	 * returns false
+	 */
+	public boolean containsDigest(byte[] digest) {
+		long k0 = readLong(digest, 0);
+		long k1 = readLong(digest, 8);
+		int k2 = readInt(digest, 16);
+		int partition = partitionOf(k0, partitionBits);
+		long lo = directory[partition];
+		long hi = directory[partition + 1];
+		if (lo == hi)
+			return false;
+		// the bits following the partition bits are uniformly distributed
+		long fraction = (k0 << partitionBits) >>> 32;
+		long guess = lo + ((fraction * (hi - lo)) >>> 32);
+		int cmp = compareEntry(guess, k0, k1, k2);
+		if (cmp < 0) {
+			while (cmp < 0 && ++guess < hi)
+				cmp = compareEntry(guess, k0, k1, k2);
+		} else {
+			while (cmp > 0 && --guess >= lo)
+				cmp = compareEntry(guess, k0, k1, k2);
+		}
+		return cmp == 0;
+	}
+	
+	/**
+	 * Releases the index. The memory mappings are released once the index 
+	 * is garbage collected, so this method only exists so that an index can 
+	 * be managed like other file-backed resources.
+	 */
+	@Override
+	public void close() {
+	}
+	
+	/**
+	 * Compares the entry at the given index with the key, returning a 
+	 * negative value if the entry sorts before the key.
+	 */
+	private int compareEntry(long entry, long k0, long k1, int k2) {
+		ByteBuffer chunk = chunks[(int) (entry / ENTRIES_PER_CHUNK)];
+		int offset = (int) (entry % ENTRIES_PER_CHUNK) * DIGEST_SIZE;
+		int cmp = Long.compareUnsigned(chunk.getLong(offset), k0);
+		if (cmp == 0)
+			cmp = Long.compareUnsigned(chunk.getLong(offset + 8), k1);
+		if (cmp == 0)
+			cmp = Integer.compareUnsigned(chunk.getInt(offset + 16), k2);
+		return cmp;
+	}
+	
+	/**
+	 * Returns the SHA-1 digest of the UTF-8 encoding of the given password.
+	 * 
+	 * @param password the password to hash
+	 * @return the 20-byte SHA-1 digest
+	 */
+	public static byte[] sha1(String password) {
+		return SHA1.get().digest(password.getBytes(UTF_8));
+	}
+	
+	private static int partitionBits(long numDigests) {
+		int bits = 64 - Long.numberOfLeadingZeros(
+				numDigests >>> PARTITION_SIZE_SHIFT);
+		return Math.min(MAX_PARTITION_BITS, bits);
+	}
+	
+	private static int partitionOf(long k0, int partitionBits) {
+		return (partitionBits == 0) ? 0 : (int) (k0 >>> (64 - partitionBits));
+	}
+	
+	private static byte[] parseHex(String hex) {
+		if (hex.length() != DIGEST_SIZE * 2)
+			return null;
+		byte[] digest = new byte[DIGEST_SIZE];
+		for (int i = 0; i < DIGEST_SIZE; i++) {
+			int hi = Character.digit(hex.charAt(2 * i), 16);
+			int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+			if (hi < 0 || lo < 0)
+				return null;
+			digest[i] = (byte) ((hi << 4) | lo);
+		}
+		return digest;
+	}
+	
+	private static long readLong(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = 0; i < 8; i++)
+			value = (value << 8) | (bytes[offset + i] & 0xFF);
+		return value;
+	}
+	
+	private static int readInt(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+				| (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+	}
+	
+	private static int compare(byte[] a, int i, byte[] b, int j) {
+		int offsetA = i * DIGEST_SIZE;
+		int offsetB = j * DIGEST_SIZE;
+		for (int k = 0; k < DIGEST_SIZE; k++) {
+			int cmp = (a[offsetA + k] & 0xFF) - (b[offsetB + k] & 0xFF);
+			if (cmp != 0)
+				return cmp;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Sorts the 20-byte records between the given indexes, inclusive, with 
+	 * an in-place quicksort. Records equal to the pivot are gathered in the 
+	 * middle by a three-way partition, so that a word list repeating one 
+	 * password many times, e.g. a breach dump which has not been 
+	 * deduplicated, is sorted in linear rather than quadratic time.
+	 */
+	private static void sort(byte[] records, int lo, int hi) {
+		byte[] tmp = new byte[DIGEST_SIZE];
+		byte[] pivot = new byte[DIGEST_SIZE];
+		while (lo < hi) {
+			System.arraycopy(records, ((lo + hi) >>> 1) * DIGEST_SIZE, pivot,
+					0, DIGEST_SIZE);
+			// [lo, lt) < pivot, [lt, i) == pivot, (gt, hi] > pivot
+			int lt = lo;
+			int gt = hi;
+			int i = lo;
+			while (i <= gt) {
+				int cmp = compare(records, i, pivot, 0);
+				if (cmp < 0)
+					swap(records, lt++, i++, tmp);
+				else if (cmp > 0)
+					swap(records, i, gt--, tmp);
+				else
+					i++;
+			}
+			if (lt - lo < hi - gt) {
+				sort(records, lo, lt - 1);
+				lo = gt + 1;
+			} else {
+				sort(records, gt + 1, hi);
+				hi = lt - 1;
+			}
+		}
+	}
+	
+	private static void swap(byte[] records, int i, int j, byte[] tmp) {
+		if (i == j)
+			return;
+		System.arraycopy(records, i * DIGEST_SIZE, tmp, 0, DIGEST_SIZE);
+		System.arraycopy(records, j * DIGEST_SIZE, records, i * DIGEST_SIZE,
+				DIGEST_SIZE);
+		System.arraycopy(tmp, 0, records, j * DIGEST_SIZE, DIGEST_SIZE);
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0)
+				throw new IOException("Unexpected end of disk hash index.");
+			position += read;
+		}
+	}
+}
\ No newline at end of file
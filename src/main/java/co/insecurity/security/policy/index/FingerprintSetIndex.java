@@ -0,0 +1,198 @@
+package co.insecurity.security.policy.index;
+
+import java.util.Arrays;
+
+/**
+ * A compact {@code MembershipIndex} which stores a sorted set of password 
+ * fingerprints, for confirming the positives of a probabilistic filter.
+ * <p>
+ * Each password's 64-bit {@code PasswordHash} is split into a bucket number, 
+ * taken from its top {@code b} bits, and a 32-bit remainder, taken from its 
+ * low bits. Buckets average about eight passwords, so {@code b} grows with 
+ * the logarithm of the number of passwords. Only the remainders are stored, 
+ * sorted within a bucket directory, for about 4.5 bytes per password. Lookups 
+ * jump to the bucket and interpolation-search its remainders, which are 
+ * uniformly distributed.
+ * <p>
+ * A password which is not in the set is only reported as contained if it 
+ * shares both the bucket and the remainder of a contained password, so the 
+ * false positive probability is about 2<sup>-29</sup> (roughly 2 in a 
+ * billion) regardless of the number of passwords. The index therefore is 
+ * exact for practical purposes, while needing far less memory than storing 
+ * the passwords themselves.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class FingerprintSetIndex implements HashedMembershipIndex {
+	
+	private static final int PASSWORDS_PER_BUCKET_SHIFT = 3;
+	private static final int MAX_BUCKET_BITS = 30;
+	
+	/**
+	 * Buffers password hashes and builds a {@code FingerprintSetIndex} from 
+	 * them.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder implements HashedMembershipIndex.Builder {
+		
+		private long[] hashes;
+		private int size = 0;
+		
+		/**
+		 * Instantiates a new {@code FingerprintSetIndex.Builder}.
+		 * 
+		 * @param expectedPasswords the number of passwords expected to be 
+		 * added, used to presize the hash buffer
+		 * @throws IllegalArgumentException if more than 2<sup>31</sup> 
+		 * passwords are expected
+		 */
+		public Builder(long expectedPasswords) {
+			if (expectedPasswords > Integer.MAX_VALUE - 8)
+				throw new IllegalArgumentException(String.format(
+						"Fingerprint sets support at most %d passwords.",
+						Integer.MAX_VALUE - 8));
+			this.hashes = new long[(int) Math.max(16, expectedPasswords)];
+		}
+		
+		/**
+		 * Buffers the given password for inclusion in the set. Since 
+		 * duplicates are only removed when the set is built, this method 
+		 * always returns true.
+		 * 
+		 * @param password the password to add
+		 * @return true
+		 */
+		@Override
+		public boolean add(String password) {
+			addHash(PasswordHash.hash64(password));
+			return true;
+		}
+		
+		/**
+		 * Buffers a password, identified by its 64-bit {@code PasswordHash}, 
+		 * for inclusion in the set. Since duplicates are only removed when 
+		 * the set is built, this method always returns true.
+		 * 
+		 * @param hash the 64-bit hash of the password
+		 * @return true
+		 */
+		@Override
+		public boolean addHash(long hash) {
+			if (size == hashes.length) {
+				if (size == Integer.MAX_VALUE - 8)
+					throw new IllegalStateException(
+							"Fingerprint set builder is full.");
+				hashes = Arrays.copyOf(hashes, (int) Math.min(
+						Integer.MAX_VALUE - 8, (long) size * 3 / 2 + 1));
+			}
+			hashes[size++] = hash;
+			return true;
+		}
+		
+		@Override
+		public FingerprintSetIndex build() {
+			long[] keys = hashes;
+			hashes = null;
+			int bucketBits = bucketBits(size);
+			for (int i = 0; i < size; i++)
+				keys[i] = sortKey(keys[i], bucketBits);
+			Arrays.sort(keys, 0, size);
+			int distinct = 0;
+			for (int i = 0; i < size; i++) {
+				if (distinct == 0 || keys[i] != keys[distinct - 1])
+					keys[distinct++] = keys[i];
+			}
+			return new FingerprintSetIndex(keys, distinct, bucketBits);
+		}
+	}
+	
+	private final int bucketBits;
+	private final int[] offsets;
+	private final int[] remainders;
+	
+	private FingerprintSetIndex(long[] sortKeys, int size, int bucketBits) {
+		this.bucketBits = bucketBits;
+		this.offsets = new int[(1 << bucketBits) + 1];
+		this.remainders = new int[size];
+		int bucket = 0;
+		for (int i = 0; i < size; i++) {
+			int keyBucket = (int) (sortKeys[i] >>> 32);
+			while (bucket < keyBucket)
+				offsets[++bucket] = i;
+			remainders[i] = (int) sortKeys[i] ^ Integer.MIN_VALUE;
+		}
+		while (bucket < offsets.length - 1)
+			offsets[++bucket] = size;
+	}
+	
+	private static int bucketBits(int size) {
+		int bits = 64 - Long.numberOfLeadingZeros(
+				(long) size >>> PASSWORDS_PER_BUCKET_SHIFT);
+		return Math.min(MAX_BUCKET_BITS, bits);
+	}
+	
+	/**
+	 * Maps a hash to a key which sorts by bucket, then by remainder, with the 
+	 * remainder's sign bit flipped so that signed order within a bucket 
+	 * matches the stored, signed remainders.
+	 */
+	private static long sortKey(long hash, int bucketBits) {
+		long bucket = (bucketBits == 0) ? 0 : hash >>> (64 - bucketBits);
+		return (bucket << 32) | (((int) hash ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Gets the number of distinct fingerprints in the set.
+	 * 
+	 * @return the number of passwords
+	 */
+	public int getSize() {
+		return remainders.length;
+	}
+	
+	@Override
+	public long getNumPasswords() {
+		return remainders.length;
+	}
+	
+	@Override
+	public long getSizeInBytes() {
+		return (offsets.length + remainders.length) * 4L;
+	}
+	
+	@Override
+	public boolean contains(String password) {
+		return containsHash(PasswordHash.hash64(password));
+	}
+	
+	/**
+	 * Indicates whether the password with the given 64-bit 
+	 * {@code PasswordHash} is contained in this set.
+	 * 
+	 * @param hash the 64-bit hash of the password
+	 * @return true if a password with the same fingerprint is contained in 
+	 * the set, otherwise returns false
+	 */
+	@Override
+	public boolean containsHash(long hash) {
+		int bucket = (bucketBits == 0) ? 0 : (int) (hash >>> (64 - bucketBits));
+		int lo = offsets[bucket];
+		int hi = offsets[bucket + 1];
+		if (lo == hi)
+			return false;
+		int remainder = (int) hash;
+		long position = (remainder & 0xFFFFFFFFL) ^ 0x80000000L;
+		int guess = lo + (int) ((position * (hi - lo)) >>> 32);
+		if (remainders[guess] < remainder) {
+			while (++guess < hi && remainders[guess] < remainder)
+				;
+		} else {
+			while (guess > lo && remainders[guess - 1] >= remainder)
+				guess--;
+		}
+		return guess < hi && remainders[guess] == remainder;
+	}
+}
\ No newline at end of file
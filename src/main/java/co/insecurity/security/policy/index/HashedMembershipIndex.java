@@ -0,0 +1,46 @@
+package co.insecurity.security.policy.index;
+
+/**
+ * A {@code MembershipIndex} which identifies passwords by their 64-bit 
+ * {@code PasswordHash}, and so can be queried with a precomputed hash.
+ * <p>
+ * Since {@code PasswordHash} hashes a password without copying it, and can 
+ * fold ASCII passwords to lower case while hashing, lookups by hash allow a 
+ * password to be checked without allocating.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public interface HashedMembershipIndex extends MembershipIndex {
+	
+	/**
+	 * A {@code MembershipIndex.Builder} which can also be populated with 
+	 * precomputed 64-bit {@code PasswordHash}es, e.g. as read from a 
+	 * {@code PasswordHashFile}, without the passwords themselves.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public interface Builder extends MembershipIndex.Builder {
+		
+		/**
+		 * Adds a password, identified by its 64-bit {@code PasswordHash}, to 
+		 * the index being built.
+		 * 
+		 * @param hash the 64-bit hash of the password
+		 * @return true if the password was newly added, or false if the 
+		 * index already (probably) contained the password
+		 */
+		public boolean addHash(long hash);
+	}
+	
+	/**
+	 * Indicates whether the password with the given 64-bit 
+	 * {@code PasswordHash} is contained in this index.
+	 * 
+	 * @param hash the 64-bit hash of the password
+	 * @return true if the password is (probably) contained in the index, 
+	 * otherwise returns false
+	 */
+	public boolean containsHash(long hash);
+}
\ No newline at end of file
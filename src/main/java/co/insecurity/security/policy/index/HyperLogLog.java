@@ -0,0 +1,64 @@
+package co.insecurity.security.policy.index;
+
+/**
+ * A HyperLogLog sketch which estimates the number of distinct passwords in 
+ * a stream in constant memory, used to size indexes when the word list can 
+ * only be read once.
+ * <p>
+ * The sketch uses 2<sup>14</sup> one-byte registers (16 KiB), giving a 
+ * standard error of roughly 0.8%, and applies linear counting for small 
+ * cardinalities.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class HyperLogLog {
+	
+	private static final int PRECISION = 14;
+	private static final int NUM_REGISTERS = 1 << PRECISION;
+	private static final double ALPHA = 0.7213 / (1 + 1.079 / NUM_REGISTERS);
+	
+	private final byte[] registers = new byte[NUM_REGISTERS];
+	
+	/**
+	 * Adds the given password to the sketch.
+	 * 
+	 * @param password the password to add
+	 */
+	public void add(CharSequence password) {
+		addHash(PasswordHash.hash64(password));
+	}
+	
+	/**
+	 * Adds a password, identified by its 64-bit {@code PasswordHash}, to the 
+	 * sketch.
+	 * 
+	 * @param hash the 64-bit hash of the password
+	 */
+	public void addHash(long hash) {
+		int index = (int) (hash >>> (64 - PRECISION));
+		long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+		byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+		if (rank > registers[index])
+			registers[index] = rank;
+	}
+	
+	/**
+	 * Returns the estimated number of distinct passwords added to the sketch.
+	 * 
+	 * @return the estimated cardinality
+	 */
+	public long cardinality() {
+		double sum = 0;
+		int zeros = 0;
+		for (byte register : registers) {
+			sum += 1.0 / (1L << register);
+			if (register == 0)
+				zeros++;
+		}
+		double estimate = ALPHA * NUM_REGISTERS * NUM_REGISTERS / sum;
+		if (estimate <= 2.5 * NUM_REGISTERS && zeros > 0)
+			estimate = NUM_REGISTERS * Math.log((double) NUM_REGISTERS / zeros);
+		return Math.round(estimate);
+	}
+}
\ No newline at end of file
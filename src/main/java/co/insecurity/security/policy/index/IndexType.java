@@ -0,0 +1,88 @@
+package co.insecurity.security.policy.index;
+
+/**
+ * Enumerates the built-in {@code MembershipIndex} implementations which may 
+ * back a {@code NotLeakedAssertion}, and creates builders for them.
+ * <p>
+ * As a rule of thumb, {@code BLOOM_FILTER} suits word lists of up to tens of 
+ * millions of passwords, {@code OFF_HEAP_BLOOM_FILTER} suits lists too large 
+ * for the heap, {@code BLOCKED_BLOOM_FILTER} minimizes lookup latency, and 
+ * {@code BINARY_FUSE_FILTER} minimizes memory for a static list. Only 
+ * {@code COUNTING_BLOOM_FILTER} supports removing passwords from a live index.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public enum IndexType implements MembershipIndex.Factory {
+	
+	/**
+	 * An on-heap Orestes bloom filter, limited to fewer than 
+	 * 2<sup>31</sup> passwords. See {@code BloomFilterIndex}.
+	 */
+	BLOOM_FILTER {
+		@Override
+		public MembershipIndex.Builder newBuilder(long expectedPasswords, 
+				double fpProbability) {
+			if (expectedPasswords > Integer.MAX_VALUE)
+				throw new IllegalArgumentException(String.format(
+						"%s supports at most %d passwords, but %d are "
+						+ "expected; use %s instead.", 
+						this, Integer.MAX_VALUE, expectedPasswords, 
+						OFF_HEAP_BLOOM_FILTER));
+			return new BloomFilterIndex.Builder(
+					(int) expectedPasswords, fpProbability);
+		}
+	},
+	
+	/**
+	 * An off-heap bloom filter with 64-bit bit indices. See 
+	 * {@code OffHeapBloomFilterIndex}.
+	 */
+	OFF_HEAP_BLOOM_FILTER {
+		@Override
+		public MembershipIndex.Builder newBuilder(long expectedPasswords, 
+				double fpProbability) {
+			return new OffHeapBloomFilterIndex.Builder(
+					expectedPasswords, fpProbability);
+		}
+	},
+	
+	/**
+	 * An on-heap bloom filter which confines the bits of each password to a 
+	 * single cache line. See {@code BlockedBloomFilterIndex}.
+	 */
+	BLOCKED_BLOOM_FILTER {
+		@Override
+		public MembershipIndex.Builder newBuilder(long expectedPasswords, 
+				double fpProbability) {
+			return new BlockedBloomFilterIndex.Builder(
+					expectedPasswords, fpProbability);
+		}
+	},
+	
+	/**
+	 * A static binary fuse filter with three probes per lookup. See 
+	 * {@code BinaryFuseFilterIndex}.
+	 */
+	BINARY_FUSE_FILTER {
+		@Override
+		public MembershipIndex.Builder newBuilder(long expectedPasswords, 
+				double fpProbability) {
+			return new BinaryFuseFilterIndex.Builder(
+					expectedPasswords, fpProbability);
+		}
+	},
+	
+	/**
+	 * An on-heap counting bloom filter which supports concurrent removals. 
+	 * See {@code CountingBloomFilterIndex}.
+	 */
+	COUNTING_BLOOM_FILTER {
+		@Override
+		public MembershipIndex.Builder newBuilder(long expectedPasswords, 
+				double fpProbability) {
+			return new CountingBloomFilterIndex.Builder(
+					expectedPasswords, fpProbability);
+		}
+	};
+}
\ No newline at end of file
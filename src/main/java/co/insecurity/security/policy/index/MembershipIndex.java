@@ -0,0 +1,135 @@
+package co.insecurity.security.policy.index;
+
+/**
+ * A {@code MembershipIndex} is a read-only set of passwords which can be 
+ * queried for membership, such as the word list of leaked and/or common 
+ * passwords checked by a {@code NotLeakedAssertion}.
+ * <p>
+ * Implementations may be probabilistic, in which case {@code contains} may 
+ * return false positives but never false negatives. Instances are populated 
+ * through a {@code MembershipIndex.Builder} and must be safe for concurrent 
+ * lookups once built.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public interface MembershipIndex {
+	
+	/**
+	 * Returned by {@code getNumPasswords()} when an index does not track the 
+	 * number of passwords it contains.
+	 */
+	public static final long UNKNOWN_NUM_PASSWORDS = -1;
+	
+	/**
+	 * Returned by {@code getSizeInBytes()} when an index cannot report its 
+	 * memory footprint.
+	 */
+	public static final long UNKNOWN_SIZE = -1;
+	
+	/**
+	 * Creates {@code MembershipIndex.Builder}s for a particular index 
+	 * implementation. This is the extension point through which a 
+	 * {@code NotLeakedAssertion} can be backed by a custom index; the 
+	 * built-in implementations are enumerated by {@code IndexType}.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public interface Factory {
+		
+		/**
+		 * Creates a builder for an index sized for the given number of 
+		 * passwords and false positive probability.
+		 * 
+		 * @param expectedPasswords the number of passwords expected to be 
+		 * added
+		 * @param fpProbability the desired false positive probability
+		 * @return a new {@code MembershipIndex.Builder}
+		 * @throws IllegalArgumentException if the index cannot hold the 
+		 * expected number of passwords at the given probability
+		 */
+		public Builder newBuilder(long expectedPasswords, double fpProbability);
+	}
+	
+	/**
+	 * Accumulates the passwords of a word list and builds a 
+	 * {@code MembershipIndex} containing them.
+	 * <p>
+	 * Builders are not thread-safe, and must not be used after 
+	 * {@code build()} has been called.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public interface Builder {
+		
+		/**
+		 * Adds the given password to the index being built.
+		 * 
+		 * @param password the password to add
+		 * @return true if the password was newly added, or false if the 
+		 * index already (probably) contained the password
+		 */
+		public boolean add(String password);
+		
+		/**
+		 * Returns a {@code MembershipIndex} containing every password added 
+		 * to this {@code Builder}.
+		 * 
+		 * @return the built {@code MembershipIndex}
+		 */
+		public MembershipIndex build();
+	}
+	
+	/**
+	 * Indicates whether the given password is contained in this index.
+	 * 
+	 * @param password the password to look up
+	 * @return true if the password is (probably) contained in the index, 
+	 * otherwise returns false
+	 */
+	public boolean contains(String password);
+	
+	/**
+	 * Looks up a batch of passwords, storing whether each is contained in 
+	 * this index in the corresponding element of {@code results}.
+	 * <p>
+	 * The default implementation looks up each password in turn. 
+	 * Implementations may instead hash the whole batch first, and then 
+	 * probe in memory order for better locality.
+	 * 
+	 * @param passwords the passwords to look up
+	 * @param offset the index of the first password to look up
+	 * @param length the number of passwords to look up
+	 * @param results the array in which to store the result for the 
+	 * password at each index
+	 */
+	public default void containsAll(String[] passwords, int offset, 
+			int length, boolean[] results) {
+		for (int i = offset; i < offset + length; i++)
+			results[i] = contains(passwords[i]);
+	}
+	
+	/**
+	 * Gets the number of distinct passwords in this index, if the index 
+	 * tracks it.
+	 * 
+	 * @return the number of passwords in the index, or 
+	 * {@code UNKNOWN_NUM_PASSWORDS} if unknown
+	 */
+	public default long getNumPasswords() {
+		return UNKNOWN_NUM_PASSWORDS;
+	}
+	
+	/**
+	 * Gets the approximate memory footprint of this index, counting the 
+	 * arrays or buffers which hold its contents but not object overhead.
+	 * 
+	 * @return the size of the index in bytes, or {@code UNKNOWN_SIZE} if 
+	 * unknown
+	 */
+	public default long getSizeInBytes() {
+		return UNKNOWN_SIZE;
+	}
+}
\ No newline at end of file
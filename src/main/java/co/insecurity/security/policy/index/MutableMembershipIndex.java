@@ -0,0 +1,37 @@
+package co.insecurity.security.policy.index;
+
+/**
+ * A {@code MembershipIndex} which can be updated in place after it has been 
+ * built, so that delta updates to a word list can be applied to a live 
+ * index without rebuilding it.
+ * <p>
+ * Implementations must allow updates to run concurrently with lookups, 
+ * without blocking the lookups.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public interface MutableMembershipIndex extends MembershipIndex {
+	
+	/**
+	 * Adds the given password to this index.
+	 * 
+	 * @param password the password to add
+	 * @return true if the password was newly added, or false if the index 
+	 * already (probably) contained the password
+	 */
+	public boolean add(String password);
+	
+	/**
+	 * Removes one occurrence of the given password from this index.
+	 * <p>
+	 * Only passwords which were previously added may be removed; removing 
+	 * any other password may cause false negatives for the passwords it 
+	 * collides with.
+	 * 
+	 * @param password the password to remove
+	 * @return true if the password was (probably) contained in the index and 
+	 * has been removed, otherwise returns false
+	 */
+	public boolean remove(String password);
+}
\ No newline at end of file
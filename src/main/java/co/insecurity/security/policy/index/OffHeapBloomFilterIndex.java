@@ -0,0 +1,199 @@
+package co.insecurity.security.policy.index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * A {@code MembershipIndex} backed by a bloom filter whose bits are stored 
+ * off-heap in direct buffers and addressed with 64-bit indices, so that it 
+ * can hold word lists of billions of passwords without adding multi-gigabyte 
+ * arrays to the garbage-collected heap.
+ * <p>
+ * The bit set is split across direct buffers of up to 1 GiB each. Passwords 
+ * are hashed once with {@code PasswordHash}, and the probe positions are 
+ * derived from that hash by double hashing. Direct memory is limited by the 
+ * {@code -XX:MaxDirectMemorySize} JVM option, which may need to be raised 
+ * for very large word lists; a billion passwords at a false positive 
+ * probability of 0.001 require roughly 1.8 GB.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class OffHeapBloomFilterIndex implements HashedMembershipIndex {
+	
+	private static final int WORDS_PER_BUFFER_SHIFT = 27;
+	private static final int WORDS_PER_BUFFER = 1 << WORDS_PER_BUFFER_SHIFT;
+	private static final int WORD_MASK = WORDS_PER_BUFFER - 1;
+	
+	/**
+	 * Builds an {@code OffHeapBloomFilterIndex} sized for a known number of 
+	 * passwords.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder implements HashedMembershipIndex.Builder {
+		
+		private final OffHeapBloomFilterIndex index;
+		
+		/**
+		 * Instantiates a new {@code OffHeapBloomFilterIndex.Builder} whose 
+		 * filter is sized for the given number of passwords and false 
+		 * positive probability.
+		 * 
+		 * @param expectedPasswords the number of passwords expected to be 
+		 * added
+		 * @param fpProbability the desired false positive probability
+		 * @throws IllegalArgumentException if fpProbability is not between 0 
+		 * and 1
+		 */
+		public Builder(long expectedPasswords, double fpProbability) {
+			if (fpProbability <= 0 || fpProbability >= 1)
+				throw new IllegalArgumentException(
+						"False positive probability must be between 0 and 1!");
+			long numBits = optimalNumBits(expectedPasswords, fpProbability);
+			this.index = new OffHeapBloomFilterIndex(numBits, 
+					optimalNumHashes(expectedPasswords, numBits));
+		}
+		
+		@Override
+		public boolean add(String password) {
+			return index.addHash(PasswordHash.hash64(password));
+		}
+		
+		@Override
+		public boolean addHash(long hash) {
+			return index.addHash(hash);
+		}
+		
+		@Override
+		public OffHeapBloomFilterIndex build() {
+			return index;
+		}
+	}
+	
+	private final LongBuffer[] buffers;
+	private final long numBits;
+	private final int numHashes;
+	
+	private OffHeapBloomFilterIndex(long numBits, int numHashes) {
+		long numWords = (numBits + 63) >>> 6;
+		int numBuffers = (int) ((numWords + WORDS_PER_BUFFER - 1) 
+				>>> WORDS_PER_BUFFER_SHIFT);
+		this.buffers = new LongBuffer[numBuffers];
+		for (int i = 0; i < numBuffers; i++) {
+			long words = Math.min(WORDS_PER_BUFFER, 
+					numWords - ((long) i << WORDS_PER_BUFFER_SHIFT));
+			buffers[i] = ByteBuffer.allocateDirect((int) (words * 8))
+					.order(ByteOrder.nativeOrder()).asLongBuffer();
+		}
+		this.numBits = numBits;
+		this.numHashes = numHashes;
+	}
+	
+	/**
+	 * Returns the number of bits a bloom filter needs to hold the given 
+	 * number of elements with the given false positive probability.
+	 * 
+	 * @param expectedElements the number of elements in the filter
+	 * @param fpProbability the desired false positive probability
+	 * @return the optimal number of bits, which is always at least 64
+	 */
+	public static long optimalNumBits(long expectedElements, 
+			double fpProbability) {
+		double bits = -Math.max(1, expectedElements) * Math.log(fpProbability)
+				/ (Math.log(2) * Math.log(2));
+		return Math.max(64, (long) Math.ceil(bits));
+	}
+	
+	/**
+	 * Returns the number of hash functions which minimizes the false positive 
+	 * probability of a bloom filter with the given number of elements and 
+	 * bits.
+	 * 
+	 * @param expectedElements the number of elements in the filter
+	 * @param numBits the number of bits in the filter
+	 * @return the optimal number of hash functions, which is always at 
+	 * least 1
+	 */
+	public static int optimalNumHashes(long expectedElements, long numBits) {
+		return (int) Math.max(1, Math.round(
+				(double) numBits / Math.max(1, expectedElements) * Math.log(2)));
+	}
+	
+	/**
+	 * Gets the number of bits in the filter.
+	 * 
+	 * @return the number of bits
+	 */
+	public long getNumBits() {
+		return numBits;
+	}
+	
+	/**
+	 * Gets the number of hash functions used to probe the filter.
+	 * 
+	 * @return the number of hash functions
+	 */
+	public int getNumHashes() {
+		return numHashes;
+	}
+	
+	@Override
+	public long getSizeInBytes() {
+		return ((numBits + 63) >>> 6) * 8;
+	}
+	
+	@Override
+	public boolean contains(String password) {
+		return containsHash(PasswordHash.hash64(password));
+	}
+	
+	/**
+	 * Indicates whether the password with the given 64-bit 
+	 * {@code PasswordHash} is contained in this index.
+	 * 
+	 * @param hash the 64-bit hash of the password
+	 * @return true if the password is (probably) contained in the index, 
+	 * otherwise returns false
+	 */
+	@Override
+	public boolean containsHash(long hash) {
+		long h2 = secondHash(hash);
+		long combined = hash;
+		for (int i = 0; i < numHashes; i++, combined += h2) {
+			long bit = Long.remainderUnsigned(combined, numBits);
+			long word = bit >>> 6;
+			LongBuffer buffer = buffers[(int) (word >>> WORDS_PER_BUFFER_SHIFT)];
+			if ((buffer.get((int) word & WORD_MASK) & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+	
+	private boolean addHash(long hash) {
+		long h2 = secondHash(hash);
+		long combined = hash;
+		boolean added = false;
+		for (int i = 0; i < numHashes; i++, combined += h2) {
+			long bit = Long.remainderUnsigned(combined, numBits);
+			long word = bit >>> 6;
+			LongBuffer buffer = buffers[(int) (word >>> WORDS_PER_BUFFER_SHIFT)];
+			int offset = (int) word & WORD_MASK;
+			long value = buffer.get(offset);
+			long mask = 1L << bit;
+			if ((value & mask) == 0) {
+				buffer.put(offset, value | mask);
+				added = true;
+			}
+		}
+		return added;
+	}
+	
+	private static long secondHash(long hash) {
+		long h = (hash ^ (hash >>> 29)) * 0xbf58476d1ce4e5b9L;
+		h = (h ^ (h >>> 32)) * 0x94d049bb133111ebL;
+		return (h ^ (h >>> 29)) | 1;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,337 @@
+package co.insecurity.security.policy.index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Computes 64-bit hashes of passwords over their UTF-8 encoding, for use by 
+ * index implementations and sketches which do not rely on the hashing of an 
+ * underlying third-party filter.
+ * <p>
+ * The hash is a MurmurHash64A-style mix over 8-byte blocks of the UTF-8 
+ * encoded password followed by a 64-bit finalizer. Characters are encoded on 
+ * the fly, so hashing a password never copies it into an intermediate 
+ * {@code byte[]}, and equal UTF-8 byte sequences always produce equal hashes.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public final class PasswordHash {
+	
+	private static final long M = 0xc6a4a7935bd1e995L;
+	private static final int R = 47;
+	private static final long SEED = 0x2f1b8e5d03a6c947L;
+	private static final char CAPITAL_SIGMA = '\u03a3';
+	private static final int CAPITAL_I_WITH_DOT = 0x130;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private PasswordHash() { }
+	
+	/**
+	 * Returns the 64-bit hash of the UTF-8 encoding of the given password. 
+	 * Unpaired surrogates are encoded as {@code '?'}, as 
+	 * {@code String.getBytes()} does.
+	 * 
+	 * @param password the password to hash
+	 * @return the 64-bit hash of the password
+	 */
+	public static long hash64(CharSequence password) {
+		return hashChars(password, false);
+	}
+	
+	/**
+	 * Returns the 64-bit hash of the UTF-8 encoding of the given password 
+	 * after conversion to lower case, equal to 
+	 * {@code hash64(password.toString().toLowerCase())}.
+	 * <p>
+	 * Each code point is folded with {@code Character.toLowerCase()} while it 
+	 * is hashed, so that no lower case copy of the password is made. Only 
+	 * passwords containing a capital sigma, whose lower case form depends on 
+	 * its position in a word, and all passwords in locales with their own 
+	 * case mappings (Turkish, Azerbaijani and Lithuanian), fall back to 
+	 * {@code String.toLowerCase()}.
+	 * 
+	 * @param password the password to hash
+	 * @return the 64-bit hash of the lower case password
+	 */
+	public static long hash64IgnoreCase(CharSequence password) {
+		if (hasLocaleCaseMapping() || hasContextualCase(password))
+			return hashChars(password.toString().toLowerCase(), false);
+		return hashChars(password, true);
+	}
+	
+	/**
+	 * Returns the 64-bit hash of the given range of UTF-8 encoded bytes.
+	 * 
+	 * @param bytes the UTF-8 encoded password
+	 * @param offset the index of the first byte to hash
+	 * @param length the number of bytes to hash
+	 * @return the 64-bit hash of the bytes
+	 */
+	public static long hash64(byte[] bytes, int offset, int length) {
+		long h = SEED;
+		int end = offset + length;
+		int i = offset;
+		for (; i + 8 <= end; i += 8) {
+			long block = (bytes[i] & 0xFFL)
+					| (bytes[i + 1] & 0xFFL) << 8
+					| (bytes[i + 2] & 0xFFL) << 16
+					| (bytes[i + 3] & 0xFFL) << 24
+					| (bytes[i + 4] & 0xFFL) << 32
+					| (bytes[i + 5] & 0xFFL) << 40
+					| (bytes[i + 6] & 0xFFL) << 48
+					| (bytes[i + 7] & 0xFFL) << 56;
+			h = mixBlock(h, block);
+		}
+		long block = 0;
+		int shift = 0;
+		for (; i < end; i++, shift += 8)
+			block |= (bytes[i] & 0xFFL) << shift;
+		return finish(h, block, shift, length);
+	}
+	
+	/**
+	 * Returns the 64-bit hash of the UTF-8 encoded bytes remaining in the 
+	 * given buffer, without changing its position. For well-formed UTF-8 
+	 * this equals the hash of the decoded password.
+	 * 
+	 * @param utf8 the UTF-8 encoded password
+	 * @return the 64-bit hash of the bytes
+	 */
+	public static long hash64(ByteBuffer utf8) {
+		if (utf8.hasArray())
+			return hash64(utf8.array(), utf8.arrayOffset() + utf8.position(), 
+					utf8.remaining());
+		long h = SEED;
+		int end = utf8.limit();
+		int i = utf8.position();
+		for (; i + 8 <= end; i += 8)
+			h = mixBlock(h, utf8.order() == ByteOrder.LITTLE_ENDIAN 
+					? utf8.getLong(i) : Long.reverseBytes(utf8.getLong(i)));
+		long block = 0;
+		int shift = 0;
+		for (; i < end; i++, shift += 8)
+			block |= (utf8.get(i) & 0xFFL) << shift;
+		return finish(h, block, shift, utf8.remaining());
+	}
+	
+	/**
+	 * Returns the 64-bit hash of the UTF-8 encoded password remaining in the 
+	 * given buffer after conversion to lower case, without changing the 
+	 * buffer's position. The result equals 
+	 * {@code hash64IgnoreCase(new String(bytes, UTF_8))}.
+	 * <p>
+	 * Well-formed UTF-8 is decoded, folded and re-encoded one code point at 
+	 * a time while it is hashed, so that no copy of the password is made. 
+	 * Malformed UTF-8 falls back to decoding a {@code String}, as do the 
+	 * cases described for {@code hash64IgnoreCase(CharSequence)}.
+	 * 
+	 * @param utf8 the UTF-8 encoded password
+	 * @return the 64-bit hash of the lower case password
+	 */
+	public static long hash64IgnoreCase(ByteBuffer utf8) {
+		if (hasLocaleCaseMapping() || !isFoldableUtf8(utf8)) {
+			byte[] bytes = new byte[utf8.remaining()];
+			utf8.duplicate().get(bytes);
+			return hash64IgnoreCase(new String(bytes, UTF_8));
+		}
+		long h = SEED;
+		long block = 0;
+		int shift = 0;
+		long length = 0;
+		int end = utf8.limit();
+		for (int i = utf8.position(); i < end; ) {
+			int b = utf8.get(i++) & 0xFF;
+			int cp;
+			if (b < 0x80) {
+				cp = b;
+			} else if (b < 0xE0) {
+				cp = (b & 0x1F) << 6 | (utf8.get(i++) & 0x3F);
+			} else if (b < 0xF0) {
+				cp = (b & 0x0F) << 12 | (utf8.get(i++) & 0x3F) << 6 
+						| (utf8.get(i++) & 0x3F);
+			} else {
+				cp = (b & 0x07) << 18 | (utf8.get(i++) & 0x3F) << 12 
+						| (utf8.get(i++) & 0x3F) << 6 | (utf8.get(i++) & 0x3F);
+			}
+			long encoded = encodeLowerCase(cp);
+			int numBytes = (int) (encoded >>> 32);
+			for (int k = 0; k < numBytes; k++) {
+				block |= ((encoded >>> (k << 3)) & 0xFFL) << shift;
+				shift += 8;
+				if (shift == 64) {
+					h = mixBlock(h, block);
+					block = 0;
+					shift = 0;
+				}
+			}
+			length += numBytes;
+		}
+		return finish(h, block, shift, length);
+	}
+	
+	private static long hashChars(CharSequence password, boolean foldCase) {
+		long h = SEED;
+		long block = 0;
+		int shift = 0;
+		long length = 0;
+		int n = password.length();
+		for (int i = 0; i < n; i++) {
+			int cp = password.charAt(i);
+			if (Character.isHighSurrogate((char) cp) && i + 1 < n
+					&& Character.isLowSurrogate(password.charAt(i + 1)))
+				cp = Character.toCodePoint((char) cp, password.charAt(++i));
+			else if (Character.isSurrogate((char) cp))
+				cp = '?';
+			long encoded = foldCase ? encodeLowerCase(cp) : encode(cp);
+			int numBytes = (int) (encoded >>> 32);
+			for (int b = 0; b < numBytes; b++) {
+				block |= ((encoded >>> (b << 3)) & 0xFFL) << shift;
+				shift += 8;
+				if (shift == 64) {
+					h = mixBlock(h, block);
+					block = 0;
+					shift = 0;
+				}
+			}
+			length += numBytes;
+		}
+		return finish(h, block, shift, length);
+	}
+	
+	/**
+	 * Indicates whether the default locale has case mappings of its own, 
+	 * which {@code Character.toLowerCase()} does not apply.
+	 */
+	private static boolean hasLocaleCaseMapping() {
+		String language = Locale.getDefault().getLanguage();
+		return "tr".equals(language) || "az".equals(language) 
+				|| "lt".equals(language);
+	}
+	
+	private static boolean hasContextualCase(CharSequence password) {
+		for (int i = 0; i < password.length(); i++) {
+			if (password.charAt(i) == CAPITAL_SIGMA)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Indicates whether the bytes remaining in the given buffer are 
+	 * well-formed UTF-8, i.e. whether they decode without replacement 
+	 * characters: overlong encodings, encoded surrogates and truncated 
+	 * sequences are rejected. The buffer's position is not changed.
+	 * 
+	 * @param utf8 the bytes to check
+	 * @return true if the bytes are well-formed UTF-8, otherwise returns false
+	 */
+	public static boolean isWellFormedUtf8(ByteBuffer utf8) {
+		int end = utf8.limit();
+		for (int i = utf8.position(); i < end; ) {
+			int b = utf8.get(i++) & 0xFF;
+			if (b < 0x80)
+				continue;
+			int min = 0x80;
+			int max = 0xBF;
+			int continuations;
+			if (b >= 0xC2 && b <= 0xDF) {
+				continuations = 1;
+			} else if (b >= 0xE0 && b <= 0xEF) {
+				continuations = 2;
+				if (b == 0xE0)
+					min = 0xA0;
+				else if (b == 0xED)
+					max = 0x9F;
+			} else if (b >= 0xF0 && b <= 0xF4) {
+				continuations = 3;
+				if (b == 0xF0)
+					min = 0x90;
+				else if (b == 0xF4)
+					max = 0x8F;
+			} else {
+				return false;
+			}
+			if (end - i < continuations)
+				return false;
+			int second = utf8.get(i) & 0xFF;
+			if (second < min || second > max)
+				return false;
+			for (int k = 1; k < continuations; k++) {
+				if ((utf8.get(i + k) & 0xC0) != 0x80)
+					return false;
+			}
+			i += continuations;
+		}
+		return true;
+	}
+	
+	private static boolean isFoldableUtf8(ByteBuffer utf8) {
+		if (!isWellFormedUtf8(utf8))
+			return false;
+		int end = utf8.limit();
+		for (int i = utf8.position(); i + 1 < end; i++) {
+			if (utf8.get(i) == (byte) 0xCE && utf8.get(i + 1) == (byte) 0xA3)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Encodes the lower case form of a code point as UTF-8, in the format 
+	 * of {@code encode()}. Capital I with dot above lowers to two code 
+	 * points, whose three bytes are packed together.
+	 */
+	static long encodeLowerCase(int cp) {
+		if (cp == CAPITAL_I_WITH_DOT)
+			return (3L << 32) | 'i' | 0xCC << 8 | 0x87 << 16;
+		return encode(Character.toLowerCase(cp));
+	}
+	
+	/**
+	 * Encodes a code point as UTF-8, returning the bytes packed little-endian 
+	 * into the low 32 bits of a long and the byte count in the high 32 bits.
+	 */
+	static long encode(int cp) {
+		if (cp < 0x80)
+			return (1L << 32) | cp;
+		if (cp < 0x800)
+			return (2L << 32)
+					| (0xC0 | (cp >>> 6))
+					| (0x80 | (cp & 0x3F)) << 8;
+		if (cp < 0x10000)
+			return (3L << 32)
+					| (0xE0 | (cp >>> 12))
+					| (0x80 | ((cp >>> 6) & 0x3F)) << 8
+					| (0x80 | (cp & 0x3F)) << 16;
+		return (4L << 32)
+				| ((0xF0 | (cp >>> 18))
+				| (0x80 | ((cp >>> 12) & 0x3F)) << 8
+				| (0x80 | ((cp >>> 6) & 0x3F)) << 16
+				| (0x80 | (cp & 0x3F)) << 24) & 0xFFFFFFFFL;
+	}
+	
+	private static long mixBlock(long h, long k) {
+		k *= M;
+		k ^= k >>> R;
+		k *= M;
+		h ^= k;
+		return h * M;
+	}
+	
+	private static long finish(long h, long tail, int tailBits, long length) {
+		if (tailBits > 0) {
+			h ^= tail;
+			h *= M;
+		}
+		h ^= length;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,442 @@
+package co.insecurity.security.policy.index;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A compact binary word list of precomputed 64-bit {@code PasswordHash}es, 
+ * from which a hashed {@code MembershipIndex} can be built without decoding 
+ * UTF-8, allocating a {@code String} per password, or hashing.
+ * <p>
+ * Hash files are converted once from plaintext word lists, which may be 
+ * compressed, with {@code convert()} or from the command line:
+ * <pre>
+ * java -cp passcheck.jar co.insecurity.security.policy.index.PasswordHashFile \ 
+ *     [--ignore-case] [--frequency-counts] words.txt.gz words.pch
+ * </pre>
+ * Since hashes of case-folded passwords differ from those of the passwords 
+ * themselves, a hash file records whether its passwords were folded to 
+ * lower case, which must match the case-sensitivity setting of the index 
+ * built from it. It may also record the frequency count of each password.
+ * <p>
+ * The file format, in big-endian byte order, is:
+ * <pre>
+ * int     magic ('PCHF') 
+ * int     format version 
+ * int     flags: 1 if case folded, | 2 if frequency counts are recorded 
+ * int     hash size in bytes (8) 
+ * long    number of entries, n 
+ * long    CRC32 of the preceding 24 bytes 
+ * n       entries of a long hash, followed by a long frequency count if 
+ *         recorded
+ * </pre>
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public final class PasswordHashFile {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(PasswordHashFile.class);
+	
+	static final int MAGIC = 0x50434846;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	static final int HASH_SIZE = 8;
+	static final int FLAG_CASE_FOLDED = 1;
+	static final int FLAG_FREQUENCY_COUNTS = 2;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private PasswordHashFile() { }
+	
+	/**
+	 * Writes a hash file, which only appears at its path once 
+	 * {@code finish()} has been called. Closing an unfinished writer 
+	 * discards the entries written.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Writer implements Closeable {
+		
+		private final Path file;
+		private final Path tmpFile;
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private final boolean caseFolded;
+		private final boolean frequencyCounts;
+		private long numEntries = 0;
+		private boolean finished = false;
+		
+		/**
+		 * Instantiates a new {@code PasswordHashFile.Writer}.
+		 * 
+		 * @param file the path of the hash file to write
+		 * @param caseFolded whether passwords are folded to lower case 
+		 * before they are hashed
+		 * @param frequencyCounts whether a frequency count is recorded with 
+		 * each password
+		 * @throws IOException if the temporary file cannot be created
+		 */
+		public Writer(Path file, boolean caseFolded, boolean frequencyCounts)
+				throws IOException {
+			this.file = file;
+			this.caseFolded = caseFolded;
+			this.frequencyCounts = frequencyCounts;
+			Path parent = file.toAbsolutePath().getParent();
+			this.tmpFile = Files.createTempFile(parent,
+					file.getFileName().toString(), ".tmp");
+			this.channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE);
+			this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			buffer.position(HEADER_SIZE);
+		}
+		
+		/**
+		 * Hashes the given password, folding it to lower case if the file is 
+		 * case folded, and appends it to the file.
+		 * 
+		 * @param password the password to add
+		 * @throws IOException if the file cannot be written
+		 */
+		public void add(String password) throws IOException {
+			add(password, 1);
+		}
+		
+		/**
+		 * Hashes the given password, folding it to lower case if the file is 
+		 * case folded, and appends it to the file with the given frequency 
+		 * count, which is discarded unless the file records counts.
+		 * 
+		 * @param password the password to add
+		 * @param count the frequency count of the password
+		 * @throws IOException if the file cannot be written
+		 */
+		public void add(String password, long count) throws IOException {
+			addHash(caseFolded ? PasswordHash.hash64IgnoreCase(password)
+					: PasswordHash.hash64(password), count);
+		}
+		
+		/**
+		 * Appends a password, identified by its 64-bit 
+		 * {@code PasswordHash}, to the file with the given frequency count, 
+		 * which is discarded unless the file records counts.
+		 * 
+		 * @param hash the 64-bit hash of the password
+		 * @param count the frequency count of the password
+		 * @throws IOException if the file cannot be written
+		 */
+		public void addHash(long hash, long count) throws IOException {
+			if (buffer.remaining() < 2 * HASH_SIZE)
+				flush();
+			buffer.putLong(hash);
+			if (frequencyCounts)
+				buffer.putLong(count);
+			numEntries++;
+		}
+		
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+		
+		/**
+		 * Gets the number of entries written so far.
+		 * 
+		 * @return the number of entries
+		 */
+		public long getNumEntries() {
+			return numEntries;
+		}
+		
+		/**
+		 * Writes the header and moves the completed file into place.
+		 * 
+		 * @throws IOException if the file cannot be written
+		 */
+		public void finish() throws IOException {
+			if (finished)
+				return;
+			finished = true;
+			try {
+				flush();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION)
+						.putInt((caseFolded ? FLAG_CASE_FOLDED : 0)
+								| (frequencyCounts ? FLAG_FREQUENCY_COUNTS : 0))
+						.putInt(HASH_SIZE).putLong(numEntries);
+				header.putLong(crc(header, HEADER_SIZE - 8));
+				header.flip();
+				channel.position(0);
+				while (header.hasRemaining())
+					channel.write(header);
+				channel.force(false);
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				close();
+			}
+		}
+		
+		/**
+		 * Closes the writer, discarding the file unless {@code finish()} has 
+		 * been called.
+		 * 
+		 * @throws IOException if the temporary file cannot be deleted
+		 */
+		@Override
+		public void close() throws IOException {
+			channel.close();
+			Files.deleteIfExists(tmpFile);
+		}
+	}
+	
+	/**
+	 * Reads the entries of a hash file in order.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Reader implements Closeable {
+		
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private final boolean caseFolded;
+		private final boolean frequencyCounts;
+		private final long numEntries;
+		private long entriesRead = 0;
+		private long hash;
+		private long count;
+		
+		/**
+		 * Opens the given hash file and validates its header.
+		 * 
+		 * @param file the path of the hash file
+		 * @throws IOException if the file cannot be read, is not a hash 
+		 * file, or is corrupt or truncated
+		 */
+		public Reader(Path file) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				while (header.hasRemaining())
+					if (channel.read(header) == -1)
+						throw new EOFException("Hash file header is truncated.");
+				header.flip();
+				if (header.getInt() != MAGIC)
+					throw new IOException("Not a password hash file: " + file);
+				int version = header.getInt();
+				if (version != VERSION)
+					throw new IOException(String.format(
+							"Unsupported hash file version: %d", version));
+				int flags = header.getInt();
+				int hashSize = header.getInt();
+				if (hashSize != HASH_SIZE)
+					throw new IOException(String.format(
+							"Unsupported hash size: %d bytes", hashSize));
+				this.numEntries = header.getLong();
+				if (header.getLong() != crc(header, HEADER_SIZE - 8))
+					throw new IOException("Hash file header is corrupt.");
+				this.caseFolded = (flags & FLAG_CASE_FOLDED) != 0;
+				this.frequencyCounts = (flags & FLAG_FREQUENCY_COUNTS) != 0;
+				long entrySize = frequencyCounts ? 2 * HASH_SIZE : HASH_SIZE;
+				if (numEntries < 0 || channel.size()
+						!= HEADER_SIZE + numEntries * entrySize)
+					throw new IOException(String.format("Hash file size %d "
+							+ "does not match %d entries.", channel.size(),
+							numEntries));
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			buffer.limit(0);
+		}
+		
+		/**
+		 * Indicates whether the passwords were folded to lower case before 
+		 * they were hashed.
+		 * 
+		 * @return true if the hashes are of lower case passwords
+		 */
+		public boolean isCaseFolded() {
+			return caseFolded;
+		}
+		
+		/**
+		 * Indicates whether a frequency count is recorded with each password.
+		 * 
+		 * @return true if the file records frequency counts
+		 */
+		public boolean hasFrequencyCounts() {
+			return frequencyCounts;
+		}
+		
+		/**
+		 * Gets the number of entries in the file, which may include 
+		 * duplicates.
+		 * 
+		 * @return the number of entries
+		 */
+		public long getNumEntries() {
+			return numEntries;
+		}
+		
+		/**
+		 * Reads the next entry.
+		 * 
+		 * @return true if an entry was read, or false at the end of the file
+		 * @throws IOException if the file cannot be read
+		 */
+		public boolean next() throws IOException {
+			if (entriesRead == numEntries)
+				return false;
+			int entrySize = frequencyCounts ? 2 * HASH_SIZE : HASH_SIZE;
+			if (buffer.remaining() < entrySize) {
+				buffer.compact();
+				while (buffer.position() < entrySize)
+					if (channel.read(buffer) == -1)
+						throw new EOFException("Hash file is truncated.");
+				buffer.flip();
+			}
+			hash = buffer.getLong();
+			count = frequencyCounts ? buffer.getLong() : 1;
+			entriesRead++;
+			return true;
+		}
+		
+		/**
+		 * Gets the hash of the current entry.
+		 * 
+		 * @return the 64-bit hash of the password
+		 */
+		public long getHash() {
+			return hash;
+		}
+		
+		/**
+		 * Gets the frequency count of the current entry.
+		 * 
+		 * @return the frequency count, or 1 if counts are not recorded
+		 */
+		public long getCount() {
+			return count;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Indicates whether the given file is a password hash file.
+	 * 
+	 * @param file the file to check
+	 * @return true if the file begins with the hash file magic number
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isHashFile(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(4);
+			while (magic.hasRemaining())
+				if (channel.read(magic) == -1)
+					return false;
+			magic.flip();
+			return magic.getInt() == MAGIC;
+		}
+	}
+	
+	/**
+	 * Converts a plaintext word list, which may be gzip or Zstandard 
+	 * compressed and must be UTF-8 encoded with one password per line, to a 
+	 * hash file.
+	 * 
+	 * @param wordList the path of the word list
+	 * @param hashFile the path of the hash file to write
+	 * @param ignoreCase whether to fold passwords to lower case
+	 * @param frequencyCounts whether each line holds a frequency count 
+	 * before the password, as written by {@code sort | uniq -c}
+	 * @return the number of entries written
+	 * @throws IOException if the word list cannot be read or is malformed, 
+	 * or the hash file cannot be written
+	 */
+	public static long convert(Path wordList, Path hashFile, boolean ignoreCase,
+			boolean frequencyCounts) throws IOException {
+		LOG.info("Converting {} to password hash file {}", wordList, hashFile);
+		try (InputStream in = WordListFormat.decompress(
+						Files.newInputStream(wordList));
+				BufferedReader reader = new BufferedReader(new InputStreamReader(
+						in, UTF_8.newDecoder()
+								.onMalformedInput(CodingErrorAction.REPORT)
+								.onUnmappableCharacter(CodingErrorAction.REPORT)),
+						BUFFER_SIZE);
+				Writer writer = new Writer(hashFile, ignoreCase,
+						frequencyCounts)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (frequencyCounts)
+					writer.add(WordListFormat.stripCount(line),
+							WordListFormat.parseCount(line));
+				else
+					writer.add(line);
+			}
+			writer.finish();
+			LOG.info("Wrote {} password hashes.", writer.getNumEntries());
+			return writer.getNumEntries();
+		}
+	}
+	
+	/**
+	 * Converts a plaintext word list to a hash file from the command line.
+	 * 
+	 * @param args {@code [--ignore-case] [--frequency-counts] <word list>
+	 * <hash file>}
+	 * @throws IOException if the conversion fails
+	 */
+	public static void main(String[] args) throws IOException {
+		boolean ignoreCase = false;
+		boolean frequencyCounts = false;
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("--"); i++) {
+			if (args[i].equals("--ignore-case"))
+				ignoreCase = true;
+			else if (args[i].equals("--frequency-counts"))
+				frequencyCounts = true;
+			else
+				break;
+		}
+		if (args.length - i != 2) {
+			System.err.println("Usage: PasswordHashFile [--ignore-case] "
+					+ "[--frequency-counts] <word list> <hash file>");
+			System.exit(2);
+		}
+		convert(Paths.get(args[i]), Paths.get(args[i + 1]), ignoreCase,
+				frequencyCounts);
+	}
+	
+	private static long crc(ByteBuffer buffer, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, length);
+		return crc.getValue();
+	}
+}
\ No newline at end of file
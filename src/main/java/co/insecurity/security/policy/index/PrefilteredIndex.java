@@ -0,0 +1,131 @@
+package co.insecurity.security.policy.index;
+
+/**
+ * A {@code MembershipIndex} which answers lookups from a fast probabilistic 
+ * prefilter, and confirms the prefilter's positives against a slower but 
+ * exact index, so that it reports only the false positives of the exact 
+ * index.
+ * <p>
+ * Since most passwords checked are not in the word list, most lookups are 
+ * answered by the prefilter alone.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class PrefilteredIndex implements MembershipIndex {
+	
+	/**
+	 * Builds a {@code PrefilteredIndex} by adding every password to both a 
+	 * prefilter and an exact index.
+	 * <p>
+	 * Passwords can be added by hash only if both the prefilter and the 
+	 * exact index are built by a {@code HashedMembershipIndex.Builder}.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder implements HashedMembershipIndex.Builder {
+		
+		private final MembershipIndex.Builder prefilter;
+		private final MembershipIndex.Builder exact;
+		
+		/**
+		 * Instantiates a new {@code PrefilteredIndex.Builder}.
+		 * 
+		 * @param prefilter the builder of the probabilistic prefilter
+		 * @param exact the builder of the exact index
+		 */
+		public Builder(MembershipIndex.Builder prefilter, 
+				MembershipIndex.Builder exact) {
+			this.prefilter = prefilter;
+			this.exact = exact;
+		}
+		
+		/**
+		 * Adds the given password to both the prefilter and the exact index.
+		 * 
+		 * @param password the password to add
+		 * @return true if the prefilter reports the password as newly added
+		 */
+		@Override
+		public boolean add(String password) {
+			exact.add(password);
+			return prefilter.add(password);
+		}
+		
+		/**
+		 * Adds the password with the given hash to both the prefilter and 
+		 * the exact index.
+		 * 
+		 * @param hash the 64-bit hash of the password
+		 * @return true if the prefilter reports the password as newly added
+		 * @throws UnsupportedOperationException if either index cannot be 
+		 * built from hashes
+		 */
+		@Override
+		public boolean addHash(long hash) {
+			if (!(prefilter instanceof HashedMembershipIndex.Builder 
+					&& exact instanceof HashedMembershipIndex.Builder))
+				throw new UnsupportedOperationException(
+						"Both indexes must be buildable from hashes.");
+			((HashedMembershipIndex.Builder) exact).addHash(hash);
+			return ((HashedMembershipIndex.Builder) prefilter).addHash(hash);
+		}
+		
+		@Override
+		public PrefilteredIndex build() {
+			return new PrefilteredIndex(prefilter.build(), exact.build());
+		}
+	}
+	
+	private final MembershipIndex prefilter;
+	private final MembershipIndex exact;
+	
+	/**
+	 * Instantiates a new {@code PrefilteredIndex} from already populated 
+	 * indexes holding the same passwords.
+	 * 
+	 * @param prefilter the probabilistic prefilter
+	 * @param exact the exact index
+	 */
+	public PrefilteredIndex(MembershipIndex prefilter, MembershipIndex exact) {
+		this.prefilter = prefilter;
+		this.exact = exact;
+	}
+	
+	/**
+	 * Gets the probabilistic prefilter.
+	 * 
+	 * @return the prefilter
+	 */
+	public MembershipIndex getPrefilter() {
+		return prefilter;
+	}
+	
+	/**
+	 * Gets the exact index which confirms the prefilter's positives.
+	 * 
+	 * @return the exact index
+	 */
+	public MembershipIndex getExactIndex() {
+		return exact;
+	}
+	
+	@Override
+	public boolean contains(String password) {
+		return prefilter.contains(password) && exact.contains(password);
+	}
+	
+	@Override
+	public long getNumPasswords() {
+		return exact.getNumPasswords();
+	}
+	
+	@Override
+	public long getSizeInBytes() {
+		long prefilterSize = prefilter.getSizeInBytes();
+		long exactSize = exact.getSizeInBytes();
+		return (prefilterSize == UNKNOWN_SIZE || exactSize == UNKNOWN_SIZE) 
+				? UNKNOWN_SIZE : prefilterSize + exactSize;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,151 @@
+package co.insecurity.security.policy.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import orestes.bloomfilter.BloomFilter;
+import orestes.bloomfilter.FilterBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@code MembershipIndex} backed by a scalable bloom filter, which grows as 
+ * passwords are added instead of requiring the number of passwords to be 
+ * known up front. This allows a word list to be indexed in a single pass 
+ * over a stream whose length is unknown.
+ * <p>
+ * The index is a series of bloom filter stages. Stage {@code i} holds up to 
+ * {@code initialCapacity * 2^i} passwords with a false positive probability 
+ * of {@code p * 2^-(i+1)}, so that the compound false positive probability 
+ * never exceeds {@code p} however many stages are added. When the initial 
+ * capacity is estimated well, the index consists of a single stage.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class ScalableBloomFilterIndex implements MembershipIndex {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(ScalableBloomFilterIndex.class);
+	
+	/**
+	 * Builds a {@code ScalableBloomFilterIndex}, adding stages as the 
+	 * capacity of the current stage is exhausted.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder implements MembershipIndex.Builder {
+		
+		private final double fpProbability;
+		private final List<BloomFilter<String>> stages = 
+				new ArrayList<BloomFilter<String>>();
+		private long stageCapacity;
+		private double stageFpProbability;
+		private long stageCount;
+		private BloomFilter<String> current;
+		
+		/**
+		 * Instantiates a new {@code ScalableBloomFilterIndex.Builder}.
+		 * 
+		 * @param initialCapacity the number of passwords the first stage is 
+		 * sized for, typically an estimate of the number of distinct 
+		 * passwords in the word list
+		 * @param fpProbability the compound false positive probability the 
+		 * index must not exceed
+		 * @throws IllegalArgumentException if initialCapacity is not 
+		 * positive, or fpProbability is not between 0 and 1
+		 */
+		public Builder(int initialCapacity, double fpProbability) {
+			if (initialCapacity <= 0)
+				throw new IllegalArgumentException(
+						"Initial capacity must be greater than 0!");
+			if (fpProbability <= 0 || fpProbability >= 1)
+				throw new IllegalArgumentException(
+						"False positive probability must be between 0 and 1!");
+			this.fpProbability = fpProbability;
+			this.stageCapacity = initialCapacity;
+			this.stageFpProbability = fpProbability / 2;
+			addStage();
+		}
+		
+		private void addStage() {
+			int capacity = (int) Math.min(stageCapacity, Integer.MAX_VALUE);
+			LOG.debug("Adding filter stage {} with capacity {} and {} false "
+					+ "positive probability.", 
+					stages.size(), capacity, stageFpProbability);
+			current = new FilterBuilder(capacity, stageFpProbability)
+					.buildBloomFilter();
+			stages.add(current);
+			stageCount = 0;
+		}
+		
+		@Override
+		public boolean add(String password) {
+			for (BloomFilter<String> stage : stages) {
+				if (stage.contains(password))
+					return false;
+			}
+			if (stageCount >= stageCapacity) {
+				stageCapacity *= 2;
+				stageFpProbability /= 2;
+				addStage();
+			}
+			current.add(password);
+			stageCount++;
+			return true;
+		}
+		
+		@Override
+		public ScalableBloomFilterIndex build() {
+			return new ScalableBloomFilterIndex(stages, fpProbability);
+		}
+	}
+	
+	private final List<BloomFilter<String>> stages;
+	private final double fpProbability;
+	
+	private ScalableBloomFilterIndex(List<BloomFilter<String>> stages, 
+			double fpProbability) {
+		this.stages = Collections.unmodifiableList(
+				new ArrayList<BloomFilter<String>>(stages));
+		this.fpProbability = fpProbability;
+	}
+	
+	/**
+	 * Gets the number of bloom filter stages in this index.
+	 * 
+	 * @return the number of stages
+	 */
+	public int getNumStages() {
+		return stages.size();
+	}
+	
+	/**
+	 * Gets the upper bound on the compound false positive probability of 
+	 * this index.
+	 * 
+	 * @return the false positive probability bound
+	 */
+	public double getFalsePositiveProbability() {
+		return fpProbability;
+	}
+	
+	@Override
+	public long getSizeInBytes() {
+		long size = 0;
+		for (BloomFilter<String> stage : stages)
+			size += (stage.getSize() + 7L) / 8;
+		return size;
+	}
+	
+	@Override
+	public boolean contains(String password) {
+		for (BloomFilter<String> stage : stages) {
+			if (stage.contains(password))
+				return true;
+		}
+		return false;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,449 @@
+package co.insecurity.security.policy.index;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@code MembershipIndex} backed by a cache-line-blocked bloom filter 
+ * which lives in a memory-mapped file, so that the JVMs on a host can share 
+ * one copy of the filter rather than each building and holding its own.
+ * <p>
+ * One process, or an offline build, publishes the filter file, and every 
+ * JVM then maps it read-only. The mapped pages belong to the operating 
+ * system's page cache, so they are held once per host however many JVMs map 
+ * them, and add almost nothing to the heap or to the private resident 
+ * memory of each JVM. Placing the file on a memory-backed file system such 
+ * as {@code /dev/shm} keeps the pages resident; on local disk they are paged 
+ * in on first use. The filter uses the same layout and probe sequence as 
+ * {@code BlockedBloomFilterIndex}, so each lookup touches one cache line.
+ * <p>
+ * A filter file is written to a temporary file and atomically moved into 
+ * place once complete, so a JVM opening it never maps a partially written 
+ * filter, and a JVM which has already mapped a previous version keeps using 
+ * it until it opens the file again. The file format is a 64-byte header, in 
+ * big-endian byte order, followed by the filter's 512-bit blocks as 
+ * little-endian words:
+ * <pre>
+ * int     magic ('PCSF') 
+ * int     format version 
+ * int     number of hash functions 
+ * int     flags (1 = passwords were folded to lower case) 
+ * long    number of 512-bit blocks 
+ * long    number of passwords 
+ * double  false positive probability the filter was sized for 
+ * long    CRC32 of the preceding 40 bytes 
+ * byte[]  padding to 64 bytes 
+ * long[]  8 words per block
+ * </pre>
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class SharedBloomFilterIndex implements HashedMembershipIndex {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(SharedBloomFilterIndex.class);
+	
+	static final int MAGIC = 0x50435346;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+	static final int FLAG_CASE_FOLDED = 1;
+	private static final int CHECKSUMMED_SIZE = 40;
+	private static final int WORDS_PER_BLOCK = 8;
+	private static final int BLOCKS_PER_CHUNK_SHIFT = 24;
+	private static final long BLOCKS_PER_CHUNK = 1L << BLOCKS_PER_CHUNK_SHIFT;
+	private static final long BLOCK_MASK = BLOCKS_PER_CHUNK - 1;
+	private static final long MAX_BLOCKS = 1L << 32;
+	
+	/**
+	 * Builds a {@code SharedBloomFilterIndex} in a temporary file next to 
+	 * the filter file, and publishes it when {@code build()} is called.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder implements HashedMembershipIndex.Builder {
+		
+		private final Path filterFile;
+		private final Path tmpFile;
+		private final boolean caseFolded;
+		private final double fpProbability;
+		private final SharedBloomFilterIndex index;
+		private long numPasswords = 0;
+		
+		/**
+		 * Instantiates a new {@code SharedBloomFilterIndex.Builder} which 
+		 * will publish a filter sized for the given number of passwords and 
+		 * false positive probability to the given file.
+		 * 
+		 * @param filterFile the path of the filter file to publish
+		 * @param expectedPasswords the number of passwords expected to be 
+		 * added
+		 * @param fpProbability the desired false positive probability
+		 * @param caseFolded whether the passwords added have been folded to 
+		 * lower case, which is recorded in the file
+		 * @throws IOException if the temporary file cannot be created
+		 * @throws IllegalArgumentException if fpProbability is not between 0 
+		 * and 1, or the filter would need more than 2<sup>32</sup> blocks
+		 */
+		public Builder(Path filterFile, long expectedPasswords,
+				double fpProbability, boolean caseFolded) throws IOException {
+			if (fpProbability <= 0 || fpProbability >= 1)
+				throw new IllegalArgumentException(
+						"False positive probability must be between 0 and 1!");
+			double bitsPerPassword =
+					BlockedBloomFilterIndex.bitsPerPassword(fpProbability);
+			long numBlocks = BlockedBloomFilterIndex.numBlocks(
+					expectedPasswords, bitsPerPassword);
+			if (numBlocks > MAX_BLOCKS)
+				throw new IllegalArgumentException(String.format(
+						"Cannot hold %d passwords at %s false positive "
+						+ "probability in a shared bloom filter.",
+						expectedPasswords, fpProbability));
+			this.filterFile = filterFile;
+			this.caseFolded = caseFolded;
+			this.fpProbability = fpProbability;
+			Path parent = filterFile.toAbsolutePath().getParent();
+			this.tmpFile = Files.createTempFile(parent,
+					filterFile.getFileName().toString(), ".tmp");
+			try (FileChannel channel = FileChannel.open(tmpFile,
+					StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				this.index = new SharedBloomFilterIndex(filterFile,
+						map(channel, FileChannel.MapMode.READ_WRITE, numBlocks),
+						numBlocks,
+						BlockedBloomFilterIndex.bestNumHashes(bitsPerPassword),
+						caseFolded, fpProbability, 0);
+			} catch (IOException | RuntimeException e) {
+				Files.deleteIfExists(tmpFile);
+				throw e;
+			}
+		}
+		
+		@Override
+		public boolean add(String password) {
+			return addHash(PasswordHash.hash64(password));
+		}
+		
+		@Override
+		public boolean addHash(long hash) {
+			if (!index.addHash(hash))
+				return false;
+			numPasswords++;
+			return true;
+		}
+		
+		/**
+		 * Writes the header, flushes the filter to the temporary file, and 
+		 * atomically moves it into place as the filter file, replacing any 
+		 * previous version.
+		 * 
+		 * @return the published filter, mapped read-only
+		 * @throws UncheckedIOException if the filter cannot be published
+		 */
+		@Override
+		public SharedBloomFilterIndex build() {
+			try {
+				publish();
+				return open(filterFile);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		private void publish() throws IOException {
+			for (MappedByteBuffer mapped : index.mapped)
+				mapped.force();
+			ByteBuffer header = encodeHeader(index.numHashes,
+					caseFolded ? FLAG_CASE_FOLDED : 0, index.numBlocks,
+					numPasswords, fpProbability);
+			try (FileChannel channel = FileChannel.open(tmpFile,
+					StandardOpenOption.WRITE)) {
+				while (header.hasRemaining())
+					channel.write(header, header.position());
+				channel.force(true);
+				Files.move(tmpFile, filterFile,
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				Files.deleteIfExists(tmpFile);
+				throw e;
+			}
+			LOG.info("Published shared filter with {} passwords to {}",
+					numPasswords, filterFile);
+		}
+	}
+	
+	/**
+	 * Returns a factory for builders which publish their filter to the 
+	 * given file, for use with 
+	 * {@code NotLeakedAssertion.Builder.withIndexFactory()}.
+	 * 
+	 * @param filterFile the path of the filter file to publish
+	 * @param caseFolded whether the passwords added will have been folded to 
+	 * lower case
+	 * @return a factory for {@code SharedBloomFilterIndex} builders
+	 */
+	public static MembershipIndex.Factory factory(final Path filterFile,
+			final boolean caseFolded) {
+		return new MembershipIndex.Factory() {
+			@Override
+			public MembershipIndex.Builder newBuilder(long expectedPasswords,
+					double fpProbability) {
+				try {
+					return new Builder(filterFile, expectedPasswords,
+							fpProbability, caseFolded);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Opens a published filter file and maps it read-only.
+	 * 
+	 * @param filterFile the path of the filter file
+	 * @return the mapped {@code SharedBloomFilterIndex}
+	 * @throws IOException if the file cannot be read, is not a shared 
+	 * filter file, or is corrupt or truncated
+	 */
+	public static SharedBloomFilterIndex open(Path filterFile)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(filterFile,
+				StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining())
+				if (channel.read(header, header.position()) < 0)
+					throw new IOException(String.format(
+							"Not a shared filter file: %s", filterFile));
+			header.flip();
+			if (header.getInt(0) != MAGIC)
+				throw new IOException(String.format(
+						"Not a shared filter file: %s", filterFile));
+			int version = header.getInt(4);
+			if (version != VERSION)
+				throw new IOException(String.format(
+						"Unsupported shared filter version %d (expected %d): "
+						+ "%s", version, VERSION, filterFile));
+			CRC32 crc = new CRC32();
+			crc.update(header.array(), 0, CHECKSUMMED_SIZE);
+			if (crc.getValue() != header.getLong(CHECKSUMMED_SIZE))
+				throw new IOException(String.format(
+						"Shared filter checksum mismatch: %s", filterFile));
+			int numHashes = header.getInt(8);
+			int flags = header.getInt(12);
+			long numBlocks = header.getLong(16);
+			long numPasswords = header.getLong(24);
+			double fpProbability = header.getDouble(32);
+			if (numBlocks < 1 || numBlocks > MAX_BLOCKS
+					|| channel.size() != HEADER_SIZE
+							+ numBlocks * WORDS_PER_BLOCK * 8)
+				throw new IOException(String.format(
+						"Shared filter length does not match its header: %s",
+						filterFile));
+			return new SharedBloomFilterIndex(filterFile,
+					map(channel, FileChannel.MapMode.READ_ONLY, numBlocks),
+					numBlocks, numHashes, (flags & FLAG_CASE_FOLDED) != 0,
+					fpProbability, numPasswords);
+		}
+	}
+	
+	/**
+	 * Indicates whether the given file begins with the magic number of a 
+	 * shared filter file.
+	 * 
+	 * @param file the file to check
+	 * @return true if the file appears to be a shared filter file
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isSharedFilterFile(Path file) throws IOException {
+		ByteBuffer magic = ByteBuffer.allocate(4);
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			while (magic.hasRemaining())
+				if (channel.read(magic) < 0)
+					return false;
+		}
+		return magic.getInt(0) == MAGIC;
+	}
+	
+	private static ByteBuffer encodeHeader(int numHashes, int flags,
+			long numBlocks, long numPasswords, double fpProbability) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(numHashes);
+		header.putInt(flags);
+		header.putLong(numBlocks);
+		header.putLong(numPasswords);
+		header.putDouble(fpProbability);
+		CRC32 crc = new CRC32();
+		crc.update(header.array(), 0, CHECKSUMMED_SIZE);
+		header.putLong(crc.getValue());
+		header.clear();
+		return header;
+	}
+	
+	/**
+	 * Maps the blocks of a filter file in chunks of up to 1 GiB, since a 
+	 * single mapping is limited to 2 GiB.
+	 */
+	private static MappedByteBuffer[] map(FileChannel channel,
+			FileChannel.MapMode mode, long numBlocks) throws IOException {
+		int numChunks = (int) ((numBlocks + BLOCKS_PER_CHUNK - 1)
+				>>> BLOCKS_PER_CHUNK_SHIFT);
+		MappedByteBuffer[] mapped = new MappedByteBuffer[numChunks];
+		for (int i = 0; i < numChunks; i++) {
+			long first = (long) i << BLOCKS_PER_CHUNK_SHIFT;
+			long blocks = Math.min(BLOCKS_PER_CHUNK, numBlocks - first);
+			mapped[i] = channel.map(mode,
+					HEADER_SIZE + first * WORDS_PER_BLOCK * 8,
+					blocks * WORDS_PER_BLOCK * 8);
+		}
+		return mapped;
+	}
+	
+	private final Path filterFile;
+	private final MappedByteBuffer[] mapped;
+	private final LongBuffer[] chunks;
+	private final long numBlocks;
+	private final int numHashes;
+	private final boolean caseFolded;
+	private final double fpProbability;
+	private final long numPasswords;
+	
+	private SharedBloomFilterIndex(Path filterFile, MappedByteBuffer[] mapped,
+			long numBlocks, int numHashes, boolean caseFolded,
+			double fpProbability, long numPasswords) {
+		this.filterFile = filterFile;
+		this.mapped = mapped;
+		this.chunks = new LongBuffer[mapped.length];
+		for (int i = 0; i < mapped.length; i++)
+			chunks[i] = mapped[i].order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+		this.numBlocks = numBlocks;
+		this.numHashes = numHashes;
+		this.caseFolded = caseFolded;
+		this.fpProbability = fpProbability;
+		this.numPasswords = numPasswords;
+	}
+	
+	/**
+	 * Gets the path of the filter file.
+	 * 
+	 * @return the filter file path
+	 */
+	public Path getFilterFile() {
+		return filterFile;
+	}
+	
+	/**
+	 * Indicates whether the passwords in the filter were folded to lower 
+	 * case, in which case lookups must be folded too.
+	 * 
+	 * @return true if the passwords were folded to lower case
+	 */
+	public boolean isCaseFolded() {
+		return caseFolded;
+	}
+	
+	/**
+	 * Gets the false positive probability the filter was sized for.
+	 * 
+	 * @return the false positive probability
+	 */
+	public double getFalsePositiveProbability() {
+		return fpProbability;
+	}
+	
+	/**
+	 * Gets the number of 512-bit blocks in the filter.
+	 * 
+	 * @return the number of blocks
+	 */
+	public long getNumBlocks() {
+		return numBlocks;
+	}
+	
+	/**
+	 * Gets the number of bits set for each password.
+	 * 
+	 * @return the number of hash functions
+	 */
+	public int getNumHashes() {
+		return numHashes;
+	}
+	
+	@Override
+	public long getNumPasswords() {
+		return numPasswords;
+	}
+	
+	/**
+	 * Gets the size of the mapped filter, which is shared with every other 
+	 * process mapping the same file rather than held by this JVM.
+	 */
+	@Override
+	public long getSizeInBytes() {
+		return numBlocks * WORDS_PER_BLOCK * 8;
+	}
+	
+	@Override
+	public boolean contains(String password) {
+		return containsHash(PasswordHash.hash64(password));
+	}
+	
+	/**
+	 * Indicates whether the password with the given 64-bit 
+	 * {@code PasswordHash} is contained in this index.
+	 * 
+	 * @param hash the 64-bit hash of the password
+	 * @return true if the password is (probably) contained in the index, 
+	 * otherwise returns false
+	 */
+	@Override
+	public boolean containsHash(long hash) {
+		long block = ((hash >>> 32) * numBlocks) >>> 32;
+		LongBuffer chunk = chunks[(int) (block >>> BLOCKS_PER_CHUNK_SHIFT)];
+		int base = (int) (block & BLOCK_MASK) * WORDS_PER_BLOCK;
+		int h1 = (int) hash;
+		int h2 = BlockedBloomFilterIndex.secondHash(hash);
+		for (int i = 0; i < numHashes; i++, h1 += h2) {
+			int bit = h1 >>> 23;
+			if ((chunk.get(base + (bit >>> 6)) & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+	
+	private boolean addHash(long hash) {
+		long block = ((hash >>> 32) * numBlocks) >>> 32;
+		LongBuffer chunk = chunks[(int) (block >>> BLOCKS_PER_CHUNK_SHIFT)];
+		int base = (int) (block & BLOCK_MASK) * WORDS_PER_BLOCK;
+		int h1 = (int) hash;
+		int h2 = BlockedBloomFilterIndex.secondHash(hash);
+		boolean added = false;
+		for (int i = 0; i < numHashes; i++, h1 += h2) {
+			int bit = h1 >>> 23;
+			int word = base + (bit >>> 6);
+			long value = chunk.get(word);
+			long mask = 1L << bit;
+			if ((value & mask) == 0) {
+				chunk.put(word, value | mask);
+				added = true;
+			}
+		}
+		return added;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,415 @@
+package co.insecurity.security.policy.index;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@code MembershipIndex} which answers lookups of the most common 
+ * passwords from a small hot tier, and falls through to a large cold index 
+ * only for passwords the hot tier does not contain.
+ * <p>
+ * Passwords chosen at sign-up follow a steep Zipf distribution, so a few 
+ * thousand of the most common passwords account for most of the leaked 
+ * passwords checked. The hot tier holds just those passwords in a 
+ * {@code FingerprintSetIndex} of about 4.5 bytes per password, which stays 
+ * resident in the L1 or L2 cache, so that they are found without probing 
+ * the much larger, cache-cold cold index. Since every password in the hot 
+ * tier is also in the cold index, the tiered index contains exactly the 
+ * passwords of its cold index.
+ * <p>
+ * Each tier counts its lookups and hits, so that the hot tier's hit rate 
+ * can be monitored and its size tuned.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class TieredIndex implements MembershipIndex {
+	
+	/**
+	 * Builds a {@code TieredIndex} by adding every password to the cold 
+	 * index, and the most common passwords to the hot tier.
+	 * <p>
+	 * Passwords added with {@code add(String)} are ranked by list order, so 
+	 * the first {@code hotSize} distinct passwords form the hot tier, which 
+	 * suits word lists sorted from most to least common. Passwords added 
+	 * with {@code add(String, long)} are ranked by their frequency counts 
+	 * instead, so the {@code hotSize} passwords with the highest counts form 
+	 * the hot tier, wherever they appear in the list. A password added with 
+	 * a count more than once, e.g. as case variants folded to the same key, 
+	 * holds a single slot with the sum of its counts while it is ranked. 
+	 * Passwords can be added 
+	 * by hash only if the cold index is built by a 
+	 * {@code HashedMembershipIndex.Builder}.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder implements HashedMembershipIndex.Builder {
+		
+		private final MembershipIndex.Builder cold;
+		private final int hotSize;
+		private final FingerprintSetIndex.Builder hot;
+		private final PriorityQueue<RankedHash> ranked;
+		private final Map<Long, RankedHash> rankedByHash;
+		private int numHot = 0;
+		
+		/**
+		 * Instantiates a new {@code TieredIndex.Builder}.
+		 * 
+		 * @param cold the builder of the cold index, which will contain 
+		 * every password
+		 * @param hotSize the number of most common passwords to hold in the 
+		 * hot tier
+		 * @throws IllegalArgumentException if {@code hotSize} is negative
+		 */
+		public Builder(MembershipIndex.Builder cold, int hotSize) {
+			if (hotSize < 0)
+				throw new IllegalArgumentException(
+						"Hot tier size must not be negative!");
+			this.cold = cold;
+			this.hotSize = hotSize;
+			this.hot = new FingerprintSetIndex.Builder(hotSize);
+			this.ranked = new PriorityQueue<RankedHash>(Math.max(1, hotSize));
+			this.rankedByHash = new HashMap<Long, RankedHash>();
+		}
+		
+		/**
+		 * Adds the given password to the cold index, and to the hot tier if 
+		 * it is newly added and the hot tier is not yet full.
+		 * 
+		 * @param password the password to add
+		 * @return true if the cold index reports the password as newly added
+		 */
+		@Override
+		public boolean add(String password) {
+			if (!cold.add(password))
+				return false;
+			addHot(PasswordHash.hash64(password));
+			return true;
+		}
+		
+		/**
+		 * Adds the password with the given hash to the cold index, and to 
+		 * the hot tier if it is newly added and the hot tier is not yet full.
+		 * 
+		 * @param hash the 64-bit hash of the password
+		 * @return true if the cold index reports the password as newly added
+		 * @throws UnsupportedOperationException if the cold index cannot be 
+		 * built from hashes
+		 */
+		@Override
+		public boolean addHash(long hash) {
+			if (!getHashedCold().addHash(hash))
+				return false;
+			addHot(hash);
+			return true;
+		}
+		
+		private void addHot(long hash) {
+			if (numHot < hotSize) {
+				hot.addHash(hash);
+				numHot++;
+			}
+		}
+		
+		/**
+		 * Adds the given password to the cold index, and ranks it for the 
+		 * hot tier by the given frequency count, e.g. the number of accounts 
+		 * found using it in a breach.
+		 * 
+		 * @param password the password to add
+		 * @param count the frequency count of the password
+		 * @return true if the cold index reports the password as newly added
+		 */
+		public boolean add(String password, long count) {
+			boolean added = cold.add(password);
+			rank(PasswordHash.hash64(password), count);
+			return added;
+		}
+		
+		/**
+		 * Adds the password with the given hash to the cold index, and ranks 
+		 * it for the hot tier by the given frequency count.
+		 * 
+		 * @param hash the 64-bit hash of the password
+		 * @param count the frequency count of the password
+		 * @return true if the cold index reports the password as newly added
+		 * @throws UnsupportedOperationException if the cold index cannot be 
+		 * built from hashes
+		 */
+		public boolean addHash(long hash, long count) {
+			boolean added = getHashedCold().addHash(hash);
+			rank(hash, count);
+			return added;
+		}
+		
+		private void rank(long hash, long count) {
+			if (hotSize == 0)
+				return;
+			RankedHash entry = rankedByHash.get(hash);
+			if (entry != null) {
+				ranked.remove(entry);
+				entry.count += count;
+				ranked.add(entry);
+				return;
+			}
+			if (ranked.size() == hotSize) {
+				if (count <= ranked.peek().count)
+					return;
+				rankedByHash.remove(ranked.poll().hash);
+			}
+			entry = new RankedHash(count, hash);
+			ranked.add(entry);
+			rankedByHash.put(hash, entry);
+		}
+		
+		private HashedMembershipIndex.Builder getHashedCold() {
+			if (!(cold instanceof HashedMembershipIndex.Builder))
+				throw new UnsupportedOperationException(
+						"The cold index must be buildable from hashes.");
+			return (HashedMembershipIndex.Builder) cold;
+		}
+		
+		@Override
+		public TieredIndex build() {
+			for (RankedHash entry : ranked)
+				hot.addHash(entry.hash);
+			ranked.clear();
+			rankedByHash.clear();
+			FingerprintSetIndex hotIndex = hot.build();
+			MembershipIndex coldIndex = cold.build();
+			if (coldIndex instanceof HashedMembershipIndex)
+				return new Hashed(hotIndex, (HashedMembershipIndex) coldIndex);
+			return new TieredIndex(hotIndex, coldIndex);
+		}
+	}
+	
+	/**
+	 * A password hash ranked by its frequency count, ordered so that the 
+	 * least common password is at the head of a {@code PriorityQueue}.
+	 */
+	private static class RankedHash implements Comparable<RankedHash> {
+		
+		long count;
+		final long hash;
+		
+		RankedHash(long count, long hash) {
+			this.count = count;
+			this.hash = hash;
+		}
+		
+		@Override
+		public int compareTo(RankedHash other) {
+			return Long.compare(count, other.count);
+		}
+	}
+	
+	/**
+	 * A {@code TieredIndex} whose cold index is a 
+	 * {@code HashedMembershipIndex}, so that both tiers can be queried with 
+	 * a precomputed hash.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Hashed extends TieredIndex
+			implements HashedMembershipIndex {
+		
+		private final HashedMembershipIndex hashedCold;
+		
+		/**
+		 * Instantiates a new {@code TieredIndex.Hashed} from already 
+		 * populated tiers, where every password in the hot tier is also in 
+		 * the cold index.
+		 * 
+		 * @param hot the hot tier
+		 * @param cold the cold index
+		 */
+		public Hashed(FingerprintSetIndex hot, HashedMembershipIndex cold) {
+			super(hot, cold);
+			this.hashedCold = cold;
+		}
+		
+		@Override
+		public boolean contains(String password) {
+			return containsHash(PasswordHash.hash64(password));
+		}
+		
+		@Override
+		public boolean containsHash(long hash) {
+			lookups.increment();
+			if (hot.containsHash(hash)) {
+				hotHits.increment();
+				return true;
+			}
+			if (hashedCold.containsHash(hash)) {
+				coldHits.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+	
+	final FingerprintSetIndex hot;
+	final MembershipIndex cold;
+	final LongAdder lookups = new LongAdder();
+	final LongAdder hotHits = new LongAdder();
+	final LongAdder coldHits = new LongAdder();
+	
+	/**
+	 * Instantiates a new {@code TieredIndex} from already populated tiers, 
+	 * where every password in the hot tier is also in the cold index.
+	 * 
+	 * @param hot the hot tier
+	 * @param cold the cold index
+	 */
+	public TieredIndex(FingerprintSetIndex hot, MembershipIndex cold) {
+		this.hot = hot;
+		this.cold = cold;
+	}
+	
+	/**
+	 * Gets the hot tier.
+	 * 
+	 * @return the set of the most common passwords
+	 */
+	public FingerprintSetIndex getHotTier() {
+		return hot;
+	}
+	
+	/**
+	 * Gets the cold index, which contains every password.
+	 * 
+	 * @return the cold index
+	 */
+	public MembershipIndex getColdIndex() {
+		return cold;
+	}
+	
+	@Override
+	public boolean contains(String password) {
+		lookups.increment();
+		if (hot.contains(password)) {
+			hotHits.increment();
+			return true;
+		}
+		if (cold.contains(password)) {
+			coldHits.increment();
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Looks up a batch of passwords in the hot tier, and then looks up only 
+	 * the passwords it does not contain in the cold index, as one batch.
+	 */
+	@Override
+	public void containsAll(String[] passwords, int offset, int length,
+			boolean[] results) {
+		String[] misses = new String[length];
+		int numMisses = 0;
+		for (int i = offset; i < offset + length; i++) {
+			results[i] = hot.contains(passwords[i]);
+			if (!results[i])
+				misses[numMisses++] = passwords[i];
+		}
+		boolean[] coldResults = new boolean[numMisses];
+		cold.containsAll(misses, 0, numMisses, coldResults);
+		int numColdHits = 0;
+		for (int i = offset, miss = 0; i < offset + length; i++) {
+			if (results[i])
+				continue;
+			results[i] = coldResults[miss++];
+			if (results[i])
+				numColdHits++;
+		}
+		lookups.add(length);
+		hotHits.add(length - numMisses);
+		coldHits.add(numColdHits);
+	}
+	
+	/**
+	 * Gets the number of lookups made since the index was built or its 
+	 * statistics were last reset, all of which went to the hot tier.
+	 * 
+	 * @return the number of lookups
+	 */
+	public long getLookups() {
+		return lookups.sum();
+	}
+	
+	/**
+	 * Gets the number of lookups answered by the hot tier.
+	 * 
+	 * @return the number of hot tier hits
+	 */
+	public long getHotHits() {
+		return hotHits.sum();
+	}
+	
+	/**
+	 * Gets the number of lookups which missed the hot tier and fell 
+	 * through to the cold index.
+	 * 
+	 * @return the number of cold index lookups
+	 */
+	public long getColdLookups() {
+		return lookups.sum() - hotHits.sum();
+	}
+	
+	/**
+	 * Gets the number of lookups answered by the cold index, i.e. of 
+	 * passwords found in the cold index but not the hot tier.
+	 * 
+	 * @return the number of cold index hits
+	 */
+	public long getColdHits() {
+		return coldHits.sum();
+	}
+	
+	/**
+	 * Gets the fraction of lookups answered by the hot tier.
+	 * 
+	 * @return the hot tier hit rate, or 0 if there have been no lookups
+	 */
+	public double getHotHitRate() {
+		long total = lookups.sum();
+		return (total == 0) ? 0 : (double) hotHits.sum() / total;
+	}
+	
+	/**
+	 * Gets the fraction of lookups reaching the cold index which it 
+	 * answered with a hit.
+	 * 
+	 * @return the cold index hit rate, or 0 if there have been no cold 
+	 * index lookups
+	 */
+	public double getColdHitRate() {
+		long total = getColdLookups();
+		return (total <= 0) ? 0 : (double) coldHits.sum() / total;
+	}
+	
+	/**
+	 * Resets the lookup and hit counts of both tiers.
+	 */
+	public void resetStatistics() {
+		lookups.reset();
+		hotHits.reset();
+		coldHits.reset();
+	}
+	
+	@Override
+	public long getNumPasswords() {
+		return cold.getNumPasswords();
+	}
+	
+	@Override
+	public long getSizeInBytes() {
+		long coldSize = cold.getSizeInBytes();
+		return (coldSize == UNKNOWN_SIZE)
+				? UNKNOWN_SIZE : hot.getSizeInBytes() + coldSize;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,157 @@
+package co.insecurity.security.policy.index;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Utility methods for reading plaintext word lists, which may be gzip or 
+ * Zstandard compressed, and may hold a frequency count before each 
+ * password.
+ * <p>
+ * Compression is detected from the leading magic bytes of the input, so 
+ * compressed and uncompressed word lists can be used interchangeably. 
+ * Zstandard decompression requires the optional {@code zstd-jni} library 
+ * ({@code com.github.luben:zstd-jni}) on the class path.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public final class WordListFormat {
+	
+	private static final int GZIP_MAGIC = 0x1f8b;
+	private static final int ZSTD_MAGIC = 0x28b52ffd;
+	private static final String ZSTD_INPUT_STREAM =
+			"com.github.luben.zstd.ZstdInputStream";
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	private WordListFormat() { }
+	
+	/**
+	 * Wraps the given input stream so that it is decompressed if it begins 
+	 * with the magic bytes of a gzip or Zstandard stream, or otherwise is 
+	 * read as is.
+	 * 
+	 * @param in the possibly compressed input stream
+	 * @return the decompressed input stream
+	 * @throws IOException if the stream cannot be read, or is Zstandard 
+	 * compressed but {@code zstd-jni} is not on the class path
+	 */
+	public static InputStream decompress(InputStream in) throws IOException {
+		BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+		buffered.mark(4);
+		int magic = 0;
+		int length = 0;
+		for (int b; length < 4 && (b = buffered.read()) != -1; length++)
+			magic = (magic << 8) | b;
+		buffered.reset();
+		if (length >= 2 && (magic >>> ((length - 2) * 8)) == GZIP_MAGIC)
+			return new GZIPInputStream(buffered, BUFFER_SIZE);
+		if (length == 4 && magic == ZSTD_MAGIC)
+			return newZstdInputStream(buffered);
+		return buffered;
+	}
+	
+	/**
+	 * Indicates whether the given file is gzip or Zstandard compressed.
+	 * 
+	 * @param file the file to check
+	 * @return true if the file begins with the magic bytes of a compressed 
+	 * stream, otherwise returns false
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isCompressed(Path file) throws IOException {
+		byte[] magic = new byte[4];
+		int length = 0;
+		try (InputStream in = Files.newInputStream(file)) {
+			for (int n; length < 4
+					&& (n = in.read(magic, length, 4 - length)) != -1; )
+				length += n;
+		}
+		if (length >= 2 && (((magic[0] & 0xFF) << 8) | (magic[1] & 0xFF))
+				== GZIP_MAGIC)
+			return true;
+		return length == 4 && (((magic[0] & 0xFF) << 24)
+				| ((magic[1] & 0xFF) << 16) | ((magic[2] & 0xFF) << 8)
+				| (magic[3] & 0xFF)) == ZSTD_MAGIC;
+	}
+	
+	/**
+	 * Parses the frequency count of a word list line in the format written 
+	 * by {@code sort | uniq -c}: optional leading whitespace, the count, a 
+	 * single space, and the password.
+	 * 
+	 * @param line the line to parse
+	 * @return the frequency count
+	 * @throws IOException if the line does not hold a count and a password
+	 */
+	public static long parseCount(String line) throws IOException {
+		int start = skipWhitespace(line);
+		try {
+			return Long.parseLong(line.substring(start, countEnd(line, start)));
+		} catch (NumberFormatException e) {
+			throw new IOException("Frequency count is too large.", e);
+		}
+	}
+	
+	/**
+	 * Strips the frequency count from a word list line in the format 
+	 * written by {@code sort | uniq -c}.
+	 * 
+	 * @param line the line to parse
+	 * @return the password, which may contain spaces
+	 * @throws IOException if the line does not hold a count and a password
+	 * @see #parseCount(String)
+	 */
+	public static String stripCount(String line) throws IOException {
+		return line.substring(countEnd(line, skipWhitespace(line)) + 1);
+	}
+	
+	private static int skipWhitespace(String line) {
+		int start = 0;
+		while (start < line.length()
+				&& Character.isWhitespace(line.charAt(start)))
+			start++;
+		return start;
+	}
+	
+	private static int countEnd(String line, int start) throws IOException {
+		int end = start;
+		while (end < line.length()
+				&& line.charAt(end) >= '0' && line.charAt(end) <= '9')
+			end++;
+		if (end == start || end >= line.length() || line.charAt(end) != ' ')
+			throw new IOException(String.format("Invalid frequency count "
+					+ "line: expected a count and a password but found '%s'",
+					line));
+		return end;
+	}
+	
+	/**
+	 * Creates a {@code ZstdInputStream} reflectively, so that 
+	 * {@code zstd-jni} is only needed when Zstandard input is read.
+	 */
+	private static InputStream newZstdInputStream(InputStream in)
+			throws IOException {
+		try {
+			Constructor<?> constructor = Class.forName(ZSTD_INPUT_STREAM)
+					.getConstructor(InputStream.class);
+			return (InputStream) constructor.newInstance(in);
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Zstandard compressed word lists require "
+					+ "zstd-jni (com.github.luben:zstd-jni) on the class path.",
+					e);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException("Cannot read Zstandard stream.", e.getCause());
+		} catch (ReflectiveOperationException e) {
+			throw new IOException("Cannot read Zstandard stream.", e);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,112 @@
+package co.insecurity.security.policy.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The call counts, failure counts and latency distribution of a single 
+ * {@code PolicyAssertion}, as recorded by {@code DefaultPolicyMetrics}.
+ * <p>
+ * Counts are kept in striped {@code LongAdder}s, so that recording from 
+ * many threads at once does not contend on a shared counter.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class AssertionMetrics implements AssertionRecorder, 
+		AssertionMetricsMBean {
+	
+	private final String assertion;
+	private final FlightRecorderEvents events;
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+	
+	AssertionMetrics(String assertion, FlightRecorderEvents events) {
+		this.assertion = assertion;
+		this.events = events;
+	}
+	
+	@Override
+	public void record(long nanos, boolean success) {
+		calls.increment();
+		if (!success)
+			failures.increment();
+		totalNanos.add(nanos);
+		latency.record(nanos);
+		if (events != null)
+			events.assertionEvaluated(assertion, nanos, success);
+	}
+	
+	@Override
+	public void recordBatch(long nanos, int numCalls, int numFailures) {
+		calls.add(numCalls);
+		failures.add(numFailures);
+		totalNanos.add(nanos);
+	}
+	
+	@Override
+	public String getAssertion() {
+		return assertion;
+	}
+	
+	@Override
+	public long getCalls() {
+		return calls.sum();
+	}
+	
+	@Override
+	public long getFailures() {
+		return failures.sum();
+	}
+	
+	@Override
+	public double getFailureRate() {
+		long numCalls = calls.sum();
+		return (numCalls == 0) ? 0 : (double) failures.sum() / numCalls;
+	}
+	
+	@Override
+	public double getMeanLatencyNanos() {
+		long numCalls = calls.sum();
+		return (numCalls == 0) ? 0 : (double) totalNanos.sum() / numCalls;
+	}
+	
+	@Override
+	public long getMedianLatencyNanos() {
+		return latency.getValueAtPercentile(50);
+	}
+	
+	@Override
+	public long getP99LatencyNanos() {
+		return latency.getValueAtPercentile(99);
+	}
+	
+	@Override
+	public long getP999LatencyNanos() {
+		return latency.getValueAtPercentile(99.9);
+	}
+	
+	@Override
+	public long getMaxLatencyNanos() {
+		return latency.getMax();
+	}
+	
+	/**
+	 * Gets the distribution of latencies of single calls to 
+	 * {@code verify()}.
+	 * 
+	 * @return the latency histogram
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+	
+	@Override
+	public void reset() {
+		calls.reset();
+		failures.reset();
+		totalNanos.reset();
+		latency.reset();
+	}
+}
\ No newline at end of file
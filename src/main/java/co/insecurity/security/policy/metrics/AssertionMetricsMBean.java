@@ -0,0 +1,80 @@
+package co.insecurity.security.policy.metrics;
+
+/**
+ * The JMX management interface of {@code AssertionMetrics}.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public interface AssertionMetricsMBean {
+	
+	/**
+	 * Gets the name of the assertion, which is its class name.
+	 * 
+	 * @return the assertion name
+	 */
+	public String getAssertion();
+	
+	/**
+	 * Gets the number of passwords verified by the assertion.
+	 * 
+	 * @return the number of calls
+	 */
+	public long getCalls();
+	
+	/**
+	 * Gets the number of passwords for which the assertion failed.
+	 * 
+	 * @return the number of failures
+	 */
+	public long getFailures();
+	
+	/**
+	 * Gets the fraction of passwords for which the assertion failed.
+	 * 
+	 * @return the failure rate, or 0 if no password has been verified
+	 */
+	public double getFailureRate();
+	
+	/**
+	 * Gets the mean latency of verifying a password, including passwords 
+	 * verified in batches.
+	 * 
+	 * @return the mean latency in nanoseconds
+	 */
+	public double getMeanLatencyNanos();
+	
+	/**
+	 * Gets the median latency of single calls to {@code verify()}.
+	 * 
+	 * @return the median latency in nanoseconds
+	 */
+	public long getMedianLatencyNanos();
+	
+	/**
+	 * Gets the 99th percentile latency of single calls to {@code verify()}.
+	 * 
+	 * @return the 99th percentile latency in nanoseconds
+	 */
+	public long getP99LatencyNanos();
+	
+	/**
+	 * Gets the 99.9th percentile latency of single calls to 
+	 * {@code verify()}.
+	 * 
+	 * @return the 99.9th percentile latency in nanoseconds
+	 */
+	public long getP999LatencyNanos();
+	
+	/**
+	 * Gets the maximum latency of single calls to {@code verify()}.
+	 * 
+	 * @return the maximum latency in nanoseconds
+	 */
+	public long getMaxLatencyNanos();
+	
+	/**
+	 * Resets all counts and latencies to zero.
+	 */
+	public void reset();
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package co.insecurity.security.policy.metrics;
+
+/**
+ * Records the outcome and latency of calls to a single 
+ * {@code PolicyAssertion}, as obtained from 
+ * {@code PolicyMetrics.getRecorder()}.
+ * <p>
+ * Recorders are called on the evaluation hot path, from many threads at 
+ * once, so implementations must be thread-safe and should neither block nor 
+ * allocate.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public interface AssertionRecorder {
+	
+	/**
+	 * Records a single call to {@code verify()}.
+	 * 
+	 * @param nanos the latency of the call in nanoseconds
+	 * @param success whether the assertion held for the password
+	 */
+	public void record(long nanos, boolean success);
+	
+	/**
+	 * Records a call to {@code verifyAll()} for a batch of passwords. Since 
+	 * the latency of individual passwords is unknown, batches contribute to 
+	 * call and failure counts and to the total latency, but not to latency 
+	 * distributions.
+	 * 
+	 * @param nanos the latency of the whole batch in nanoseconds
+	 * @param calls the number of passwords in the batch
+	 * @param failures the number of passwords for which the assertion 
+	 * failed
+	 */
+	public void recordBatch(long nanos, int calls, int failures);
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+package co.insecurity.security.policy.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The build timings and memory footprint of a type of password index, as 
+ * recorded by {@code DefaultPolicyMetrics}.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class BuildMetrics implements BuildMetricsMBean {
+	
+	private final String indexType;
+	private long builds;
+	private long lastBuildNanos;
+	private long totalBuildNanos;
+	private long numPasswords;
+	private long sizeInBytes;
+	
+	BuildMetrics(String indexType) {
+		this.indexType = indexType;
+	}
+	
+	synchronized void record(long nanos, long passwords, long size) {
+		builds++;
+		lastBuildNanos = nanos;
+		totalBuildNanos += nanos;
+		numPasswords = passwords;
+		sizeInBytes = size;
+	}
+	
+	@Override
+	public String getIndexType() {
+		return indexType;
+	}
+	
+	@Override
+	public synchronized long getBuilds() {
+		return builds;
+	}
+	
+	@Override
+	public synchronized long getLastBuildMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(lastBuildNanos);
+	}
+	
+	@Override
+	public synchronized long getTotalBuildMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(totalBuildNanos);
+	}
+	
+	@Override
+	public synchronized long getNumPasswords() {
+		return numPasswords;
+	}
+	
+	@Override
+	public synchronized long getSizeInBytes() {
+		return sizeInBytes;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package co.insecurity.security.policy.metrics;
+
+/**
+ * The JMX management interface of {@code BuildMetrics}.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public interface BuildMetricsMBean {
+	
+	/**
+	 * Gets the name of the type of index built.
+	 * 
+	 * @return the index type
+	 */
+	public String getIndexType();
+	
+	/**
+	 * Gets the number of indexes of this type built.
+	 * 
+	 * @return the number of builds
+	 */
+	public long getBuilds();
+	
+	/**
+	 * Gets the time taken by the most recent build, including reading the 
+	 * word list.
+	 * 
+	 * @return the duration of the last build in milliseconds
+	 */
+	public long getLastBuildMillis();
+	
+	/**
+	 * Gets the time taken by all builds of this type of index.
+	 * 
+	 * @return the total duration of the builds in milliseconds
+	 */
+	public long getTotalBuildMillis();
+	
+	/**
+	 * Gets the number of passwords in the most recently built index.
+	 * 
+	 * @return the number of passwords
+	 */
+	public long getNumPasswords();
+	
+	/**
+	 * Gets the memory footprint of the most recently built index.
+	 * 
+	 * @return the size of the index in bytes, or 
+	 * {@code MembershipIndex.UNKNOWN_SIZE} if unknown
+	 */
+	public long getSizeInBytes();
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+package co.insecurity.security.policy.metrics;
+
+/**
+ * Emits the JDK Flight Recorder events of {@code DefaultPolicyMetrics}.
+ * <p>
+ * The only implementation, {@code JfrEvents}, is built from a separate 
+ * source set which requires the {@code jdk.jfr} API, and is loaded 
+ * reflectively, so that the library can be built and used on JDKs without 
+ * it.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+interface FlightRecorderEvents {
+	
+	/**
+	 * Emits an event for a single call to an assertion, if a recording has 
+	 * enabled it.
+	 * 
+	 * @param assertion the class name of the assertion
+	 * @param nanos the latency of the call in nanoseconds
+	 * @param success whether the assertion held for the password
+	 */
+	public void assertionEvaluated(String assertion, long nanos, 
+			boolean success);
+	
+	/**
+	 * Emits an event for a built password index, if a recording has enabled 
+	 * it.
+	 * 
+	 * @param indexType the name of the index type
+	 * @param nanos the build time in nanoseconds
+	 * @param numPasswords the number of passwords added to the index
+	 * @param sizeInBytes the memory footprint of the index
+	 */
+	public void indexBuilt(String indexType, long nanos, long numPasswords, 
+			long sizeInBytes);
+}
\ No newline at end of file
@@ -0,0 +1,145 @@
+package co.insecurity.security.policy.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A concurrent histogram of latencies in nanoseconds, with log-linear 
+ * buckets in the style of HdrHistogram.
+ * <p>
+ * Each power of two is split into eight linear sub-buckets, so that values 
+ * are recorded with a relative error below 12.5% across the whole range of 
+ * {@code long}, in under 500 buckets. Every bucket is a striped 
+ * {@code LongAdder}, so recording never blocks and scales with the number 
+ * of recording threads. Percentiles are computed from a snapshot of the 
+ * buckets which is not atomic, and may miss values recorded concurrently.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int NUM_BUCKETS = 
+			(64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	
+	private final LongAdder[] buckets = new LongAdder[NUM_BUCKETS];
+	private final LongAccumulator max = new LongAccumulator(
+			new LongBinaryOperator() {
+				@Override
+				public long applyAsLong(long left, long right) {
+					return Math.max(left, right);
+				}
+			}, 0);
+	
+	/**
+	 * Instantiates a new, empty {@code LatencyHistogram}.
+	 */
+	public LatencyHistogram() {
+		for (int i = 0; i < NUM_BUCKETS; i++)
+			buckets[i] = new LongAdder();
+	}
+	
+	/**
+	 * Records a latency. Negative values, e.g. due to a clock adjustment, 
+	 * are recorded as 0.
+	 * 
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets[bucketOf(value)].increment();
+		max.accumulate(value);
+	}
+	
+	/**
+	 * Gets the number of recorded latencies.
+	 * 
+	 * @return the number of latencies
+	 */
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets)
+			count += bucket.sum();
+		return count;
+	}
+	
+	/**
+	 * Gets the largest recorded latency.
+	 * 
+	 * @return the maximum latency in nanoseconds, or 0 if none has been 
+	 * recorded
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * Gets the latency at the given percentile, i.e. a latency which is at 
+	 * least as high as the given percentage of recorded latencies, up to 
+	 * the precision of the buckets.
+	 * 
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the latency at the percentile in nanoseconds, or 0 if none 
+	 * has been recorded
+	 * @throws IllegalArgumentException if percentile is not between 0 and 
+	 * 100
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException(
+					"Percentile must be between 0 and 100!");
+		long[] counts = new long[NUM_BUCKETS];
+		long total = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+			total += counts[i];
+		}
+		if (total == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(highestValueOf(i), getMax());
+		}
+		return getMax();
+	}
+	
+	/**
+	 * Discards all recorded latencies. Latencies recorded concurrently with 
+	 * a reset may or may not be discarded.
+	 */
+	public void reset() {
+		for (LongAdder bucket : buckets)
+			bucket.reset();
+		max.reset();
+	}
+	
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) 
+				& (SUB_BUCKETS - 1);
+		return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) 
+				+ subBucket;
+	}
+	
+	static long lowestValueOf(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+		int exponent = (bucket >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket & (SUB_BUCKETS - 1);
+		return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+	}
+	
+	static long highestValueOf(int bucket) {
+		if (bucket == NUM_BUCKETS - 1)
+			return Long.MAX_VALUE;
+		return lowestValueOf(bucket + 1) - 1;
+	}
+}
\ No newline at end of file
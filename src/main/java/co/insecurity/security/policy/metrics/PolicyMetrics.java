@@ -0,0 +1,71 @@
+package co.insecurity.security.policy.metrics;
+
+import co.insecurity.security.policy.assertion.PolicyAssertion;
+
+/**
+ * Collects metrics on the evaluation of {@code PolicyAssertion}s by a 
+ * {@code PasswordPolicy} and on the building of password indexes by a 
+ * {@code NotLeakedAssertion.Builder}.
+ * <p>
+ * Metrics are disabled by default: policies and builders use 
+ * {@code PolicyMetrics.NO_OP}, for which they skip timing altogether, so 
+ * that uninstrumented evaluation costs no more than it did without metrics. 
+ * {@code DefaultPolicyMetrics} records counts and latency histograms, and 
+ * can expose them as JMX MBeans and JFR events.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public interface PolicyMetrics {
+	
+	/**
+	 * A {@code PolicyMetrics} which records nothing.
+	 */
+	public static final PolicyMetrics NO_OP = new PolicyMetrics() {
+		
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+		
+		@Override
+		public AssertionRecorder getRecorder(PolicyAssertion assertion) {
+			return null;
+		}
+		
+		@Override
+		public void recordBuild(String indexType, long nanos, 
+				long numPasswords, long sizeInBytes) { }
+	};
+	
+	/**
+	 * Indicates whether this {@code PolicyMetrics} records anything. Callers 
+	 * must not time calls, nor call the other methods, if it does not.
+	 * 
+	 * @return true if metrics are recorded, otherwise returns false
+	 */
+	public boolean isEnabled();
+	
+	/**
+	 * Gets the recorder for calls to the given assertion. Policies get the 
+	 * recorders of their assertions once, when the assertions are 
+	 * snapshotted, rather than on every call.
+	 * 
+	 * @param assertion the assertion whose calls will be recorded
+	 * @return the {@code AssertionRecorder} for the assertion
+	 */
+	public AssertionRecorder getRecorder(PolicyAssertion assertion);
+	
+	/**
+	 * Records the building of a password index.
+	 * 
+	 * @param indexType the name of the type of index built
+	 * @param nanos the time taken to build the index in nanoseconds, 
+	 * including reading the word list
+	 * @param numPasswords the number of passwords in the index
+	 * @param sizeInBytes the memory footprint of the index, or 
+	 * {@code MembershipIndex.UNKNOWN_SIZE} if unknown
+	 */
+	public void recordBuild(String indexType, long nanos, long numPasswords, 
+			long sizeInBytes);
+}
\ No newline at end of file
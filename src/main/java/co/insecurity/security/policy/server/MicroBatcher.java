@@ -0,0 +1,141 @@
+package co.insecurity.security.policy.server;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import co.insecurity.security.policy.EvaluationResults;
+import co.insecurity.security.policy.PasswordPolicy;
+import co.insecurity.security.policy.assertion.PolicyAssertion.Result;
+
+/**
+ * Groups passwords submitted one at a time by concurrent requests into 
+ * batches evaluated by {@code PasswordPolicy.evaluateAll()}.
+ * <p>
+ * A single thread takes the submitted passwords from a queue. Each batch is 
+ * made of the passwords which queued up while the previous batch was being 
+ * evaluated, up to the maximum batch size, so that no password waits for a 
+ * batch to fill: under light load each batch holds a single password, and 
+ * under heavy load the batches grow and the cost of each evaluation is 
+ * shared by many requests.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+final class MicroBatcher implements Closeable {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(MicroBatcher.class);
+	
+	private static final class Pending {
+		final String password;
+		final CompletableFuture<Set<Result>> result =
+				new CompletableFuture<Set<Result>>();
+		
+		Pending(String password) {
+			this.password = password;
+		}
+	}
+	
+	private final PasswordPolicy policy;
+	private final int maxBatchSize;
+	private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<Pending>();
+	private final LongAdder numBatches = new LongAdder();
+	private final LongAdder numPasswords = new LongAdder();
+	private final Thread thread;
+	private volatile boolean closed;
+	
+	MicroBatcher(PasswordPolicy policy, int maxBatchSize) {
+		this.policy = policy;
+		this.maxBatchSize = maxBatchSize;
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "passcheck-batcher");
+		this.thread.setDaemon(true);
+	}
+	
+	void start() {
+		thread.start();
+	}
+	
+	/**
+	 * Queues the given password to be evaluated in the next batch.
+	 * 
+	 * @param password the password to evaluate
+	 * @return a future which completes with the results of the password, 
+	 * or exceptionally if the batcher is closed or the evaluation fails
+	 */
+	CompletableFuture<Set<Result>> submit(String password) {
+		Pending pending = new Pending(password);
+		queue.add(pending);
+		if (closed && queue.remove(pending))
+			pending.result.completeExceptionally(
+					new IllegalStateException("Batcher is closed"));
+		return pending.result;
+	}
+	
+	long getNumBatches() {
+		return numBatches.sum();
+	}
+	
+	long getNumPasswords() {
+		return numPasswords.sum();
+	}
+	
+	private void drain() {
+		List<Pending> batch = new ArrayList<Pending>(maxBatchSize);
+		while (!closed) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				break;
+			}
+			queue.drainTo(batch, maxBatchSize - 1);
+			evaluate(batch);
+			batch.clear();
+		}
+	}
+	
+	private void evaluate(List<Pending> batch) {
+		List<String> passwords = new ArrayList<String>(batch.size());
+		for (Pending pending : batch)
+			passwords.add(pending.password);
+		EvaluationResults results;
+		try {
+			results = policy.evaluateAll(passwords);
+		} catch (RuntimeException e) {
+			LOG.error("Failed to evaluate batch of {} passwords: ",
+					batch.size(), e);
+			for (Pending pending : batch)
+				pending.result.completeExceptionally(e);
+			return;
+		}
+		numBatches.increment();
+		numPasswords.add(batch.size());
+		for (int i = 0; i < batch.size(); i++)
+			batch.get(i).result.complete(results.getResults(i));
+	}
+	
+	/**
+	 * Stops the batching thread, and fails the passwords still queued.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		thread.interrupt();
+		Pending pending;
+		while ((pending = queue.poll()) != null)
+			pending.result.completeExceptionally(
+					new IllegalStateException("Batcher is closed"));
+	}
+}
\ No newline at end of file
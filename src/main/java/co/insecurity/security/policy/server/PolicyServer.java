@@ -0,0 +1,505 @@
+package co.insecurity.security.policy.server;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import co.insecurity.security.policy.AsyncEvaluation;
+import co.insecurity.security.policy.EvaluationResults;
+import co.insecurity.security.policy.PasswordPolicy;
+import co.insecurity.security.policy.PolicyCompiler;
+import co.insecurity.security.policy.assertion.PolicyAssertion.Result;
+import co.insecurity.security.policy.metrics.AssertionMetrics;
+import co.insecurity.security.policy.metrics.DefaultPolicyMetrics;
+import co.insecurity.security.policy.metrics.PolicyMetrics;
+
+/**
+ * Serves a {@code PasswordPolicy} over HTTP with the JDK's built-in 
+ * {@code HttpServer}, so that services not running on the JVM can share one 
+ * policy, and the word list index it holds, without further dependencies.
+ * <p>
+ * The server has the following endpoints:
+ * <ul>
+ * <li>{@code POST /evaluate} evaluates the password sent as the UTF-8 
+ * request body, of which a single trailing line break is ignored. 
+ * Passwords evaluated by concurrent requests are grouped into batches, as 
+ * by {@code PasswordPolicy.evaluateAll()}.</li>
+ * <li>{@code POST /evaluate/batch} evaluates each line of the request body 
+ * as a password, in one batch.</li>
+ * <li>{@code GET /health} responds {@code 200} while the server runs.</li>
+ * <li>{@code GET /metrics} responds with the request and batch counts of 
+ * the server, and the metrics of the policy's assertions if it records 
+ * them with {@code DefaultPolicyMetrics}, in the Prometheus text 
+ * format.</li>
+ * </ul>
+ * Evaluations are answered with a JSON object, e.g. 
+ * {@code {"compliant":false,"violations":["Password is too short."]}}, or 
+ * for a batch with a JSON array of such objects, in the order of the lines.
+ * <p>
+ * Requests are handled on the executor of 
+ * {@code AsyncEvaluation.DEFAULT}, which starts a virtual thread per 
+ * request on Java 21 and later. By default the server only listens on the 
+ * loopback address.
+ * 
+ * @author Milo Minderbinder
+ *
+ */
+public class PolicyServer implements Closeable {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(PolicyServer.class);
+	
+	/**
+	 * The default port, 8080
+	 */
+	public static final int DEFAULT_PORT = 8080;
+	/**
+	 * The default maximum number of passwords evaluated in one batch
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = PasswordPolicy.BATCH_SIZE;
+	/**
+	 * The default maximum size of a request body, 1 MiB
+	 */
+	public static final int DEFAULT_MAX_REQUEST_BYTES = 1 << 20;
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String JSON = "application/json; charset=utf-8";
+	private static final String TEXT = "text/plain; version=0.0.4; charset=utf-8";
+	
+	/**
+	 * Builds a {@code PolicyServer}.
+	 * 
+	 * @author Milo Minderbinder
+	 *
+	 */
+	public static class Builder {
+		
+		private final PasswordPolicy policy;
+		private InetSocketAddress address;
+		private Executor executor;
+		private int maxBatchSize;
+		private int maxRequestBytes;
+		
+		/**
+		 * Instantiates a new {@code PolicyServer.Builder} of a server for 
+		 * the given policy, which by default listens on 
+		 * {@code DEFAULT_PORT} of the loopback address.
+		 * 
+		 * @param policy the policy to serve
+		 */
+		public Builder(PasswordPolicy policy) {
+			this.policy = policy;
+			this.address = new InetSocketAddress(
+					InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+			this.executor = AsyncEvaluation.DEFAULT.getExecutor();
+			this.maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+			this.maxRequestBytes = DEFAULT_MAX_REQUEST_BYTES;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a server listening on 
+		 * the given port of the loopback address, or on an ephemeral port 
+		 * if it is 0.
+		 * 
+		 * @param port the port to listen on
+		 * @return this {@code Builder}, updated with the specified port
+		 */
+		public Builder withPort(int port) {
+			this.address = new InetSocketAddress(
+					InetAddress.getLoopbackAddress(), port);
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a server listening on 
+		 * the given address, e.g. to serve other hosts.
+		 * 
+		 * @param address the address to listen on
+		 * @return this {@code Builder}, updated with the specified address
+		 */
+		public Builder withAddress(InetSocketAddress address) {
+			this.address = address;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a server handling 
+		 * requests on the given executor.
+		 * 
+		 * @param executor the executor on which to handle requests
+		 * @return this {@code Builder}, updated with the specified executor
+		 */
+		public Builder withExecutor(Executor executor) {
+			this.executor = executor;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a server evaluating 
+		 * at most the given number of single passwords in one batch.
+		 * 
+		 * @param batchSize the maximum batch size
+		 * @return this {@code Builder}, updated with the specified size
+		 */
+		public Builder withMaxBatchSize(int batchSize) {
+			this.maxBatchSize = batchSize;
+			return this;
+		}
+		
+		/**
+		 * Returns an updated builder that will create a server rejecting 
+		 * request bodies larger than the given number of bytes.
+		 * 
+		 * @param numBytes the maximum size of a request body
+		 * @return this {@code Builder}, updated with the specified size
+		 */
+		public Builder withMaxRequestBytes(int numBytes) {
+			this.maxRequestBytes = numBytes;
+			return this;
+		}
+		
+		/**
+		 * Checks that valid configuration parameters have been set and 
+		 * returns a new {@code PolicyServer} bound to the configured 
+		 * address, which serves requests once started.
+		 * 
+		 * @return a new {@code PolicyServer} instance
+		 * @throws IOException if the server cannot be bound to the address
+		 * @throws IllegalArgumentException if no policy, address or executor 
+		 * is set, or the maximum batch or request size is less than 1
+		 */
+		public PolicyServer build() throws IOException {
+			if (policy == null || address == null || executor == null)
+				throw new IllegalArgumentException(
+						"Policy, address and executor must be set!");
+			if (maxBatchSize < 1 || maxRequestBytes < 1)
+				throw new IllegalArgumentException(
+						"Maximum batch and request sizes must be greater than 0!");
+			return new PolicyServer(this);
+		}
+	}
+	
+	/**
+	 * A request which is answered with an error status.
+	 */
+	private static final class RequestException extends Exception {
+		
+		private static final long serialVersionUID = 1L;
+		
+		final int status;
+		
+		RequestException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+	
+	private final PasswordPolicy policy;
+	private final int maxRequestBytes;
+	private final HttpServer server;
+	private final MicroBatcher batcher;
+	private final LongAdder numRequests = new LongAdder();
+	private final LongAdder numBatchRequests = new LongAdder();
+	private final LongAdder numErrors = new LongAdder();
+	
+	private PolicyServer(Builder builder) throws IOException {
+		this.policy = builder.policy;
+		this.maxRequestBytes = builder.maxRequestBytes;
+		this.batcher = new MicroBatcher(builder.policy, builder.maxBatchSize);
+		this.server = HttpServer.create(builder.address, 0);
+		server.setExecutor(builder.executor);
+		server.createContext("/evaluate", new Handler("POST") {
+			@Override
+			String respond(HttpExchange exchange) throws RequestException {
+				numRequests.increment();
+				String password = readBody(exchange);
+				if (password.endsWith("\r\n"))
+					password = password.substring(0, password.length() - 2);
+				else if (password.endsWith("\n"))
+					password = password.substring(0, password.length() - 1);
+				Set<Result> results;
+				try {
+					results = batcher.submit(password).get();
+				} catch (ExecutionException e) {
+					throw new RequestException(500, "Evaluation failed");
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RequestException(503, "Evaluation interrupted");
+				}
+				StringBuilder json = new StringBuilder();
+				appendResults(json, PasswordPolicy.getViolations(results));
+				return json.toString();
+			}
+		});
+		server.createContext("/evaluate/batch", new Handler("POST") {
+			@Override
+			String respond(HttpExchange exchange) throws RequestException {
+				numBatchRequests.increment();
+				List<String> passwords = readLines(readBody(exchange));
+				EvaluationResults results = policy.evaluateAll(passwords);
+				StringBuilder json = new StringBuilder("[");
+				for (int i = 0; i < results.size(); i++) {
+					if (i > 0)
+						json.append(',');
+					appendResults(json, results.getViolations(i));
+				}
+				return json.append(']').toString();
+			}
+		});
+		server.createContext("/health", new Handler("GET") {
+			@Override
+			String respond(HttpExchange exchange) {
+				return "{\"status\":\"UP\"}";
+			}
+		});
+		server.createContext("/metrics", new Handler("GET", TEXT) {
+			@Override
+			String respond(HttpExchange exchange) {
+				return getMetrics();
+			}
+		});
+	}
+	
+	/**
+	 * Starts serving requests.
+	 */
+	public void start() {
+		batcher.start();
+		server.start();
+		LOG.info("Serving password policy on {}", server.getAddress());
+	}
+	
+	/**
+	 * Gets the address the server listens on, e.g. to find the ephemeral 
+	 * port it was bound to.
+	 * 
+	 * @return the address of the server
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+	
+	/**
+	 * Stops the server, and fails the passwords still waiting to be 
+	 * evaluated.
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		batcher.close();
+		LOG.info("Stopped serving password policy on {}", server.getAddress());
+	}
+	
+	/**
+	 * Handles the requests of one endpoint, answering each with the body 
+	 * returned by {@code respond()}, or with the status of the 
+	 * {@code RequestException} it throws.
+	 */
+	private abstract class Handler implements HttpHandler {
+		
+		private final String method;
+		private final String contentType;
+		
+		Handler(String method) {
+			this(method, JSON);
+		}
+		
+		Handler(String method, String contentType) {
+			this.method = method;
+			this.contentType = contentType;
+		}
+		
+		abstract String respond(HttpExchange exchange) throws RequestException;
+		
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				String path = exchange.getRequestURI().getPath();
+				if (!path.equals(exchange.getHttpContext().getPath()))
+					throw new RequestException(404, "Not found");
+				if (!exchange.getRequestMethod().equals(method)) {
+					exchange.getResponseHeaders().set("Allow", method);
+					throw new RequestException(405, "Method not allowed");
+				}
+				send(exchange, 200, contentType, respond(exchange));
+			} catch (RequestException e) {
+				numErrors.increment();
+				send(exchange, e.status, JSON, "{\"error\":"
+						+ quote(e.getMessage()) + "}");
+			} catch (RuntimeException e) {
+				numErrors.increment();
+				LOG.error("Failed to handle {}: ", exchange.getRequestURI(), e);
+				send(exchange, 500, JSON, "{\"error\":\"Internal error\"}");
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+	
+	private String readBody(HttpExchange exchange) throws RequestException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try (InputStream in = exchange.getRequestBody()) {
+			int n;
+			while ((n = in.read(buffer)) >= 0) {
+				if (body.size() + n > maxRequestBytes)
+					throw new RequestException(413, "Request body too large");
+				body.write(buffer, 0, n);
+			}
+		} catch (IOException e) {
+			throw new RequestException(400, "Failed to read request body");
+		}
+		try {
+			return UTF_8.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPORT)
+					.onUnmappableCharacter(CodingErrorAction.REPORT)
+					.decode(ByteBuffer.wrap(body.toByteArray()))
+					.toString();
+		} catch (CharacterCodingException e) {
+			throw new RequestException(400, "Request body is not UTF-8");
+		}
+	}
+	
+	private static List<String> readLines(String body) {
+		List<String> lines = new ArrayList<String>();
+		try (BufferedReader reader = new BufferedReader(new StringReader(body))) {
+			String line;
+			while ((line = reader.readLine()) != null)
+				lines.add(line);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return lines;
+	}
+	
+	private static void send(HttpExchange exchange, int status,
+			String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+	
+	private static void appendResults(StringBuilder json, Set<Result> violations) {
+		json.append("{\"compliant\":").append(violations.isEmpty())
+				.append(",\"violations\":[");
+		boolean first = true;
+		for (Result violation : violations) {
+			if (!first)
+				json.append(',');
+			json.append(quote(violation.getReason()));
+			first = false;
+		}
+		json.append("]}");
+	}
+	
+	private static String quote(String value) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else if (c < 0x20)
+				quoted.append(String.format("\\u%04x", (int) c));
+			else
+				quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+	
+	private String getMetrics() {
+		StringBuilder text = new StringBuilder();
+		text.append("# TYPE passcheck_requests_total counter\n");
+		text.append("passcheck_requests_total{endpoint=\"evaluate\"} ")
+				.append(numRequests.sum()).append('\n');
+		text.append("passcheck_requests_total{endpoint=\"evaluate_batch\"} ")
+				.append(numBatchRequests.sum()).append('\n');
+		text.append("# TYPE passcheck_errors_total counter\n");
+		text.append("passcheck_errors_total ")
+				.append(numErrors.sum()).append('\n');
+		text.append("# TYPE passcheck_micro_batches_total counter\n");
+		text.append("passcheck_micro_batches_total ")
+				.append(batcher.getNumBatches()).append('\n');
+		text.append("# TYPE passcheck_micro_batched_passwords_total counter\n");
+		text.append("passcheck_micro_batched_passwords_total ")
+				.append(batcher.getNumPasswords()).append('\n');
+		PolicyMetrics metrics = policy.getMetrics();
+		if (!(metrics instanceof DefaultPolicyMetrics))
+			return text.toString();
+		List<AssertionMetrics> assertions =
+				((DefaultPolicyMetrics) metrics).getAssertionMetrics();
+		text.append("# TYPE passcheck_assertion_calls_total counter\n");
+		for (AssertionMetrics assertion : assertions)
+			text.append("passcheck_assertion_calls_total{assertion=")
+					.append(quote(assertion.getAssertion())).append("} ")
+					.append(assertion.getCalls()).append('\n');
+		text.append("# TYPE passcheck_assertion_failures_total counter\n");
+		for (AssertionMetrics assertion : assertions)
+			text.append("passcheck_assertion_failures_total{assertion=")
+					.append(quote(assertion.getAssertion())).append("} ")
+					.append(assertion.getFailures()).append('\n');
+		// evaluateAll() records the time of whole batches, not the latency
+		// distribution, so only the mean latency is reported
+		text.append("# TYPE passcheck_assertion_mean_latency_nanos gauge\n");
+		for (AssertionMetrics assertion : assertions)
+			text.append("passcheck_assertion_mean_latency_nanos{assertion=")
+					.append(quote(assertion.getAssertion())).append("} ")
+					.append(assertion.getMeanLatencyNanos()).append('\n');
+		return text.toString();
+	}
+	
+	/**
+	 * Serves the policy compiled from the given definition until the JVM 
+	 * exits, e.g. to load test it on localhost.
+	 * <p>
+	 * Usage: {@code PolicyServer <policy.properties> [port]}
+	 * 
+	 * @param args the path of the policy definition, and optionally the 
+	 * port to listen on
+	 * @throws IOException if the policy cannot be compiled or the server 
+	 * cannot be bound to the port
+	 * @see PolicyCompiler
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: PolicyServer <policy.properties> [port]");
+			System.exit(2);
+		}
+		PasswordPolicy policy = PolicyCompiler.compile(Paths.get(args[0]));
+		policy.setMetrics(new DefaultPolicyMetrics.Builder().build());
+		int port = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+		final PolicyServer server = new Builder(policy).withPort(port).build();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				server.close();
+			}
+		}));
+		server.start();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package co.insecurity.security.policy;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import co.insecurity.security.policy.assertion.LengthAssertion;
+import co.insecurity.security.policy.assertion.PolicyAssertion;
+import co.insecurity.security.policy.assertion.PolicyAssertion.Result;
+
+public class AdaptiveOrderingTest {
+	
+	private static final Result SLOW_FAILURE = 
+			new Result(false, "Password starts with 'x'.");
+	
+	private PolicyAssertion slow;
+	private PolicyAssertion cheap;
+	private PasswordPolicy policy;
+	
+	@Before
+	public void setUp() {
+		slow = new PolicyAssertion() {
+			@Override
+			public Result verify(String password) {
+				long deadline = System.nanoTime() + 20000;
+				while (System.nanoTime() < deadline) { }
+				if (password != null && password.startsWith("x"))
+					return SLOW_FAILURE;
+				return Result.SUCCESS;
+			}
+		};
+		cheap = new LengthAssertion(8, LengthAssertion.DISABLED);
+		policy = new PasswordPolicy() { };
+		policy.assertions = new LinkedHashSet<PolicyAssertion>();
+		policy.assertions.add(slow);
+		policy.assertions.add(cheap);
+	}
+	
+	@Test
+	public void thatCheapFrequentViolationRunsFirst() {
+		Assert.assertEquals("Failure - initial order should be iteration order",
+				slow, policy.getExecutionOrder().get(0));
+		for (int i = 0; i < 200000 
+				&& policy.getExecutionOrder().get(0) == slow; i++)
+			policy.isCompliant((i % 10 == 0) ? "xlongpassword" : "short");
+		List<PolicyAssertion> order = policy.getExecutionOrder();
+		Assert.assertEquals("Failure - cheap assertion should run first",
+				cheap, order.get(0));
+		Assert.assertEquals("Failure - every assertion should be ordered",
+				2, order.size());
+	}
+	
+	@Test
+	public void thatResultsMatchStableEvaluation() {
+		String[] passwords = {"short", "xshort", "xlongpassword", 
+				"longpassword", null};
+		for (int i = 0; i < 5000; i++) {
+			String password = passwords[i % passwords.length];
+			int violation = policy.findAnyViolation(password);
+			long mask = policy.evaluateMask(password);
+			Assert.assertEquals("Failure - compliance should match the mask",
+					mask == 0, violation == PasswordPolicy.NO_VIOLATION);
+			if (violation != PasswordPolicy.NO_VIOLATION)
+				Assert.assertTrue("Failure - violation should be in the mask",
+						(mask & (1L << violation)) != 0);
+		}
+		Assert.assertEquals("Failure - evaluate() should keep iteration order",
+				SLOW_FAILURE, policy.evaluate("xshort").iterator().next());
+	}
+}
\ No newline at end of file
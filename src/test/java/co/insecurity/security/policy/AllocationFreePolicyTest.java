@@ -0,0 +1,141 @@
+package co.insecurity.security.policy;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.LinkedHashSet;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import co.insecurity.security.policy.assertion.LengthAssertion;
+import co.insecurity.security.policy.assertion.NotLeakedAssertion;
+import co.insecurity.security.policy.assertion.PolicyAssertion;
+import co.insecurity.security.policy.index.IndexType;
+
+class BlockedFilterPasswordPolicy extends PasswordPolicy {
+	
+	public BlockedFilterPasswordPolicy() throws IOException {
+		assertions = new LinkedHashSet<PolicyAssertion>();
+		assertions.add(new LengthAssertion(8, LengthAssertion.DISABLED));
+		assertions.add(new NotLeakedAssertion.Builder()
+				.withIndexType(IndexType.BLOCKED_BLOOM_FILTER)
+				.withIgnoreCase(true)
+				.build());
+	}
+}
+
+public class AllocationFreePolicyTest {
+	
+	private static final String[] PASSWORDS = {"PassWord", "98V*-++", 
+		"uF7#kq!m2Zr9", null, "LETMEIN1"};
+	
+	private static BlockedFilterPasswordPolicy policy;
+	
+	@BeforeClass
+	public static void setUpClass() throws IOException {
+		policy = new BlockedFilterPasswordPolicy();
+	}
+	
+	@Test
+	public void thatMaskMatchesEvaluate() {
+		for (String password : PASSWORDS) {
+			long mask = policy.evaluateMask(password);
+			long expected = 0;
+			int i = 0;
+			for (PolicyAssertion assertion : policy.assertions) {
+				if (!assertion.verify(password).isSuccess())
+					expected |= 1L << i;
+				i++;
+			}
+			Assert.assertEquals("Failure - mask should match verify()",
+					expected, mask);
+			int first = policy.findFirstViolation(password);
+			Assert.assertEquals("Failure - first violation should be lowest bit",
+					(mask == 0) ? PasswordPolicy.NO_VIOLATION 
+							: Long.numberOfTrailingZeros(mask), 
+					first);
+		}
+		Assert.assertEquals("Failure - 'PassWord' should fail the leak check",
+				policy.getAssertions(policy.evaluateMask("PassWord")).get(0)
+						.getClass(), NotLeakedAssertion.class);
+		Assert.assertEquals("Failure - 'uF7#kq!m2Zr9' should comply",
+				0, policy.evaluateMask("uF7#kq!m2Zr9"));
+	}
+	
+	@Test
+	public void thatBufferOverloadsMatchEvaluate() {
+		for (String password : PASSWORDS) {
+			char[] chars = (password == null) ? null : password.toCharArray();
+			ByteBuffer bytes = (password == null) ? null 
+					: ByteBuffer.wrap(password.getBytes(Charset.forName("UTF-8")));
+			Assert.assertEquals("Failure - char[] results should match",
+					policy.evaluate(password), policy.evaluateChars(chars));
+			Assert.assertEquals("Failure - UTF-8 results should match",
+					policy.evaluate(password), policy.evaluateUtf8(bytes));
+			Assert.assertEquals("Failure - CharBuffer mask should match",
+					policy.evaluateMask(password), policy.evaluateMask(
+							(chars == null) ? null : CharBuffer.wrap(chars)));
+		}
+	}
+	
+	@Test
+	public void thatCharArrayEvaluationDoesNotAllocate() {
+		java.lang.management.ThreadMXBean bean = 
+				ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = 
+				(com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+		
+		char[] password = "LETMEIN1".toCharArray();
+		CharBuffer buffer = CharBuffer.wrap(password);
+		long sink = 0;
+		for (int i = 0; i < 200000; i++)
+			sink += policy.evaluateMask(buffer);
+		int calls = 100000;
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < calls; i++)
+			sink += policy.evaluateMask(buffer);
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		Assert.assertEquals("Failure - 'LETMEIN1' should fail the leak check",
+				2, policy.evaluateMask(buffer));
+		Assert.assertTrue("Failure - sink should be used", sink != 42);
+		Assert.assertTrue("Failure - evaluation should not allocate, but "
+				+ "allocated " + allocated + " bytes for " + calls + " calls",
+				allocated < calls / 10);
+	}
+	
+	@Test
+	public void thatMaskEvaluationDoesNotAllocate() {
+		java.lang.management.ThreadMXBean bean = 
+				ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = 
+				(com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+		
+		long sink = 0;
+		for (int i = 0; i < 200000; i++)
+			sink += policy.evaluateMask(PASSWORDS[i % PASSWORDS.length])
+					+ policy.findFirstViolation(PASSWORDS[i % PASSWORDS.length]);
+		int calls = 100000;
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < calls; i++)
+			sink += policy.evaluateMask(PASSWORDS[i % PASSWORDS.length])
+					+ policy.findFirstViolation(PASSWORDS[i % PASSWORDS.length]);
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		Assert.assertTrue("Failure - sink should be used", sink != 42);
+		Assert.assertTrue("Failure - evaluation should not allocate, but "
+				+ "allocated " + allocated + " bytes for " + calls + " calls",
+				allocated < calls / 10);
+	}
+}
\ No newline at end of file
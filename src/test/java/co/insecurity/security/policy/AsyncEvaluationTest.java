@@ -0,0 +1,133 @@
+package co.insecurity.security.policy;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import co.insecurity.security.policy.assertion.PolicyAssertion;
+import co.insecurity.security.policy.assertion.PolicyAssertion.Result;
+
+class SleepingAssertion implements PolicyAssertion {
+	
+	private final long millis;
+	private final Result result;
+	
+	SleepingAssertion(long millis, Result result) {
+		this.millis = millis;
+		this.result = result;
+	}
+	
+	@Override
+	public Result verify(String password) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return result;
+	}
+}
+
+public class AsyncEvaluationTest {
+	
+	private static final Result FIRST = new Result(false, "First.");
+	private static final Result SECOND = new Result(false, "Second.");
+	private static final Result THIRD = new Result(true, "Third.");
+	
+	private static PasswordPolicy policyOf(PolicyAssertion... assertions) {
+		PasswordPolicy policy = new PasswordPolicy() { };
+		policy.assertions = new LinkedHashSet<PolicyAssertion>();
+		for (PolicyAssertion assertion : assertions)
+			policy.assertions.add(assertion);
+		return policy;
+	}
+	
+	@Test
+	public void thatAssertionsRunConcurrently() {
+		PasswordPolicy policy = policyOf(new SleepingAssertion(300, FIRST), 
+				new SleepingAssertion(300, SECOND), 
+				new SleepingAssertion(300, THIRD));
+		long start = System.nanoTime();
+		Set<Result> results = policy.evaluateAsync("password").join();
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		Assert.assertTrue("Failure - assertions should run concurrently",
+				millis < 800);
+		Iterator<Result> iterator = results.iterator();
+		Assert.assertEquals("Failure - results should be in iteration order",
+				FIRST, iterator.next());
+		Assert.assertEquals("Failure - results should be in iteration order",
+				SECOND, iterator.next());
+		Assert.assertEquals("Failure - results should be in iteration order",
+				THIRD, iterator.next());
+	}
+	
+	@Test
+	public void thatSlowAssertionTimesOut() {
+		PasswordPolicy policy = policyOf(new SleepingAssertion(0, FIRST), 
+				new SleepingAssertion(5000, SECOND));
+		AsyncEvaluation evaluation = new AsyncEvaluation.Builder()
+				.withTimeout(100, TimeUnit.MILLISECONDS)
+				.build();
+		long start = System.nanoTime();
+		Set<Result> results = policy.evaluateAsync("password", evaluation).join();
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		Assert.assertTrue("Failure - evaluation should not wait past timeout",
+				millis < 2000);
+		Assert.assertTrue("Failure - fast assertion result should be kept",
+				results.contains(FIRST));
+		Assert.assertTrue("Failure - slow assertion should fall back",
+				results.contains(AsyncEvaluation.UNAVAILABLE));
+		Assert.assertFalse("Failure - slow assertion result should be ignored",
+				results.contains(SECOND));
+	}
+	
+	@Test
+	public void thatFailedAssertionUsesFallback() {
+		PasswordPolicy policy = policyOf(new PolicyAssertion() {
+			@Override
+			public Result verify(String password) {
+				throw new IllegalStateException("Lookup service unavailable");
+			}
+		});
+		AsyncEvaluation evaluation = new AsyncEvaluation.Builder()
+				.withFallbackResult(Result.SUCCESS)
+				.build();
+		Set<Result> results = policy.evaluateAsync("password", evaluation).join();
+		Assert.assertEquals("Failure - failed assertion should fail open",
+				1, results.size());
+		Assert.assertTrue("Failure - failed assertion should fail open",
+				results.contains(Result.SUCCESS));
+	}
+	
+	@Test
+	public void thatSuppliedExecutorIsUsed() {
+		final AtomicInteger tasks = new AtomicInteger();
+		AsyncEvaluation evaluation = new AsyncEvaluation.Builder()
+				.withExecutor(new Executor() {
+					@Override
+					public void execute(Runnable task) {
+						tasks.incrementAndGet();
+						task.run();
+					}
+				})
+				.build();
+		PasswordPolicy policy = policyOf(new SleepingAssertion(0, FIRST), 
+				new SleepingAssertion(0, SECOND));
+		Assert.assertEquals("Failure - async results should match evaluate()",
+				policy.evaluate("password"), 
+				policy.evaluateAsync("password", evaluation).join());
+		Assert.assertEquals("Failure - each assertion should use the executor",
+				2, tasks.get());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void thatInvalidTimeoutIsRejected() {
+		new AsyncEvaluation.Builder().withTimeout(0, TimeUnit.SECONDS).build();
+	}
+}
\ No newline at end of file
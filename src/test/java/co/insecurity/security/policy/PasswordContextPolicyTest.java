@@ -0,0 +1,79 @@
+package co.insecurity.security.policy;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import co.insecurity.security.policy.assertion.PasswordContext;
+import co.insecurity.security.policy.assertion.PolicyAssertion;
+
+class ContextRecordingAssertion implements PolicyAssertion {
+	
+	final Set<PasswordContext> contexts = new LinkedHashSet<PasswordContext>();
+	
+	@Override
+	public Result verify(String password) {
+		return Result.SUCCESS;
+	}
+	
+	@Override
+	public Result verifyContext(PasswordContext context) {
+		contexts.add(context);
+		context.getHash64();
+		return Result.SUCCESS;
+	}
+}
+
+public class PasswordContextPolicyTest {
+	
+	@Test
+	public void thatAssertionsShareOneContextPerEvaluation() {
+		ContextRecordingAssertion first = new ContextRecordingAssertion();
+		ContextRecordingAssertion second = new ContextRecordingAssertion();
+		PasswordPolicy policy = new PasswordPolicy() { };
+		policy.assertions = new LinkedHashSet<PolicyAssertion>();
+		policy.assertions.add(first);
+		policy.assertions.add(second);
+		policy.evaluate("password");
+		Assert.assertEquals("Failure - assertions should share a context",
+				first.contexts, second.contexts);
+		Assert.assertEquals("Failure - each evaluation should use one context",
+				1, first.contexts.size());
+		first.contexts.clear();
+		second.contexts.clear();
+		policy.evaluateMask("password");
+		policy.findFirstViolation("password");
+		Assert.assertEquals("Failure - thread's context should be reused",
+				1, first.contexts.size());
+		Assert.assertFalse("Failure - context should be cleared after evaluation",
+				first.contexts.iterator().next().isInUse());
+	}
+	
+	@Test
+	public void thatNestedEvaluationUsesOwnContext() {
+		final PasswordPolicy inner = new PasswordPolicy() { };
+		inner.assertions = new LinkedHashSet<PolicyAssertion>();
+		inner.assertions.add(new ContextRecordingAssertion());
+		PasswordPolicy outer = new PasswordPolicy() { };
+		outer.assertions = new LinkedHashSet<PolicyAssertion>();
+		outer.assertions.add(new PolicyAssertion() {
+			@Override
+			public Result verify(String password) {
+				return Result.SUCCESS;
+			}
+			
+			@Override
+			public Result verifyContext(PasswordContext context) {
+				inner.findFirstViolation("other");
+				Assert.assertEquals("Failure - nested evaluation should not "
+						+ "reset the outer context", 
+						"password", context.getString());
+				return Result.SUCCESS;
+			}
+		});
+		Assert.assertEquals("Failure - outer policy should be satisfied",
+				PasswordPolicy.NO_VIOLATION, outer.findFirstViolation("password"));
+	}
+}
\ No newline at end of file
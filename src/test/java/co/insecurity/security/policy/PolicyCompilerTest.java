@@ -0,0 +1,89 @@
+package co.insecurity.security.policy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import co.insecurity.security.policy.assertion.CharacterRulesAssertion;
+import co.insecurity.security.policy.assertion.LengthAssertion;
+import co.insecurity.security.policy.assertion.NotLeakedAssertion;
+import co.insecurity.security.policy.assertion.PolicyAssertion;
+
+public class PolicyCompilerTest {
+	
+	private static PasswordPolicy compile(String definition)
+			throws IOException {
+		return PolicyCompiler.compile(new ByteArrayInputStream(
+				definition.getBytes(Charset.forName("UTF-8"))));
+	}
+	
+	@Test
+	public void thatDefinitionIsCompiled() throws IOException {
+		PasswordPolicy policy = compile(
+				"length.min = 8\n"
+				+ "classes.required = lower_case, digit\n"
+				+ "sequences.maxRepeat = 2\n"
+				+ "sequences.forbidden = qwerty, admin\n"
+				+ "leaked.dataFile = src/test/resources/testpasswords.dat\n"
+				+ "leaked.exactMatching = true\n"
+				+ "leaked.normalize = true\n");
+		Assert.assertTrue("Failure - short password should fail length",
+				policy.evaluate("ab1").contains(
+						LengthAssertion.INSUFFICIENT_LENGTH));
+		Set<PolicyAssertion.Result> results = policy.evaluate("zzzqwerty");
+		Assert.assertTrue("Failure - missing digit should be reported",
+				results.contains(CharacterRulesAssertion.MISSING_CHARACTER_CLASS));
+		Assert.assertEquals("Failure - leaked variant should fail last",
+				1, policy.findFirstViolation("P4ssw0rd2024"));
+		Assert.assertEquals("Failure - compliant password should pass",
+				PasswordPolicy.NO_VIOLATION,
+				policy.findFirstViolation("uf7kq2zr9"));
+	}
+	
+	@Test
+	public void thatCharacterRulesRunBeforeLookup() throws IOException {
+		PasswordPolicy policy = compile(
+				"leaked.dataFile = src/test/resources/testpasswords.dat\n"
+				+ "sequences.maxConsecutive = 3\n"
+				+ "length.max = 32\n");
+		Assert.assertEquals("Failure - character rules and lookup should be "
+				+ "compiled into two assertions",
+				2, policy.getAssertions(-1L).size());
+		Assert.assertTrue("Failure - character rules should run first",
+				policy.getAssertions(-1L).get(0)
+						instanceof CharacterRulesAssertion);
+		Assert.assertTrue("Failure - lookup should run last",
+				policy.getAssertions(-1L).get(1)
+						instanceof NotLeakedAssertion);
+	}
+	
+	@Test
+	public void thatLookupCanBeDisabled() throws IOException {
+		PasswordPolicy policy = compile(
+				"length.min = 4\nleaked.enabled = false\n");
+		Assert.assertEquals("Failure - only character rules should be compiled",
+				1, policy.getAssertions(-1L).size());
+		Assert.assertTrue("Failure - 'password' should pass without lookup",
+				policy.evaluate("password").contains(
+						PolicyAssertion.Result.SUCCESS));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void thatUnknownKeyIsRejected() throws IOException {
+		compile("length.minimum = 8\nleaked.enabled = false\n");
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void thatInvalidValueIsRejected() throws IOException {
+		compile("length.min = eight\nleaked.enabled = false\n");
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void thatUnknownClassIsRejected() throws IOException {
+		compile("classes.required = emoji\nleaked.enabled = false\n");
+	}
+}
\ No newline at end of file
@@ -2,8 +2,14 @@ package co.insecurity.security.policy;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -34,6 +40,25 @@ class SimplePasswordPolicy extends PasswordPolicy {
 		}
 	}
 }
+class SwappablePasswordPolicy extends PasswordPolicy {
+	
+	public SwappablePasswordPolicy(PolicyAssertion assertion) {
+		assertions = new LinkedHashSet<PolicyAssertion>();
+		assertions.add(assertion);
+	}
+	
+	public void replaceAssertions(PolicyAssertion assertion) {
+		Set<PolicyAssertion> replaced = new LinkedHashSet<PolicyAssertion>();
+		replaced.add(assertion);
+		assertions = replaced;
+	}
+	
+	public void swapAssertion(PolicyAssertion assertion) {
+		assertions.clear();
+		assertions.add(assertion);
+		invalidatePlan();
+	}
+}
 public class SimplePasswordPolicyTest {
 
 	private static SimplePasswordPolicy policy;
@@ -74,4 +99,103 @@ public class SimplePasswordPolicyTest {
 		Assert.assertTrue("Failure - password should fail minimum length assertion", 
 				violations.contains(LengthAssertion.INSUFFICIENT_LENGTH));
 	}
+	
+	@Test
+	public void thatBatchEvaluationMatchesEvaluate() {
+		List<String> passwords = new ArrayList<String>();
+		for (int i = 0; i < 10000; i++)
+			passwords.add((i % 3 == 0) ? "Password" : "98V*-++" + i);
+		passwords.add(null);
+		EvaluationResults results = policy.evaluateAll(passwords);
+		Assert.assertEquals("Failure - every password should be evaluated",
+				passwords.size(), results.size());
+		int compliant = 0;
+		for (int i = 0; i < passwords.size(); i++) {
+			if (PasswordPolicy.getViolations(
+					policy.evaluate(passwords.get(i))).isEmpty())
+				compliant++;
+			Assert.assertEquals("Failure - batch results should match evaluate()",
+					policy.evaluate(passwords.get(i)), results.getResults(i));
+			Assert.assertEquals("Failure - batch violations should match",
+					PasswordPolicy.getViolations(policy.evaluate(passwords.get(i))),
+					results.getViolations(i));
+		}
+		Assert.assertTrue("Failure - 'Password' should fail at least 3334 times",
+				results.getFailures(1).cardinality() >= 3334);
+		Assert.assertEquals("Failure - compliant count should match",
+				compliant, results.getNumCompliant());
+	}
+	
+	@Test
+	public void thatStreamsAndIteratorsCanBeEvaluated() {
+		List<String> passwords = Arrays.asList("password", "98V*-++", "uF7#kq!m2Zr9");
+		EvaluationResults fromStream = policy.evaluateAll(passwords.stream());
+		EvaluationResults fromIterator = policy.evaluateAll(passwords.iterator());
+		for (int i = 0; i < passwords.size(); i++) {
+			Assert.assertEquals("Failure - stream results should match",
+					policy.evaluate(passwords.get(i)), fromStream.getResults(i));
+			Assert.assertEquals("Failure - iterator results should match",
+					policy.evaluate(passwords.get(i)), fromIterator.getResults(i));
+		}
+		Assert.assertTrue("Failure - only the last password should comply",
+				!fromStream.isCompliant(0) && !fromStream.isCompliant(1)
+				&& fromStream.isCompliant(2));
+	}
+	
+	@Test
+	public void thatStreamIsEvaluatedWhileItIsRead() {
+		final AtomicLong verified = new AtomicLong();
+		final AtomicLong maxUnverified = new AtomicLong();
+		final int numPasswords = 4 * PasswordPolicy.BATCH_SIZE
+				* (2 * ForkJoinPool.getCommonPoolParallelism() + 2);
+		SwappablePasswordPolicy counting = new SwappablePasswordPolicy(
+				new PolicyAssertion() {
+			@Override
+			public Result verify(String password) {
+				verified.incrementAndGet();
+				return Result.SUCCESS;
+			}
+		});
+		Iterator<String> passwords = new Iterator<String>() {
+			private int read = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return read < numPasswords;
+			}
+			
+			@Override
+			public String next() {
+				read++;
+				long unverified = read - verified.get();
+				if (unverified > maxUnverified.get())
+					maxUnverified.set(unverified);
+				return "password";
+			}
+		};
+		EvaluationResults results = counting.evaluateAll(passwords);
+		Assert.assertEquals("Failure - every password should comply",
+				numPasswords, results.getNumCompliant());
+		Assert.assertTrue("Failure - passwords should be evaluated before the "
+				+ "iterator is exhausted, but " + maxUnverified.get()
+				+ " were read ahead", maxUnverified.get() < numPasswords / 2);
+	}
+	
+	@Test
+	public void thatReplacedAssertionsAreEvaluated() {
+		SwappablePasswordPolicy swappable = new SwappablePasswordPolicy(
+				new LengthAssertion(8, LengthAssertion.DISABLED));
+		Assert.assertEquals("Failure - 'abcd' should be too short",
+				0, swappable.findFirstViolation("abcd"));
+		swappable.replaceAssertions(
+				new LengthAssertion(2, LengthAssertion.DISABLED));
+		Assert.assertEquals("Failure - replaced set should be evaluated",
+				PasswordPolicy.NO_VIOLATION, swappable.findFirstViolation("abcd"));
+		swappable.swapAssertion(new LengthAssertion(8, LengthAssertion.DISABLED));
+		Assert.assertEquals("Failure - assertion swapped in place should be "
+				+ "evaluated", 0, swappable.findFirstViolation("abcd"));
+		Assert.assertTrue("Failure - evaluate() should use swapped assertion",
+				swappable.evaluate("abcd").contains(
+						LengthAssertion.INSUFFICIENT_LENGTH));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+package co.insecurity.security.policy.assertion;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import co.insecurity.security.policy.assertion.CharacterRulesAssertion.CharacterClass;
+
+public class CharacterRulesAssertionTest {
+	
+	private static CharacterRulesAssertion newRules() {
+		return new CharacterRulesAssertion.Builder()
+				.withMinLength(8)
+				.withMaxLength(64)
+				.withRequiredClasses(EnumSet.of(CharacterClass.LOWER_CASE,
+						CharacterClass.DIGIT))
+				.withMinClasses(3)
+				.withMaxRepeat(2)
+				.withMaxConsecutive(3)
+				.withForbiddenSequences(Arrays.asList("qwerty", "admin"))
+				.build();
+	}
+	
+	@Test
+	public void thatNullFails() {
+		Assert.assertEquals("Failure - result should be NULL_VALUE",
+				PolicyAssertion.Result.NULL_VALUE,
+				newRules().verify((String) null));
+	}
+	
+	@Test
+	public void thatCompliantPasswordPasses() {
+		CharacterRulesAssertion rules = newRules();
+		Assert.assertEquals("Failure - compliant password should pass",
+				PolicyAssertion.Result.SUCCESS, rules.verify("uF7#kq!m2Zr9"));
+		Assert.assertEquals("Failure - CharSequence should be read in place",
+				PolicyAssertion.Result.SUCCESS,
+				rules.verify(CharBuffer.wrap("uF7#kq!m2Zr9")));
+	}
+	
+	@Test
+	public void thatEachRuleIsChecked() {
+		CharacterRulesAssertion rules = newRules();
+		Assert.assertEquals("Failure - short password should fail",
+				LengthAssertion.INSUFFICIENT_LENGTH, rules.verify("aB3#"));
+		StringBuilder longPassword = new StringBuilder("aB3#");
+		for (int i = 0; i < 64; i++)
+			longPassword.append(i % 2 == 0 ? 'x' : 'z');
+		Assert.assertEquals("Failure - long password should fail",
+				LengthAssertion.EXCESSIVE_LENGTH, rules.verify(longPassword));
+		Assert.assertEquals("Failure - password without digit should fail",
+				CharacterRulesAssertion.MISSING_CHARACTER_CLASS,
+				rules.verify("uF#kq!mZr"));
+		Assert.assertEquals("Failure - password of two classes should fail",
+				CharacterRulesAssertion.MISSING_CHARACTER_CLASS,
+				rules.verify("uf7kqm2zr9"));
+		Assert.assertEquals("Failure - repeated characters should fail",
+				CharacterRulesAssertion.REPEATED_CHARACTERS,
+				rules.verify("uF7#kkk!m2"));
+		Assert.assertEquals("Failure - ascending run should fail",
+				CharacterRulesAssertion.CONSECUTIVE_CHARACTERS,
+				rules.verify("uF7#aBcD!m2"));
+		Assert.assertEquals("Failure - descending run should fail",
+				CharacterRulesAssertion.CONSECUTIVE_CHARACTERS,
+				rules.verify("uF#k9876!m"));
+		Assert.assertEquals("Failure - forbidden sequence should fail",
+				CharacterRulesAssertion.FORBIDDEN_SEQUENCE,
+				rules.verify("7#QwErTy!m"));
+	}
+	
+	@Test
+	public void thatFirstBrokenRuleIsReported() {
+		Assert.assertEquals("Failure - length should be reported first",
+				LengthAssertion.INSUFFICIENT_LENGTH,
+				newRules().verify("aaaa"));
+		Assert.assertEquals("Failure - classes should be reported before "
+				+ "forbidden sequences",
+				CharacterRulesAssertion.MISSING_CHARACTER_CLASS,
+				newRules().verify("adminadmin"));
+	}
+	
+	@Test
+	public void thatRunsUpToTheLimitPass() {
+		CharacterRulesAssertion rules = newRules();
+		Assert.assertEquals("Failure - run of 3 should pass",
+				PolicyAssertion.Result.SUCCESS, rules.verify("abc#7x9Zq"));
+		Assert.assertEquals("Failure - zigzag should not count as a run",
+				PolicyAssertion.Result.SUCCESS, rules.verify("abab#7Zq"));
+		Assert.assertEquals("Failure - repeat of 2 should pass",
+				PolicyAssertion.Result.SUCCESS, rules.verify("aa#7x9Zq"));
+	}
+	
+	@Test
+	public void thatSupplementaryCharactersAreCodePoints() {
+		CharacterRulesAssertion rules = new CharacterRulesAssertion.Builder()
+				.withMaxRepeat(1)
+				.withForbiddenSequences(Arrays.asList("\ud83d\ude00"))
+				.build();
+		Assert.assertEquals("Failure - surrogate pairs should not repeat",
+				PolicyAssertion.Result.SUCCESS,
+				rules.verify("\ud83d\ude01\ud83d\ude02"));
+		Assert.assertEquals("Failure - supplementary sequence should be found",
+				CharacterRulesAssertion.FORBIDDEN_SEQUENCE,
+				rules.verify("a\ud83d\ude00"));
+	}
+	
+	@Test
+	public void thatDisabledRulesAreSkipped() {
+		CharacterRulesAssertion rules =
+				new CharacterRulesAssertion.Builder().build();
+		Assert.assertEquals("Failure - no rule should be checked",
+				PolicyAssertion.Result.SUCCESS, rules.verify("aaaaabcdef"));
+		Assert.assertEquals("Failure - no sequences should be forbidden",
+				0, rules.getNumForbiddenSequences());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void thatMaxLengthBelowMinLengthIsRejected() {
+		new CharacterRulesAssertion.Builder()
+				.withMinLength(8).withMaxLength(4).build();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void thatTooManyClassesAreRejected() {
+		new CharacterRulesAssertion.Builder().withMinClasses(5).build();
+	}
+}
\ No newline at end of file
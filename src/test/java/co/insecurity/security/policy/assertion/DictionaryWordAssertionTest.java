@@ -0,0 +1,85 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DictionaryWordAssertionTest {
+	
+	private static DictionaryWordAssertion dictionaryPA;
+	
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	@BeforeClass
+	public static void setUpClass() throws IOException {
+		dictionaryPA = new DictionaryWordAssertion.Builder().build();
+	}
+	
+	@Test
+	public void thatDefaultsAreSet() {
+		Assert.assertTrue("Failure - default should ignore case",
+				dictionaryPA.getIgnoreCase());
+		Assert.assertTrue("Failure - default word list should be compiled",
+				dictionaryPA.getNumWords() > 0);
+	}
+	
+	@Test
+	public void thatEmbeddedWordIsRejected() {
+		Assert.assertEquals("Failure - result should be CONTAINS_DICTIONARY_WORD",
+				DictionaryWordAssertion.CONTAINS_DICTIONARY_WORD,
+				dictionaryPA.verify("Summer2024!"));
+		Assert.assertEquals("Failure - result should be NULL_VALUE",
+				PolicyAssertion.Result.NULL_VALUE,
+				dictionaryPA.verify((String) null));
+		Assert.assertEquals("Failure - result should be SUCCESS",
+				PolicyAssertion.Result.SUCCESS,
+				dictionaryPA.verify("uF7#kq!m2Zr9"));
+	}
+	
+	@Test
+	public void thatShortWordsAreIgnored() throws IOException {
+		DictionaryWordAssertion assertion = new DictionaryWordAssertion.Builder()
+				.withPasswordDataStream(new ByteArrayInputStream(
+						"cat\ndragon\n".getBytes(Charset.forName("UTF-8"))))
+				.build();
+		Assert.assertEquals("Failure - only 'dragon' should be compiled",
+				1, assertion.getNumWords());
+		Assert.assertTrue("Failure - 'cat' should be shorter than the minimum",
+				assertion.verify("concatenate9").isSuccess());
+		Assert.assertEquals("Failure - 'dragon' should be found",
+				DictionaryWordAssertion.CONTAINS_DICTIONARY_WORD,
+				assertion.verify("xDRAGONx"));
+	}
+	
+	@Test
+	public void thatAutomatonFileIsLoaded() throws IOException {
+		String automatonFile = new File(tmp.getRoot(), "words.pcac").getPath();
+		dictionaryPA.writeAutomaton(automatonFile);
+		DictionaryWordAssertion loaded = new DictionaryWordAssertion.Builder()
+				.withAutomatonFile(automatonFile)
+				.build();
+		Assert.assertEquals("Failure - loaded automaton should have the same words",
+				dictionaryPA.getNumWords(), loaded.getNumWords());
+		Assert.assertEquals("Failure - result should be CONTAINS_DICTIONARY_WORD",
+				DictionaryWordAssertion.CONTAINS_DICTIONARY_WORD,
+				loaded.verify("Summer2024!"));
+	}
+	
+	@Test(expected = IOException.class)
+	public void thatCaseMismatchIsRejected() throws IOException {
+		String automatonFile = new File(tmp.getRoot(), "words.pcac").getPath();
+		dictionaryPA.writeAutomaton(automatonFile);
+		new DictionaryWordAssertion.Builder()
+				.withAutomatonFile(automatonFile)
+				.withIgnoreCase(false)
+				.build();
+	}
+}
\ No newline at end of file
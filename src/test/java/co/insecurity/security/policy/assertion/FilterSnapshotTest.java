@@ -0,0 +1,109 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FilterSnapshotTest {
+	
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	@Test
+	public void thatSnapshotRoundTrips() throws IOException {
+		NotLeakedAssertion original = new NotLeakedAssertion.Builder()
+				.withIgnoreCase(true)
+				.build();
+		String snapshot = new File(tmp.getRoot(), "passwords.snap").getPath();
+		original.writeSnapshot(snapshot);
+		
+		NotLeakedAssertion loaded = new NotLeakedAssertion.Builder()
+				.withIgnoreCase(true)
+				.withSnapshotFile(snapshot)
+				.build();
+		Assert.assertEquals(
+				"Failure - loaded snapshot should have the same password count",
+				original.getNumPasswords(),
+				loaded.getNumPasswords());
+		Assert.assertTrue(
+				"Failure - loaded snapshot should ignore case",
+				loaded.getIgnoreCase());
+		Assert.assertEquals(
+				"Failure - loaded snapshot should reject 'PASSWORD'",
+				NotLeakedAssertion.LEAKED_PASSWORD,
+				loaded.verify("PASSWORD"));
+		Assert.assertTrue(
+				"Failure - loaded snapshot should accept an uncommon password",
+				loaded.verify("uF7#kq!m2Zr9").isSuccess());
+	}
+	
+	@Test
+	public void thatMismatchedParametersAreRejected() throws IOException {
+		String snapshot = new File(tmp.getRoot(), "passwords.snap").getPath();
+		new NotLeakedAssertion.Builder().build().writeSnapshot(snapshot);
+		try {
+			new NotLeakedAssertion.Builder()
+					.withFalsePositiveProbability(0.01)
+					.withSnapshotFile(snapshot)
+					.build();
+			Assert.fail("Failure - snapshot with a different FPP should be rejected");
+		} catch (IOException expected) { }
+		try {
+			new NotLeakedAssertion.Builder()
+					.withIgnoreCase(true)
+					.withSnapshotFile(snapshot)
+					.build();
+			Assert.fail("Failure - snapshot with a different ignoreCase should "
+					+ "be rejected");
+		} catch (IOException expected) { }
+	}
+	
+	@Test
+	public void thatStaleSnapshotIsRejected() throws IOException {
+		File dataFile = tmp.newFile("words.dat");
+		Files.write(dataFile.toPath(), Arrays.asList("password", "dog"),
+				Charset.forName("UTF-8"));
+		String snapshot = new File(tmp.getRoot(), "words.snap").getPath();
+		new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(dataFile.getPath())
+				.build().writeSnapshot(snapshot);
+		
+		Files.write(dataFile.toPath(), Arrays.asList("password", "dog", "cat"),
+				Charset.forName("UTF-8"));
+		try {
+			new NotLeakedAssertion.Builder()
+					.withPasswordDataFile(dataFile.getPath())
+					.withSnapshotFile(snapshot)
+					.build();
+			Assert.fail("Failure - snapshot of a modified data file should be "
+					+ "rejected");
+		} catch (IOException expected) { }
+	}
+	
+	@Test
+	public void thatCorruptSnapshotIsRejected() throws IOException {
+		File snapshot = new File(tmp.getRoot(), "passwords.snap");
+		new NotLeakedAssertion.Builder().build().writeSnapshot(snapshot.getPath());
+		try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+			long offset = file.length() / 2;
+			file.seek(offset);
+			int b = file.read();
+			file.seek(offset);
+			file.write(~b);
+		}
+		try {
+			new NotLeakedAssertion.Builder()
+					.withSnapshotFile(snapshot.getPath())
+					.build();
+			Assert.fail("Failure - corrupt snapshot should be rejected");
+		} catch (IOException expected) { }
+	}
+}
\ No newline at end of file
@@ -0,0 +1,186 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class GuessabilityAssertionTest {
+	
+	private static GuessabilityAssertion guessabilityPA;
+	
+	@BeforeClass
+	public static void setUpClass() throws IOException {
+		guessabilityPA = new GuessabilityAssertion.Builder().build();
+	}
+	
+	@AfterClass
+	public static void tearDownClass() {
+		guessabilityPA = null;
+	}
+	
+	@Test
+	public void thatDefaultsAreSet() {
+		Assert.assertEquals("Failure - default minimum guesses should be 1e8",
+				GuessabilityAssertion.DEFAULT_MIN_GUESSES,
+				guessabilityPA.getMinGuesses(), 0.0);
+		Assert.assertTrue("Failure - default word list should be ranked",
+				guessabilityPA.getNumWords() > 0);
+	}
+	
+	@Test
+	public void thatNullFails() {
+		Assert.assertEquals("Failure - result should be NULL_VALUE",
+				PolicyAssertion.Result.NULL_VALUE,
+				guessabilityPA.verify((String) null));
+	}
+	
+	@Test
+	public void thatPatternsAreGuessable() {
+		for (String password : new String[] {
+				"password", "Password1", "p@ssw0rd", "qwertyuiop", "1qaz2wsx",
+				"abcdefgh", "aaaaaaaaaaaa", "19841984", "13.04.1987",
+				"hello", "he11o", "iloveyou" }) {
+			Assert.assertEquals("Failure - " + password
+					+ " should be too guessable",
+					GuessabilityAssertion.TOO_GUESSABLE,
+					guessabilityPA.verify(password));
+		}
+	}
+	
+	@Test
+	public void thatStrongPasswordsPass() {
+		for (String password : new String[] {
+				"uF7#kq!m2Zr9", "Tr0ub4dor&3", "correcthorsebatterystaple" }) {
+			Assert.assertTrue("Failure - " + password + " should pass",
+					guessabilityPA.verify(password).isSuccess());
+		}
+	}
+	
+	@Test
+	public void thatPatternsNeedFewerGuessesThanRandomCharacters() {
+		Assert.assertTrue("Failure - keyboard pattern should need fewer "
+				+ "guesses than random characters of the same length",
+				guessabilityPA.estimateGuesses("qwerty")
+				< guessabilityPA.estimateGuesses("qxjrvb"));
+		Assert.assertTrue("Failure - dictionary word should need fewer "
+				+ "guesses than random characters of the same length",
+				guessabilityPA.estimateGuesses("summer")
+				< guessabilityPA.estimateGuesses("smrume"));
+		Assert.assertTrue("Failure - leet variant should need more guesses "
+				+ "than the word, but fewer than random characters",
+				guessabilityPA.estimateGuesses("summer")
+				< guessabilityPA.estimateGuesses("5umm3r")
+				&& guessabilityPA.estimateGuesses("5umm3r")
+				< guessabilityPA.estimateGuesses("smrume"));
+		Assert.assertEquals("Failure - empty password should need one guess",
+				1.0, guessabilityPA.estimateGuesses(""), 0.0);
+	}
+	
+	@Test
+	public void thatWordsAreRankedByOrder() throws IOException {
+		GuessabilityAssertion assertion = new GuessabilityAssertion.Builder()
+				.withPasswordDataStream(new ByteArrayInputStream(
+						"zebra\nlantern\n".getBytes(Charset.forName("UTF-8"))))
+				.withMinGuesses(1e6)
+				.build();
+		Assert.assertEquals("Failure - both words should be ranked",
+				2, assertion.getNumWords());
+		Assert.assertTrue("Failure - first word should rank above second",
+				assertion.estimateGuesses("zebra")
+				< assertion.estimateGuesses("lantern"));
+		Assert.assertTrue("Failure - 'lantern' should not pass 1e6 guesses",
+				!assertion.verify("lantern").isSuccess());
+	}
+	
+	@Test
+	public void thatLongPasswordsAreEstimated() {
+		StringBuilder password = new StringBuilder();
+		for (int i = 0; i < 100; i++)
+			password.append('a');
+		Assert.assertTrue("Failure - long repeat should be estimated",
+				guessabilityPA.estimateGuesses(password) >= 1);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void thatMinGuessesBelowOneIsRejected() throws IOException {
+		new GuessabilityAssertion.Builder().withMinGuesses(0.5).build();
+	}
+	
+	@Test
+	public void thatEstimationDoesNotAllocate() {
+		java.lang.management.ThreadMXBean bean =
+				ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+		
+		CharBuffer[] passwords = {
+			CharBuffer.wrap("Password1"), CharBuffer.wrap("13.04.1987"),
+			CharBuffer.wrap("uF7#kq!m2Zr9"), CharBuffer.wrap("qwertyuiop")
+		};
+		long sink = 0;
+		for (int i = 0; i < 100000; i++)
+			sink += guessabilityPA.verify(passwords[i % passwords.length])
+					.isSuccess() ? 1 : 0;
+		int calls = 50000;
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < calls; i++)
+			sink += guessabilityPA.verify(passwords[i % passwords.length])
+					.isSuccess() ? 1 : 0;
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		Assert.assertTrue("Failure - sink should be used", sink != 42);
+		Assert.assertTrue("Failure - estimation should not allocate, but "
+				+ "allocated " + allocated + " bytes for " + calls + " calls",
+				allocated < calls / 10);
+	}
+	
+	@Test
+	public void thatNewThreadsReusePooledScratch() throws Exception {
+		java.lang.management.ThreadMXBean bean =
+				ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		final com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		final CharBuffer password = CharBuffer.wrap("Password1");
+		guessabilityPA.estimateGuesses(password);
+		final long[] allocated = new long[1];
+		for (int i = 0; i < 10; i++) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					long id = Thread.currentThread().getId();
+					long before = threads.getThreadAllocatedBytes(id);
+					guessabilityPA.estimateGuesses(password);
+					allocated[0] = Math.max(allocated[0],
+							threads.getThreadAllocatedBytes(id) - before);
+				}
+			});
+			thread.start();
+			thread.join();
+		}
+		Assert.assertTrue("Failure - a new thread should not allocate scratch "
+				+ "arrays, but allocated " + allocated[0] + " bytes",
+				allocated[0] < 8192);
+	}
+	
+	@Test
+	public void thatYearsAndDatesShareRange() {
+		Assert.assertTrue("Failure - '1850' should be guessed as a year",
+				guessabilityPA.estimateGuesses("1850") < 1000);
+		Assert.assertTrue("Failure - '2077' should not be guessed as a year",
+				guessabilityPA.estimateGuesses("2077") > 1000);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import co.insecurity.security.policy.index.FingerprintSetIndex;
+import co.insecurity.security.policy.index.IndexType;
+
+public class IndexRegistryTest {
+	
+	private static final String DATA_FILE = "src/test/resources/testpasswords.dat";
+	
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	private static NotLeakedAssertion build(IndexRegistry registry,
+			boolean ignoreCase) throws IOException {
+		return new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(DATA_FILE)
+				.withIgnoreCase(ignoreCase)
+				.withIndexRegistry(registry)
+				.build();
+	}
+	
+	@Test
+	public void thatIdenticalBuildsShareIndex() throws IOException {
+		IndexRegistry registry = new IndexRegistry();
+		NotLeakedAssertion first = build(registry, false);
+		NotLeakedAssertion second = build(registry, false);
+		Assert.assertSame("Failure - identical builds should share the index",
+				first.getPasswordIndex(), second.getPasswordIndex());
+		Assert.assertEquals("Failure - password counts should match",
+				first.getNumPasswords(), second.getNumPasswords());
+		Assert.assertEquals("Failure - one index should be registered",
+				1, registry.size());
+	}
+	
+	@Test
+	public void thatDifferentBuildsDoNotShareIndex() throws IOException {
+		IndexRegistry registry = new IndexRegistry();
+		NotLeakedAssertion caseSensitive = build(registry, false);
+		NotLeakedAssertion caseInsensitive = build(registry, true);
+		Assert.assertNotSame("Failure - different builds should not share",
+				caseSensitive.getPasswordIndex(),
+				caseInsensitive.getPasswordIndex());
+		Assert.assertNotSame("Failure - unregistered builds should not share",
+				caseSensitive.getPasswordIndex(),
+				build(null, false).getPasswordIndex());
+	}
+	
+	@Test
+	public void thatMutableIndexIsNotShared() throws IOException {
+		IndexRegistry registry = new IndexRegistry();
+		NotLeakedAssertion.Builder builder = new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(DATA_FILE)
+				.withIndexType(IndexType.COUNTING_BLOOM_FILTER)
+				.withIndexRegistry(registry);
+		Assert.assertNotSame("Failure - counting filters should not be shared",
+				builder.build().getPasswordIndex(),
+				builder.build().getPasswordIndex());
+		Assert.assertEquals("Failure - no index should be registered",
+				0, registry.size());
+	}
+	
+	@Test
+	public void thatModifiedDataFileIsRebuilt() throws IOException {
+		Path dataFile = tmp.newFile("passwords.txt").toPath();
+		try (Writer writer = Files.newBufferedWriter(dataFile,
+				Charset.forName("UTF-8"))) {
+			writer.write("password\n");
+		}
+		IndexRegistry registry = new IndexRegistry();
+		NotLeakedAssertion.Builder builder = new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(dataFile.toString())
+				.withIndexRegistry(registry);
+		NotLeakedAssertion before = builder.build();
+		try (Writer writer = Files.newBufferedWriter(dataFile,
+				Charset.forName("UTF-8"))) {
+			writer.write("password\nletmein\n");
+		}
+		Files.setLastModifiedTime(dataFile, FileTime.fromMillis(
+				Files.getLastModifiedTime(dataFile).toMillis() + 1000));
+		NotLeakedAssertion after = builder.build();
+		Assert.assertNotSame("Failure - modified data file should be rebuilt",
+				before.getPasswordIndex(), after.getPasswordIndex());
+		Assert.assertEquals("Failure - result should be LEAKED_PASSWORD",
+				NotLeakedAssertion.LEAKED_PASSWORD, after.verify("letmein"));
+	}
+	
+	@Test
+	public void thatConcurrentBuildsAreCoalesced() throws Exception {
+		final IndexRegistry registry = new IndexRegistry();
+		final AtomicInteger loads = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final IndexRegistry.Loader loader = new IndexRegistry.Loader() {
+			@Override
+			public IndexRegistry.Entry load() throws IOException {
+				loads.incrementAndGet();
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				return new IndexRegistry.Entry(
+						new FingerprintSetIndex.Builder(1).build(), 0);
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<IndexRegistry.Entry>> entries =
+					new ArrayList<Future<IndexRegistry.Entry>>();
+			for (int i = 0; i < 8; i++)
+				entries.add(executor.submit(new Callable<IndexRegistry.Entry>() {
+					@Override
+					public IndexRegistry.Entry call() throws Exception {
+						start.await();
+						return registry.getOrLoad("key", loader);
+					}
+				}));
+			start.countDown();
+			IndexRegistry.Entry first = entries.get(0).get();
+			for (Future<IndexRegistry.Entry> entry : entries)
+				Assert.assertSame("Failure - concurrent builds should share",
+						first.index, entry.get().index);
+			Assert.assertEquals("Failure - index should be built once",
+					1, loads.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void thatFailedBuildIsNotRegistered() throws IOException {
+		IndexRegistry registry = new IndexRegistry();
+		try {
+			registry.getOrLoad("key", new IndexRegistry.Loader() {
+				@Override
+				public IndexRegistry.Entry load() throws IOException {
+					throw new IOException("Expected failure");
+				}
+			});
+			Assert.fail("Failure - build failure should be thrown");
+		} catch (IOException e) {
+			Assert.assertEquals("Failure - no index should be registered",
+					0, registry.size());
+		}
+	}
+}
\ No newline at end of file
@@ -1,5 +1,7 @@
 package co.insecurity.security.policy.assertion;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -102,4 +104,32 @@ public class LengthAssertionTest {
 				LengthAssertion.EXCESSIVE_LENGTH,
 				result);
 	}
+	
+	@Test
+	public void thatOverloadsMatchStringLength() {
+		LengthAssertion lengthPA = new LengthAssertion(4, 6);
+		Charset utf8 = Charset.forName("UTF-8");
+		String[] passwords = {"", "abc", "abcd", "\u00e4\u00f6\u00fc\u00df", 
+				"\u5bc6\u7801\u5bc6\u7801\u5bc6\u7801", "ab\ud83d\udd11cd", 
+				"abc\ud83d\udd11cd"};
+		for (String password : passwords) {
+			PolicyAssertion.Result expected = lengthPA.verify(password);
+			Assert.assertEquals("Failure - CharSequence result should match for "
+					+ password, expected, 
+					lengthPA.verify(new StringBuilder(password)));
+			Assert.assertEquals("Failure - char[] result should match for "
+					+ password, expected, 
+					lengthPA.verifyChars(password.toCharArray()));
+			ByteBuffer direct = ByteBuffer.allocateDirect(32);
+			direct.put(password.getBytes(utf8)).flip();
+			Assert.assertEquals("Failure - UTF-8 result should match for "
+					+ password, expected, lengthPA.verifyUtf8(direct));
+		}
+		byte[] malformed = {'a', 'b', (byte) 0xE2, 'c'};
+		Assert.assertEquals("Failure - malformed UTF-8 should be decoded",
+				lengthPA.verify(new String(malformed, utf8)),
+				lengthPA.verifyUtf8(malformed, 0, malformed.length));
+		Assert.assertEquals("Failure - null char[] should fail",
+				PolicyAssertion.Result.NULL_VALUE, lengthPA.verifyChars(null));
+	}
 }
\ No newline at end of file
@@ -1,11 +1,36 @@
 package co.insecurity.security.policy.assertion;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import co.insecurity.security.policy.PasswordPolicy;
+import co.insecurity.security.policy.index.IndexType;
+import co.insecurity.security.policy.index.MembershipIndex;
+import co.insecurity.security.policy.index.PasswordHashFile;
 
 public class NotLeakedAssertionTest {
 	
@@ -107,4 +132,513 @@ public class NotLeakedAssertionTest {
 				"Failure - filter should not contain 'cat'",
 				customDataAssertion.verify("cat").isSuccess());
 	}
+	
+	@Test
+	public void thatSinglePassIngestionFunctions() throws IOException {
+		NotLeakedAssertion singlePassAssertion = new NotLeakedAssertion
+				.Builder().withSinglePassIngestion(true)
+				.build();
+		Assert.assertEquals(
+				"Failure - single pass should load the same passwords as two passes",
+				notLeakedPA.getNumPasswords(),
+				singlePassAssertion.getNumPasswords(),
+				notLeakedPA.getNumPasswords() / 100);
+		Assert.assertEquals("Failure - result should be LEAKED_PASSWORD", 
+				NotLeakedAssertion.LEAKED_PASSWORD,
+				singlePassAssertion.verify("password"));
+	}
+	
+	@Test
+	public void thatPasswordDataStreamFunctions() throws IOException {
+		byte[] data = "password\ndog\nDOG\ni should be ignored\n"
+				.getBytes("UTF-8");
+		NotLeakedAssertion streamAssertion = new NotLeakedAssertion
+				.Builder().withMaxNumPasswords(2)
+				.withIgnoreCase(true)
+				.withPasswordDataStream(new ByteArrayInputStream(data))
+				.build();
+		Assert.assertEquals(
+				"Failure - should have 2 passwords loaded into the filter",
+				2,
+				streamAssertion.getNumPasswords());
+		Assert.assertFalse(
+				"Failure - filter should contain 'PASSWORD'",
+				streamAssertion.verify("PASSWORD").isSuccess());
+		Assert.assertFalse(
+				"Failure - filter should contain 'dog'",
+				streamAssertion.verify("dog").isSuccess());
+		Assert.assertTrue(
+				"Failure - filter should not contain 'i should be ignored'",
+				streamAssertion.verify("i should be ignored").isSuccess());
+	}
+	
+	@Test
+	public void thatOffHeapIndexFunctions() throws IOException {
+		NotLeakedAssertion offHeapAssertion = new NotLeakedAssertion
+				.Builder().withIndexType(IndexType.OFF_HEAP_BLOOM_FILTER)
+				.withIgnoreCase(true)
+				.build();
+		Assert.assertEquals("Failure - index type should be OFF_HEAP_BLOOM_FILTER",
+				IndexType.OFF_HEAP_BLOOM_FILTER,
+				offHeapAssertion.getIndexType());
+		Assert.assertEquals(
+				"Failure - off-heap index should load the same passwords",
+				notLeakedPA.getNumPasswords(),
+				offHeapAssertion.getNumPasswords(),
+				notLeakedPA.getNumPasswords() / 100);
+		Assert.assertEquals("Failure - result should be LEAKED_PASSWORD", 
+				NotLeakedAssertion.LEAKED_PASSWORD,
+				offHeapAssertion.verify("PASSWORD"));
+	}
+	
+	@Test
+	public void thatEachIndexTypeFunctions() throws IOException {
+		for (IndexType type : IndexType.values()) {
+			NotLeakedAssertion assertion = new NotLeakedAssertion
+					.Builder().withIndexType(type)
+					.withPasswordDataFile("src/test/resources/testpasswords.dat")
+					.build();
+			Assert.assertFalse(
+					"Failure - " + type + " should contain 'password'",
+					assertion.verify("password").isSuccess());
+			Assert.assertFalse(
+					"Failure - " + type + " should contain 'DOG'",
+					assertion.verify("DOG").isSuccess());
+			Assert.assertTrue(
+					"Failure - " + type + " should not contain 'cat'",
+					assertion.verify("cat").isSuccess());
+		}
+	}
+	
+	@Test
+	public void thatCustomIndexFactoryIsUsed() throws IOException {
+		final Set<String> added = new HashSet<String>();
+		MembershipIndex.Factory factory = new MembershipIndex.Factory() {
+			@Override
+			public MembershipIndex.Builder newBuilder(long expectedPasswords, 
+					double fpProbability) {
+				return new MembershipIndex.Builder() {
+					@Override
+					public boolean add(String password) {
+						return added.add(password);
+					}
+					@Override
+					public MembershipIndex build() {
+						return new MembershipIndex() {
+							@Override
+							public boolean contains(String password) {
+								return added.contains(password);
+							}
+						};
+					}
+				};
+			}
+		};
+		NotLeakedAssertion assertion = new NotLeakedAssertion.Builder()
+				.withIndexFactory(factory)
+				.withPasswordDataFile("src/test/resources/testpasswords.dat")
+				.build();
+		Assert.assertNull("Failure - custom index should have no IndexType",
+				assertion.getIndexType());
+		Assert.assertEquals("Failure - custom index should hold 4 passwords",
+				4, assertion.getNumPasswords());
+		Assert.assertFalse("Failure - custom index should contain 'dog'",
+				assertion.verify("dog").isSuccess());
+		Assert.assertTrue("Failure - custom index should not contain 'cat'",
+				assertion.verify("cat").isSuccess());
+	}
+	
+	@Test
+	public void thatExactMatchingRejectsFilterFalsePositives() throws IOException {
+		NotLeakedAssertion approximate = new NotLeakedAssertion.Builder()
+				.withFalsePositiveProbability(0.2)
+				.build();
+		NotLeakedAssertion exact = new NotLeakedAssertion.Builder()
+				.withFalsePositiveProbability(0.2)
+				.withExactMatching(true)
+				.build();
+		Assert.assertTrue("Failure - exact matching should be enabled",
+				exact.getExactMatching());
+		Assert.assertEquals("Failure - result should be LEAKED_PASSWORD", 
+				NotLeakedAssertion.LEAKED_PASSWORD,
+				exact.verify("password"));
+		int approximateFailures = 0;
+		int exactFailures = 0;
+		for (int i = 0; i < 10000; i++) {
+			String password = "uF7#kq!m2Zr9-" + i;
+			if (!approximate.verify(password).isSuccess())
+				approximateFailures++;
+			if (!exact.verify(password).isSuccess())
+				exactFailures++;
+		}
+		Assert.assertTrue("Failure - approximate filter should have false positives",
+				approximateFailures > 0);
+		Assert.assertEquals("Failure - exact matching should have no false positives",
+				0, exactFailures);
+	}
+	
+	@Test
+	public void thatBufferOverloadsMatchEachIndexType() throws IOException {
+		String[] passwords = {"password", "DOG", "Dog", "cat", 
+				"P\u00c4SSWORD", "\u0130stanbul"};
+		for (IndexType type : IndexType.values()) {
+			NotLeakedAssertion assertion = new NotLeakedAssertion
+					.Builder().withIndexType(type)
+					.withPasswordDataFile("src/test/resources/testpasswords.dat")
+					.build();
+			for (String password : passwords) {
+				byte[] bytes = password.getBytes(Charset.forName("UTF-8"));
+				PolicyAssertion.Result expected = assertion.verify(password);
+				Assert.assertEquals("Failure - " + type 
+						+ " char[] result should match for " + password,
+						expected, assertion.verifyChars(password.toCharArray()));
+				Assert.assertEquals("Failure - " + type 
+						+ " UTF-8 result should match for " + password,
+						expected, assertion.verifyUtf8(bytes, 0, bytes.length));
+			}
+		}
+	}
+	
+	private static ByteArrayInputStream stream(String wordList) {
+		return new ByteArrayInputStream(
+				wordList.getBytes(Charset.forName("UTF-8")));
+	}
+	
+	@Test
+	public void thatHotTierAnswersMostCommonPasswords() throws IOException {
+		NotLeakedAssertion assertion = new NotLeakedAssertion.Builder()
+				.withPasswordDataStream(stream("123456\npassword\nqwerty\n"
+						+ "letmein\nmonkey\n"))
+				.withHotTier(2)
+				.build();
+		Assert.assertEquals("Failure - '123456' should be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("123456"));
+		Assert.assertEquals("Failure - 'monkey' should be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("monkey"));
+		Assert.assertTrue("Failure - 'uF7#kq!m2Zr9' should not be leaked",
+				assertion.verify("uF7#kq!m2Zr9").isSuccess());
+		Assert.assertEquals("Failure - '123456' should be a hot tier hit",
+				1, assertion.getTieredIndex().getHotHits());
+		Assert.assertEquals("Failure - 'monkey' should be a cold index hit",
+				1, assertion.getTieredIndex().getColdHits());
+		Assert.assertNull("Failure - untiered assertion should have no tiers",
+				notLeakedPA.getTieredIndex());
+	}
+	
+	@Test
+	public void thatFrequencyCountsRankHotTier() throws IOException {
+		NotLeakedAssertion assertion = new NotLeakedAssertion.Builder()
+				.withPasswordDataStream(stream("      3 rare\n"
+						+ "   1000 common\n     12 with space\n"))
+				.withFrequencyCounts(true)
+				.withIgnoreCase(true)
+				.withHotTier(1)
+				.build();
+		Assert.assertEquals("Failure - 'COMMON' should be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("COMMON"));
+		Assert.assertEquals("Failure - 'with space' should be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("with space"));
+		Assert.assertTrue("Failure - counts should not be part of passwords",
+				assertion.verify("3 rare").isSuccess());
+		Assert.assertEquals("Failure - 'COMMON' should be a hot tier hit",
+				1, assertion.getTieredIndex().getHotHits());
+		Assert.assertEquals("Failure - 3 passwords should be counted",
+				3, assertion.getNumPasswords());
+	}
+	
+	@Test
+	public void thatCaseVariantsShareHotTierSlot() throws IOException {
+		NotLeakedAssertion assertion = new NotLeakedAssertion.Builder()
+				.withPasswordDataStream(stream("    500 Password\n"
+						+ "    400 PASSWORD\n    300 password\n"
+						+ "    200 letmein\n    200 letmein\n      5 rare\n"))
+				.withFrequencyCounts(true)
+				.withIgnoreCase(true)
+				.withHotTier(2)
+				.build();
+		Assert.assertEquals("Failure - 'password' should be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("password"));
+		Assert.assertEquals("Failure - 'letmein' should be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("letmein"));
+		Assert.assertEquals("Failure - 'rare' should be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("rare"));
+		Assert.assertEquals("Failure - only 'rare' should miss the hot tier",
+				2, assertion.getTieredIndex().getHotHits());
+		Assert.assertEquals("Failure - 'rare' should be a cold index hit",
+				1, assertion.getTieredIndex().getColdHits());
+	}
+	
+	@Test(expected = IOException.class)
+	public void thatMissingFrequencyCountIsRejected() throws IOException {
+		new NotLeakedAssertion.Builder()
+				.withPasswordDataStream(stream("   10 counted\nuncounted\n"))
+				.withFrequencyCounts(true)
+				.build();
+	}
+	
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	@Test
+	public void thatCompressedDataFileIsDecompressed() throws IOException {
+		Path wordList = tmp.getRoot().toPath().resolve("words.txt.gz");
+		try (OutputStream out = new GZIPOutputStream(
+				Files.newOutputStream(wordList))) {
+			Files.copy(Paths.get("src/test/resources/testpasswords.dat"), out);
+		}
+		NotLeakedAssertion plain = new NotLeakedAssertion.Builder()
+				.withPasswordDataFile("src/test/resources/testpasswords.dat")
+				.build();
+		NotLeakedAssertion assertion = new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(wordList.toString())
+				.withParallelism(4)
+				.build();
+		Assert.assertEquals("Failure - compressed list should be fully loaded",
+				plain.getNumPasswords(), assertion.getNumPasswords());
+		Assert.assertEquals("Failure - result should be LEAKED_PASSWORD", 
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("password"));
+	}
+	
+	@Test
+	public void thatHashFileIsLoaded() throws IOException {
+		Path hashFile = tmp.getRoot().toPath().resolve("passwords.hashes");
+		PasswordHashFile.convert(Paths.get("src/test/resources/testpasswords.dat"), 
+				hashFile, true, false);
+		for (IndexType type : new IndexType[] {IndexType.BLOCKED_BLOOM_FILTER, 
+				IndexType.BINARY_FUSE_FILTER}) {
+			NotLeakedAssertion plain = new NotLeakedAssertion.Builder()
+					.withPasswordDataFile("src/test/resources/testpasswords.dat")
+					.withIgnoreCase(true)
+					.withIndexType(type)
+					.withExactMatching(true)
+					.build();
+			NotLeakedAssertion assertion = new NotLeakedAssertion.Builder()
+					.withPasswordDataFile(hashFile.toString())
+					.withIgnoreCase(true)
+					.withIndexType(type)
+					.withExactMatching(true)
+					.withHotTier(2)
+					.build();
+			Assert.assertEquals("Failure - " + type 
+					+ " should load every hash",
+					plain.getNumPasswords(), assertion.getNumPasswords());
+			Assert.assertEquals("Failure - 'PASSWORD' should be leaked", 
+					NotLeakedAssertion.LEAKED_PASSWORD, 
+					assertion.verify("PASSWORD"));
+			Assert.assertTrue("Failure - 'uF7#kq!m2Zr9' should not be leaked",
+					assertion.verify("uF7#kq!m2Zr9").isSuccess());
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void thatHashFileCaseMismatchIsRejected() throws IOException {
+		Path hashFile = tmp.getRoot().toPath().resolve("passwords.hashes");
+		PasswordHashFile.convert(Paths.get("src/test/resources/testpasswords.dat"), 
+				hashFile, true, false);
+		new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(hashFile.toString())
+				.withIndexType(IndexType.BLOCKED_BLOOM_FILTER)
+				.build();
+	}
+	
+	@Test
+	public void thatSharedFilterIsPublishedAndMapped() throws IOException {
+		String filterFile = tmp.getRoot().toPath().resolve("shared.filter")
+				.toString();
+		NotLeakedAssertion publisher = new NotLeakedAssertion.Builder()
+				.withPasswordDataFile("src/test/resources/testpasswords.dat")
+				.withSharedFilterFile(filterFile)
+				.build();
+		Assert.assertTrue("Failure - shared filter should be published",
+				Files.exists(Paths.get(filterFile)));
+		NotLeakedAssertion consumer = new NotLeakedAssertion.Builder()
+				.withSharedFilterFile(filterFile)
+				.build();
+		Assert.assertEquals("Failure - consumer should map the published filter",
+				publisher.getNumPasswords(), consumer.getNumPasswords());
+		Assert.assertEquals("Failure - result should be LEAKED_PASSWORD", 
+				NotLeakedAssertion.LEAKED_PASSWORD, consumer.verify("password"));
+		Assert.assertTrue("Failure - 'uF7#kq!m2Zr9' should not be leaked",
+				consumer.verify("uF7#kq!m2Zr9").isSuccess());
+	}
+	
+	@Test
+	public void thatConcurrentBuildersShareFilter() 
+			throws Exception {
+		Path wordList = tmp.getRoot().toPath().resolve("words.txt");
+		StringBuilder words = new StringBuilder();
+		for (int i = 0; i < 200000; i++)
+			words.append("word").append(i).append('\n');
+		Files.write(wordList, words.toString().getBytes(
+				Charset.forName("UTF-8")));
+		final String dataFile = wordList.toString();
+		final String filterFile = tmp.getRoot().toPath()
+				.resolve("shared.filter").toString();
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService builders = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<NotLeakedAssertion>> built = 
+					new ArrayList<Future<NotLeakedAssertion>>();
+			for (int i = 0; i < 4; i++) {
+				built.add(builders.submit(new Callable<NotLeakedAssertion>() {
+					@Override
+					public NotLeakedAssertion call() throws Exception {
+						start.await();
+						return new NotLeakedAssertion.Builder()
+								.withPasswordDataFile(dataFile)
+								.withSharedFilterFile(filterFile)
+								.build();
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<NotLeakedAssertion> assertion : built)
+				Assert.assertEquals("Failure - every builder should map the "
+						+ "published filter", 
+						NotLeakedAssertion.LEAKED_PASSWORD, 
+						assertion.get().verify("word123"));
+		} finally {
+			builders.shutdown();
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void thatMismatchedSharedFilterIsRejected() throws IOException {
+		String filterFile = tmp.getRoot().toPath().resolve("shared.filter")
+				.toString();
+		new NotLeakedAssertion.Builder()
+				.withPasswordDataFile("src/test/resources/testpasswords.dat")
+				.withSharedFilterFile(filterFile)
+				.build();
+		new NotLeakedAssertion.Builder()
+				.withSharedFilterFile(filterFile)
+				.withIgnoreCase(true)
+				.build();
+	}
+	
+	@Test
+	public void thatNormalizerCatchesVariants() throws IOException {
+		Path wordList = tmp.getRoot().toPath().resolve("words.txt");
+		Files.write(wordList, "Password\nsummer\n".getBytes("UTF-8"));
+		for (IndexType type : new IndexType[] { 
+				IndexType.BLOOM_FILTER, IndexType.BINARY_FUSE_FILTER }) {
+			NotLeakedAssertion assertion = new NotLeakedAssertion.Builder()
+					.withPasswordDataFile(wordList.toString())
+					.withIndexType(type)
+					.withSinglePassIngestion(type == IndexType.BLOOM_FILTER)
+					.withNormalizer(PasswordNormalizer.DEFAULT)
+					.build();
+			for (String variant : new String[] { 
+					"password", "p@ssw0rd", "PASSWORD1", "password!", 
+					"Pa$$w0rd123", "5umm3r2024" }) {
+				Assert.assertEquals(String.format("Failure - %s should "
+						+ "catch variant %s", type, variant), 
+						NotLeakedAssertion.LEAKED_PASSWORD, 
+						assertion.verify(variant));
+				Assert.assertEquals(String.format("Failure - %s should "
+						+ "catch variant %s as a CharSequence", type, variant), 
+						NotLeakedAssertion.LEAKED_PASSWORD, 
+						assertion.verify(new StringBuilder(variant)));
+				Assert.assertEquals(String.format("Failure - %s should "
+						+ "catch variant %s in a context", type, variant), 
+						NotLeakedAssertion.LEAKED_PASSWORD, 
+						assertion.verifyContext(new PasswordContext(variant)));
+			}
+			String[] passwords = { "s\u00fcmmer", null, "w1nt3r" };
+			PolicyAssertion.Result[] results = 
+					new PolicyAssertion.Result[passwords.length];
+			assertion.verifyAll(passwords, 0, passwords.length, results);
+			Assert.assertTrue("Failure - 's\u00fcmmer' should not be a variant",
+					results[0].isSuccess());
+			Assert.assertEquals("Failure - result should be NULL_VALUE", 
+					PolicyAssertion.Result.NULL_VALUE, results[1]);
+			Assert.assertTrue("Failure - 'w1nt3r' should not be a variant",
+					results[2].isSuccess());
+		}
+	}
+	
+	@Test
+	public void thatLargeInputsAllocatePerBatch() throws IOException {
+		java.lang.management.ThreadMXBean bean = 
+				ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = 
+				(com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+		
+		NotLeakedAssertion assertion = new NotLeakedAssertion.Builder()
+				.withPasswordDataStream(stream("password\n"))
+				.withExactMatching(true)
+				.withIgnoreCase(true)
+				.build();
+		int batchSize = PasswordPolicy.BATCH_SIZE;
+		String[] passwords = new String[32 * batchSize];
+		for (int i = 0; i < passwords.length; i++)
+			passwords[i] = (i % batchSize == 7) ? "password" : "pw" + i;
+		PolicyAssertion.Result[] results = 
+				new PolicyAssertion.Result[passwords.length];
+		for (int offset = 0; offset < passwords.length; offset += batchSize)
+			assertion.verifyAll(passwords, offset, batchSize, results);
+		for (int i = 0; i < passwords.length; i++) {
+			Assert.assertEquals("Failure - wrong result at " + i, 
+					(i % batchSize == 7), !results[i].isSuccess());
+		}
+		
+		// a batch of a large input should allocate no more than the same 
+		// batch on its own
+		int offset = passwords.length - batchSize;
+		String[] batch = new String[batchSize];
+		System.arraycopy(passwords, offset, batch, 0, batchSize);
+		long alone = Long.MAX_VALUE;
+		long inLargeInput = Long.MAX_VALUE;
+		for (int i = 0; i < 3; i++) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			assertion.verifyAll(batch, 0, batchSize, results);
+			alone = Math.min(alone, 
+					threads.getThreadAllocatedBytes(thread) - before);
+			before = threads.getThreadAllocatedBytes(thread);
+			assertion.verifyAll(passwords, offset, batchSize, results);
+			inLargeInput = Math.min(inLargeInput, 
+					threads.getThreadAllocatedBytes(thread) - before);
+		}
+		Assert.assertTrue("Failure - a batch of " + passwords.length 
+				+ " passwords allocated " + inLargeInput + " bytes, but " 
+				+ alone + " bytes on its own", 
+				inLargeInput < alone + alone / 4);
+	}
+	
+	@Test
+	public void thatVariantsPassWithoutNormalizer() throws IOException {
+		NotLeakedAssertion assertion = new NotLeakedAssertion.Builder()
+				.withPasswordDataStream(stream("password\n"))
+				.withExactMatching(true)
+				.build();
+		Assert.assertTrue("Failure - 'p@ssw0rd' should pass without a normalizer",
+				assertion.verify("p@ssw0rd").isSuccess());
+		Assert.assertNull("Failure - normalizer should be null by default",
+				assertion.getNormalizer());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void thatNormalizerIsRejectedWithSnapshot() throws IOException {
+		new NotLeakedAssertion.Builder()
+				.withSnapshotFile(tmp.getRoot().toPath().resolve("filter.snapshot")
+						.toString())
+				.withNormalizer(PasswordNormalizer.DEFAULT)
+				.build();
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void thatNormalizedAssertionIsNotSnapshotted() throws IOException {
+		Path dataFile = tmp.getRoot().toPath().resolve("words.dat");
+		Files.write(dataFile, "password\n".getBytes(Charset.forName("UTF-8")));
+		NotLeakedAssertion assertion = new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(dataFile.toString())
+				.withNormalizer(PasswordNormalizer.DEFAULT)
+				.build();
+		assertion.writeSnapshot(tmp.getRoot().toPath()
+				.resolve("filter.snapshot").toString());
+	}
 }
\ No newline at end of file
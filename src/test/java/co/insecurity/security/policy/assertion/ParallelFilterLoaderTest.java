@@ -0,0 +1,91 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import co.insecurity.security.policy.index.BloomFilterIndex;
+
+public class ParallelFilterLoaderTest {
+	
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	private File writeDataFile() throws IOException {
+		StringBuilder data = new StringBuilder();
+		String[] terminators = {"\n", "\r\n", "\r", "\n\n"};
+		for (int i = 0; i < 20000; i++)
+			data.append("Password").append(i % 15000)
+					.append(terminators[i % terminators.length]);
+		data.append("pass\u00e4word-without-newline");
+		File dataFile = tmp.newFile("words.dat");
+		Files.write(dataFile.toPath(), 
+				data.toString().getBytes(Charset.forName("UTF-8")));
+		return dataFile;
+	}
+	
+	private static BloomFilterIndex loadSequentially(File dataFile, 
+			boolean ignoreCase, int numExpected) throws IOException {
+		BloomFilterIndex.Builder builder = 
+				new BloomFilterIndex.Builder(numExpected, 0.001);
+		for (String line : Files.readAllLines(dataFile.toPath(), 
+				Charset.forName("UTF-8")))
+			builder.add(ignoreCase ? line.toLowerCase() : line);
+		return builder.build();
+	}
+	
+	@Test
+	public void thatParallelBuildIsBitIdentical() throws IOException {
+		File dataFile = writeDataFile();
+		ParallelFilterLoader loader = new ParallelFilterLoader(
+				dataFile.toPath(), 0.001, true, 4, 1000);
+		BloomFilterIndex parallel = loader.load();
+		int numExpected = Files.readAllLines(dataFile.toPath(), 
+				Charset.forName("UTF-8")).size();
+		Assert.assertEquals("Failure - line counts should match",
+				numExpected, loader.getNumExpected());
+		BloomFilterIndex sequential = 
+				loadSequentially(dataFile, true, numExpected);
+		Assert.assertEquals("Failure - filters should be bit-identical",
+				sequential.getFilter().getBitSet(),
+				parallel.getFilter().getBitSet());
+		Assert.assertEquals("Failure - every line should be counted",
+				numExpected, loader.getNumPasswords());
+	}
+	
+	@Test
+	public void thatShardsAreLimitedByFreeHeap() {
+		Assert.assertEquals("Failure - every thread should load a shard",
+				8, ParallelFilterLoader.getNumShards(8, 1 << 20, 1L << 30));
+		Assert.assertEquals("Failure - shards should fit in half the heap",
+				3, ParallelFilterLoader.getNumShards(16, 1 << 30, 4L << 30));
+		Assert.assertEquals("Failure - at least one shard should load",
+				1, ParallelFilterLoader.getNumShards(16, 1 << 30, 0));
+	}
+	
+	@Test
+	public void thatBuilderUsesParallelLoad() throws IOException {
+		File dataFile = writeDataFile();
+		NotLeakedAssertion assertion = new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(dataFile.getPath())
+				.withParallelism(4)
+				.build();
+		Assert.assertFalse("Failure - filter should contain 'Password42'",
+				assertion.verify("Password42").isSuccess());
+		Assert.assertFalse("Failure - filter should contain the last line",
+				assertion.verify("pass\u00e4word-without-newline").isSuccess());
+		Assert.assertTrue("Failure - filter should not contain 'password42'",
+				assertion.verify("password42").isSuccess());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void thatInvalidParallelismIsRejected() throws IOException {
+		new NotLeakedAssertion.Builder().withParallelism(0).build();
+	}
+}
\ No newline at end of file
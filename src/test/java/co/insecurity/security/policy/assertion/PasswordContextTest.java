@@ -0,0 +1,85 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import co.insecurity.security.policy.index.IndexType;
+import co.insecurity.security.policy.index.PasswordHash;
+
+public class PasswordContextTest {
+	
+	@Test
+	public void thatDerivedValuesMatchPassword() {
+		String password = "Pa55w\u00f6rd!\ud83d\ude00";
+		PasswordContext context = new PasswordContext(
+				CharBuffer.wrap(password.toCharArray()));
+		Assert.assertEquals("Failure - string should match password",
+				password, context.getString());
+		Assert.assertEquals("Failure - lower case should match toLowerCase()",
+				password.toLowerCase(), context.getLowerCase());
+		Assert.assertEquals("Failure - length should count UTF-16 units",
+				password.length(), context.getLength());
+		Assert.assertEquals("Failure - code points should be counted",
+				10, context.getCodePointCount());
+		Assert.assertEquals("Failure - lower case letters should be counted",
+				5, context.getLowerCaseCount());
+		Assert.assertEquals("Failure - upper case letters should be counted",
+				1, context.getUpperCaseCount());
+		Assert.assertEquals("Failure - digits should be counted",
+				2, context.getDigitCount());
+		Assert.assertEquals("Failure - other characters should be counted",
+				2, context.getOtherCount());
+		Assert.assertEquals("Failure - every class should be present",
+				4, context.getCharacterClassCount());
+		Assert.assertEquals("Failure - hash should match PasswordHash",
+				PasswordHash.hash64(password), context.getHash64());
+		Assert.assertEquals("Failure - folded hash should match PasswordHash",
+				PasswordHash.hash64IgnoreCase(password), 
+				context.getHash64IgnoreCase());
+	}
+	
+	@Test
+	public void thatResetDiscardsDerivedValues() {
+		PasswordContext context = new PasswordContext("UPPER");
+		Assert.assertEquals("Failure - 'UPPER' should have 5 upper case letters",
+				5, context.getUpperCaseCount());
+		long hash = context.getHash64();
+		context.reset("lower");
+		Assert.assertEquals("Failure - reset should recount characters",
+				0, context.getUpperCaseCount());
+		Assert.assertNotEquals("Failure - reset should rehash the password",
+				hash, context.getHash64());
+		Assert.assertEquals("Failure - reset should discard the lower case form",
+				"lower", context.getLowerCase());
+		Assert.assertTrue("Failure - reset context should be in use",
+				context.isInUse());
+		context.clear();
+		Assert.assertFalse("Failure - cleared context should not be in use",
+				context.isInUse());
+		Assert.assertNull("Failure - cleared context should hold no password",
+				context.getPassword());
+	}
+	
+	@Test
+	public void thatContextVerificationMatchesVerify() throws IOException {
+		PolicyAssertion[] assertions = {
+				new LengthAssertion(8, 12),
+				new NotLeakedAssertion.Builder().build(),
+				new NotLeakedAssertion.Builder()
+						.withIndexType(IndexType.BLOCKED_BLOOM_FILTER)
+						.withIgnoreCase(true)
+						.build()};
+		String[] passwords = {"password", "PassWord", "short", 
+				"uF7#kq!m2Zr9", "much too long to comply", null};
+		for (PolicyAssertion assertion : assertions) {
+			for (String password : passwords) {
+				Assert.assertEquals("Failure - context result should match verify()",
+						assertion.verify(password), 
+						assertion.verifyContext(new PasswordContext(password)));
+			}
+		}
+	}
+}
\ No newline at end of file
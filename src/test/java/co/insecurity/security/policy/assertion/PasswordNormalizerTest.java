@@ -0,0 +1,85 @@
+package co.insecurity.security.policy.assertion;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PasswordNormalizerTest {
+	
+	@Test
+	public void thatVariantsShareCanonicalForm() {
+		for (String variant : new String[] {
+				"password", "PASSWORD1", "password!", "p@ssw0rd", "P4$$W0RD",
+				"pa55w0rd2024!!" }) {
+			Assert.assertEquals("Failure - wrong canonical form of " + variant,
+					"password", PasswordNormalizer.DEFAULT.normalize(variant));
+		}
+		Assert.assertEquals("Failure - l and 1 should share a canonical form",
+				PasswordNormalizer.DEFAULT.normalize("1ove"),
+				PasswordNormalizer.DEFAULT.normalize("love"));
+	}
+	
+	@Test
+	public void thatTrailingLookAlikesAreSubstituted() {
+		String[][] variants = {
+				{ "hell0", "hello" }, { "l0v3", "love" },
+				{ "passw0rd!", "password" }, { "H3LL0", "hello" } };
+		for (String[] variant : variants) {
+			Assert.assertEquals("Failure - " + variant[0] + " should share the "
+					+ "canonical form of " + variant[1],
+					PasswordNormalizer.DEFAULT.normalize(variant[1]),
+					PasswordNormalizer.DEFAULT.normalize(variant[0]));
+		}
+		Assert.assertNotEquals("Failure - 'hell0' should not be stripped to "
+				+ "'hell'", PasswordNormalizer.DEFAULT.normalize("hell"),
+				PasswordNormalizer.DEFAULT.normalize("hell0"));
+	}
+	
+	@Test
+	public void thatPasswordsWithoutLettersAreUnchanged() {
+		Assert.assertEquals("Failure - '123456' should be left as is",
+				"123456", PasswordNormalizer.DEFAULT.normalize("123456"));
+		Assert.assertEquals("Failure - '!@#$' should be left as is",
+				"!@#$", PasswordNormalizer.DEFAULT.normalize("!@#$"));
+		Assert.assertEquals("Failure - empty password should be left as is",
+				"", PasswordNormalizer.DEFAULT.normalize(""));
+	}
+	
+	@Test
+	public void thatCanonicalFormIsNotCopied() {
+		String canonical = "summer";
+		Assert.assertSame("Failure - canonical form should be returned as is",
+				canonical, PasswordNormalizer.DEFAULT.normalize(canonical));
+	}
+	
+	@Test
+	public void thatNormalizationIsIdempotent() {
+		for (String password : new String[] {
+				"123abc456", "1234a", "P@SS\u00c9!", "\ud835\udc9c1",
+				"x|y+z", "Hello World 99" }) {
+			String canonical = PasswordNormalizer.DEFAULT.normalize(password);
+			Assert.assertEquals("Failure - normalizing " + password
+					+ " twice should not change it further",
+					canonical, PasswordNormalizer.DEFAULT.normalize(canonical));
+		}
+	}
+	
+	@Test
+	public void thatStagesCanBeDisabled() {
+		PasswordNormalizer caseOnly = new PasswordNormalizer.Builder()
+				.withSuffixStripping(false)
+				.withLeetSubstitution(false)
+				.build();
+		Assert.assertEquals("Failure - only case should be folded",
+				"p@ssw0rd1", caseOnly.normalize("P@SSW0RD1"));
+		PasswordNormalizer noCase = new PasswordNormalizer.Builder()
+				.withCaseFolding(false)
+				.build();
+		Assert.assertEquals("Failure - case should be kept",
+				"PassworD", noCase.normalize("Passw0rD!"));
+		Assert.assertNotEquals("Failure - normalizers with different stages "
+				+ "should not be equal", caseOnly, PasswordNormalizer.DEFAULT);
+		Assert.assertEquals("Failure - identically built normalizers should "
+				+ "be equal", PasswordNormalizer.DEFAULT,
+				new PasswordNormalizer.Builder().build());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,231 @@
+package co.insecurity.security.policy.assertion;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import co.insecurity.security.policy.index.CountingBloomFilterIndex;
+import co.insecurity.security.policy.index.IndexType;
+import co.insecurity.security.policy.index.MembershipIndex;
+
+public class ReloadableNotLeakedAssertionTest {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	private File writeDataFile(String... passwords) throws IOException {
+		File file = new File(tmp.getRoot(), "passwords.dat");
+		Files.write(file.toPath(), Arrays.asList(passwords), UTF_8);
+		return file;
+	}
+	
+	private static BufferedReader delta(String delta) {
+		return new BufferedReader(new StringReader(delta));
+	}
+	
+	@Test
+	public void thatReloadPicksUpNewPasswords() throws IOException {
+		File file = writeDataFile("dog", "password");
+		ReloadableNotLeakedAssertion assertion = new ReloadableNotLeakedAssertion(
+				new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(file.getPath()));
+		NotLeakedAssertion initial = assertion.getAssertion();
+		Assert.assertTrue("Failure - 'cat' should not be leaked yet",
+				assertion.verify("cat").isSuccess());
+		
+		writeDataFile("dog", "password", "cat");
+		assertion.reload();
+		Assert.assertNotSame("Failure - reload should swap the assertion",
+				initial, assertion.getAssertion());
+		Assert.assertEquals("Failure - reloaded list should hold 3 passwords",
+				3, assertion.getAssertion().getNumPasswords());
+		Assert.assertEquals("Failure - 'cat' should be leaked after reload",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("cat"));
+	}
+	
+	@Test
+	public void thatFailedReloadKeepsCurrentAssertion() throws IOException {
+		File file = writeDataFile("dog");
+		ReloadableNotLeakedAssertion assertion = new ReloadableNotLeakedAssertion(
+				new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(file.getPath()));
+		Assert.assertTrue("Failure - data file should be deleted", file.delete());
+		try {
+			assertion.reload();
+			Assert.fail("Failure - reload of a missing file should fail");
+		} catch (IOException expected) { }
+		Assert.assertEquals("Failure - 'dog' should still be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("dog"));
+	}
+	
+	@Test
+	public void thatDeltasOverlayImmutableIndex() throws IOException {
+		ReloadableNotLeakedAssertion assertion = new ReloadableNotLeakedAssertion(
+				new NotLeakedAssertion.Builder()
+				.withPasswordDataFile("src/test/resources/testpasswords.dat")
+				.withIgnoreCase(true));
+		assertion.applyDelta(delta("+Cat\n-dog\n"));
+		Assert.assertEquals("Failure - added 'CAT' should be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("CAT"));
+		Assert.assertTrue("Failure - removed 'dog' should not be leaked",
+				assertion.verify("dog").isSuccess());
+		Assert.assertEquals("Failure - 'password' should still be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("password"));
+		
+		assertion.reload();
+		Assert.assertTrue("Failure - reload should discard deltas",
+				assertion.verify("cat").isSuccess());
+	}
+	
+	@Test
+	public void thatDeltasUpdateMutableIndex() throws IOException {
+		ReloadableNotLeakedAssertion assertion = new ReloadableNotLeakedAssertion(
+				new NotLeakedAssertion.Builder()
+				.withPasswordDataFile("src/test/resources/testpasswords.dat")
+				.withIndexType(IndexType.COUNTING_BLOOM_FILTER));
+		assertion.applyDelta(delta("+cat\n+cat\n-password\n"));
+		Assert.assertTrue("Failure - delta should update the index itself",
+				assertion.getAssertion().getPasswordIndex().contains("cat"));
+		Assert.assertEquals("Failure - added 'cat' should be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("cat"));
+		Assert.assertTrue("Failure - removed 'password' should not be leaked",
+				assertion.verify("password").isSuccess());
+		
+		assertion.applyDelta(delta("-cat\n"));
+		Assert.assertTrue("Failure - reapplied addition should be removable",
+				assertion.verify("cat").isSuccess());
+	}
+	
+	@Test
+	public void thatRemovingFalsePositivesKeepsMutableIndexMembers()
+			throws IOException {
+		String[] words = new String[200];
+		for (int i = 0; i < words.length; i++)
+			words[i] = "word" + i;
+		File file = writeDataFile(words);
+		ReloadableNotLeakedAssertion assertion = new ReloadableNotLeakedAssertion(
+				new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(file.getPath())
+				.withFalsePositiveProbability(0.2)
+				.withIndexType(IndexType.COUNTING_BLOOM_FILTER));
+		MembershipIndex index = assertion.getAssertion().getPasswordIndex();
+		StringBuilder delta = new StringBuilder();
+		List<String> falsePositives = new ArrayList<String>();
+		for (int i = 0; falsePositives.size() < 20; i++) {
+			if (index.contains("other" + i)) {
+				falsePositives.add("other" + i);
+				delta.append("-other").append(i).append('\n');
+			}
+		}
+		assertion.applyDelta(delta(delta.toString()));
+		for (String word : words)
+			Assert.assertTrue("Failure - '" + word + "' should still be leaked",
+					index.contains(word));
+		for (String falsePositive : falsePositives)
+			Assert.assertTrue("Failure - removed '" + falsePositive
+					+ "' should not be leaked",
+					assertion.verify(falsePositive).isSuccess());
+	}
+	
+	@Test
+	public void thatReloadDiscardsDeltasInReusedIndex() throws IOException {
+		CountingBloomFilterIndex.Builder indexBuilder =
+				new CountingBloomFilterIndex.Builder(1000, 0.001);
+		indexBuilder.add("password");
+		CountingBloomFilterIndex index = indexBuilder.build();
+		ReloadableNotLeakedAssertion assertion = new ReloadableNotLeakedAssertion(
+				new NotLeakedAssertion.Builder().withMembershipIndex(index));
+		assertion.applyDelta(delta("+cat\n-password\n"));
+		Assert.assertEquals("Failure - added 'cat' should be leaked",
+				NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("cat"));
+		
+		assertion.reload();
+		Assert.assertSame("Failure - reload should reuse the prebuilt index",
+				index, assertion.getAssertion().getPasswordIndex());
+		Assert.assertTrue("Failure - reload should discard added 'cat'",
+				assertion.verify("cat").isSuccess());
+		Assert.assertEquals("Failure - reload should discard removal of "
+				+ "'password'", NotLeakedAssertion.LEAKED_PASSWORD,
+				assertion.verify("password"));
+	}
+	
+	@Test(expected=IOException.class)
+	public void thatInvalidDeltaIsRejected() throws IOException {
+		new ReloadableNotLeakedAssertion(new NotLeakedAssertion.Builder())
+				.applyDelta(delta("cat\n"));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void thatStreamsCannotBeReloaded() throws IOException {
+		new ReloadableNotLeakedAssertion(new NotLeakedAssertion.Builder()
+				.withPasswordDataStream(new ByteArrayInputStream(
+						"dog\n".getBytes(UTF_8))));
+	}
+	
+	@Test
+	public void thatVerifyIsUnaffectedByConcurrentReloads() throws Exception {
+		File file = writeDataFile("dog", "password");
+		final ReloadableNotLeakedAssertion assertion =
+				new ReloadableNotLeakedAssertion(new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(file.getPath()));
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicInteger failures = new AtomicInteger(0);
+		Thread[] readers = new Thread[4];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					while (!done.get()) {
+						if (assertion.verify("dog").isSuccess())
+							failures.incrementAndGet();
+					}
+				}
+			});
+			readers[i].start();
+		}
+		for (int i = 0; i < 50; i++)
+			assertion.reload();
+		done.set(true);
+		for (Thread reader : readers)
+			reader.join();
+		Assert.assertEquals("Failure - 'dog' should always be leaked",
+				0, failures.get());
+	}
+	
+	@Test
+	public void thatWatcherReloadsModifiedDataFile() throws Exception {
+		File file = writeDataFile("dog");
+		ReloadableNotLeakedAssertion assertion = new ReloadableNotLeakedAssertion(
+				new NotLeakedAssertion.Builder()
+				.withPasswordDataFile(file.getPath()));
+		try {
+			assertion.startWatching(100, TimeUnit.MILLISECONDS);
+			writeDataFile("dog", "cat");
+			long deadline = System.currentTimeMillis() + 30000;
+			while (assertion.verify("cat").isSuccess()
+					&& System.currentTimeMillis() < deadline)
+				Thread.sleep(50);
+			Assert.assertEquals("Failure - watcher should reload 'cat'",
+					NotLeakedAssertion.LEAKED_PASSWORD, assertion.verify("cat"));
+		} finally {
+			assertion.close();
+		}
+	}
+}
\ No newline at end of file
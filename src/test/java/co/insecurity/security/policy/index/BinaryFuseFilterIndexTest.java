@@ -0,0 +1,54 @@
+package co.insecurity.security.policy.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinaryFuseFilterIndexTest {
+	
+	private static BinaryFuseFilterIndex build(int n, double fpProbability) {
+		BinaryFuseFilterIndex.Builder builder = 
+				new BinaryFuseFilterIndex.Builder(n, fpProbability);
+		for (int i = 0; i < n; i++)
+			builder.add("password" + i);
+		return builder.build();
+	}
+	
+	@Test
+	public void thatAddedPasswordsAreContained() {
+		for (int n : new int[] {0, 1, 2, 3, 10, 1000, 100000}) {
+			BinaryFuseFilterIndex index = build(n, 0.001);
+			Assert.assertEquals("Failure - size should be " + n,
+					n, index.getSize());
+			for (int i = 0; i < n; i++)
+				Assert.assertTrue("Failure - index should contain password" + i,
+						index.contains("password" + i));
+		}
+	}
+	
+	@Test
+	public void thatFalsePositiveProbabilityIsMet() {
+		BinaryFuseFilterIndex index = build(100000, 0.01);
+		Assert.assertEquals("Failure - 0.01 FPP should use 7-bit fingerprints",
+				7, index.getFingerprintBits());
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (index.contains("uncommon" + i))
+				falsePositives++;
+		}
+		Assert.assertTrue("Failure - false positive rate should be near 2^-7",
+				falsePositives < 100000 * 0.012);
+	}
+	
+	@Test
+	public void thatDuplicatesAreRemoved() {
+		BinaryFuseFilterIndex.Builder builder = 
+				new BinaryFuseFilterIndex.Builder(10, 0.001);
+		for (int i = 0; i < 100; i++)
+			builder.add("password" + (i % 10));
+		BinaryFuseFilterIndex index = builder.build();
+		Assert.assertEquals("Failure - duplicates should be removed",
+				10, index.getSize());
+		Assert.assertTrue("Failure - index should contain password3",
+				index.contains("password3"));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,67 @@
+package co.insecurity.security.policy.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockedBloomFilterIndexTest {
+	
+	@Test
+	public void thatAddedPasswordsAreContained() {
+		BlockedBloomFilterIndex.Builder builder = 
+				new BlockedBloomFilterIndex.Builder(10000, 0.001);
+		for (int i = 0; i < 10000; i++)
+			builder.add("password" + i);
+		BlockedBloomFilterIndex index = builder.build();
+		for (int i = 0; i < 10000; i++)
+			Assert.assertTrue("Failure - index should contain password" + i,
+					index.contains("password" + i));
+	}
+	
+	@Test
+	public void thatFalsePositiveProbabilityIsMet() {
+		BlockedBloomFilterIndex.Builder builder = 
+				new BlockedBloomFilterIndex.Builder(100000, 0.01);
+		for (int i = 0; i < 100000; i++)
+			builder.add("password" + i);
+		BlockedBloomFilterIndex index = builder.build();
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (index.contains("uncommon" + i))
+				falsePositives++;
+		}
+		Assert.assertTrue("Failure - false positive rate should be near 0.01",
+				falsePositives < 100000 * 0.012);
+	}
+	
+	@Test
+	public void thatSizingExceedsStandardBloomFilter() {
+		double standardBits = -Math.log(0.001) / (Math.log(2) * Math.log(2));
+		BlockedBloomFilterIndex index = 
+				new BlockedBloomFilterIndex.Builder(1000000, 0.001).build();
+		double bitsPerPassword = index.getNumBlocks() * 512.0 / 1000000;
+		Assert.assertTrue("Failure - blocked filter should need more bits",
+				bitsPerPassword > standardBits);
+		Assert.assertTrue("Failure - blocked filter should need < 30% more bits",
+				bitsPerPassword < standardBits * 1.3);
+	}
+	
+	@Test
+	public void thatBatchLookupsMatchSingleLookups() {
+		BlockedBloomFilterIndex.Builder builder = 
+				new BlockedBloomFilterIndex.Builder(10000, 0.01);
+		for (int i = 0; i < 10000; i++)
+			builder.add("password" + i);
+		BlockedBloomFilterIndex index = builder.build();
+		String[] batch = new String[20000];
+		for (int i = 0; i < batch.length; i++)
+			batch[i] = ((i % 2 == 0) ? "password" : "uncommon") + i / 2;
+		boolean[] results = new boolean[batch.length];
+		index.containsAll(batch, 100, batch.length - 100, results);
+		for (int i = 0; i < 100; i++)
+			Assert.assertFalse("Failure - results before offset should be unset",
+					results[i]);
+		for (int i = 100; i < batch.length; i++)
+			Assert.assertEquals("Failure - batch lookup should match contains()",
+					index.contains(batch[i]), results[i]);
+	}
+}
\ No newline at end of file
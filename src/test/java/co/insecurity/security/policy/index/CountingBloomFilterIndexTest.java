@@ -0,0 +1,104 @@
+package co.insecurity.security.policy.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CountingBloomFilterIndexTest {
+	
+	private static CountingBloomFilterIndex build(int n, double fpp) {
+		CountingBloomFilterIndex.Builder builder =
+				new CountingBloomFilterIndex.Builder(n, fpp);
+		for (int i = 0; i < n; i++)
+			builder.add("password" + i);
+		return builder.build();
+	}
+	
+	@Test
+	public void thatAddedPasswordsAreContained() {
+		CountingBloomFilterIndex index = build(10000, 0.001);
+		for (int i = 0; i < 10000; i++)
+			Assert.assertTrue("Failure - index should contain password" + i,
+					index.contains("password" + i));
+	}
+	
+	@Test
+	public void thatFalsePositiveProbabilityIsMet() {
+		CountingBloomFilterIndex index = build(20000, 0.01);
+		int falsePositives = 0;
+		for (int i = 0; i < 20000; i++) {
+			if (index.contains("uncommon" + i))
+				falsePositives++;
+		}
+		Assert.assertTrue("Failure - false positive rate should be near 0.01",
+				falsePositives < 20000 * 0.02);
+	}
+	
+	@Test
+	public void thatRemovedPasswordsAreNotContained() {
+		CountingBloomFilterIndex index = build(10000, 0.001);
+		for (int i = 0; i < 10000; i += 2)
+			Assert.assertTrue("Failure - removal should succeed",
+					index.remove("password" + i));
+		int remaining = 0;
+		for (int i = 0; i < 10000; i += 2) {
+			if (index.contains("password" + i))
+				remaining++;
+		}
+		Assert.assertTrue("Failure - removed passwords should be gone",
+				remaining < 5000 * 0.005);
+		for (int i = 1; i < 10000; i += 2)
+			Assert.assertTrue("Failure - kept password" + i + " should remain",
+					index.contains("password" + i));
+	}
+	
+	@Test
+	public void thatOccurrencesAreCounted() {
+		CountingBloomFilterIndex index = build(100, 0.001);
+		Assert.assertTrue("Failure - first add should be new",
+				index.add("dog"));
+		Assert.assertFalse("Failure - second add should not be new",
+				index.add("dog"));
+		index.remove("dog");
+		Assert.assertTrue("Failure - one occurrence should remain",
+				index.contains("dog"));
+		index.remove("dog");
+		Assert.assertFalse("Failure - no occurrence should remain",
+				index.contains("dog"));
+		Assert.assertFalse("Failure - removing an absent password should fail",
+				index.remove("dog"));
+	}
+	
+	@Test
+	public void thatSaturatedCountersAreNeverDecremented() {
+		CountingBloomFilterIndex index = build(100, 0.001);
+		for (int i = 0; i < 20; i++)
+			index.add("dog");
+		for (int i = 0; i < 20; i++)
+			index.remove("dog");
+		Assert.assertTrue("Failure - saturated counters should be sticky",
+				index.contains("dog"));
+	}
+	
+	@Test
+	public void thatConcurrentUpdatesAreNotLost() throws InterruptedException {
+		final CountingBloomFilterIndex target = new CountingBloomFilterIndex
+				.Builder(40000, 0.001).build();
+		Thread[] writers = new Thread[4];
+		for (int t = 0; t < writers.length; t++) {
+			final int offset = t;
+			writers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = offset; i < 40000; i += 4)
+						target.add("password" + i);
+				}
+			});
+			writers[t].start();
+		}
+		for (Thread writer : writers)
+			writer.join();
+		for (int i = 0; i < 40000; i++)
+			Assert.assertTrue("Failure - index should contain password" + i,
+					target.contains("password" + i));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+package co.insecurity.security.policy.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DictionaryAutomatonTest {
+	
+	private static DictionaryAutomaton build(boolean caseFolded,
+			String... words) {
+		DictionaryAutomaton.Builder builder =
+				new DictionaryAutomaton.Builder(caseFolded);
+		for (String word : words)
+			builder.add(word);
+		return builder.build();
+	}
+	
+	@Test
+	public void thatEmbeddedWordsAreFound() {
+		DictionaryAutomaton automaton = build(false,
+				"summer", "he", "she", "his", "hers");
+		Assert.assertTrue("Failure - 'Xsummer2024' should match",
+				automaton.matches("Xsummer2024"));
+		Assert.assertTrue("Failure - 'ushers' should match",
+				automaton.matches("ushers"));
+		Assert.assertFalse("Failure - 'Summer' should not match case sensitively",
+				automaton.matches("Summer"));
+		Assert.assertFalse("Failure - 'summe' should not match",
+				automaton.matches("summe"));
+		Assert.assertFalse("Failure - empty text should not match",
+				automaton.matches(""));
+		long match = automaton.findFirst("ushers");
+		Assert.assertEquals("Failure - first match should end at 'she'",
+				4, DictionaryAutomaton.matchEnd(match));
+		Assert.assertEquals("Failure - longest match ending there is 'she'",
+				3, DictionaryAutomaton.matchLength(match));
+	}
+	
+	@Test
+	public void thatMatchesFollowFailureLinks() {
+		DictionaryAutomaton automaton = build(false, "abcd", "bce");
+		Assert.assertTrue("Failure - 'abce' should match 'bce'",
+				automaton.matches("abce"));
+		Assert.assertFalse("Failure - 'abcbd' should not match",
+				automaton.matches("abcbd"));
+	}
+	
+	@Test
+	public void thatCaseFoldedAutomatonIgnoresCase() {
+		DictionaryAutomaton automaton = build(true, "Summer", "P\u00c4SS");
+		Assert.assertTrue("Failure - 'SUMMER!' should match",
+				automaton.matches("SUMMER!"));
+		Assert.assertTrue("Failure - 'my p\u00e4ss' should match",
+				automaton.matches("my p\u00e4ss"));
+	}
+	
+	@Test
+	public void thatRandomDictionaryMatchesNaiveSearch() {
+		Random random = new Random(42);
+		List<String> words = new ArrayList<String>();
+		DictionaryAutomaton.Builder builder = new DictionaryAutomaton.Builder(false);
+		for (int i = 0; i < 2000; i++) {
+			String word = randomString(random, 3 + random.nextInt(4));
+			words.add(word);
+			builder.add(word);
+		}
+		DictionaryAutomaton automaton = builder.build();
+		for (int i = 0; i < 5000; i++) {
+			String text = randomString(random, random.nextInt(16));
+			boolean expected = false;
+			for (String word : words)
+				expected |= text.contains(word);
+			Assert.assertEquals("Failure - result should match for " + text,
+					expected, automaton.matches(text));
+		}
+	}
+	
+	private static String randomString(Random random, int length) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++)
+			chars[i] = (char) ('a' + random.nextInt(6));
+		return new String(chars);
+	}
+	
+	@Test
+	public void thatAutomatonRoundTrips() throws IOException {
+		DictionaryAutomaton automaton = build(true, "summer", "dragon");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		automaton.write(out);
+		DictionaryAutomaton read = DictionaryAutomaton.read(
+				new ByteArrayInputStream(out.toByteArray()));
+		Assert.assertTrue("Failure - read automaton should be case folded",
+				read.isCaseFolded());
+		Assert.assertEquals("Failure - read automaton should have 2 words",
+				2, read.getNumWords());
+		Assert.assertTrue("Failure - read automaton should match 'DRAGON1'",
+				read.matches("DRAGON1"));
+		Assert.assertFalse("Failure - read automaton should not match 'drago'",
+				read.matches("drago"));
+	}
+	
+	@Test(expected = IOException.class)
+	public void thatCorruptAutomatonIsRejected() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		build(false, "summer").write(out);
+		byte[] bytes = out.toByteArray();
+		bytes[bytes.length / 2] ^= 1;
+		DictionaryAutomaton.read(new ByteArrayInputStream(bytes));
+	}
+}
\ No newline at end of file
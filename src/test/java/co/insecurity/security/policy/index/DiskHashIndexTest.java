@@ -0,0 +1,176 @@
+package co.insecurity.security.policy.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import co.insecurity.security.policy.assertion.NotLeakedAssertion;
+
+public class DiskHashIndexTest {
+	
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	private DiskHashIndex build(Path file, int n) throws IOException {
+		DiskHashIndex.Builder builder = new DiskHashIndex.Builder(file);
+		for (int i = 0; i < n; i++)
+			builder.add("password" + i);
+		return builder.build();
+	}
+	
+	private static String hex(byte[] digest) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest)
+			sb.append(String.format("%02X", b));
+		return sb.toString();
+	}
+	
+	@Test
+	public void thatAddedPasswordsAreContained() throws IOException {
+		for (int n : new int[] {0, 1, 255, 256, 257, 100000}) {
+			Path file = tmp.getRoot().toPath().resolve("index" + n);
+			DiskHashIndex index = build(file, n);
+			Assert.assertEquals("Failure - size should be " + n,
+					n, index.getNumPasswords());
+			for (int i = 0; i < n; i++)
+				Assert.assertTrue("Failure - index should contain password" + i,
+						index.contains("password" + i));
+			for (int i = 0; i < 10000; i++)
+				Assert.assertFalse("Failure - index should be exact",
+						index.contains("uncommon" + i));
+		}
+	}
+	
+	@Test
+	public void thatBatchLookupsMatchSingleLookups() throws IOException {
+		DiskHashIndex index = build(tmp.getRoot().toPath().resolve("index"),
+				5000);
+		String[] batch = new String[10000];
+		for (int i = 0; i < batch.length; i++)
+			batch[i] = ((i % 2 == 0) ? "password" : "uncommon") + i / 2;
+		boolean[] results = new boolean[batch.length];
+		index.containsAll(batch, 0, batch.length, results);
+		for (int i = 0; i < batch.length; i++)
+			Assert.assertEquals("Failure - batch lookup should be exact",
+					i % 2 == 0, results[i]);
+	}
+	
+	@Test
+	public void thatIndexIsReopenedFromDisk() throws IOException {
+		Path file = tmp.getRoot().toPath().resolve("index");
+		build(file, 5000).close();
+		Assert.assertEquals("Failure - temporary files should be deleted",
+				1, tmp.getRoot().list().length);
+		DiskHashIndex index = DiskHashIndex.open(file);
+		Assert.assertEquals("Failure - reopened size should be 5000",
+				5000, index.getNumPasswords());
+		Assert.assertTrue("Failure - reopened index should contain password42",
+				index.contains("password42"));
+		Assert.assertFalse("Failure - reopened index should not contain cat",
+				index.contains("cat"));
+	}
+	
+	@Test
+	public void thatDuplicatesAreRemoved() throws IOException {
+		DiskHashIndex.Builder builder = new DiskHashIndex.Builder(
+				tmp.getRoot().toPath().resolve("index"));
+		for (int i = 0; i < 1000; i++)
+			builder.add("password" + (i % 10));
+		Assert.assertEquals("Failure - duplicates should be removed",
+				10, builder.build().getNumPasswords());
+	}
+	
+	@Test(timeout = 30000)
+	public void thatRepeatedPasswordsAreSortedQuickly() throws IOException {
+		DiskHashIndex.Builder builder = new DiskHashIndex.Builder(
+				tmp.getRoot().toPath().resolve("index"));
+		for (int i = 0; i < 500000; i++)
+			builder.add("123456");
+		builder.add("password");
+		DiskHashIndex index = builder.build();
+		Assert.assertEquals("Failure - repeated password should be stored once",
+				2, index.getNumPasswords());
+		Assert.assertTrue("Failure - '123456' should be contained",
+				index.contains("123456"));
+		Assert.assertTrue("Failure - 'password' should be contained",
+				index.contains("password"));
+	}
+	
+	@Test
+	public void thatHibpHashesAreIngested() throws IOException {
+		String dog = hex(DiskHashIndex.sha1("dog"));
+		String cat = hex(DiskHashIndex.sha1("cat"));
+		String full = dog + ":42\n" + cat.toLowerCase() + "\n";
+		String range = dog.substring(5) + ":3\r\n";
+		DiskHashIndex index = new DiskHashIndex.Builder(
+				tmp.getRoot().toPath().resolve("index"))
+				.addHibpHashes(new BufferedReader(new StringReader(full)), "")
+				.addHibpHashes(new BufferedReader(new StringReader(range)),
+						dog.substring(0, 5))
+				.build();
+		Assert.assertEquals("Failure - index should hold 2 hashes",
+				2, index.getNumPasswords());
+		Assert.assertTrue("Failure - index should contain 'dog'",
+				index.contains("dog"));
+		Assert.assertTrue("Failure - index should contain 'cat'",
+				index.contains("cat"));
+		Assert.assertFalse("Failure - index should not contain 'Dog'",
+				index.contains("Dog"));
+	}
+	
+	@Test(expected=IOException.class)
+	public void thatInvalidHibpHashesAreRejected() throws IOException {
+		try (DiskHashIndex.Builder builder = new DiskHashIndex.Builder(
+				tmp.getRoot().toPath().resolve("index"))) {
+			builder.addHibpHashes(new BufferedReader(
+					new StringReader("NOTAHASH:1\n")), "");
+		}
+	}
+	
+	@Test(expected=IOException.class)
+	public void thatCorruptIndexIsRejected() throws IOException {
+		Path file = tmp.getRoot().toPath().resolve("index");
+		build(file, 1000);
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.seek(raf.length() - 12);
+			raf.write(0xFF);
+		}
+		DiskHashIndex.open(file);
+	}
+	
+	@Test(expected=IOException.class)
+	public void thatNonIndexFileIsRejected() throws IOException {
+		Path file = tmp.newFile().toPath();
+		Files.write(file, new byte[64]);
+		DiskHashIndex.open(file);
+	}
+	
+	@Test
+	public void thatAssertionCanBeBackedByDiskIndex() throws IOException {
+		Path file = tmp.getRoot().toPath().resolve("index");
+		NotLeakedAssertion built = new NotLeakedAssertion.Builder()
+				.withIndexFactory(DiskHashIndex.factory(file))
+				.withPasswordDataFile("src/test/resources/testpasswords.dat")
+				.build();
+		Assert.assertFalse("Failure - disk index should contain 'dog'",
+				built.verify("dog").isSuccess());
+		
+		NotLeakedAssertion opened = new NotLeakedAssertion.Builder()
+				.withMembershipIndex(DiskHashIndex.open(file))
+				.build();
+		Assert.assertEquals("Failure - disk index should hold 4 passwords",
+				4, opened.getNumPasswords());
+		Assert.assertFalse("Failure - disk index should contain 'dog'",
+				opened.verify("dog").isSuccess());
+		Assert.assertTrue("Failure - disk index should not contain 'cat'",
+				opened.verify("cat").isSuccess());
+	}
+}
\ No newline at end of file
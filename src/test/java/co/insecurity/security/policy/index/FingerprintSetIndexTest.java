@@ -0,0 +1,47 @@
+package co.insecurity.security.policy.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FingerprintSetIndexTest {
+	
+	private static FingerprintSetIndex build(int n) {
+		FingerprintSetIndex.Builder builder = new FingerprintSetIndex.Builder(n);
+		for (int i = 0; i < n; i++)
+			builder.add("password" + i);
+		return builder.build();
+	}
+	
+	@Test
+	public void thatAddedPasswordsAreContained() {
+		for (int n : new int[] {0, 1, 7, 8, 9, 1000, 100000}) {
+			FingerprintSetIndex index = build(n);
+			Assert.assertEquals("Failure - size should be " + n,
+					n, index.getSize());
+			for (int i = 0; i < n; i++)
+				Assert.assertTrue("Failure - index should contain password" + i,
+						index.contains("password" + i));
+		}
+	}
+	
+	@Test
+	public void thatFalsePositivesAreNegligible() {
+		FingerprintSetIndex index = build(100000);
+		int falsePositives = 0;
+		for (int i = 0; i < 1000000; i++) {
+			if (index.contains("uncommon" + i))
+				falsePositives++;
+		}
+		Assert.assertTrue("Failure - false positive rate should be near 2^-29",
+				falsePositives <= 2);
+	}
+	
+	@Test
+	public void thatDuplicatesAreRemoved() {
+		FingerprintSetIndex.Builder builder = new FingerprintSetIndex.Builder(10);
+		for (int i = 0; i < 100; i++)
+			builder.add("password" + (i % 10));
+		Assert.assertEquals("Failure - duplicates should be removed",
+				10, builder.build().getSize());
+	}
+}
\ No newline at end of file
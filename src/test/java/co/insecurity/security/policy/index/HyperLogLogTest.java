@@ -0,0 +1,32 @@
+package co.insecurity.security.policy.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HyperLogLogTest {
+	
+	@Test
+	public void thatEmptySketchIsZero() {
+		Assert.assertEquals("Failure - empty sketch should estimate 0",
+				0, new HyperLogLog().cardinality());
+	}
+	
+	@Test
+	public void thatDuplicatesAreNotCounted() {
+		HyperLogLog sketch = new HyperLogLog();
+		for (int i = 0; i < 1000; i++)
+			sketch.add("password" + (i % 10));
+		Assert.assertEquals("Failure - sketch should estimate 10 distinct",
+				10, sketch.cardinality());
+	}
+	
+	@Test
+	public void thatLargeCardinalityIsEstimated() {
+		HyperLogLog sketch = new HyperLogLog();
+		int n = 1000000;
+		for (int i = 0; i < n; i++)
+			sketch.add("password" + i);
+		Assert.assertEquals("Failure - estimate should be within 3%",
+				n, sketch.cardinality(), n * 0.03);
+	}
+}
\ No newline at end of file
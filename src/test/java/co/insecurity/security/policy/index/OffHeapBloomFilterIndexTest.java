@@ -0,0 +1,56 @@
+package co.insecurity.security.policy.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapBloomFilterIndexTest {
+	
+	@Test
+	public void thatAddedPasswordsAreContained() {
+		OffHeapBloomFilterIndex.Builder builder = 
+				new OffHeapBloomFilterIndex.Builder(10000, 0.001);
+		for (int i = 0; i < 10000; i++)
+			builder.add("password" + i);
+		OffHeapBloomFilterIndex index = builder.build();
+		for (int i = 0; i < 10000; i++)
+			Assert.assertTrue("Failure - index should contain password" + i,
+					index.contains("password" + i));
+	}
+	
+	@Test
+	public void thatFalsePositiveProbabilityIsMet() {
+		OffHeapBloomFilterIndex.Builder builder = 
+				new OffHeapBloomFilterIndex.Builder(20000, 0.01);
+		for (int i = 0; i < 20000; i++)
+			builder.add("password" + i);
+		OffHeapBloomFilterIndex index = builder.build();
+		int falsePositives = 0;
+		for (int i = 0; i < 20000; i++) {
+			if (index.contains("uncommon" + i))
+				falsePositives++;
+		}
+		Assert.assertTrue("Failure - false positive rate should be near 0.01",
+				falsePositives < 20000 * 0.02);
+	}
+	
+	@Test
+	public void thatDuplicateAddsAreReported() {
+		OffHeapBloomFilterIndex.Builder builder = 
+				new OffHeapBloomFilterIndex.Builder(100, 0.001);
+		Assert.assertTrue("Failure - first add should be new",
+				builder.add("password"));
+		Assert.assertFalse("Failure - duplicate add should not be new",
+				builder.add("password"));
+	}
+	
+	@Test
+	public void thatBillionEntryFilterIsSizedBeyondIntRange() {
+		long numBits = OffHeapBloomFilterIndex.optimalNumBits(
+				1000000000L, 0.001);
+		Assert.assertTrue("Failure - 1B entries should need > 2^31 bits",
+				numBits > Integer.MAX_VALUE);
+		Assert.assertEquals("Failure - 0.001 FPP should need 10 hashes",
+				10, OffHeapBloomFilterIndex.optimalNumHashes(
+						1000000000L, numBits));
+	}
+}
\ No newline at end of file
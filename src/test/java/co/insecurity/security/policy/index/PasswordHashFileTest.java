@@ -0,0 +1,109 @@
+package co.insecurity.security.policy.index;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PasswordHashFileTest {
+	
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	@Test
+	public void thatWrittenHashesAreReadBack() throws IOException {
+		Path file = tmp.getRoot().toPath().resolve("hashes");
+		try (PasswordHashFile.Writer writer =
+				new PasswordHashFile.Writer(file, false, true)) {
+			for (int i = 0; i < 10000; i++)
+				writer.add("password" + i, i);
+			writer.finish();
+		}
+		Assert.assertTrue("Failure - file should be a hash file",
+				PasswordHashFile.isHashFile(file));
+		try (PasswordHashFile.Reader reader = new PasswordHashFile.Reader(file)) {
+			Assert.assertFalse("Failure - file should not be case folded",
+					reader.isCaseFolded());
+			Assert.assertTrue("Failure - file should have frequency counts",
+					reader.hasFrequencyCounts());
+			Assert.assertEquals("Failure - file should hold 10000 entries",
+					10000, reader.getNumEntries());
+			for (int i = 0; i < 10000; i++) {
+				Assert.assertTrue("Failure - entry " + i + " should be read",
+						reader.next());
+				Assert.assertEquals("Failure - hash should match",
+						PasswordHash.hash64("password" + i), reader.getHash());
+				Assert.assertEquals("Failure - count should match",
+						i, reader.getCount());
+			}
+			Assert.assertFalse("Failure - no entries should remain",
+					reader.next());
+		}
+	}
+	
+	@Test
+	public void thatUnfinishedWriterLeavesNoFile() throws IOException {
+		Path file = tmp.getRoot().toPath().resolve("hashes");
+		try (PasswordHashFile.Writer writer =
+				new PasswordHashFile.Writer(file, false, false)) {
+			writer.add("password");
+		}
+		Assert.assertEquals("Failure - no files should remain",
+				0, tmp.getRoot().list().length);
+	}
+	
+	@Test
+	public void thatCompressedWordListIsConverted() throws IOException {
+		Path wordList = tmp.getRoot().toPath().resolve("words.txt.gz");
+		try (OutputStream out = new GZIPOutputStream(
+				Files.newOutputStream(wordList))) {
+			out.write("     42 Password\n      7 letmein\n"
+					.getBytes(Charset.forName("UTF-8")));
+		}
+		Assert.assertTrue("Failure - word list should be compressed",
+				WordListFormat.isCompressed(wordList));
+		Path file = tmp.getRoot().toPath().resolve("hashes");
+		Assert.assertEquals("Failure - 2 entries should be written",
+				2, PasswordHashFile.convert(wordList, file, true, true));
+		try (PasswordHashFile.Reader reader = new PasswordHashFile.Reader(file)) {
+			Assert.assertTrue("Failure - file should be case folded",
+					reader.isCaseFolded());
+			Assert.assertTrue("Failure - first entry should be read",
+					reader.next());
+			Assert.assertEquals("Failure - hash should be case folded",
+					PasswordHash.hash64("password"), reader.getHash());
+			Assert.assertEquals("Failure - count should be 42",
+					42, reader.getCount());
+		}
+	}
+	
+	@Test
+	public void thatPlaintextIsNotAHashFile() throws IOException {
+		Assert.assertFalse("Failure - word list should not be a hash file",
+				PasswordHashFile.isHashFile(
+						tmp.newFile("words.txt").toPath()));
+	}
+	
+	@Test(expected = IOException.class)
+	public void thatCorruptHeaderIsRejected() throws IOException {
+		Path file = tmp.getRoot().toPath().resolve("hashes");
+		try (PasswordHashFile.Writer writer =
+				new PasswordHashFile.Writer(file, false, false)) {
+			writer.add("password");
+			writer.finish();
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.seek(16);
+			raf.writeLong(2);
+		}
+		new PasswordHashFile.Reader(file).close();
+	}
+}
\ No newline at end of file
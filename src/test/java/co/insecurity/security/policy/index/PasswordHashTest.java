@@ -0,0 +1,81 @@
+package co.insecurity.security.policy.index;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PasswordHashTest {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	@Test
+	public void thatCharAndByteHashesAgree() {
+		String[] passwords = {"", "a", "password", "passw0rd!", 
+				"correct horse battery staple", "p\u00e4ssw\u00f6rd", 
+				"\u5bc6\u7801", "pass\ud83d\udd11word", "bad\ud800surrogate"};
+		for (String password : passwords) {
+			byte[] bytes = password.getBytes(UTF_8);
+			Assert.assertEquals("Failure - hashes should agree for " + password,
+					PasswordHash.hash64(bytes, 0, bytes.length),
+					PasswordHash.hash64(password));
+		}
+	}
+	
+	@Test
+	public void thatDistinctPasswordsHashDifferently() {
+		Assert.assertNotEquals("Failure - hashes should differ",
+				PasswordHash.hash64("password"),
+				PasswordHash.hash64("Password"));
+		Assert.assertNotEquals("Failure - trailing zero byte should matter",
+				PasswordHash.hash64(""),
+				PasswordHash.hash64("\u0000"));
+	}
+	
+	@Test
+	public void thatCaseFoldingMatchesLowerCase() {
+		String[] passwords = {"", "PASSWORD", "PassW0rd!", "@[`{", 
+				"P\u00c4SSW\u00d6RD", "\u0130stanbul", "PASS\ud83d\udd11WORD", 
+				"\u039f\u0394\u03a5\u03a3\u03a3\u0395\u03a5\u03a3", "\u0178\u212a"};
+		for (String password : passwords)
+			Assert.assertEquals("Failure - folded hash should match for " + password,
+					PasswordHash.hash64(password.toLowerCase()),
+					PasswordHash.hash64IgnoreCase(password));
+	}
+	
+	@Test
+	public void thatBufferHashesMatchArrayHashes() {
+		byte[] bytes = "correct horse battery staple".getBytes(UTF_8);
+		long expected = PasswordHash.hash64(bytes, 0, bytes.length);
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 2);
+		direct.position(2);
+		direct.put(bytes).position(2);
+		Assert.assertEquals("Failure - direct buffer hash should match",
+				expected, PasswordHash.hash64(direct));
+		Assert.assertEquals("Failure - buffer position should not change",
+				2, direct.position());
+		ByteBuffer slice = ByteBuffer.wrap(bytes, 8, 5).slice();
+		Assert.assertEquals("Failure - sliced buffer hash should match",
+				PasswordHash.hash64("horse"), PasswordHash.hash64(slice));
+	}
+	
+	@Test
+	public void thatBufferCaseFoldingMatchesLowerCase() {
+		String[] passwords = {"", "PassW0rd!", "P\u00c4SSW\u00d6RD", 
+				"\u0130stanbul", "PASS\ud83d\udd11WORD", "\u039f\u0394\u03a5\u03a3"};
+		for (String password : passwords) {
+			ByteBuffer direct = ByteBuffer.allocateDirect(64);
+			direct.put(password.getBytes(UTF_8)).flip();
+			Assert.assertEquals("Failure - folded hash should match for " + password,
+					PasswordHash.hash64(password.toLowerCase()),
+					PasswordHash.hash64IgnoreCase(direct));
+		}
+		byte[][] malformed = {{(byte) 0xC0, (byte) 0xC1}, {(byte) 0xE2, 0x41}, 
+				{(byte) 0xED, (byte) 0xA0, (byte) 0x80}, {0x41, (byte) 0xF0}};
+		for (byte[] bytes : malformed)
+			Assert.assertEquals("Failure - malformed input should be decoded",
+					PasswordHash.hash64(new String(bytes, UTF_8).toLowerCase()),
+					PasswordHash.hash64IgnoreCase(ByteBuffer.wrap(bytes)));
+	}
+}
\ No newline at end of file
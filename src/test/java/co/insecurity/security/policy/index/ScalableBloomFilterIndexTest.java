@@ -0,0 +1,50 @@
+package co.insecurity.security.policy.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScalableBloomFilterIndexTest {
+	
+	@Test
+	public void thatIndexGrowsBeyondInitialCapacity() {
+		ScalableBloomFilterIndex.Builder builder = 
+				new ScalableBloomFilterIndex.Builder(100, 0.001);
+		for (int i = 0; i < 10000; i++)
+			builder.add("password" + i);
+		ScalableBloomFilterIndex index = builder.build();
+		Assert.assertTrue("Failure - index should have added stages",
+				index.getNumStages() > 1);
+		for (int i = 0; i < 10000; i++)
+			Assert.assertTrue("Failure - index should contain password" + i,
+					index.contains("password" + i));
+	}
+	
+	@Test
+	public void thatFalsePositiveProbabilityIsBounded() {
+		ScalableBloomFilterIndex.Builder builder = 
+				new ScalableBloomFilterIndex.Builder(100, 0.01);
+		for (int i = 0; i < 20000; i++)
+			builder.add("password" + i);
+		ScalableBloomFilterIndex index = builder.build();
+		int falsePositives = 0;
+		for (int i = 0; i < 20000; i++) {
+			if (index.contains("uncommon" + i))
+				falsePositives++;
+		}
+		Assert.assertTrue("Failure - false positive rate should be near 0.01",
+				falsePositives < 20000 * 0.02);
+	}
+	
+	@Test
+	public void thatDuplicatesDoNotConsumeCapacity() {
+		ScalableBloomFilterIndex.Builder builder = 
+				new ScalableBloomFilterIndex.Builder(10, 0.001);
+		Assert.assertTrue("Failure - first add should be new",
+				builder.add("password"));
+		for (int i = 0; i < 100; i++)
+			Assert.assertFalse("Failure - duplicate add should not be new",
+					builder.add("password"));
+		Assert.assertEquals("Failure - duplicates should not add stages",
+				1, builder.build().getNumStages());
+	}
+}
\ No newline at end of file
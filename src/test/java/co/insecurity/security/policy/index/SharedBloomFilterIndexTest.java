@@ -0,0 +1,109 @@
+package co.insecurity.security.policy.index;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SharedBloomFilterIndexTest {
+	
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+	
+	private SharedBloomFilterIndex build(Path file, int n) throws IOException {
+		SharedBloomFilterIndex.Builder builder =
+				new SharedBloomFilterIndex.Builder(file, n, 0.001, false);
+		for (int i = 0; i < n; i++)
+			builder.add("password" + i);
+		return builder.build();
+	}
+	
+	@Test
+	public void thatAddedPasswordsAreContained() throws IOException {
+		Path file = tmp.getRoot().toPath().resolve("filter");
+		SharedBloomFilterIndex index = build(file, 100000);
+		Assert.assertEquals("Failure - size should be 100000",
+				100000, index.getNumPasswords(), 100);
+		for (int i = 0; i < 100000; i++)
+			Assert.assertTrue("Failure - index should contain password" + i,
+					index.contains("password" + i));
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++)
+			if (index.contains("uncommon" + i))
+				falsePositives++;
+		Assert.assertTrue("Failure - false positive rate should be near 0.001",
+				falsePositives < 200);
+		Assert.assertEquals("Failure - temporary files should be deleted",
+				1, tmp.getRoot().list().length);
+	}
+	
+	@Test
+	public void thatPublishedFilterIsMappedByAnotherReader() throws IOException {
+		Path file = tmp.getRoot().toPath().resolve("filter");
+		SharedBloomFilterIndex published = build(file, 5000);
+		SharedBloomFilterIndex mapped = SharedBloomFilterIndex.open(file);
+		Assert.assertTrue("Failure - file should be a shared filter file",
+				SharedBloomFilterIndex.isSharedFilterFile(file));
+		Assert.assertEquals("Failure - sizes should match",
+				published.getNumPasswords(), mapped.getNumPasswords());
+		Assert.assertEquals("Failure - false positive probability should be 0.001",
+				0.001, mapped.getFalsePositiveProbability(), 0.0);
+		Assert.assertFalse("Failure - filter should not be case folded",
+				mapped.isCaseFolded());
+		for (int i = 0; i < 10000; i++) {
+			String password = ((i % 2 == 0) ? "password" : "uncommon") + i / 2;
+			Assert.assertEquals("Failure - lookups should match for " + password,
+					published.contains(password), mapped.contains(password));
+		}
+	}
+	
+	@Test
+	public void thatRepublishingLeavesMappedFilterIntact() throws IOException {
+		Path file = tmp.getRoot().toPath().resolve("filter");
+		SharedBloomFilterIndex previous = build(file, 1000);
+		SharedBloomFilterIndex.Builder builder =
+				new SharedBloomFilterIndex.Builder(file, 1000, 0.001, false);
+		builder.add("replacement");
+		SharedBloomFilterIndex current = builder.build();
+		Assert.assertTrue("Failure - previous filter should be unchanged",
+				previous.contains("password42"));
+		Assert.assertTrue("Failure - current filter should hold replacement",
+				current.contains("replacement"));
+		Assert.assertFalse("Failure - current filter should be replaced",
+				current.contains("password42"));
+	}
+	
+	@Test(expected = IOException.class)
+	public void thatCorruptHeaderIsRejected() throws IOException {
+		Path file = tmp.getRoot().toPath().resolve("filter");
+		build(file, 1000);
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.seek(16);
+			raf.writeLong(1);
+		}
+		SharedBloomFilterIndex.open(file);
+	}
+	
+	@Test
+	public void thatBlockLayoutMatchesBlockedBloomFilter() throws IOException {
+		BlockedBloomFilterIndex.Builder blocked =
+				new BlockedBloomFilterIndex.Builder(5000, 0.01);
+		SharedBloomFilterIndex.Builder shared = new SharedBloomFilterIndex
+				.Builder(tmp.getRoot().toPath().resolve("filter"), 5000, 0.01, false);
+		for (int i = 0; i < 5000; i++) {
+			blocked.add("password" + i);
+			shared.add("password" + i);
+		}
+		BlockedBloomFilterIndex heap = blocked.build();
+		SharedBloomFilterIndex mapped = shared.build();
+		Assert.assertEquals("Failure - block counts should match",
+				heap.getNumBlocks(), mapped.getNumBlocks());
+		for (int i = 0; i < 20000; i++)
+			Assert.assertEquals("Failure - lookups should match",
+					heap.contains("uncommon" + i), mapped.contains("uncommon" + i));
+	}
+}
\ No newline at end of file
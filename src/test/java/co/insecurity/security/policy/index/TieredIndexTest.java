@@ -0,0 +1,90 @@
+package co.insecurity.security.policy.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TieredIndexTest {
+	
+	@Test
+	public void thatFirstPasswordsFormHotTier() {
+		TieredIndex.Builder builder = new TieredIndex.Builder(
+				new FingerprintSetIndex.Builder(1000), 10);
+		for (int i = 0; i < 1000; i++)
+			builder.add("password" + i);
+		TieredIndex index = builder.build();
+		Assert.assertEquals("Failure - hot tier should hold 10 passwords",
+				10, index.getHotTier().getSize());
+		for (int i = 0; i < 10; i++)
+			Assert.assertTrue("Failure - hot tier should hold password" + i,
+					index.getHotTier().contains("password" + i));
+		Assert.assertFalse("Failure - hot tier should not hold password10",
+				index.getHotTier().contains("password10"));
+		Assert.assertEquals("Failure - index should count cold passwords",
+				1000, index.getNumPasswords());
+	}
+	
+	@Test
+	public void thatFrequentPasswordsFormHotTier() {
+		TieredIndex.Builder builder = new TieredIndex.Builder(
+				new FingerprintSetIndex.Builder(1000), 10);
+		for (int i = 0; i < 1000; i++)
+			builder.add("password" + i, (i % 100 == 0) ? 1000000 - i : i);
+		TieredIndex index = builder.build();
+		for (int i = 0; i < 1000; i += 100)
+			Assert.assertTrue("Failure - hot tier should hold password" + i,
+					index.getHotTier().contains("password" + i));
+		Assert.assertFalse("Failure - hot tier should not hold password999",
+				index.getHotTier().contains("password999"));
+	}
+	
+	@Test
+	public void thatTiersReportHitRates() {
+		TieredIndex.Builder builder = new TieredIndex.Builder(
+				new BlockedBloomFilterIndex.Builder(1000, 0.001), 10);
+		for (int i = 0; i < 1000; i++)
+			builder.add("password" + i);
+		TieredIndex index = builder.build();
+		Assert.assertTrue("Failure - hashed cold index should be queryable "
+				+ "by hash", index instanceof HashedMembershipIndex);
+		for (int i = 0; i < 10; i++)
+			Assert.assertTrue("Failure - hot password should be contained",
+					index.contains("password" + i));
+		for (int i = 500; i < 510; i++)
+			Assert.assertTrue("Failure - cold password should be contained",
+					index.contains("password" + i));
+		Assert.assertEquals("Failure - every lookup should be counted",
+				20, index.getLookups());
+		Assert.assertEquals("Failure - hot hits should be counted",
+				10, index.getHotHits());
+		Assert.assertEquals("Failure - misses should fall through",
+				10, index.getColdLookups());
+		Assert.assertEquals("Failure - cold hits should be counted",
+				10, index.getColdHits());
+		Assert.assertEquals("Failure - hot hit rate should be 0.5",
+				0.5, index.getHotHitRate(), 0);
+		Assert.assertEquals("Failure - cold hit rate should be 1",
+				1.0, index.getColdHitRate(), 0);
+		index.resetStatistics();
+		Assert.assertEquals("Failure - statistics should be reset",
+				0, index.getLookups());
+	}
+	
+	@Test
+	public void thatBatchLookupsMatchContains() {
+		TieredIndex.Builder builder = new TieredIndex.Builder(
+				new FingerprintSetIndex.Builder(100), 5);
+		for (int i = 0; i < 100; i++)
+			builder.add("password" + i);
+		TieredIndex index = builder.build();
+		String[] passwords = new String[40];
+		for (int i = 0; i < passwords.length; i++)
+			passwords[i] = ((i % 2 == 0) ? "password" : "uncommon") + (i * 3);
+		boolean[] results = new boolean[passwords.length];
+		index.containsAll(passwords, 0, passwords.length, results);
+		for (int i = 0; i < passwords.length; i++)
+			Assert.assertEquals("Failure - batch result should match contains()",
+					index.contains(passwords[i]), results[i]);
+		Assert.assertEquals("Failure - batch and single lookups should count",
+				2L * passwords.length, index.getLookups());
+	}
+}
\ No newline at end of file
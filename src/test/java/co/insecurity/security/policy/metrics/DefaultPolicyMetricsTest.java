@@ -0,0 +1,123 @@
+package co.insecurity.security.policy.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import co.insecurity.security.policy.PasswordPolicy;
+import co.insecurity.security.policy.assertion.LengthAssertion;
+import co.insecurity.security.policy.assertion.NotLeakedAssertion;
+import co.insecurity.security.policy.assertion.PolicyAssertion;
+import co.insecurity.security.policy.index.IndexType;
+
+public class DefaultPolicyMetricsTest {
+	
+	private static class MeteredPolicy extends PasswordPolicy {
+		
+		final LengthAssertion length = 
+				new LengthAssertion(8, LengthAssertion.DISABLED);
+		
+		MeteredPolicy(PolicyAssertion notLeaked) {
+			assertions = new LinkedHashSet<PolicyAssertion>();
+			assertions.add(length);
+			assertions.add(notLeaked);
+		}
+	}
+	
+	@Test
+	public void thatAssertionCallsAreRecorded() throws IOException {
+		NotLeakedAssertion notLeaked = new NotLeakedAssertion.Builder()
+				.withIndexType(IndexType.BLOCKED_BLOOM_FILTER)
+				.build();
+		MeteredPolicy policy = new MeteredPolicy(notLeaked);
+		DefaultPolicyMetrics metrics = new DefaultPolicyMetrics.Builder()
+				.withJfrEvents(true)
+				.build();
+		policy.evaluate("password");
+		policy.setMetrics(metrics);
+		policy.evaluate("password");
+		policy.evaluate("uF7#kq!m2Zr9");
+		policy.evaluateMask("short");
+		policy.evaluateAll(Arrays.asList("password", "uF7#kq!m2Zr9", null));
+		
+		AssertionMetrics length = metrics.getAssertionMetrics(policy.length);
+		Assert.assertEquals("Failure - length assertion should have 6 calls",
+				6, length.getCalls());
+		Assert.assertEquals("Failure - length assertion should have 2 failures",
+				2, length.getFailures());
+		Assert.assertEquals("Failure - 3 calls should be timed individually",
+				3, length.getLatency().getCount());
+		AssertionMetrics leaked = metrics.getAssertionMetrics(notLeaked);
+		int expected = 0;
+		for (String password : new String[] {"password", "uF7#kq!m2Zr9", 
+				"short", "password", "uF7#kq!m2Zr9", null}) {
+			if (!notLeaked.verify(password).isSuccess())
+				expected++;
+		}
+		Assert.assertEquals("Failure - leak check failures should match",
+				expected, leaked.getFailures());
+		Assert.assertEquals("Failure - metrics should cover 2 assertions",
+				2, metrics.getAssertionMetrics().size());
+		Assert.assertTrue("Failure - mean latency should be positive",
+				leaked.getMeanLatencyNanos() > 0);
+		
+		policy.setMetrics(null);
+		policy.evaluate("password");
+		Assert.assertEquals("Failure - disabled metrics should not record",
+				6, length.getCalls());
+		Assert.assertSame("Failure - null metrics should disable metrics",
+				PolicyMetrics.NO_OP, policy.getMetrics());
+	}
+	
+	@Test
+	public void thatBuildsAreRecorded() throws IOException {
+		DefaultPolicyMetrics metrics = new DefaultPolicyMetrics.Builder()
+				.build();
+		new NotLeakedAssertion.Builder()
+				.withIndexType(IndexType.BINARY_FUSE_FILTER)
+				.withPasswordDataFile("src/test/resources/testpasswords.dat")
+				.withMetrics(metrics)
+				.build();
+		BuildMetrics build = metrics.getBuildMetrics("BINARY_FUSE_FILTER");
+		Assert.assertEquals("Failure - one build should be recorded",
+				1, build.getBuilds());
+		Assert.assertEquals("Failure - build should hold 4 passwords",
+				4, build.getNumPasswords());
+		Assert.assertTrue("Failure - index size should be known",
+				build.getSizeInBytes() > 0);
+	}
+	
+	@Test
+	public void thatMBeansAreRegistered() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName query = new ObjectName(
+				DefaultPolicyMetrics.JMX_DOMAIN + ":*");
+		int before = server.queryNames(query, null).size();
+		MeteredPolicy policy = new MeteredPolicy(new LengthAssertion());
+		try (DefaultPolicyMetrics metrics = new DefaultPolicyMetrics.Builder()
+				.withJmx(true)
+				.build()) {
+			policy.setMetrics(metrics);
+			policy.evaluate("password");
+			Set<ObjectName> names = server.queryNames(query, null);
+			Assert.assertEquals("Failure - 2 MBeans should be registered",
+					before + 2, names.size());
+			for (ObjectName name : names) {
+				if (!name.getKeyProperty("name").contains("LengthAssertion"))
+					continue;
+				Assert.assertEquals("Failure - MBean should report 1 call",
+						1L, server.getAttribute(name, "Calls"));
+			}
+		}
+		Assert.assertEquals("Failure - MBeans should be unregistered",
+				before, server.queryNames(query, null).size());
+	}
+}
\ No newline at end of file
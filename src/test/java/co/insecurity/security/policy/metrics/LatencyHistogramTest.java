@@ -0,0 +1,51 @@
+package co.insecurity.security.policy.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+	
+	@Test
+	public void thatBucketsCoverAllValues() {
+		long[] values = {0, 1, 7, 8, 15, 16, 17, 1000, 123456789, 
+				Long.MAX_VALUE};
+		for (long value : values) {
+			int bucket = LatencyHistogram.bucketOf(value);
+			Assert.assertTrue("Failure - " + value + " should be in its bucket",
+					LatencyHistogram.lowestValueOf(bucket) <= value 
+					&& value <= LatencyHistogram.highestValueOf(bucket));
+		}
+		for (long value = 1; value < Long.MAX_VALUE / 2; value = value * 3 + 1) {
+			long width = LatencyHistogram.highestValueOf(
+					LatencyHistogram.bucketOf(value)) 
+					- LatencyHistogram.lowestValueOf(
+							LatencyHistogram.bucketOf(value));
+			Assert.assertTrue("Failure - bucket of " + value + " is too wide",
+					width <= value / 8);
+		}
+	}
+	
+	@Test
+	public void thatPercentilesAreAccurate() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals("Failure - empty histogram should report 0",
+				0, histogram.getValueAtPercentile(99));
+		for (long i = 1; i <= 10000; i++)
+			histogram.record(i * 1000);
+		Assert.assertEquals("Failure - count should be 10000",
+				10000, histogram.getCount());
+		Assert.assertEquals("Failure - max should be 10000000",
+				10000000, histogram.getMax());
+		long median = histogram.getValueAtPercentile(50);
+		Assert.assertTrue("Failure - median should be near 5000000: " + median,
+				median >= 5000000 && median < 5000000 * 1.125);
+		long p99 = histogram.getValueAtPercentile(99);
+		Assert.assertTrue("Failure - p99 should be near 9900000: " + p99,
+				p99 >= 9900000 && p99 <= 10000000);
+		Assert.assertEquals("Failure - p100 should be the max",
+				10000000, histogram.getValueAtPercentile(100));
+		histogram.reset();
+		Assert.assertEquals("Failure - reset histogram should be empty",
+				0, histogram.getCount());
+	}
+}
\ No newline at end of file
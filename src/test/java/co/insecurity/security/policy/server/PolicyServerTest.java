@@ -0,0 +1,169 @@
+package co.insecurity.security.policy.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import co.insecurity.security.policy.PasswordPolicy;
+import co.insecurity.security.policy.PolicyCompiler;
+
+public class PolicyServerTest {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String COMPLIANT = "{\"compliant\":true,\"violations\":[]}";
+	
+	private static PolicyServer server;
+	
+	@BeforeClass
+	public static void setUpClass() throws IOException {
+		PasswordPolicy policy = PolicyCompiler.compile(new ByteArrayInputStream((
+				"length.min = 8\n"
+				+ "leaked.dataFile = src/test/resources/testpasswords.dat\n"
+				+ "leaked.exactMatching = true\n").getBytes(UTF_8)));
+		server = new PolicyServer.Builder(policy).withPort(0).build();
+		server.start();
+	}
+	
+	@AfterClass
+	public static void tearDownClass() {
+		server.close();
+		server = null;
+	}
+	
+	private static int request(String method, String path, String body,
+			StringBuilder response) throws IOException {
+		URL url = new URL("http", server.getAddress().getHostString(),
+				server.getAddress().getPort(), path);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod(method);
+		if (body != null) {
+			connection.setDoOutput(true);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(UTF_8));
+			}
+		}
+		int status = connection.getResponseCode();
+		InputStream in = (status < 400) ? connection.getInputStream()
+				: connection.getErrorStream();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (InputStream stream = in) {
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = stream.read(buffer)) >= 0)
+				bytes.write(buffer, 0, n);
+		}
+		response.append(new String(bytes.toByteArray(), UTF_8));
+		return status;
+	}
+	
+	@Test
+	public void thatPasswordIsEvaluated() throws IOException {
+		StringBuilder response = new StringBuilder();
+		Assert.assertEquals("Failure - status should be 200",
+				200, request("POST", "/evaluate", "uF7#kq!m2Zr9\n", response));
+		Assert.assertEquals("Failure - password should be compliant",
+				COMPLIANT, response.toString());
+		response.setLength(0);
+		request("POST", "/evaluate", "password", response);
+		Assert.assertTrue("Failure - leaked password should not be compliant",
+				response.toString().startsWith("{\"compliant\":false"));
+	}
+	
+	@Test
+	public void thatBatchIsEvaluatedInOrder() throws IOException {
+		StringBuilder response = new StringBuilder();
+		Assert.assertEquals("Failure - status should be 200", 200, request(
+				"POST", "/evaluate/batch", "password\nuF7#kq!m2Zr9\r\nshort\n",
+				response));
+		Assert.assertTrue("Failure - results should be in order of lines",
+				response.toString().matches("\\[\\{\"compliant\":false.*\\},"
+						+ "\\{\"compliant\":true,\"violations\":\\[\\]\\},"
+						+ "\\{\"compliant\":false.*\\}\\]"));
+	}
+	
+	@Test
+	public void thatHealthAndMetricsAreServed() throws IOException {
+		StringBuilder response = new StringBuilder();
+		Assert.assertEquals("Failure - health status should be 200",
+				200, request("GET", "/health", null, response));
+		response.setLength(0);
+		Assert.assertEquals("Failure - metrics status should be 200",
+				200, request("GET", "/metrics", null, response));
+		Assert.assertTrue("Failure - metrics should count micro-batches",
+				response.toString().contains("passcheck_micro_batches_total "));
+	}
+	
+	@Test
+	public void thatInvalidRequestsAreRejected() throws IOException {
+		Assert.assertEquals("Failure - unknown path should be 404",
+				404, request("GET", "/health/deep", null, new StringBuilder()));
+		Assert.assertEquals("Failure - wrong method should be 405",
+				405, request("GET", "/evaluate", null, new StringBuilder()));
+	}
+	
+	@Test
+	public void thatConcurrentRequestsAreBatched() throws Exception {
+		int numClients = 16;
+		final int numRequests = 50;
+		ExecutorService clients = Executors.newFixedThreadPool(numClients);
+		try {
+			List<Future<Integer>> compliant = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < numClients; i++) {
+				final int client = i;
+				compliant.add(clients.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws IOException {
+						int numCompliant = 0;
+						for (int j = 0; j < numRequests; j++) {
+							StringBuilder response = new StringBuilder();
+							String password = (j % 2 == 0) ? "password"
+									: "uF7#kq!m" + client + "x" + j;
+							request("POST", "/evaluate", password, response);
+							if (response.toString().equals(COMPLIANT))
+								numCompliant++;
+						}
+						return numCompliant;
+					}
+				}));
+			}
+			for (Future<Integer> result : compliant)
+				Assert.assertEquals("Failure - every other password should "
+						+ "be compliant", numRequests / 2,
+						result.get().intValue());
+		} finally {
+			clients.shutdown();
+		}
+		StringBuilder metrics = new StringBuilder();
+		request("GET", "/metrics", null, metrics);
+		long numBatches = getCounter(metrics, "passcheck_micro_batches_total");
+		long numPasswords = getCounter(metrics,
+				"passcheck_micro_batched_passwords_total");
+		Assert.assertTrue("Failure - every password should be batched",
+				numPasswords >= numClients * numRequests);
+		Assert.assertTrue("Failure - batches should not exceed passwords",
+				numBatches > 0 && numBatches <= numPasswords);
+	}
+	
+	private static long getCounter(CharSequence metrics, String name) {
+		for (String line : metrics.toString().split("\n"))
+			if (line.startsWith(name + " "))
+				return Long.parseLong(line.substring(name.length() + 1));
+		throw new AssertionError("Failure - missing counter " + name);
+	}
+}
\ No newline at end of file